@@ -16,6 +16,8 @@ import com.belladati.sdk.exception.impl.InvalidAttributeException;
 import com.belladati.sdk.exception.impl.InvalidIndicatorException;
 import com.belladati.sdk.exception.impl.InvalidReportException;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.impl.BulkImport;
+import com.belladati.sdk.impl.DataSetWriter;
 import com.belladati.sdk.report.ReportInfo;
 import com.belladati.sdk.report.impl.ReportInfoImpl;
 import com.belladati.sdk.util.CachedList;
@@ -183,6 +185,26 @@ public class DataSetImpl implements DataSet {
 		return this;
 	}
 
+	/**
+	 * Sets up an import uploading data into this data set in chunks sent in
+	 * parallel.
+	 * 
+	 * @return an import that can be configured and started
+	 */
+	public BulkImport setupBulkImport() {
+		return service.setupBulkImport(id);
+	}
+
+	/**
+	 * Opens a writer posting rows into this data set in batches. The writer
+	 * must be closed to post the last rows.
+	 * 
+	 * @return a writer accepting rows from any thread
+	 */
+	public DataSetWriter openWriter() {
+		return service.openDataSetWriter(id);
+	}
+
 	@Override
 	public PaginatedIdList<DataRow> getData() {
 		return service.getDataSetData(id);
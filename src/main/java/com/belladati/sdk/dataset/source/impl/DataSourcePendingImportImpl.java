@@ -6,8 +6,8 @@ import com.belladati.sdk.dataset.source.ImportInterval;
 import com.belladati.sdk.dataset.source.ImportIntervalUnit;
 import com.belladati.sdk.exception.server.NotFoundException;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
 
@@ -62,7 +62,7 @@ public class DataSourcePendingImportImpl extends DataSourceImportBaseImpl implem
 
 	@Override
 	public JsonNode toJson() {
-		ObjectNode node = new ObjectMapper().createObjectNode().put("when",
+		ObjectNode node = JsonSupport.createObjectNode().put("when",
 			new SimpleDateFormat(BellaDatiServiceImpl.DATE_TIME_FORMAT).format(nextImport));
 		if (isOverwriting()) {
 			node.put("overwrite", overwritePolicy.toJson());
@@ -2,8 +2,8 @@ package com.belladati.sdk.domain.impl;
 
 import com.belladati.sdk.domain.DomainCreateBuilder;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
@@ -86,9 +86,7 @@ public class DomainCreateBuilderImpl implements DomainCreateBuilder {
 
 	@Override
 	public JsonNode toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-
-		ObjectNode object = mapper.createObjectNode();
+		ObjectNode object = JsonSupport.createObjectNode();
 		object.put("name", name);
 
 		if (description != null) {
@@ -107,9 +105,9 @@ public class DomainCreateBuilderImpl implements DomainCreateBuilder {
 			object.put("locale", locale);
 		}
 		if (!parameters.isEmpty()) {
-			ArrayNode array = mapper.createArrayNode();
+			ArrayNode array = JsonSupport.createArrayNode();
 			for (Entry<String, String> entry : parameters.entrySet()) {
-				ObjectNode paramObject = mapper.createObjectNode();
+				ObjectNode paramObject = JsonSupport.createObjectNode();
 				paramObject.put(entry.getKey(), entry.getValue());
 				array.add(paramObject);
 			}
@@ -118,7 +116,7 @@ public class DomainCreateBuilderImpl implements DomainCreateBuilder {
 		if (templateId != null) {
 			object.put("id", templateId);
 
-			ObjectNode templateObject = mapper.createObjectNode();
+			ObjectNode templateObject = JsonSupport.createObjectNode();
 			templateObject.put("id", templateId);
 			if (usernameSuffix != null) {
 				templateObject.put("usernameSuffix", usernameSuffix);
@@ -2,8 +2,8 @@ package com.belladati.sdk.domain.impl;
 
 import com.belladati.sdk.domain.DomainEditBuilder;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
@@ -69,9 +69,7 @@ public class DomainEditBuilderImpl implements DomainEditBuilder {
 
 	@Override
 	public JsonNode toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-
-		ObjectNode object = mapper.createObjectNode();
+		ObjectNode object = JsonSupport.createObjectNode();
 
 		if (description != null) {
 			object.put("description", description);
@@ -89,9 +87,9 @@ public class DomainEditBuilderImpl implements DomainEditBuilder {
 			object.put("locale", locale);
 		}
 		if (!parameters.isEmpty()) {
-			ArrayNode array = mapper.createArrayNode();
+			ArrayNode array = JsonSupport.createArrayNode();
 			for (Entry<String, String> entry : parameters.entrySet()) {
-				ObjectNode paramObject = mapper.createObjectNode();
+				ObjectNode paramObject = JsonSupport.createObjectNode();
 				paramObject.put(entry.getKey(), entry.getValue());
 				array.add(paramObject);
 			}
@@ -106,9 +104,10 @@ public class DomainEditBuilderImpl implements DomainEditBuilder {
 		if (posted) {
 			throw new IllegalStateException("Request already submitted to server.");
 		}
-		byte[] response = service.getClient().post("api/domains/" + id, service.getTokenHolder(),
+		byte[] response = service.getClient().postIdempotent("api/domains/" + id, service.getTokenHolder(),
 			Collections.singletonList(new BasicNameValuePair("data", toJson().toString())));
 		posted = true;
+		service.invalidateDomain(id);
 		return new String(response);
 	}
 
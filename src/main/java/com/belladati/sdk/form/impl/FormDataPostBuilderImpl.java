@@ -2,8 +2,8 @@ package com.belladati.sdk.form.impl;
 
 import com.belladati.sdk.form.FormDataPostBuilder;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
 
@@ -54,8 +54,7 @@ public class FormDataPostBuilderImpl implements FormDataPostBuilder {
 
 	@Override
 	public JsonNode toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-		ObjectNode object = mapper.createObjectNode();
+		ObjectNode object = JsonSupport.createObjectNode();
 
 		for (Entry<String, String> entry : textValues.entrySet()) {
 			object.put(entry.getKey(), entry.getValue());
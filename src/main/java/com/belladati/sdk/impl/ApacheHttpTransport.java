@@ -0,0 +1,601 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.InternalConfigurationException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.CachingHttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.cache.CachingHttpAsyncClients;
+import org.apache.hc.client5.http.impl.cache.CachingHttpClientBuilder;
+import org.apache.hc.client5.http.impl.cache.CachingHttpClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.util.DeadlineTimeoutException;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Default {@link HttpTransport}, based on Apache HttpClient. Responses are
+ * cached locally following the server's caching headers, in memory or in the
+ * {@link DiskCacheStorage} directory set through the <tt>bdCacheDirectory</tt>
+ * system property. Cached responses are only returned to requests signed with
+ * the same OAuth consumer key and token. The disk cache keeps them across
+ * restarts, so <tt>bdCacheDirectory</tt> should be a directory other users
+ * and untrusted processes can't read.
+ * <p>
+ * Blocking requests use the classic client, which only speaks HTTP/1.1. If
+ * HTTP/2 is enabled, they are sent through the asynchronous client instead to
+ * be multiplexed, except for streamed responses.
+ * <p>
+ * Each {@link EndpointFamily} is sent through a bulkhead with its own clients
+ * and connection pools, so that e.g. a batch of slow PDF exports can't take
+ * the connections needed to load reports. <tt>bdMaxConnections</tt> is divided
+ * between the families' pools, see {@link EndpointFamily#getMaxConnections()}.
+ * Pool sizes and timeouts can be set for each family by appending its name to
+ * the property, e.g. <tt>bdMaxConnectionsExport</tt> or
+ * <tt>bdSocketTimeoutImport</tt>. Requests rejected because their family's
+ * pool is exhausted don't count against the server's {@link CircuitBreaker},
+ * so that they don't make the other families fail too.
+ *
+ *
+ */
+public class ApacheHttpTransport implements HttpTransport {
+
+	/**
+	 * Request header naming the OAuth consumer and token a request is signed
+	 * for. Cached responses vary on it, so that they are only returned to
+	 * requests signed with the same token.
+	 */
+	static final String CACHE_SCOPE_HEADER = "X-BellaDati-Cache-Scope";
+	private static final Pattern OAUTH_IDENTITY = Pattern.compile("oauth_(?:consumer_key|token)=\"([^\"]*)\"");
+
+	private final HttpVersionPolicy versionPolicy;
+	private final ConnectionPoolStats poolStats = new ConnectionPoolStats();
+	/** persistent response cache, <tt>null</tt> to cache in memory */
+	private final DiskCacheStorage diskCache = openDiskCache();
+	private final Map<EndpointFamily, Bulkhead> bulkheads = new EnumMap<EndpointFamily, Bulkhead>(EndpointFamily.class);
+
+	/**
+	 * Creates a new transport configured through system properties.
+	 *
+	 * @param versionPolicy HTTP versions to use
+	 */
+	public ApacheHttpTransport(HttpVersionPolicy versionPolicy) {
+		this.versionPolicy = versionPolicy;
+		for (EndpointFamily family : EndpointFamily.values()) {
+			bulkheads.put(family, new Bulkhead(family));
+		}
+	}
+
+	/**
+	 * Opens the persistent response cache if a directory is configured.
+	 *
+	 * @return the cache, or <tt>null</tt> if responses are cached in memory
+	 */
+	private static DiskCacheStorage openDiskCache() {
+		String directory = System.getProperty("bdCacheDirectory");
+		if (directory == null || directory.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			return DiskCacheStorage.forDirectory(Paths.get(directory.trim()));
+		} catch (IOException e) {
+			throw new InternalConfigurationException("Failed to open cache directory " + directory, e);
+		}
+	}
+
+	/**
+	 * Builds the connection pool shared by the blocking HTTP clients of a
+	 * bulkhead.
+	 *
+	 * @param family the family of endpoints the pool is used for
+	 * @param stats statistics of the bulkhead
+	 * @return a new connection manager
+	 */
+	private PoolingHttpClientConnectionManager buildConnectionManager(EndpointFamily family, ConnectionPoolStats stats) {
+		// configure connection pooling with modern builder
+		PoolingHttpClientConnectionManager connManager =
+				PoolingHttpClientConnectionManagerBuilder.create()
+						.setDefaultConnectionConfig(buildConnectionConfig(family))
+						.setTlsSocketStrategy(new DefaultClientTlsStrategy(BellaDatiClient.buildSslContext()))
+						.setConnectionFactory(stats.countingConnectionFactory())
+						.build();
+		stats.bind(connManager);
+
+		int connectionLimit = family.getMaxConnections();
+		connManager.setMaxTotal(connectionLimit);
+		connManager.setDefaultMaxPerRoute(connectionLimit);
+
+// optional: socket config
+		SocketConfig socketConfig = SocketConfig.custom()
+				.setSoTimeout(Timeout.ofSeconds(30))
+				.build();
+		connManager.setDefaultSocketConfig(socketConfig);
+		return connManager;
+	}
+
+	/**
+	 * Builds the configuration for pooled connections.
+	 *
+	 * @param family the family of endpoints the connections are used for
+	 * @return the connection configuration
+	 */
+	private ConnectionConfig buildConnectionConfig(EndpointFamily family) {
+		// set timeouts for the connections
+		int globalTimeout = family.readLimit("bdTimeout", 100000);
+		int connectTimeout = family.readLimit("bdConnectTimeout", globalTimeout);
+		int socketTimeout = family.readLimit("bdSocketTimeout", globalTimeout);
+
+		// keep-alive settings, only relevant if connections are reused
+		int validateAfterInactivity = readFromProperty("bdValidateAfterInactivity", 2000);
+		int connectionTtl = readFromProperty("bdConnectionTtl", 300000);
+
+		return ConnectionConfig.custom()
+				.setSocketTimeout(Timeout.ofMilliseconds(socketTimeout)) // read timeout
+				.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout)) // connection establishment timeout
+				.setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivity)) // check stale connections
+				.setTimeToLive(TimeValue.ofMilliseconds(connectionTtl)) // never reuse connections older than this
+				.build();
+	}
+
+	/**
+	 * Builds the HTTP client to connect to the server.
+	 *
+	 * @param family the family of endpoints the client is used for
+	 * @param stats statistics of the bulkhead
+	 * @param connManager the connection pool to use
+	 * @param caching <tt>true</tt> if responses should be cached
+	 * @return a new client instance
+	 */
+	private CloseableHttpClient buildClient(EndpointFamily family, ConnectionPoolStats stats,
+		PoolingHttpClientConnectionManager connManager, boolean caching) {
+		int idleTimeout = readFromProperty("bdIdleTimeout", 30000);
+
+		HttpClientBuilder builder;
+		if (caching) {
+			CachingHttpClientBuilder cachingBuilder = CachingHttpClients.custom().setCacheConfig(buildCacheConfig());
+			if (diskCache != null) {
+				cachingBuilder.setHttpCacheStorage(diskCache);
+			}
+			// runs before the cache sees the response
+			cachingBuilder.addResponseInterceptorFirst((response, entity, context) -> response.addHeader("Vary", CACHE_SCOPE_HEADER));
+			builder = cachingBuilder;
+		} else {
+			builder = HttpClients.custom();
+		}
+
+// create the HTTP client
+		builder
+				.setDefaultRequestConfig(buildRequestConfig(family))
+				.setConnectionManager(connManager)
+				.setConnectionManagerShared(!caching) // the caching client owns the pool
+				.disableAutomaticRetries() // retried by RetryingTransport
+				.addRequestInterceptorLast((request, entity, context) -> stats.requestSent())
+				.disableContentCompression(); // responses are decoded by ContentCoding to count transferred bytes
+		if (caching) {
+			// one evictor thread per pool, run by the client owning it
+			builder.evictExpiredConnections().evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Builds the asynchronous HTTP client of a bulkhead, with its own
+	 * connection pool configured like the pool of the blocking clients.
+	 *
+	 * @param family the family of endpoints the client is used for
+	 * @param stats statistics of the bulkhead
+	 * @return a new, started client instance
+	 */
+	private CloseableHttpAsyncClient buildAsyncClient(EndpointFamily family, ConnectionPoolStats stats) {
+		int connectionLimit = family.getMaxConnections();
+		int idleTimeout = readFromProperty("bdIdleTimeout", 30000);
+
+		PoolingAsyncClientConnectionManager connManager = PoolingAsyncClientConnectionManagerBuilder.create()
+				.setDefaultConnectionConfig(buildConnectionConfig(family))
+				.setTlsStrategy(new DefaultClientTlsStrategy(BellaDatiClient.buildSslContext()))
+				.setDefaultTlsConfig(TlsConfig.custom().setVersionPolicy(versionPolicy).build())
+				.setMessageMultiplexing(isHttp2()) // let concurrent requests share HTTP/2 connections
+				.setMaxConnTotal(connectionLimit)
+				.setMaxConnPerRoute(connectionLimit)
+				.build();
+		stats.bind(connManager);
+
+		CachingHttpAsyncClientBuilder cachingBuilder = CachingHttpAsyncClients.custom();
+		if (diskCache != null) {
+			cachingBuilder.setHttpCacheStorage(diskCache);
+		}
+		CloseableHttpAsyncClient asyncClient = cachingBuilder
+				.setCacheConfig(buildCacheConfig())
+				.setDefaultRequestConfig(buildRequestConfig(family))
+				.setConnectionManager(connManager)
+				.setIOSessionListener(stats.countingSessionListener())
+				.disableAutomaticRetries() // retried by RetryingTransport
+				.addRequestInterceptorLast((request, entity, context) -> stats.requestSent())
+				.addResponseInterceptorFirst((response, entity, context) -> response.addHeader("Vary", CACHE_SCOPE_HEADER))
+				.evictExpiredConnections()
+				.evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout))
+				.build();
+		asyncClient.start();
+		return asyncClient;
+	}
+
+	/**
+	 * Builds the configuration of the local response cache.
+	 *
+	 * @return the cache configuration
+	 */
+	private CacheConfig buildCacheConfig() {
+		// thumbnails and large views are worth keeping on disk
+		int maxObjectSize = readFromProperty("bdCacheMaxObjectSize", diskCache == null ? 2 * 1024 * 1024 : 8 * 1024 * 1024);
+		return CacheConfig.custom()
+				.setSharedCache(false)
+				.setMaxCacheEntries(readFromProperty("bdCacheMaxEntries", 1000)) // only applies to the memory cache
+				.setMaxObjectSize(maxObjectSize) // note: long in Client5
+				.build();
+	}
+
+	/**
+	 * Builds the default configuration for requests sent to the server.
+	 *
+	 * @param family the family of endpoints the requests are sent to
+	 * @return the request configuration
+	 */
+	private RequestConfig buildRequestConfig(EndpointFamily family) {
+		// set timeouts for the HTTP client
+		int globalTimeout = family.readLimit("bdTimeout", 100000);
+		int connectionRequestTimeout = family.readLimit("bdConnectionRequestTimeout", globalTimeout);
+		int socketTimeout = family.readLimit("bdSocketTimeout", globalTimeout);
+
+		return RequestConfig.copy(RequestConfig.DEFAULT)
+				.setResponseTimeout(Timeout.ofMilliseconds(socketTimeout))
+				.setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeout)).build();
+	}
+
+	private boolean isHttp2() {
+		return versionPolicy != HttpVersionPolicy.FORCE_HTTP_1;
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		boolean streamedBody = request.getBody() != null && request.getBody().getContentLength() < 0;
+		if (isHttp2() && !request.isStreaming() && !streamedBody) {
+			// the classic client only speaks HTTP/1.1, wait for a multiplexed request instead
+			// unless the body should be streamed rather than buffered for it
+			return await(executeAsync(request));
+		}
+		request.sign();
+		HttpUriRequestBase classicRequest = new HttpUriRequestBase(request.getMethod(), request.getUri());
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			classicRequest.setHeader(header.getKey(), header.getValue());
+		}
+		classicRequest.setHeader(CACHE_SCOPE_HEADER, cacheScope(request));
+		if (request.getBody() != null) {
+			classicRequest.setEntity(new RequestBodyEntity(request.getBody()));
+		}
+		Bulkhead bulkhead = bulkheadFor(request);
+		CloseableHttpClient httpClient = request.isStreaming() ? bulkhead.streamingClient : bulkhead.client;
+		try {
+			return new ClassicResponse(httpClient.executeOpen(null, classicRequest, null));
+		} catch (ConnectionRequestTimeoutException e) {
+			bulkhead.stats.requestRejected();
+			throw e;
+		}
+	}
+
+	private Bulkhead bulkheadFor(TransportRequest request) {
+		return bulkheads.get(EndpointFamily.of(request.getMethod(), request.getUri()));
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a request failed because no pooled connection
+	 * became available in time.
+	 */
+	private static boolean isPoolTimeout(Exception e) {
+		return e instanceof ConnectionRequestTimeoutException || e instanceof DeadlineTimeoutException;
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+		SimpleHttpRequest asyncRequest;
+		try {
+			request.sign();
+			asyncRequest = toAsyncRequest(request);
+		} catch (IOException | RuntimeException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+
+		Bulkhead bulkhead = bulkheadFor(request);
+		Future<SimpleHttpResponse> exchange = bulkhead.getAsyncClient().execute(asyncRequest, new FutureCallback<SimpleHttpResponse>() {
+			@Override
+			public void completed(SimpleHttpResponse response) {
+				Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+				for (Header header : response.getHeaders()) {
+					headers.putIfAbsent(header.getName(), header.getValue());
+				}
+				result.complete(new BufferedTransportResponse(response.getCode(), headers, response.getBodyBytes()));
+			}
+
+			@Override
+			public void failed(Exception e) {
+				if (isPoolTimeout(e)) {
+					bulkhead.stats.requestRejected();
+				}
+				result.completeExceptionally(e);
+			}
+
+			@Override
+			public void cancelled() {
+				result.cancel(false);
+			}
+		});
+		// abort the exchange if the caller is no longer interested
+		result.whenComplete((response, e) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Copies a request into a request for the asynchronous client.
+	 *
+	 * @param request the request to copy
+	 * @return a request with the same method, URI, headers and content
+	 * @throws IOException if the request content cannot be read
+	 */
+	private static SimpleHttpRequest toAsyncRequest(TransportRequest request) throws IOException {
+		SimpleHttpRequest asyncRequest = new SimpleHttpRequest(request.getMethod(), request.getUri());
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			asyncRequest.setHeader(header.getKey(), header.getValue());
+		}
+		asyncRequest.setHeader(CACHE_SCOPE_HEADER, cacheScope(request));
+		RequestBody body = request.getBody();
+		if (body != null) {
+			asyncRequest.setBody(body.toByteArray(), ContentType.parse(body.getContentType()));
+			if (body.getContentEncoding() != null) {
+				asyncRequest.setHeader("Content-Encoding", body.getContentEncoding());
+			}
+		}
+		return asyncRequest;
+	}
+
+	/**
+	 * Returns a digest of the OAuth consumer key and token the request is
+	 * signed with, so that the token itself isn't kept with cached responses.
+	 *
+	 * @param request the signed request
+	 * @return the cache scope of the request
+	 */
+	static String cacheScope(TransportRequest request) {
+		String authorization = request.getHeader("Authorization");
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			if (authorization != null) {
+				Matcher matcher = OAUTH_IDENTITY.matcher(authorization);
+				while (matcher.find()) {
+					digest.update(matcher.group().getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			return String.format("%064x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Waits for an asynchronous request to complete.
+	 *
+	 * @param future the request to wait for
+	 * @return the response
+	 * @throws IOException if the request failed
+	 */
+	private static TransportResponse await(CompletableFuture<TransportResponse> future) throws IOException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+			throw new InterruptedIOException("Interrupted while waiting for a response");
+		}
+	}
+
+	@Override
+	public ConnectionPoolStats getPoolStats() {
+		return poolStats;
+	}
+
+	/**
+	 * Returns the persistent response cache used by this transport.
+	 *
+	 * @return the cache, or <tt>null</tt> if no <tt>bdCacheDirectory</tt> is
+	 *         set and responses are cached in memory
+	 */
+	public DiskCacheStorage getDiskCache() {
+		return diskCache;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (Bulkhead bulkhead : bulkheads.values()) {
+			try {
+				bulkhead.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Clients and connection pools reserved for one family of endpoints.
+	 */
+	private class Bulkhead implements Closeable {
+		private final EndpointFamily family;
+		private final ConnectionPoolStats stats;
+		private final CloseableHttpClient client;
+		/** client without caching layer, used to stream responses */
+		private final CloseableHttpClient streamingClient;
+		/** client for non-blocking requests, started on first use */
+		private volatile CloseableHttpAsyncClient asyncClient;
+
+		private Bulkhead(EndpointFamily family) {
+			this.family = family;
+			this.stats = poolStats.bulkhead(family);
+			PoolingHttpClientConnectionManager connManager = buildConnectionManager(family, stats);
+			this.client = buildClient(family, stats, connManager, true);
+			this.streamingClient = buildClient(family, stats, connManager, false);
+		}
+
+		private CloseableHttpAsyncClient getAsyncClient() {
+			CloseableHttpAsyncClient asyncClient = this.asyncClient;
+			if (asyncClient == null) {
+				synchronized (this) {
+					asyncClient = this.asyncClient;
+					if (asyncClient == null) {
+						asyncClient = buildAsyncClient(family, stats);
+						this.asyncClient = asyncClient;
+					}
+				}
+			}
+			return asyncClient;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				streamingClient.close();
+				client.close();
+			} finally {
+				if (asyncClient != null) {
+					asyncClient.close();
+				}
+			}
+		}
+	}
+
+	/** Response of the classic client, still connected to the server. */
+	private static class ClassicResponse implements TransportResponse {
+		private final ClassicHttpResponse response;
+
+		private ClassicResponse(ClassicHttpResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return response.getCode();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			Header header = response.getFirstHeader(name);
+			return header != null ? header.getValue() : null;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			HttpEntity entity = response.getEntity();
+			InputStream content = entity != null ? entity.getContent() : null;
+			return content != null ? content : InputStream.nullInputStream();
+		}
+
+		@Override
+		public void close() throws IOException {
+			response.close();
+		}
+	}
+
+	/** Lets the classic client send a {@link RequestBody}. */
+	private static class RequestBodyEntity extends AbstractHttpEntity {
+		private final RequestBody body;
+
+		private RequestBodyEntity(RequestBody body) {
+			super(body.getContentType(), body.getContentEncoding());
+			this.body = body;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new ByteArrayInputStream(body.toByteArray());
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			body.writeTo(out);
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+
+		@Override
+		public long getContentLength() {
+			return body.getContentLength();
+		}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,362 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dashboard.Dashboard;
+import com.belladati.sdk.dashboard.impl.DashboardImpl;
+import com.belladati.sdk.dataset.DataSet;
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.dataset.impl.DataSetImpl;
+import com.belladati.sdk.exception.server.UnexpectedResponseException;
+import com.belladati.sdk.filter.Filter;
+import com.belladati.sdk.report.Report;
+import com.belladati.sdk.report.impl.ReportImpl;
+import com.belladati.sdk.util.PageOrientation;
+import com.belladati.sdk.util.PageSize;
+import com.belladati.sdk.util.PaginatedList;
+import com.belladati.sdk.util.impl.PaginatedListImpl;
+import com.belladati.sdk.view.ViewType;
+import com.belladati.sdk.view.impl.ViewExporterImpl;
+import com.belladati.sdk.view.impl.ViewLoaderImpl;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Non-blocking variant of the most frequently used {@link BellaDatiServiceImpl}
+ * methods. Requests are sent without occupying a thread while waiting for the
+ * server, so many requests can be in flight at the same time.
+ * <p>
+ * Requests are signed with the OAuth tokens of the underlying service and use
+ * the same connection settings and pool statistics. Returned futures complete
+ * exceptionally with the same exceptions the blocking methods would throw.
+ * <p>
+ * Obtain an instance using {@link BellaDatiServiceImpl#async()}.
+ *
+ *
+ */
+public class AsyncBellaDatiService {
+
+	/** runs downloads, which block while copying to disk, on a virtual thread each */
+	private static final Executor DOWNLOADS = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("belladati-download-", 0)
+		.factory());
+
+	private final BellaDatiServiceImpl service;
+	private final BellaDatiClient client;
+	private final TokenHolder tokenHolder;
+	private final Executor executor;
+
+	AsyncBellaDatiService(BellaDatiServiceImpl service, Executor executor) {
+		this.service = service;
+		this.client = service.getClient();
+		this.tokenHolder = service.getTokenHolder();
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the blocking service backing this instance.
+	 *
+	 * @return the blocking service
+	 */
+	public BellaDatiServiceImpl getService() {
+		return service;
+	}
+
+	/**
+	 * Loads the report with the given ID.
+	 *
+	 * @param id ID of the report to load
+	 * @return a future completed with the report
+	 */
+	public CompletableFuture<Report> loadReport(String id) {
+		return service.getAsJsonAsync("api/reports/" + id).thenApplyAsync(json -> new ReportImpl(service, json), executor);
+	}
+
+	/**
+	 * Loads the data set with the given ID.
+	 *
+	 * @param id ID of the data set to load
+	 * @return a future completed with the data set
+	 */
+	public CompletableFuture<DataSet> loadDataSet(String id) {
+		return service.getAsJsonAsync("api/dataSets/" + id).thenApplyAsync(json -> new DataSetImpl(service, json), executor);
+	}
+
+	/**
+	 * Loads the dashboard with the given ID.
+	 *
+	 * @param id ID of the dashboard to load
+	 * @return a future completed with the dashboard
+	 */
+	public CompletableFuture<Dashboard> loadDashboard(String id) {
+		return service.getAsJsonAsync("api/dashboards/" + id).thenApplyAsync(json -> new DashboardImpl(service, json),
+			executor);
+	}
+
+	/**
+	 * Loads the content of the view with the given ID.
+	 *
+	 * @param viewId ID of the view to load
+	 * @param viewType type of the view
+	 * @param filters filters to apply to the view content
+	 * @return a future completed with the view content
+	 */
+	public CompletableFuture<Object> loadViewContent(String viewId, ViewType viewType, Filter<?>... filters) {
+		return loadViewContent(viewId, viewType, Arrays.asList(filters));
+	}
+
+	/**
+	 * Loads the content of the view with the given ID.
+	 *
+	 * @param viewId ID of the view to load
+	 * @param viewType type of the view
+	 * @param filters filters to apply to the view content
+	 * @return a future completed with the view content
+	 */
+	public CompletableFuture<Object> loadViewContent(String viewId, ViewType viewType, Collection<Filter<?>> filters) {
+		ViewLoaderImpl loader = new ViewLoaderImpl(service, viewId, viewType);
+		loader.addFilters(filters);
+		return loader.loadContentAsync(executor);
+	}
+
+	/**
+	 * Loads the first page of the given list. The list must not be used until
+	 * the returned future has completed.
+	 *
+	 * @param list a list obtained from the service
+	 * @return a future completed with the given list
+	 */
+	public <L extends PaginatedList<?>> CompletableFuture<L> load(L list) {
+		return impl(list).loadAsync(executor).thenApply(loaded -> list);
+	}
+
+	/**
+	 * Loads the given page of the given list. The list must not be used until
+	 * the returned future has completed.
+	 *
+	 * @param list a list obtained from the service
+	 * @param page number of the page to load, starting at 0
+	 * @param size size of the page to load
+	 * @return a future completed with the given list
+	 * @throws IllegalArgumentException if page is &lt; 0 or size is &lt;= 0
+	 */
+	public <L extends PaginatedList<?>> CompletableFuture<L> load(L list, int page, int size) throws IllegalArgumentException {
+		return impl(list).loadAsync(page, size, executor).thenApply(loaded -> list);
+	}
+
+	/**
+	 * Loads the next page of the given list. The list must not be used until
+	 * the returned future has completed.
+	 *
+	 * @param list a list obtained from the service
+	 * @return a future completed with the given list
+	 */
+	public <L extends PaginatedList<?>> CompletableFuture<L> loadNext(L list) {
+		return impl(list).loadNextAsync(executor).thenApply(loaded -> list);
+	}
+
+	/**
+	 * Uploads the given data into the data set with the given ID.
+	 *
+	 * @param id ID of the data set
+	 * @param data data to upload
+	 * @return a future completed when the data has been uploaded
+	 */
+	public CompletableFuture<Void> uploadData(String id, DataTable data) {
+		if (data.getRows().size() == 0) {
+			// if we don't have data, do nothing
+			return CompletableFuture.completedFuture(null);
+		}
+		return client.postUploadAsync("api/import/" + id, tokenHolder, BellaDatiServiceImpl.tableJson(data)).handleAsync((response, e) -> {
+			if (e != null) {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				if (cause instanceof UnexpectedResponseException) {
+					throw BellaDatiServiceImpl.uploadException(id, (UnexpectedResponseException) cause);
+				}
+				throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+			}
+			service.invalidateDataSet(id);
+			return null;
+		}, executor);
+	}
+
+	/**
+	 * Posts a row of data into the data set with the given ID.
+	 *
+	 * @param dataSetId ID of the data set
+	 * @param row the row to post
+	 * @return a future completed when the row has been posted
+	 */
+	public CompletableFuture<Void> postDataSetData(String dataSetId, DataRow row) {
+		return dataSetChanged(dataSetId, client.postAsync("api/dataSets/" + dataSetId + "/data", tokenHolder,
+			Collections.singletonList(new BasicNameValuePair("dataRow", row.toJsonObject().toString()))));
+	}
+
+	/**
+	 * Posts rows of data into the data set with the given ID.
+	 *
+	 * @param dataSetId ID of the data set
+	 * @param rows the rows to post
+	 * @return a future completed when the rows have been posted
+	 */
+	public CompletableFuture<Void> postDataSetData(String dataSetId, Collection<DataRow> rows) {
+		return dataSetChanged(dataSetId, client.postFormAsync("api/dataSets/" + dataSetId + "/data", tokenHolder, "dataRow",
+			BellaDatiServiceImpl.rowsJson(rows)));
+	}
+
+	/**
+	 * Updates rows of the data set with the given ID, matching existing rows
+	 * by the given attributes.
+	 *
+	 * @param dataSetId ID of the data set
+	 * @param rows the rows to update
+	 * @param matchAttributes attributes identifying the rows to update
+	 * @return a future completed when the rows have been updated
+	 */
+	public CompletableFuture<Void> patchDataSetData(String dataSetId, Collection<DataRow> rows,
+		Collection<String> matchAttributes) {
+		return dataSetChanged(dataSetId, client.patchIdempotentAsync("api/dataSets/" + dataSetId + "/data", tokenHolder,
+			BellaDatiServiceImpl.patchJson(rows, matchAttributes)));
+	}
+
+	/**
+	 * Replaces the rows of the data set with the given ID matching the given
+	 * filters.
+	 *
+	 * @param dataSetId ID of the data set
+	 * @param rows the new rows
+	 * @param filters filters selecting the rows to replace
+	 * @return a future completed when the rows have been replaced
+	 */
+	public CompletableFuture<Void> replaceDataSetData(String dataSetId, Collection<DataRow> rows, Filter<?>... filters) {
+		return dataSetChanged(dataSetId, client.postIdempotentAsync("api/dataSets/" + dataSetId + "/replace", tokenHolder,
+			BellaDatiServiceImpl.replaceJson(rows, filters)));
+	}
+
+	/**
+	 * Posts the given content to the given URI.
+	 *
+	 * @param uri the relative URI to post to
+	 * @param content the content to post
+	 * @return a future completed with the response content
+	 */
+	public CompletableFuture<byte[]> post(String uri, byte[] content) {
+		return client.postDataAsync(uri, tokenHolder, content).thenApplyAsync(response -> response, executor);
+	}
+
+	/**
+	 * Downloads the content at the given URI directly into a file, without
+	 * buffering it in memory. Any number of downloads can be started at the
+	 * same time; up to <tt>bdDownloadMaxInFlight</tt> of them (by default the
+	 * connection limit for exports) run in parallel, the others wait for
+	 * their turn.
+	 *
+	 * @param uri the relative URI to download from
+	 * @param target the file to write to, created if it doesn't exist
+	 * @param resume <tt>true</tt> to continue a partial download in the file,
+	 *            <tt>false</tt> to replace its content
+	 * @return a future completed with the size of the downloaded file, or
+	 *         with an {@link IOException} if the file cannot be written
+	 */
+	public CompletableFuture<Long> download(String uri, Path target, boolean resume) {
+		return download(() -> service.download(uri, target, resume));
+	}
+
+	/**
+	 * Downloads the content at each of the given URIs directly into its file.
+	 * Up to <tt>bdDownloadMaxInFlight</tt> downloads run in parallel, see
+	 * {@link #download(String, Path, boolean)}.
+	 *
+	 * @param downloads the files to write to, by the relative URI to download
+	 *            them from
+	 * @param resume <tt>true</tt> to continue partial downloads in the files,
+	 *            <tt>false</tt> to replace their content
+	 * @return a future completed when all files have been downloaded, or
+	 *         exceptionally if any download failed
+	 */
+	public CompletableFuture<Void> downloadAll(Map<String, Path> downloads, boolean resume) {
+		return CompletableFuture.allOf(downloads.entrySet().stream()
+			.map(download -> download(download.getKey(), download.getValue(), resume)).toArray(CompletableFuture[]::new));
+	}
+
+	/**
+	 * Exports the view with the given ID as PDF directly into a file.
+	 *
+	 * @param viewId ID of the view to export
+	 * @param pageSize size of the pages, may be <tt>null</tt>
+	 * @param pageOrientation orientation of the pages, may be <tt>null</tt>
+	 * @param target the file to write to, its content is replaced
+	 * @return a future completed with the size of the exported file
+	 */
+	public CompletableFuture<Long> exportPdf(String viewId, PageSize pageSize, PageOrientation pageOrientation, Path target) {
+		return download(() -> new ViewExporterImpl(service, viewId).exportPdf(pageSize, pageOrientation, target));
+	}
+
+	/**
+	 * Exports the view with the given ID as PNG image directly into a file.
+	 *
+	 * @param viewId ID of the view to export
+	 * @param width width of the image, may be <tt>null</tt>
+	 * @param height height of the image, may be <tt>null</tt>
+	 * @param target the file to write to, its content is replaced
+	 * @return a future completed with the size of the exported file
+	 */
+	public CompletableFuture<Long> exportPng(String viewId, Integer width, Integer height, Path target) {
+		return download(() -> new ViewExporterImpl(service, viewId).exportPng(width, height, target));
+	}
+
+	private CompletableFuture<Long> download(Download download) {
+		CompletableFuture<Long> result = new CompletableFuture<Long>();
+		Semaphore window = client.getDownloadWindow();
+		DOWNLOADS.execute(() -> {
+			try {
+				window.acquire();
+			} catch (InterruptedException e) {
+				result.completeExceptionally(e);
+				return;
+			}
+			try {
+				result.complete(download.run());
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			} finally {
+				window.release();
+			}
+		});
+		return result;
+	}
+
+	/** Removes the data set from the entity cache once the given change has succeeded. */
+	private CompletableFuture<Void> dataSetChanged(String dataSetId, CompletableFuture<byte[]> future) {
+		return future.thenApplyAsync(response -> {
+			service.invalidateDataSet(dataSetId);
+			return null;
+		}, executor);
+	}
+
+	private PaginatedListImpl<?> impl(PaginatedList<?> list) {
+		if (!(list instanceof PaginatedListImpl)) {
+			throw new IllegalArgumentException("List was not obtained from a BellaDati service: " + list);
+		}
+		return (PaginatedListImpl<?>) list;
+	}
+
+	/** A download blocking the calling thread. */
+	private interface Download {
+		long run() throws IOException;
+	}
+
+	@Override
+	public String toString() {
+		return "Async " + service;
+	}
+}
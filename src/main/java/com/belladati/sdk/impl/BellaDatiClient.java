@@ -14,44 +14,26 @@ import com.belladati.sdk.exception.server.MethodNotAllowedException;
 import com.belladati.sdk.exception.server.NotFoundException;
 import com.belladati.sdk.exception.server.UnexpectedResponseException;
 import com.belladati.sdk.util.MultipartPiece;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.belladati.sdk.util.impl.MultipartFileImpl;
 import com.belladati.sdk.util.impl.MultipartTextImpl;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import oauth.signpost.OAuth;
-import oauth.signpost.OAuthConsumer;
-import oauth.signpost.exception.OAuthException;
 import oauth.signpost.http.HttpParameters;
-import org.apache.hc.client5.http.classic.methods.HttpDelete;
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.classic.methods.HttpPatch;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
-import org.apache.hc.client5.http.config.ConnectionConfig;
-import org.apache.hc.client5.http.config.RequestConfig;
-import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
 import org.apache.hc.client5.http.entity.mime.ContentBody;
 import org.apache.hc.client5.http.entity.mime.FileBody;
 import org.apache.hc.client5.http.entity.mime.HttpMultipartMode;
 import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
 import org.apache.hc.client5.http.entity.mime.StringBody;
-import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
-import org.apache.hc.client5.http.impl.cache.CacheConfig;
-import org.apache.hc.client5.http.impl.cache.CachingHttpClients;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
-import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
-import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.NameValuePair;
-import org.apache.hc.core5.http.io.SocketConfig;
-import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.net.WWWFormCodec;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
-import org.apache.hc.core5.util.TimeValue;
-import org.apache.hc.core5.util.Timeout;
 
 import javax.imageio.ImageIO;
 import javax.net.ssl.SSLContext;
@@ -59,99 +41,145 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.net.URISyntaxException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BellaDatiClient implements Serializable {
 
 	/** The serialVersionUID */
 	private static final long serialVersionUID = 9138881190417975299L;
 
+	/** suffix of the file keeping the validator of an incomplete download */
+	private static final String VALIDATOR_SUFFIX = ".validator";
+
 	private final String baseUrl;
 	private final boolean trustSelfSigned;
 
-	private final transient CloseableHttpClient client;
+	// settings aren't serialized, so that older clients can be read; they are read again in readObject
+	/** <tt>true</tt> if connections should be kept open and reused */
+	private final transient boolean keepAlive = readFromProperty("bdKeepAlive", false);
+
+	/**
+	 * HTTP versions to use, one of <tt>FORCE_HTTP_1</tt> (default),
+	 * <tt>NEGOTIATE</tt> to use HTTP/2 if the server offers it through ALPN
+	 * and fall back to HTTP/1.1 otherwise, or <tt>FORCE_HTTP_2</tt>
+	 */
+	private final transient HttpVersionPolicy versionPolicy = readFromProperty("bdHttpVersionPolicy", HttpVersionPolicy.FORCE_HTTP_1);
+
+	/** <tt>true</tt> if the server may send compressed responses */
+	private final transient boolean compressResponses = readFromProperty("bdCompressResponses", true);
+	/** <tt>true</tt> if larger request bodies should be sent compressed */
+	private final transient boolean compressUploads = readFromProperty("bdCompressUploads", false);
+
+	/** HTTP library used to send requests, <tt>APACHE</tt> (default) or <tt>JDK</tt> */
+	private final transient TransportType transportType = readFromProperty("bdTransport", TransportType.APACHE);
+
+	private final transient CompressionStats compressionStats;
+	private final transient RevalidationStats revalidationStats;
+	private final transient RequestMetrics metrics;
+	private final transient RetryPolicy retryPolicy;
+	private final transient CircuitBreaker circuitBreaker;
+	private final transient HttpTransport transport;
+	/** limits the downloads to files in flight, see {@link #getDownloadWindow()} */
+	private final transient Semaphore downloadWindow;
 
 	public BellaDatiClient(String baseUrl, boolean trustSelfSigned) {
-		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : (baseUrl + "/");
-		this.trustSelfSigned = trustSelfSigned;
-		this.client = buildClient(trustSelfSigned);
+		this(baseUrl, trustSelfSigned, null);
 	}
 
 	/**
-	 * Builds the HTTP client to connect to the server.
+	 * Creates a client sending its requests through the given transport. A
+	 * custom transport isn't serialized with the client; after
+	 * deserialization, the transport configured through the
+	 * <tt>bdTransport</tt> system property is used instead.
 	 * 
+	 * @param baseUrl URL of the server
 	 * @param trustSelfSigned <tt>true</tt> if the client should accept
 	 *            self-signed certificates
-	 * @return a new client instance
+	 * @param transport the transport to send requests through, or
+	 *            <tt>null</tt> to use the configured transport
 	 */
-	private CloseableHttpClient buildClient(boolean trustSelfSigned) {
-		try {
-			// set timeouts for the HTTP client
-			int globalTimeout = readFromProperty("bdTimeout", 100000);
-			int connectTimeout = readFromProperty("bdConnectTimeout", globalTimeout);
-			int connectionRequestTimeout = readFromProperty("bdConnectionRequestTimeout", globalTimeout);
-			int socketTimeout = readFromProperty("bdSocketTimeout", globalTimeout);
-
-			RequestConfig requestConfig = RequestConfig.copy(RequestConfig.DEFAULT)
-					.setResponseTimeout(Timeout.ofMilliseconds(socketTimeout))
-					.setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeout)).build();
-
-			// configure caching
-			CacheConfig cacheConfig = CacheConfig.custom()
-					.setSharedCache(false)
-					.setMaxCacheEntries(1000)
-					.setMaxObjectSize(2 * 1024 * 1024L) // note: long in Client5
-					.build();
-
-// configure connection pooling
-			// configure SSL
-			SSLContext sslContext = SSLContextBuilder.create()
-					.loadTrustMaterial((chain, authType) -> true) // example: trust all
-					.build();
+	public BellaDatiClient(String baseUrl, boolean trustSelfSigned, HttpTransport transport) {
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : (baseUrl + "/");
+		this.trustSelfSigned = trustSelfSigned;
+		this.compressionStats = new CompressionStats();
+		this.revalidationStats = new RevalidationStats();
+		this.metrics = new RequestMetrics(this.baseUrl);
+		this.retryPolicy = new RetryPolicy();
+		this.circuitBreaker = CircuitBreaker.forBaseUrl(this.baseUrl);
+		this.transport = new RetryingTransport(new LimitingTransport(transport != null ? transport : buildTransport(), this.baseUrl),
+			retryPolicy, circuitBreaker);
+		this.downloadWindow = newDownloadWindow();
+	}
 
-			ConnectionConfig connectionCofig = ConnectionConfig.custom()
-					.setSocketTimeout(Timeout.ofMilliseconds(socketTimeout)) // read timeout
-					.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout)) // connection establishment timeout
-					.build();
+	private static Semaphore newDownloadWindow() {
+		return new Semaphore(Math.max(1, readFromProperty("bdDownloadMaxInFlight", EndpointFamily.EXPORT.getMaxConnections())));
+	}
 
-			// configure connection pooling with modern builder
-			PoolingHttpClientConnectionManager connManager =
-					PoolingHttpClientConnectionManagerBuilder.create()
-							.setDefaultConnectionConfig(connectionCofig)
-							.setTlsSocketStrategy(new DefaultClientTlsStrategy(sslContext))
-							.build();
+	/**
+	 * Returns the window limiting how many downloads to files run at the same
+	 * time, <tt>bdDownloadMaxInFlight</tt> (by default the connection limit for
+	 * exports). Further downloads wait for a place in the window rather than
+	 * for a pooled connection, so they don't time out while waiting.
+	 * 
+	 * @return the download window of this client
+	 */
+	Semaphore getDownloadWindow() {
+		return downloadWindow;
+	}
 
-			int connectionLimit = readFromProperty("bdMaxConnections", 40);
-			connManager.setMaxTotal(connectionLimit);
-			connManager.setDefaultMaxPerRoute(connectionLimit);
+	/**
+	 * Builds the transport configured through the <tt>bdTransport</tt> system
+	 * property.
+	 * 
+	 * @return a new transport
+	 */
+	private HttpTransport buildTransport() {
+		switch (transportType) {
+			case JDK:
+				return new JdkHttpTransport(versionPolicy);
+			default:
+				return new ApacheHttpTransport(versionPolicy);
+		}
+	}
 
-// optional: socket config
-			SocketConfig socketConfig = SocketConfig.custom()
-					.setSoTimeout(Timeout.ofSeconds(30))
-					.build();
-			connManager.setDefaultSocketConfig(socketConfig);
-
-// create the HTTP client
-			return CachingHttpClients.custom()
-					.setCacheConfig(cacheConfig)
-					.setDefaultRequestConfig(requestConfig)
-					.setConnectionManager(connManager)
-					.setRetryStrategy(new DefaultHttpRequestRetryStrategy(3, TimeValue.ofSeconds(2)))
+	/**
+	 * Builds the SSL context used for HTTPS connections.
+	 * 
+	 * @return a new SSL context
+	 */
+	static SSLContext buildSslContext() {
+		try {
+			// configure SSL
+			return SSLContextBuilder.create()
+					.loadTrustMaterial((chain, authType) -> true) // example: trust all
 					.build();
 		} catch (GeneralSecurityException e) {
 			throw new InternalConfigurationException("Failed to set up SSL context", e);
 		}
 	}
 
-	private int readFromProperty(String property, int defaultValue) {
+	static int readFromProperty(String property, int defaultValue) {
 		try {
 			return Integer.parseInt(System.getProperty(property));
 		} catch (NumberFormatException e) {
@@ -159,18 +187,42 @@ public class BellaDatiClient implements Serializable {
 		}
 	}
 
+	static boolean readFromProperty(String property, boolean defaultValue) {
+		String value = System.getProperty(property);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	static <E extends Enum<E>> E readFromProperty(String property, E defaultValue) {
+		String value = System.getProperty(property);
+		try {
+			return value == null ? defaultValue : Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if requests may be sent using HTTP/2, as set
+	 * through the <tt>bdHttpVersionPolicy</tt> system property.
+	 * 
+	 * @return <tt>true</tt> if HTTP/2 is enabled
+	 */
+	public boolean isHttp2() {
+		return versionPolicy != HttpVersionPolicy.FORCE_HTTP_1;
+	}
+
 	public byte[] delete(String relativeUrl, TokenHolder tokenHolder) {
 		return delete(relativeUrl, tokenHolder, null);
 	}
 
 	public byte[] delete(String relativeUrl, TokenHolder tokenHolder, HttpParameters oauthParams) {
-		HttpDelete delete = new HttpDelete(baseUrl + removeLeadingSlash(relativeUrl));
+		TransportRequest delete = newRequest("DELETE", relativeUrl);
 		return doRequest(delete, tokenHolder, oauthParams);
 	}
 
 	public byte[] delete(String relativeUrl, TokenHolder tokenHolder, HttpParameters oauthParams, JsonNode json) {
-		HttpDelete delete = new HttpDelete(baseUrl + removeLeadingSlash(relativeUrl));
-		delete.setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON));
+		TransportRequest delete = newRequest("DELETE", relativeUrl);
+		delete.setBody(jsonBody(json));
 		return doRequest(delete, tokenHolder, oauthParams);
 	}
 
@@ -190,18 +242,35 @@ public class BellaDatiClient implements Serializable {
 		return postJson(relativeUrl, tokenHolder, null, json);
 	}
 
+	/**
+	 * Sends a POST request with a form parameter holding JSON content. The
+	 * JSON is encoded into the form as it is generated; since OAuth signs
+	 * form parameters, the encoded form is held in memory once.
+	 * 
+	 * @param relativeUrl the relative URL to post to
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param name name of the form parameter
+	 * @param json writes the JSON value of the parameter
+	 * @return the response content
+	 */
+	public byte[] postForm(String relativeUrl, TokenHolder tokenHolder, String name, JsonStreamWriter json) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(formBody(name, json));
+		return doRequest(post, tokenHolder);
+	}
+
 	public byte[] post(String relativeUrl, TokenHolder tokenHolder, HttpParameters oauthParams,
 		List<? extends NameValuePair> parameters) {
-		HttpPost post = new HttpPost(baseUrl + removeLeadingSlash(relativeUrl));
+		TransportRequest post = newRequest("POST", relativeUrl);
 		if (parameters != null) {
-			post.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
+			post.setBody(formBody(parameters));
 		}
 		return doRequest(post, tokenHolder, oauthParams);
 	}
 
 	public byte[] postJson(String relativeUrl, TokenHolder tokenHolder, HttpParameters oauthParams, JsonNode json) {
-		HttpPost post = new HttpPost(baseUrl + removeLeadingSlash(relativeUrl));
-		post.setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON));
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(jsonBody(json));
 		return doRequest(post, tokenHolder, oauthParams);
 	}
 
@@ -210,18 +279,93 @@ public class BellaDatiClient implements Serializable {
 	}
 
 	public byte[] patch(String relativeUrl, TokenHolder tokenHolder, HttpParameters oauthParams, JsonNode json) {
-		HttpPatch patch = new HttpPatch(baseUrl + removeLeadingSlash(relativeUrl));
-		patch.setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON));
+		TransportRequest patch = newRequest("PATCH", relativeUrl);
+		patch.setBody(jsonBody(json));
 		return doRequest(patch, tokenHolder, oauthParams);
 	}
 
+	/**
+	 * Sends a POST request that may safely be repeated, allowing it to be
+	 * retried if it fails.
+	 * 
+	 * @param relativeUrl the relative URL to post to
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param parameters form parameters to send
+	 * @return the response content
+	 */
+	public byte[] postIdempotent(String relativeUrl, TokenHolder tokenHolder, List<? extends NameValuePair> parameters) {
+		TransportRequest post = newRequest("POST", relativeUrl).setIdempotent(true);
+		post.setBody(formBody(parameters));
+		return doRequest(post, tokenHolder);
+	}
+
+	/**
+	 * Sends a POST request that may safely be repeated, allowing it to be
+	 * retried if it fails.
+	 * 
+	 * @param relativeUrl the relative URL to post to
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param json JSON content to send
+	 * @return the response content
+	 */
+	public byte[] postIdempotent(String relativeUrl, TokenHolder tokenHolder, JsonNode json) {
+		TransportRequest post = newRequest("POST", relativeUrl).setIdempotent(true);
+		post.setBody(jsonBody(json));
+		return doRequest(post, tokenHolder);
+	}
+
+	/**
+	 * Sends a POST request that may safely be repeated, generating its JSON
+	 * content while it is sent.
+	 * 
+	 * @param relativeUrl the relative URL to post to
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param json writes the JSON content to send
+	 * @return the response content
+	 */
+	public byte[] postIdempotent(String relativeUrl, TokenHolder tokenHolder, JsonStreamWriter json) {
+		TransportRequest post = newRequest("POST", relativeUrl).setIdempotent(true);
+		post.setBody(jsonBody(json));
+		return doRequest(post, tokenHolder);
+	}
+
+	/**
+	 * Sends a PATCH request that may safely be repeated, allowing it to be
+	 * retried if it fails.
+	 * 
+	 * @param relativeUrl the relative URL to patch
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param json JSON content to send
+	 * @return the response content
+	 */
+	public byte[] patchIdempotent(String relativeUrl, TokenHolder tokenHolder, JsonNode json) {
+		TransportRequest patch = newRequest("PATCH", relativeUrl).setIdempotent(true);
+		patch.setBody(jsonBody(json));
+		return doRequest(patch, tokenHolder);
+	}
+
+	/**
+	 * Sends a PATCH request that may safely be repeated, generating its JSON
+	 * content while it is sent.
+	 * 
+	 * @param relativeUrl the relative URL to patch
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param json writes the JSON content to send
+	 * @return the response content
+	 */
+	public byte[] patchIdempotent(String relativeUrl, TokenHolder tokenHolder, JsonStreamWriter json) {
+		TransportRequest patch = newRequest("PATCH", relativeUrl).setIdempotent(true);
+		patch.setBody(jsonBody(json));
+		return doRequest(patch, tokenHolder);
+	}
+
 	public byte[] postMultipart(String relativeUrl, TokenHolder tokenHolder, List<? extends MultipartPiece<?>> multipart) {
 		return postMultipart(relativeUrl, tokenHolder, null, multipart);
 	}
 
 	public byte[] postMultipart(String relativeUrl, TokenHolder tokenHolder, HttpParameters oauthParams,
 		List<? extends MultipartPiece<?>> multipart) {
-		HttpPost post = new HttpPost(baseUrl + removeLeadingSlash(relativeUrl));
+		TransportRequest post = newRequest("POST", relativeUrl);
 
 		MultipartEntityBuilder builder = MultipartEntityBuilder.create();
 		builder.setMode(HttpMultipartMode.EXTENDED);
@@ -242,22 +386,35 @@ public class BellaDatiClient implements Serializable {
 			}
 			builder.addPart(part.getName(), contentBody);
 		}
-		post.setEntity(builder.build());
+		post.setBody(new EntityBody(builder.build()));
 
 		return doRequest(post, tokenHolder, oauthParams);
 	}
 
 	public byte[] postUpload(String relativeUrl, TokenHolder tokenHolder, String content) {
-		HttpPost post = new HttpPost(baseUrl + removeLeadingSlash(relativeUrl));
-		StringEntity entity = new StringEntity(content, ContentType.APPLICATION_OCTET_STREAM);
-		post.setEntity(entity);
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(dataBody(content.getBytes(StandardCharsets.UTF_8)));
+		return doRequest(post, tokenHolder);
+	}
+
+	/**
+	 * Uploads JSON content generated while it is sent, using chunked transfer
+	 * encoding. Memory use doesn't depend on the size of the content.
+	 * 
+	 * @param relativeUrl the relative URL to upload to
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param content writes the content to upload
+	 * @return the response content
+	 */
+	public byte[] postUpload(String relativeUrl, TokenHolder tokenHolder, JsonStreamWriter content) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(dataBody(content));
 		return doRequest(post, tokenHolder);
 	}
 
 	public byte[] postData(String relativeUrl, TokenHolder tokenHolder, byte[] content) {
-		HttpPost post = new HttpPost(baseUrl + removeLeadingSlash(relativeUrl));
-		ByteArrayEntity entity = new ByteArrayEntity(content, ContentType.APPLICATION_OCTET_STREAM);
-		post.setEntity(entity);
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(dataBody(content));
 		return doRequest(post, tokenHolder);
 	}
 
@@ -288,35 +445,452 @@ public class BellaDatiClient implements Serializable {
 	}
 
 	public byte[] get(String relativeUrl, TokenHolder tokenHolder) {
-		return doRequest(new HttpGet(baseUrl + removeLeadingSlash(relativeUrl)), tokenHolder);
+		return doRequest(newRequest("GET", relativeUrl), tokenHolder);
 	}
 
 	public JsonNode getAsJson(String relativeUrl, TokenHolder tokenHolder) throws InvalidJsonException {
-		byte[] response = get(relativeUrl, tokenHolder);
+		TransportRequest request = newRequest("GET", relativeUrl);
+		return doRequest(request, tokenHolder, null, (content, length) -> parseJson(request, content));
+	}
+
+	/**
+	 * Parses a response into JSON, reading it into a {@link PooledBuffer}
+	 * rather than a new array.
+	 */
+	private JsonNode parseJson(TransportRequest request, InputStream content) throws IOException {
+		try (PooledBuffer buffer = PooledBuffer.read(content)) {
+			JsonParseEvent event = new JsonParseEvent();
+			event.begin();
+			try {
+				byte[] chunk = buffer.singleChunk();
+				return chunk != null ? JsonSupport.readTree(chunk, 0, (int) buffer.size()) : JsonSupport.readTree(buffer.openStream());
+			} catch (JsonProcessingException e) {
+				throw new InvalidJsonException("Could not parse JSON response, was " + new String(buffer.toByteArray()), e);
+			} finally {
+				commit(event, request, buffer.size());
+			}
+		}
+	}
+
+	private JsonNode parseJson(TransportRequest request, byte[] response) throws InvalidJsonException {
+		JsonParseEvent event = new JsonParseEvent();
+		event.begin();
 		try {
-			return new ObjectMapper().readTree(response);
+			return JsonSupport.readTree(response);
 		} catch (IOException e) {
 			throw new InvalidJsonException("Could not parse JSON response, was " + new String(response), e);
+		} finally {
+			commit(event, request, response.length);
+		}
+	}
+
+	/** Records parsing the response to a request, if the event is enabled. */
+	private void commit(JsonParseEvent event, TransportRequest request, long bytes) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.endpoint = metrics.templateOf(request.getUri());
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Loads JSON from the given URL, revalidating previously loaded JSON. If
+	 * the server confirms that the JSON hasn't changed, the previous content
+	 * is returned without being downloaded or parsed again.
+	 * 
+	 * @param relativeUrl the relative URL to load JSON from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param previous JSON previously loaded from the same URL, may be
+	 *            <tt>null</tt>
+	 * @return the current JSON, or <tt>previous</tt> if it is still valid
+	 * @throws InvalidJsonException if the response cannot be parsed into JSON
+	 */
+	public ValidatedContent<JsonNode> getAsJson(String relativeUrl, TokenHolder tokenHolder, ValidatedContent<JsonNode> previous)
+		throws InvalidJsonException {
+		TransportRequest request = newRequest("GET", relativeUrl);
+		return doConditionalRequest(request, tokenHolder, previous, (content, length) -> parseJson(request, content));
+	}
+
+	/**
+	 * Loads JSON from the given URL, revalidating a previously built result.
+	 * If the server confirms that the JSON hasn't changed, the previous
+	 * result is returned without the handler being called.
+	 * 
+	 * @param relativeUrl the relative URL to load JSON from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param handler reads the JSON response
+	 * @param previous result previously built from the same URL, may be
+	 *            <tt>null</tt>
+	 * @return the result built from the current JSON, or <tt>previous</tt> if
+	 *         it is still valid
+	 * @throws InvalidJsonException if the response cannot be parsed into JSON
+	 */
+	public <T> ValidatedContent<T> getAsJson(String relativeUrl, TokenHolder tokenHolder, JsonStreamHandler<T> handler,
+		ValidatedContent<T> previous) throws InvalidJsonException {
+		TransportRequest request = newRequest("GET", relativeUrl);
+		return doConditionalRequest(request, tokenHolder, previous, (content, length) -> readJson(request, content, handler));
+	}
+
+	/**
+	 * Loads JSON from the given URL and passes it to the handler while it is
+	 * read from the connection.
+	 * 
+	 * @param relativeUrl the relative URL to load JSON from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param handler reads the JSON response
+	 * @return the result returned by the handler
+	 * @throws InvalidJsonException if the response cannot be parsed into JSON
+	 */
+	public <T> T getAsJson(String relativeUrl, TokenHolder tokenHolder, JsonStreamHandler<T> handler)
+		throws InvalidJsonException {
+		TransportRequest request = newRequest("GET", relativeUrl);
+		return doRequest(request, tokenHolder, null, (content, length) -> readJson(request, content, handler));
+	}
+
+	private <T> T readJson(TransportRequest request, InputStream content, JsonStreamHandler<T> handler) throws IOException {
+		JsonParseEvent event = new JsonParseEvent();
+		event.begin();
+		try (JsonParser parser = JsonSupport.createParser(content)) {
+			try {
+				return handler.handle(parser);
+			} finally {
+				commit(event, request, Math.max(0, parser.currentLocation().getByteOffset()));
+			}
+		} catch (JsonProcessingException e) {
+			throw new InvalidJsonException("Could not parse JSON response", e);
 		}
 	}
 
+	/**
+	 * Sends a GET request without blocking the calling thread.
+	 * 
+	 * @param relativeUrl the relative URL to load from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @return a future completed with the response content
+	 */
+	public CompletableFuture<byte[]> getAsync(String relativeUrl, TokenHolder tokenHolder) {
+		return doRequestAsync(newRequest("GET", relativeUrl), tokenHolder, null);
+	}
+
+	/**
+	 * Loads JSON from the given URL without blocking the calling thread.
+	 * 
+	 * @param relativeUrl the relative URL to load JSON from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @return a future completed with the parsed JSON, or with an
+	 *         {@link InvalidJsonException} if the response cannot be parsed
+	 */
+	public CompletableFuture<JsonNode> getAsJsonAsync(String relativeUrl, TokenHolder tokenHolder) {
+		TransportRequest request = newRequest("GET", relativeUrl);
+		return doRequestAsync(request, tokenHolder, null).thenApply(response -> parseJson(request, response));
+	}
+
+	public CompletableFuture<byte[]> postAsync(String relativeUrl, TokenHolder tokenHolder,
+		List<? extends NameValuePair> parameters) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		if (parameters != null) {
+			post.setBody(formBody(parameters));
+		}
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postAsync(String relativeUrl, TokenHolder tokenHolder, JsonNode json) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(jsonBody(json));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postFormAsync(String relativeUrl, TokenHolder tokenHolder, String name,
+		JsonStreamWriter json) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(formBody(name, json));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> patchAsync(String relativeUrl, TokenHolder tokenHolder, JsonNode json) {
+		TransportRequest patch = newRequest("PATCH", relativeUrl);
+		patch.setBody(jsonBody(json));
+		return doRequestAsync(patch, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postIdempotentAsync(String relativeUrl, TokenHolder tokenHolder, JsonNode json) {
+		TransportRequest post = newRequest("POST", relativeUrl).setIdempotent(true);
+		post.setBody(jsonBody(json));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postIdempotentAsync(String relativeUrl, TokenHolder tokenHolder, JsonStreamWriter json) {
+		TransportRequest post = newRequest("POST", relativeUrl).setIdempotent(true);
+		post.setBody(jsonBody(json));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> patchIdempotentAsync(String relativeUrl, TokenHolder tokenHolder, JsonNode json) {
+		TransportRequest patch = newRequest("PATCH", relativeUrl).setIdempotent(true);
+		patch.setBody(jsonBody(json));
+		return doRequestAsync(patch, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> patchIdempotentAsync(String relativeUrl, TokenHolder tokenHolder, JsonStreamWriter json) {
+		TransportRequest patch = newRequest("PATCH", relativeUrl).setIdempotent(true);
+		patch.setBody(jsonBody(json));
+		return doRequestAsync(patch, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postUploadAsync(String relativeUrl, TokenHolder tokenHolder, String content) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(dataBody(content.getBytes(StandardCharsets.UTF_8)));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postUploadAsync(String relativeUrl, TokenHolder tokenHolder, JsonStreamWriter content) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(dataBody(content));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
+	public CompletableFuture<byte[]> postDataAsync(String relativeUrl, TokenHolder tokenHolder, byte[] content) {
+		TransportRequest post = newRequest("POST", relativeUrl);
+		post.setBody(dataBody(content));
+		return doRequestAsync(post, tokenHolder, null);
+	}
+
 	public ByteArrayInputStream getAsStream(String relativeUrl, TokenHolder tokenHolder) {
 		byte[] response = get(relativeUrl, tokenHolder);
 		return new ByteArrayInputStream(response);
 	}
 
+	/**
+	 * Opens a stream reading the response body directly from the connection,
+	 * without buffering it in memory. The stream must be closed by the caller
+	 * to release the connection.
+	 * 
+	 * @param relativeUrl the relative URL to load from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @return a live stream on the response body
+	 */
+	public InputStream openStream(String relativeUrl, TokenHolder tokenHolder) {
+		TransportRequest request = newRequest("GET", relativeUrl).setStreaming(true);
+		request.setSigner(r -> sign(r, tokenHolder, null));
+		Measurement measurement = new Measurement(request);
+		TransportResponse response = null;
+		try {
+			response = transport.execute(request);
+			int statusCode = response.getStatusCode();
+			if (statusCode == 200 || statusCode == 204) {
+				// measured until the caller has read the stream
+				return new ResponseInputStream(response, measurement.decode(response), measurement);
+			}
+			byte[] content = readBytes(measurement.decode(response));
+			closeQuietly(response);
+			measurement.finish();
+			throw buildException(request, statusCode, content, tokenHolder);
+		} catch (IOException e) {
+			closeQuietly(response);
+			measurement.failed(e);
+			measurement.finish();
+			throw new ConnectionException("Failed to connect to BellaDati", e);
+		} catch (RuntimeException e) {
+			closeQuietly(response);
+			measurement.finish();
+			throw e;
+		}
+	}
+
+	/**
+	 * Downloads the response body into the given file, streaming it from the
+	 * connection into a file channel without buffering it in memory.
+	 * <p>
+	 * While a download is incomplete, the <tt>ETag</tt> or
+	 * <tt>Last-Modified</tt> header of the response is kept in a
+	 * <tt>.validator</tt> file next to the target. If <tt>resume</tt> is set
+	 * and the file already holds the beginning of the content, e.g. from an
+	 * interrupted download, only the missing bytes are requested using a byte
+	 * range, sent with the validator in <tt>If-Range</tt> so that the server
+	 * returns the whole content if it has changed since. Without a validator,
+	 * or if the server doesn't support ranges for the URL, the whole file is
+	 * downloaded again.
+	 * 
+	 * @param relativeUrl the relative URL to download from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param target the file to write to, created if it doesn't exist
+	 * @param resume <tt>true</tt> to continue a partial download in the file,
+	 *            <tt>false</tt> to replace its content
+	 * @return the size of the downloaded file
+	 * @throws IOException if the file cannot be written
+	 */
+	public long download(String relativeUrl, TokenHolder tokenHolder, Path target, boolean resume) throws IOException {
+		Path validatorFile = target.resolveSibling(target.getFileName() + VALIDATOR_SUFFIX);
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long offset = resume ? channel.size() : 0;
+			String validator = offset > 0 ? readValidator(validatorFile) : null;
+			long size = -1;
+			if (validator != null) {
+				size = download(newRequest("GET", relativeUrl), tokenHolder, channel, offset, validator, validatorFile);
+				// -1 if the server can't continue at our offset, start over
+			}
+			if (size < 0) {
+				size = download(newRequest("GET", relativeUrl), tokenHolder, channel, 0, null, validatorFile);
+			}
+			Files.deleteIfExists(validatorFile);
+			return size;
+		}
+	}
+
+	/**
+	 * Reads the validator of a partial download.
+	 * 
+	 * @return the validator, or <tt>null</tt> if there is none
+	 */
+	private static String readValidator(Path validatorFile) throws IOException {
+		if (!Files.exists(validatorFile)) {
+			return null;
+		}
+		String validator = new String(Files.readAllBytes(validatorFile), StandardCharsets.UTF_8).trim();
+		return validator.isEmpty() ? null : validator;
+	}
+
+	/**
+	 * Keeps the validator of a download that is starting, so that it can be
+	 * resumed if it doesn't complete. Weak entity tags can't be used to resume
+	 * a download, the last modification date is used instead if present.
+	 */
+	private static void writeValidator(Path validatorFile, TransportResponse response) throws IOException {
+		String validator = response.getHeader("ETag");
+		if (validator == null || validator.startsWith("W/")) {
+			validator = response.getHeader("Last-Modified");
+		}
+		if (validator == null) {
+			Files.deleteIfExists(validatorFile);
+		} else {
+			Files.write(validatorFile, validator.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Downloads the response body into the given channel, starting at the
+	 * given offset.
+	 * 
+	 * @param validator validator of the content already in the channel, only
+	 *            used with an offset
+	 * @param validatorFile file to keep the validator of a new download in
+	 * @return the size of the file, or -1 if the server returned a range not
+	 *         matching the offset
+	 */
+	private long download(TransportRequest request, TokenHolder tokenHolder, FileChannel channel, long offset,
+		String validator, Path validatorFile) throws IOException {
+		request.setStreaming(true);
+		if (offset > 0) {
+			request.setHeader("Range", "bytes=" + offset + "-");
+			request.setHeader("If-Range", validator);
+		}
+		request.setSigner(r -> {
+			sign(r, tokenHolder, null);
+			if (offset > 0) {
+				// ranges refer to the encoded body, make sure it isn't encoded
+				r.setHeader("Accept-Encoding", "identity");
+			}
+		});
+		Measurement measurement = new Measurement(request);
+		TransportResponse response = null;
+		InputStream content;
+		try {
+			response = transport.execute(request);
+			content = measurement.decode(response);
+		} catch (IOException e) {
+			closeQuietly(response);
+			measurement.failed(e);
+			measurement.finish();
+			throw new ConnectionException("Failed to connect to BellaDati", e);
+		} catch (RuntimeException e) {
+			closeQuietly(response);
+			measurement.finish();
+			throw e;
+		}
+		try (InputStream in = new ResponseInputStream(response, new DownloadInputStream(content, measurement), measurement)) {
+			int statusCode = response.getStatusCode();
+			String contentRange = response.getHeader("Content-Range");
+			if (statusCode == 200 || statusCode == 204) {
+				writeValidator(validatorFile, response);
+				channel.truncate(0);
+				return transfer(in, channel, 0);
+			} else if (statusCode == 206 && offset > 0) {
+				return parseRange(contentRange, true) == offset ? transfer(in, channel, offset) : -1;
+			} else if (statusCode == 416 && offset > 0) {
+				// nothing left to download if the file is already complete
+				return parseRange(contentRange, false) == offset ? offset : -1;
+			}
+			throw buildException(request, statusCode, readBytes(in), tokenHolder);
+		}
+	}
+
+	/**
+	 * Copies the content into the channel at the given position.
+	 * 
+	 * @return the size of the file after copying
+	 */
+	private static long transfer(InputStream content, FileChannel channel, long position) throws IOException {
+		ReadableByteChannel source = Channels.newChannel(content);
+		long transferred;
+		while ((transferred = channel.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+			position += transferred;
+		}
+		return position;
+	}
+
+	/**
+	 * Parses a <tt>Content-Range</tt> header of the form
+	 * <tt>bytes first-last/length</tt>.
+	 * 
+	 * @param header the header value, may be <tt>null</tt>
+	 * @param first <tt>true</tt> to return the first byte of the range,
+	 *            <tt>false</tt> to return the length of the content
+	 * @return the requested value, or -1 if it isn't present
+	 */
+	private static long parseRange(String header, boolean first) {
+		if (header == null || !header.trim().startsWith("bytes ")) {
+			return -1;
+		}
+		String range = header.trim().substring("bytes ".length()).trim();
+		int slash = range.indexOf('/');
+		if (first) {
+			int dash = range.indexOf('-');
+			return dash > 0 ? parseContentLength(range.substring(0, dash)) : -1;
+		}
+		return slash >= 0 ? parseContentLength(range.substring(slash + 1)) : -1;
+	}
+
 	public BufferedImage getAsImage(String relativeUrl, TokenHolder tokenHolder) throws InvalidStreamException {
 		ByteArrayInputStream bais = getAsStream(relativeUrl, tokenHolder);
 		try {
-			BufferedImage image = ImageIO.read(bais);
+			return readImage(bais);
+		} finally {
+			closeQuietly(bais);
+		}
+	}
+
+	/**
+	 * Loads an image from the given URL without blocking the calling thread.
+	 * 
+	 * @param relativeUrl the relative URL to load the image from
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @return a future completed with the image, or with an
+	 *         {@link InvalidStreamException} if the response cannot be parsed
+	 */
+	public CompletableFuture<BufferedImage> getAsImageAsync(String relativeUrl, TokenHolder tokenHolder) {
+		return getAsync(relativeUrl, tokenHolder).thenApply(response -> readImage(new ByteArrayInputStream(response)));
+	}
+
+	private static BufferedImage readImage(InputStream in) throws InvalidStreamException {
+		try {
+			BufferedImage image = ImageIO.read(in);
 			if (image == null) {
 				throw new IOException("Loaded image is null");
 			}
 			return image;
 		} catch (IOException e) {
 			throw new InvalidStreamException("Could not parse image response", e);
-		} finally {
-			closeQuietly(bais);
 		}
 	}
 
@@ -332,53 +906,285 @@ public class BellaDatiClient implements Serializable {
 		return baseUrl;
 	}
 
-	private byte[] doRequest(HttpUriRequestBase request, TokenHolder tokenHolder) {
+	/**
+	 * Returns statistics on how connections to the server are reused.
+	 * Connections are only reused if keep-alive is enabled through the
+	 * <tt>bdKeepAlive</tt> system property, or if HTTP/2 is enabled.
+	 * 
+	 * @return the connection pool statistics of this client
+	 */
+	public ConnectionPoolStats getPoolStats() {
+		return transport.getPoolStats();
+	}
+
+	/**
+	 * Returns statistics on the number of bytes transferred before and after
+	 * compression. Responses are compressed if the server supports it, unless
+	 * disabled through the <tt>bdCompressResponses</tt> system property.
+	 * Request bodies are only compressed if enabled through the
+	 * <tt>bdCompressUploads</tt> system property.
+	 * 
+	 * @return the compression statistics of this client
+	 */
+	public CompressionStats getCompressionStats() {
+		return compressionStats;
+	}
+
+	/**
+	 * Returns statistics on conditional requests revalidating previously
+	 * loaded content, such as cached lists and entities.
+	 * 
+	 * @return the revalidation statistics of this client
+	 */
+	public RevalidationStats getRevalidationStats() {
+		return revalidationStats;
+	}
+
+	/**
+	 * Returns measurements of the requests sent by this client per endpoint,
+	 * such as latencies, transferred bytes and status codes. Register a
+	 * {@link MetricsListener} with them to export the measurements of each
+	 * request.
+	 * 
+	 * @return the request metrics of this client
+	 */
+	public RequestMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the policy deciding which failed requests are retried, with
+	 * statistics on the number of retries made.
+	 * 
+	 * @return the retry policy of this client
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Returns the circuit breaker protecting the server this client connects
+	 * to. Its state shows whether requests are currently failing fast.
+	 * 
+	 * @return the circuit breaker of this client's server
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Returns the limiter on the rate of requests to the given family of
+	 * endpoints on this client's server. The rate is unlimited unless set
+	 * through the <tt>bdRateLimit</tt> system properties.
+	 * 
+	 * @param family the family of endpoints
+	 * @return the rate limiter for the family
+	 */
+	public RateLimiter getRateLimiter(EndpointFamily family) {
+		return RateLimiter.forServer(baseUrl, family);
+	}
+
+	/**
+	 * Returns the limiter on the number of concurrent requests to the given
+	 * family of endpoints on this client's server. The limit adapts to the
+	 * latency of the server within the bounds set through the
+	 * <tt>bdMinConcurrency</tt> and <tt>bdMaxConcurrency</tt> system
+	 * properties.
+	 * 
+	 * @param family the family of endpoints
+	 * @return the concurrency limiter for the family
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter(EndpointFamily family) {
+		return ConcurrencyLimiter.forServer(baseUrl, family);
+	}
+
+	private byte[] doRequest(TransportRequest request, TokenHolder tokenHolder) {
 		return doRequest(request, tokenHolder, null);
 	}
 
-	private byte[] doRequest(HttpUriRequestBase request, TokenHolder tokenHolder, HttpParameters oauthParams) {
-		try {
-			request.setHeader("Connection", "close");
-			OAuthConsumer consumer = tokenHolder.createConsumer();
-			consumer.setAdditionalParameters(oauthParams);
-			consumer.sign(request);
-
-			return client.execute(request, response -> {
-				int statusCode = response.getCode();
-				HttpEntity entity = response.getEntity();
-				byte[] content = entity != null ? readBytes(entity.getContent()) : new byte[0];
-				switch (statusCode) {
-					case 200:
-					case 204:
-						// all is well, return
-						return content;
-					// there was some sort of error - throw the right exception
-					case 400:
-					case 401:
-					case 403:
-						throw buildException(statusCode, content, tokenHolder.hasToken());
-					case 404:
-						try {
-							throw new NotFoundException(request.getUri().toString());
-						} catch (URISyntaxException e) {
-							throw new NotFoundException(e.getMessage());
-						}
-					case 405:
-						try {
-							throw new MethodNotAllowedException(request.getUri().toString());
-						} catch (URISyntaxException e) {
-							throw new NotFoundException(e.getMessage());
-						}
-					case 500:
-						throw new InternalErrorException();
-					default:
-						throw new UnexpectedResponseException(statusCode, new String(content));
-				}
-			});
-		} catch (OAuthException e) {
-			throw new InternalConfigurationException("Failed to create OAuth signature", e);
+	private byte[] doRequest(TransportRequest request, TokenHolder tokenHolder, HttpParameters oauthParams) {
+		return doRequest(request, tokenHolder, oauthParams, PooledBuffer::readBytes);
+	}
+
+	private <T> T doRequest(TransportRequest request, TokenHolder tokenHolder, HttpParameters oauthParams,
+		ContentReader<T> reader) {
+		request.setSigner(r -> sign(r, tokenHolder, oauthParams));
+		Measurement measurement = new Measurement(request);
+		try (TransportResponse response = transport.execute(request); InputStream content = measurement.decode(response)) {
+			int statusCode = response.getStatusCode();
+			if (statusCode == 200 || statusCode == 204) {
+				// all is well, read the content
+				return readFully(content, measurement.getContentLength(), reader);
+			}
+			throw buildException(request, statusCode, readBytes(content), tokenHolder);
 		} catch (IOException e) {
+			measurement.failed(e);
 			throw new ConnectionException("Failed to connect to BellaDati", e);
+		} finally {
+			measurement.finish();
+		}
+	}
+
+	/**
+	 * Sends a request made conditional on the validators of previously loaded
+	 * content.
+	 * 
+	 * @param request the request to send
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param previous content previously loaded for the request, may be
+	 *            <tt>null</tt>
+	 * @param reader reads the content if it has changed
+	 * @return the new content, or <tt>previous</tt> if it hasn't changed
+	 */
+	private <T> ValidatedContent<T> doConditionalRequest(TransportRequest request, TokenHolder tokenHolder,
+		ValidatedContent<T> previous, ContentReader<T> reader) {
+		boolean conditional = previous != null && previous.isRevalidatable();
+		if (conditional) {
+			if (previous.getEtag() != null) {
+				request.setHeader("If-None-Match", previous.getEtag());
+			}
+			if (previous.getLastModified() != null) {
+				request.setHeader("If-Modified-Since", previous.getLastModified());
+			}
+			revalidationStats.requestSent();
+		}
+		request.setSigner(r -> sign(r, tokenHolder, null));
+		Measurement measurement = new Measurement(request);
+		try (TransportResponse response = transport.execute(request); InputStream content = measurement.decode(response)) {
+			int statusCode = response.getStatusCode();
+			if (statusCode == 304 && conditional) {
+				revalidationStats.notModified();
+				return previous;
+			}
+			if (statusCode == 200 || statusCode == 204) {
+				return new ValidatedContent<T>(readFully(content, measurement.getContentLength(), reader), response.getHeader("ETag"),
+					response.getHeader("Last-Modified"));
+			}
+			throw buildException(request, statusCode, readBytes(content), tokenHolder);
+		} catch (IOException e) {
+			measurement.failed(e);
+			throw new ConnectionException("Failed to connect to BellaDati", e);
+		} finally {
+			measurement.finish();
+		}
+	}
+
+	/**
+	 * Reads the content of a response and skips anything the reader left, so
+	 * that the connection can be reused.
+	 */
+	private static <T> T readFully(InputStream content, long length, ContentReader<T> reader) throws IOException {
+		T result = reader.read(new FilterInputStream(content) {
+			@Override
+			public void close() {
+				// closed by the caller, after reading to the end
+			}
+		}, length);
+		content.transferTo(OutputStream.nullOutputStream());
+		return result;
+	}
+
+	/**
+	 * Sends the request through the transport without blocking. Failures
+	 * complete the returned future with the same exceptions the blocking
+	 * methods would throw.
+	 * 
+	 * @param request the request to send
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param oauthParams additional OAuth parameters, may be <tt>null</tt>
+	 * @return a future completed with the response content
+	 */
+	private CompletableFuture<byte[]> doRequestAsync(TransportRequest request, TokenHolder tokenHolder,
+		HttpParameters oauthParams) {
+		request.setSigner(r -> sign(r, tokenHolder, oauthParams));
+		Measurement measurement = new Measurement(request);
+		CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+		CompletableFuture<TransportResponse> exchange = transport.executeAsync(request);
+		exchange.whenComplete((response, e) -> {
+			if (e instanceof CancellationException) {
+				result.cancel(false);
+				return;
+			} else if (e != null) {
+				measurement.failed(e);
+				measurement.finish();
+				result.completeExceptionally(
+					e instanceof BellaDatiRuntimeException ? e : new ConnectionException("Failed to connect to BellaDati", e));
+				return;
+			}
+			byte[] content;
+			try (InputStream in = measurement.decode(response)) {
+				content = PooledBuffer.readBytes(in, measurement.getContentLength());
+			} catch (IOException ex) {
+				measurement.failed(ex);
+				result.completeExceptionally(new ConnectionException("Failed to read response from BellaDati", ex));
+				return;
+			} finally {
+				closeQuietly(response);
+				measurement.finish();
+			}
+			int statusCode = response.getStatusCode();
+			if (statusCode == 200 || statusCode == 204) {
+				result.complete(content);
+			} else {
+				try {
+					result.completeExceptionally(buildException(request, statusCode, content, tokenHolder));
+				} catch (RuntimeException ex) {
+					result.completeExceptionally(ex);
+				}
+			}
+		});
+		// abort the exchange if the caller is no longer interested
+		result.whenComplete((content, e) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Prepares the request headers and adds the OAuth signature.
+	 * 
+	 * @param request the request to sign
+	 * @param tokenHolder holds the OAuth token to sign the request with
+	 * @param oauthParams additional OAuth parameters, may be <tt>null</tt>
+	 */
+	private void sign(TransportRequest request, TokenHolder tokenHolder, HttpParameters oauthParams) {
+		if (!keepAlive && !isHttp2()) {
+			// HTTP/2 does not allow connection headers, and always reuses connections
+			request.setHeader("Connection", "close");
+		}
+		if (compressResponses) {
+			request.setHeader("Accept-Encoding", ContentCoding.ACCEPT_ENCODING);
+		}
+		tokenHolder.getSigner().sign(request, oauthParams);
+	}
+
+	/**
+	 * Builds the exception to throw for an unsuccessful response.
+	 * 
+	 * @param request the request that was sent
+	 * @param statusCode response code returned by the server
+	 * @param content content returned by the server
+	 * @param tokenHolder holds the OAuth token the request was signed with
+	 * @return an exception to throw for the given response
+	 */
+	private BellaDatiRuntimeException buildException(TransportRequest request, int statusCode, byte[] content,
+		TokenHolder tokenHolder) {
+		switch (statusCode) {
+			// there was some sort of error - throw the right exception
+			case 400:
+			case 401:
+			case 403:
+				return buildException(statusCode, content, tokenHolder.hasToken());
+			case 404:
+				return new NotFoundException(request.getUri().toString());
+			case 405:
+				return new MethodNotAllowedException(request.getUri().toString());
+			case 500:
+				return new InternalErrorException();
+			default:
+				return new UnexpectedResponseException(statusCode, new String(content));
 		}
 	}
 
@@ -436,6 +1242,62 @@ public class BellaDatiClient implements Serializable {
 
 	}
 	
+	private TransportRequest newRequest(String method, String relativeUrl) {
+		return new TransportRequest(method, URI.create(baseUrl + removeLeadingSlash(relativeUrl)));
+	}
+
+	private RequestBody jsonBody(JsonNode json) {
+		return ContentCoding.encode(JsonSupport.toBytes(json), ContentType.APPLICATION_JSON, compressUploads, compressionStats);
+	}
+
+	private RequestBody dataBody(byte[] content) {
+		return ContentCoding.encode(content, ContentType.APPLICATION_OCTET_STREAM, compressUploads, compressionStats);
+	}
+
+	private RequestBody jsonBody(JsonStreamWriter json) {
+		return new JsonStreamBody(json, ContentType.APPLICATION_JSON.toString(), compressUploads, compressionStats);
+	}
+
+	private RequestBody dataBody(JsonStreamWriter content) {
+		return new JsonStreamBody(content, ContentType.APPLICATION_OCTET_STREAM.toString(), compressUploads, compressionStats);
+	}
+
+	private static RequestBody formBody(List<? extends NameValuePair> parameters) {
+		return RequestBody.of(WWWFormCodec.format(parameters, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8),
+			ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8).toString(), null);
+	}
+
+	/**
+	 * Builds a form body with a single parameter, encoding its JSON value
+	 * into the form while it is generated.
+	 */
+	private static RequestBody formBody(String name, JsonStreamWriter json) {
+		ByteArrayOutputStream form = new ByteArrayOutputStream(8192);
+		try (FormEncodingOutputStream value = new FormEncodingOutputStream(form)) {
+			value.write(name.getBytes(StandardCharsets.UTF_8));
+			form.write('=');
+			try (JsonGenerator generator = JsonSupport.createGenerator(value)) {
+				json.write(generator);
+			}
+		} catch (IOException e) {
+			// can't happen writing to memory
+			throw new IllegalStateException("Failed to write form parameter", e);
+		}
+		return RequestBody.of(form.toByteArray(), ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8)
+			.toString(), null);
+	}
+
+	private static long parseContentLength(String header) {
+		if (header == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(header.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
 	private String removeLeadingSlash(String relativeUrl) {
 		if (relativeUrl.startsWith("/")) {
 			return relativeUrl.substring(1);
@@ -444,14 +1306,248 @@ public class BellaDatiClient implements Serializable {
 	}
 
 	private static byte[] readBytes(InputStream in) throws IOException {
-		int len;
-		byte[] buffer = new byte[128];
-		ByteArrayOutputStream buf = new ByteArrayOutputStream(8192);
-		while ((len = in.read(buffer, 0, buffer.length)) != -1) {
-			buf.write(buffer, 0, len);
+		return PooledBuffer.readBytes(in, -1);
+	}
+
+	/** HTTP libraries available to send requests. */
+	private enum TransportType {
+		APACHE, JDK
+	}
+
+	/**
+	 * Encodes the bytes written through it for
+	 * <tt>application/x-www-form-urlencoded</tt> content.
+	 */
+	private static class FormEncodingOutputStream extends FilterOutputStream {
+		private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+		private final byte[] buffer = new byte[3 * 1024];
+
+		private FormEncodingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int position = 0;
+			for (int i = off; i < off + len; i++) {
+				if (position > buffer.length - 3) {
+					out.write(buffer, 0, position);
+					position = 0;
+				}
+				int c = b[i] & 0xff;
+				if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.'
+					|| c == '*') {
+					buffer[position++] = (byte) c;
+				} else if (c == ' ') {
+					buffer[position++] = '+';
+				} else {
+					buffer[position++] = '%';
+					buffer[position++] = HEX[c >> 4];
+					buffer[position++] = HEX[c & 0xf];
+				}
+			}
+			out.write(buffer, 0, position);
+		}
+	}
+
+	private interface ContentReader<T> {
+		/**
+		 * @param content the decoded response body
+		 * @param length the length of the decoded body, -1 if unknown
+		 */
+		T read(InputStream content, long length) throws IOException;
+	}
+
+	/**
+	 * Response body stream that releases the underlying connection when it is
+	 * closed.
+	 */
+	private static class ResponseInputStream extends FilterInputStream {
+		private final TransportResponse response;
+		private final Measurement measurement;
+
+		private ResponseInputStream(TransportResponse response, InputStream content, Measurement measurement) {
+			super(content);
+			this.response = response;
+			this.measurement = measurement;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				response.close();
+				measurement.finish();
+			}
+		}
+	}
+
+	/**
+	 * Response body stream used for downloads. Failures reading the response
+	 * are thrown as {@link ConnectionException}, to tell them apart from
+	 * failures writing the file.
+	 */
+	private static class DownloadInputStream extends FilterInputStream {
+		private final Measurement measurement;
+
+		private DownloadInputStream(InputStream content, Measurement measurement) {
+			super(content);
+			this.measurement = measurement;
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				return super.read();
+			} catch (IOException e) {
+				throw failed(e);
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				return super.read(b, off, len);
+			} catch (IOException e) {
+				throw failed(e);
+			}
+		}
+
+		private ConnectionException failed(IOException e) {
+			measurement.failed(e);
+			return new ConnectionException("Failed to read response from BellaDati", e);
+		}
+	}
+
+	/**
+	 * Measures a request for the {@link RequestMetrics}, from sending it until
+	 * its response has been read.
+	 */
+	private class Measurement {
+		private final TransportRequest request;
+		private final long start = System.nanoTime();
+		private final RequestEvent event = new RequestEvent();
+		private final AtomicBoolean finished = new AtomicBoolean();
+		private volatile int statusCode;
+		private volatile long received;
+		private volatile long contentLength = -1;
+		private volatile Throwable failure;
+
+		private Measurement(TransportRequest request) {
+			this.request = request;
+			event.begin();
+		}
+
+		/**
+		 * Opens the body of a response, counting the bytes received and
+		 * decoding it if it was compressed.
+		 * 
+		 * @param response the response to read
+		 * @return a stream reading the decoded body
+		 * @throws IOException if the body cannot be read
+		 */
+		private InputStream decode(TransportResponse response) throws IOException {
+			statusCode = response.getStatusCode();
+			String encoding = response.getHeader("Content-Encoding");
+			if (encoding == null || encoding.trim().isEmpty() || encoding.trim().equalsIgnoreCase("identity")) {
+				contentLength = parseContentLength(response.getHeader("Content-Length"));
+			}
+			InputStream body = new FilterInputStream(response.getBody()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0) {
+						received++;
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int read = super.read(b, off, len);
+					if (read > 0) {
+						received += read;
+					}
+					return read;
+				}
+
+				@Override
+				public long skip(long n) throws IOException {
+					long skipped = super.skip(n);
+					received += skipped;
+					return skipped;
+				}
+			};
+			return ContentCoding.decode(body, response.getHeader("Content-Encoding"), compressionStats);
+		}
+
+		/**
+		 * Returns the length of the decoded response body, if the server
+		 * declared it and the body isn't compressed.
+		 * 
+		 * @return the length of the body, -1 if unknown
+		 */
+		private long getContentLength() {
+			return contentLength;
+		}
+
+		private void failed(Throwable failure) {
+			this.failure = failure;
+			this.statusCode = 0;
+		}
+
+		/** Records the request once, when it's complete. */
+		private void finish() {
+			if (finished.compareAndSet(false, true)) {
+				event.end();
+				RequestMetric metric = metrics.record(request, statusCode, System.nanoTime() - start, received, failure);
+				if (event.shouldCommit()) {
+					event.method = metric.getMethod();
+					event.endpoint = metric.getEndpoint();
+					event.statusCode = metric.getStatusCode();
+					event.requestBytes = metric.getRequestBytes();
+					event.responseBytes = metric.getResponseBytes();
+					event.retries = metric.getRetries();
+					event.waitTime = metric.getWaitNanos();
+					event.commit();
+				}
+			}
+		}
+	}
+
+	/** Sends an entity built by HttpClient, such as a multipart form. */
+	private static class EntityBody implements RequestBody {
+		private final HttpEntity entity;
+
+		private EntityBody(HttpEntity entity) {
+			this.entity = entity;
+		}
+
+		@Override
+		public String getContentType() {
+			return entity.getContentType();
+		}
+
+		@Override
+		public String getContentEncoding() {
+			return entity.getContentEncoding();
+		}
+
+		@Override
+		public long getContentLength() {
+			return entity.getContentLength();
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			entity.writeTo(out);
 		}
-		buf.flush();
-		return buf.toByteArray();
 	}
 
 	/**
@@ -463,11 +1559,29 @@ public class BellaDatiClient implements Serializable {
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
 		try {
-			Field client = getClass().getDeclaredField("client");
-			client.setAccessible(true);
-			client.set(this, buildClient(trustSelfSigned));
+			setTransientField("keepAlive", readFromProperty("bdKeepAlive", false));
+			setTransientField("versionPolicy", readFromProperty("bdHttpVersionPolicy", HttpVersionPolicy.FORCE_HTTP_1));
+			setTransientField("compressResponses", readFromProperty("bdCompressResponses", true));
+			setTransientField("compressUploads", readFromProperty("bdCompressUploads", false));
+			setTransientField("transportType", readFromProperty("bdTransport", TransportType.APACHE));
+			setTransientField("compressionStats", new CompressionStats());
+			setTransientField("revalidationStats", new RevalidationStats());
+			setTransientField("metrics", new RequestMetrics(baseUrl));
+			RetryPolicy retryPolicy = new RetryPolicy();
+			CircuitBreaker circuitBreaker = CircuitBreaker.forBaseUrl(baseUrl);
+			setTransientField("retryPolicy", retryPolicy);
+			setTransientField("circuitBreaker", circuitBreaker);
+			setTransientField("transport",
+				new RetryingTransport(new LimitingTransport(buildTransport(), baseUrl), retryPolicy, circuitBreaker));
+			setTransientField("downloadWindow", newDownloadWindow());
 		} catch (NoSuchFieldException | IllegalAccessException | SecurityException | IllegalArgumentException e) {
 			throw new InternalConfigurationException("Failed to set client fields", e);
 		}
     }
+
+	private void setTransientField(String name, Object value) throws NoSuchFieldException, IllegalAccessException {
+		Field field = BellaDatiClient.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(this, value);
+	}
 }
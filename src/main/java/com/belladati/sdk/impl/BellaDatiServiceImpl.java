@@ -11,6 +11,7 @@ import com.belladati.sdk.dataset.DataSetInfo;
 import com.belladati.sdk.dataset.data.DataColumn;
 import com.belladati.sdk.dataset.data.DataRow;
 import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.dataset.data.OverwritePolicy;
 import com.belladati.sdk.dataset.impl.AttributeValueImpl;
 import com.belladati.sdk.dataset.impl.DataSetImpl;
 import com.belladati.sdk.dataset.impl.DataSetInfoImpl;
@@ -67,6 +68,7 @@ import com.belladati.sdk.util.PaginatedIdList;
 import com.belladati.sdk.util.PaginatedList;
 import com.belladati.sdk.util.impl.BellaDatiSdkUtils;
 import com.belladati.sdk.util.impl.CachedListImpl;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.belladati.sdk.util.impl.MultipartFileImpl;
 import com.belladati.sdk.util.impl.MultipartTextImpl;
 import com.belladati.sdk.util.impl.PaginatedIdListImpl;
@@ -76,8 +78,8 @@ import com.belladati.sdk.view.ViewType;
 import com.belladati.sdk.view.export.ViewExporter;
 import com.belladati.sdk.view.impl.ViewExporterImpl;
 import com.belladati.sdk.view.impl.ViewLoaderImpl;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.lang3.StringUtils;
@@ -89,9 +91,11 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.lang.reflect.Field;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -99,10 +103,15 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -114,16 +123,28 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	public static final String DATE_TIME_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
 
+	/**
+	 * fields of data tables without getters, needed to write uploads
+	 * incrementally; {@link DataTable} has no other way to read them
+	 */
+	private static final Field TABLE_TEMPLATE_ID = tableField("templateId");
+	private static final Field TABLE_SPLIT_BY_COLUMN = tableField("splitByColumn");
+
+	/** fields holding entity caches, named like the caches */
+	private static final List<String> ENTITY_CACHES = Arrays.asList("reports", "dataSets", "dashboards", "domains", "loadedUsers");
+
+	/** fields holding bounded caches, named like the caches */
+	private static final List<String> CACHES = Arrays.asList("users", "userGroups", "commentLists", "dataSetAttributeValues",
+		"dataSourceList", "dataSourceImportList", "dataSetData");
+
 	private final BellaDatiClient client;
 	private final TokenHolder tokenHolder;
 
 	private final transient CachedList<DomainInfo> domainList = new DomainList();
 
-	private final transient Map<String, CachedList<User>> users = Collections
-		.synchronizedMap(new HashMap<String, CachedList<User>>());
+	private final transient BoundedCache<CachedList<User>> users = new BoundedCache<CachedList<User>>("users");
 
-	private final transient Map<String, CachedList<UserGroup>> userGroups = Collections
-		.synchronizedMap(new HashMap<String, CachedList<UserGroup>>());
+	private final transient BoundedCache<CachedList<UserGroup>> userGroups = new BoundedCache<CachedList<UserGroup>>("userGroups");
 
 	private final transient PaginatedIdList<DashboardInfo> dashboardList = new DashboardList();
 
@@ -131,20 +152,39 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	private final transient PaginatedIdList<DataSetInfo> dataSetList = new DataSetList();
 
-	private final transient Map<String, PaginatedList<Comment>> commentLists = Collections
-		.synchronizedMap(new HashMap<String, PaginatedList<Comment>>());
+	private final transient BoundedCache<PaginatedList<Comment>> commentLists = new BoundedCache<PaginatedList<Comment>>("commentLists");
 
-	private final transient Map<String, Map<String, CachedList<AttributeValue>>> dataSetAttributeValues = new HashMap<String, Map<String, CachedList<AttributeValue>>>();
+	/** attribute values keyed by data set ID and attribute code, separated by <tt>/</tt> */
+	private final transient BoundedCache<CachedList<AttributeValue>> dataSetAttributeValues = new BoundedCache<CachedList<AttributeValue>>(
+		"dataSetAttributeValues");
 
-	private final transient Map<String, CachedList<DataSource>> dataSourceList = new HashMap<String, CachedList<DataSource>>();
+	private final transient BoundedCache<CachedList<DataSource>> dataSourceList = new BoundedCache<CachedList<DataSource>>("dataSourceList");
 
-	private final transient Map<String, CachedList<DataSourceImport>> dataSourceImportList = new HashMap<String, CachedList<DataSourceImport>>();
+	private final transient BoundedCache<CachedList<DataSourceImport>> dataSourceImportList = new BoundedCache<CachedList<DataSourceImport>>(
+		"dataSourceImportList");
 
-	private final transient Map<String, PaginatedIdList<DataRow>> dataSetData = Collections
-		.synchronizedMap(new HashMap<String, PaginatedIdList<DataRow>>());
+	/** data set rows keyed by data set ID, followed by the filters if filtered */
+	private final transient BoundedCache<PaginatedIdList<DataRow>> dataSetData = new BoundedCache<PaginatedIdList<DataRow>>("dataSetData");
 
 	private final transient CachedList<Form> importFormList = new ImportFormList();
 
+	/** entities by ID, <tt>null</tt> unless entity caching is enabled */
+	private final transient EntityCache<Report> reports = EntityCache.create("reports");
+
+	private final transient EntityCache<DataSet> dataSets = EntityCache.create("dataSets");
+
+	private final transient EntityCache<Dashboard> dashboards = EntityCache.create("dashboards");
+
+	private final transient EntityCache<Domain> domains = EntityCache.create("domains");
+
+	private final transient EntityCache<User> loadedUsers = EntityCache.create("loadedUsers");
+
+	/** entity JSON kept for revalidation when the entity is loaded again */
+	private final transient Map<String, ValidatedContent<JsonNode>> validatedJson = newValidatedJsonCache();
+
+	/** lets concurrent identical GET requests share one response */
+	private final transient RequestCoalescer coalescer = new RequestCoalescer();
+
 	public BellaDatiServiceImpl(BellaDatiClient client, TokenHolder tokenHolder) {
 		this.client = client;
 		this.tokenHolder = tokenHolder;
@@ -158,6 +198,124 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 		return tokenHolder;
 	}
 
+	/**
+	 * Returns the coalescer sharing responses between concurrent identical
+	 * requests, with statistics on how many requests it saved.
+	 * 
+	 * @return the request coalescer of this service
+	 */
+	public RequestCoalescer getRequestCoalescer() {
+		return coalescer;
+	}
+
+	/**
+	 * Returns the caches this service keeps of lists it has handed out, such
+	 * as users, comments or data set rows, with their statistics.
+	 * 
+	 * @return the caches of this service
+	 */
+	public List<BoundedCache<?>> getCaches() {
+		return Arrays.asList(users, userGroups, commentLists, dataSetAttributeValues, dataSourceList, dataSourceImportList,
+			dataSetData);
+	}
+
+	/**
+	 * Removes all entries from the caches of this service. Lists and entities
+	 * requested afterwards are loaded from the server again.
+	 */
+	public void invalidateCaches() {
+		for (BoundedCache<?> cache : getCaches()) {
+			cache.invalidateAll();
+		}
+		for (EntityCache<?> cache : getEntityCaches()) {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Returns the caches this service keeps of loaded entities, such as
+	 * reports or data sets, with their statistics. Empty unless entity
+	 * caching is enabled through <tt>bdEntityCache</tt>.
+	 * 
+	 * @return the entity caches of this service
+	 */
+	public List<EntityCache<?>> getEntityCaches() {
+		List<EntityCache<?>> caches = new ArrayList<EntityCache<?>>();
+		for (EntityCache<?> cache : Arrays.<EntityCache<?>> asList(reports, dataSets, dashboards, domains, loadedUsers)) {
+			if (cache != null) {
+				caches.add(cache);
+			}
+		}
+		return caches;
+	}
+
+	/**
+	 * Removes the data set with the given ID from the entity cache, if it is
+	 * cached.
+	 * 
+	 * @param id ID of the data set
+	 */
+	public void invalidateDataSet(String id) {
+		invalidate(dataSets, id);
+	}
+
+	/**
+	 * Removes the domain with the given ID from the entity cache, if it is
+	 * cached.
+	 * 
+	 * @param id ID of the domain
+	 */
+	public void invalidateDomain(String id) {
+		invalidate(domains, id);
+	}
+
+	/**
+	 * Removes the user with the given ID from the entity cache, if it is
+	 * cached.
+	 * 
+	 * @param id ID of the user
+	 */
+	public void invalidateUser(String id) {
+		invalidate(loadedUsers, id);
+	}
+
+	private static void invalidate(EntityCache<?> cache, String id) {
+		if (cache != null) {
+			cache.invalidate(id);
+		}
+	}
+
+	/** Loads an entity through the given cache, or directly if it is <tt>null</tt>. */
+	private <T> T loadEntity(EntityCache<T> cache, String id, String relativeUri, Function<JsonNode, T> factory) {
+		if (cache == null) {
+			return factory.apply(getAsValidatedJson(relativeUri));
+		}
+		return cache.load(id, () -> getAsValidatedJson(relativeUri), factory);
+	}
+
+	/**
+	 * Returns a non-blocking view of this service. Requests made through it
+	 * share the connection settings and OAuth tokens of this service. Results
+	 * are processed on the common fork-join pool.
+	 * 
+	 * @return an asynchronous service backed by this service
+	 */
+	public AsyncBellaDatiService async() {
+		return async(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns a non-blocking view of this service. Requests made through it
+	 * share the connection settings and OAuth tokens of this service.
+	 * 
+	 * @param executor runs the processing of responses, keeping it off the
+	 *            threads handling network I/O
+	 * @return an asynchronous service backed by this service
+	 */
+	public AsyncBellaDatiService async(Executor executor) {
+		return new AsyncBellaDatiService(this, executor);
+	}
+
 	@Override
 	public CachedList<DomainInfo> getDomainInfo() {
 		return domainList;
@@ -165,59 +323,32 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public Domain loadDomain(String id) throws NotFoundException {
-		return new DomainImpl(this, getAsJson("api/domains/" + id));
+		return loadEntity(domains, id, "api/domains/" + id, json -> new DomainImpl(this, json));
 	}
 
 	@Override
 	public CachedList<User> getDomainUsers(String domainId, String userGroupId) {
-		final String cacheKey = domainId + "-" + userGroupId;
-		CachedList<User> existing = users.get(cacheKey);
-		if (existing != null) {
-			return existing;
-		} else {
-			synchronized (users) {
-				existing = users.get(cacheKey);
-				if (existing != null) {
-					return existing;
-				} else {
-					String params = userGroupId != null && !userGroupId.isEmpty() ? "?userGroup_id=" + userGroupId : "";
-					String endpoint = "api/domains/" + domainId + "/users" + params;
-					CachedList<User> newList = new CachedListImpl<User>(this, endpoint, "users") {
-						@Override
-						protected User parse(BellaDatiServiceImpl service, JsonNode node) {
-							return new UserImpl(service, node);
-						}
-					};
-					users.put(cacheKey, newList);
-					return newList;
+		return users.get(domainId + "-" + userGroupId, cacheKey -> {
+			String params = userGroupId != null && !userGroupId.isEmpty() ? "?userGroup_id=" + userGroupId : "";
+			String endpoint = "api/domains/" + domainId + "/users" + params;
+			return new CachedListImpl<User>(this, endpoint, "users") {
+				@Override
+				protected User parse(BellaDatiServiceImpl service, JsonNode node) {
+					return new UserImpl(service, node);
 				}
-			}
-		}
+			};
+		});
 	}
 
 	@Override
 	public CachedList<UserGroup> getDomainUserGroups(String domainId) {
-		CachedList<UserGroup> existing = userGroups.get(domainId);
-		if (existing != null) {
-			return existing;
-		} else {
-			synchronized (userGroups) {
-				existing = userGroups.get(domainId);
-				if (existing != null) {
-					return existing;
-				} else {
-					CachedList<UserGroup> newList = new CachedListImpl<UserGroup>(this, "api/domains/" + domainId + "/userGroups",
-						"userGroups") {
-						@Override
-						protected UserGroup parse(BellaDatiServiceImpl service, JsonNode node) {
-							return new UserGroupImpl(node);
-						}
-					};
-					userGroups.put(domainId, newList);
-					return newList;
-				}
+		return userGroups.get(domainId, key -> new CachedListImpl<UserGroup>(this, "api/domains/" + domainId + "/userGroups",
+			"userGroups") {
+			@Override
+			protected UserGroup parse(BellaDatiServiceImpl service, JsonNode node) {
+				return new UserGroupImpl(node);
 			}
-		}
+		});
 	}
 
 	@Override
@@ -252,7 +383,7 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public Dashboard loadDashboard(String id) {
-		return new DashboardImpl(this, getAsJson("api/dashboards/" + id));
+		return loadEntity(dashboards, id, "api/dashboards/" + id, json -> new DashboardImpl(this, json));
 	}
 
 	@Override
@@ -267,7 +398,7 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public Report loadReport(String id) {
-		return new ReportImpl(this, getAsJson("api/reports/" + id));
+		return loadEntity(reports, id, "api/reports/" + id, json -> new ReportImpl(this, json));
 	}
 
 	@Override
@@ -277,40 +408,31 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public PaginatedList<Comment> getReportComments(String reportId) {
-		PaginatedList<Comment> existing = commentLists.get(reportId);
-		if (existing != null) {
-			return existing;
-		} else {
-			synchronized (commentLists) {
-				existing = commentLists.get(reportId);
-				if (existing != null) {
-					return existing;
-				} else {
-					PaginatedList<Comment> newList = new PaginatedListImpl<Comment>(this, "api/reports/" + reportId + "/comments",
-						"comments") {
-
-						@Override
-						protected Comment parse(BellaDatiServiceImpl service, JsonNode node) {
-							return new CommentImpl(service, node);
-						}
-
-					};
-					commentLists.put(reportId, newList);
-					return newList;
-				}
+		return commentLists.get(reportId, key -> new PaginatedListImpl<Comment>(this, "api/reports/" + reportId + "/comments",
+			"comments") {
+
+			@Override
+			protected Comment parse(BellaDatiServiceImpl service, JsonNode node) {
+				return new CommentImpl(service, node);
 			}
-		}
+
+		});
 	}
 
 	@Override
 	public void postComment(String reportId, String text) {
 		client.post("api/reports/" + reportId + "/comments", tokenHolder,
 			Collections.singletonList(new BasicNameValuePair("text", text)));
+		invalidate(reports, reportId);
 	}
 
 	@Override
 	public void deleteComment(String commentId) throws NotFoundException {
 		client.delete("api/reports/comments/" + commentId, tokenHolder);
+		// the comment's report isn't known
+		if (reports != null) {
+			reports.invalidateAll();
+		}
 	}
 
 	@Override
@@ -328,6 +450,17 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 		return new ViewLoaderImpl(this, viewId, viewType);
 	}
 
+	/**
+	 * Sets up an import uploading data into the data set with the given ID in
+	 * chunks sent in parallel.
+	 * 
+	 * @param dataSetId ID of the data set
+	 * @return an import that can be configured and started
+	 */
+	public BulkImport setupBulkImport(String dataSetId) {
+		return new BulkImport(this, dataSetId);
+	}
+
 	@Override
 	public ViewExporter setupViewExporter(String viewId) {
 		return new ViewExporterImpl(this, viewId);
@@ -335,38 +468,27 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public CachedList<DataSource> getDataSources(String id) throws NotFoundException {
-		CachedList<DataSource> list = dataSourceList.get(id);
-		if (list == null) {
-			// we don't have this data set's sources in our cache yet
-			list = new CachedListImpl<DataSource>(this, "api/dataSets/" + id + "/dataSources", "dataSources") {
-				@Override
-				protected DataSource parse(BellaDatiServiceImpl service, JsonNode node) throws ParseException {
-					return new DataSourceImpl(service, node);
-				}
-			};
-			dataSourceList.put(id, list);
-		}
-		return list;
+		return dataSourceList.get(id, key -> new CachedListImpl<DataSource>(this, "api/dataSets/" + id + "/dataSources", "dataSources") {
+			@Override
+			protected DataSource parse(BellaDatiServiceImpl service, JsonNode node) throws ParseException {
+				return new DataSourceImpl(service, node);
+			}
+		});
 	}
 
 	@Override
 	public CachedList<DataSourceImport> getDataSourceImports(String id) throws NotFoundException {
-		CachedList<DataSourceImport> list = dataSourceImportList.get(id);
-		if (list == null) {
-			// we don't have this data set's sources in our cache yet
-			list = new CachedListImpl<DataSourceImport>(this, "api/dataSets/dataSources/" + id + "/executions", "executions") {
-				@Override
-				protected DataSourceImport parse(BellaDatiServiceImpl service, JsonNode node) throws ParseException {
-					try {
-						return new DataSourceImportImpl(node);
-					} catch (InvalidDataSourceImportException e) {
-						throw new ParseException(node, e);
-					}
+		return dataSourceImportList.get(id, key -> new CachedListImpl<DataSourceImport>(this,
+			"api/dataSets/dataSources/" + id + "/executions", "executions") {
+			@Override
+			protected DataSourceImport parse(BellaDatiServiceImpl service, JsonNode node) throws ParseException {
+				try {
+					return new DataSourceImportImpl(node);
+				} catch (InvalidDataSourceImportException e) {
+					throw new ParseException(node, e);
 				}
-			};
-			dataSourceImportList.put(id, list);
-		}
-		return list;
+			}
+		});
 	}
 
 	@Override
@@ -384,11 +506,11 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 	 */
 	public static URIBuilder appendFilter(URIBuilder builder, Collection<Filter<?>> filters) {
 		if (filters.size() > 0) {
-			ObjectNode filterNode = new ObjectMapper().createObjectNode();
+			ObjectNode filterNode = JsonSupport.createObjectNode();
 			for (Filter<?> filter : filters) {
 				filterNode.setAll(filter.toJson());
 			}
-			ObjectNode drilldownNode = new ObjectMapper().createObjectNode();
+			ObjectNode drilldownNode = JsonSupport.createObjectNode();
 			drilldownNode.put("drilldown", filterNode);
 			builder.addParameter("filter", drilldownNode.toString());
 		}
@@ -406,7 +528,7 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 	 */
 	public static URIBuilder appendDateTime(URIBuilder builder, Interval<DateUnit> dateInterval, Interval<TimeUnit> timeInterval) {
 		if (dateInterval != null || timeInterval != null) {
-			ObjectNode dateTimeNode = new ObjectMapper().createObjectNode();
+			ObjectNode dateTimeNode = JsonSupport.createObjectNode();
 			if (dateInterval != null) {
 				dateTimeNode.setAll(dateInterval.toJson());
 			}
@@ -434,31 +556,18 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 	}
 
 	@Override
-	public synchronized CachedList<AttributeValue> getAttributeValues(String dataSetId, String attributeCode) {
-		if (!dataSetAttributeValues.containsKey(dataSetId)) {
-			// we don't have any values for this report yet, insert new map
-			dataSetAttributeValues.put(dataSetId, new HashMap<String, CachedList<AttributeValue>>());
-		}
-
-		Map<String, CachedList<AttributeValue>> attributeValues = dataSetAttributeValues.get(dataSetId);
-
-		CachedList<AttributeValue> values = attributeValues.get(attributeCode);
-		if (values == null) {
-			// we don't have this attribute in our cache yet
-			values = new CachedListImpl<AttributeValue>(this,
-				"api/dataSets/" + dataSetId + "/attributes/" + attributeCode + "/values", "values") {
-				@Override
-				protected AttributeValue parse(BellaDatiServiceImpl service, JsonNode node) throws ParseException {
-					try {
-						return new AttributeValueImpl(node);
-					} catch (InvalidAttributeValueException e) {
-						throw new ParseException(node, e);
-					}
+	public CachedList<AttributeValue> getAttributeValues(String dataSetId, String attributeCode) {
+		return dataSetAttributeValues.get(dataSetId + "/" + attributeCode, key -> new CachedListImpl<AttributeValue>(this,
+			"api/dataSets/" + dataSetId + "/attributes/" + attributeCode + "/values", "values") {
+			@Override
+			protected AttributeValue parse(BellaDatiServiceImpl service, JsonNode node) throws ParseException {
+				try {
+					return new AttributeValueImpl(node);
+				} catch (InvalidAttributeValueException e) {
+					throw new ParseException(node, e);
 				}
-			};
-			attributeValues.put(attributeCode, values);
-		}
-		return values;
+			}
+		});
 	}
 
 	@Override
@@ -476,12 +585,12 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public User loadUser(String userId) {
-		return new UserImpl(this, getAsJson("api/users/" + userId));
+		return loadEntity(loadedUsers, userId, "api/users/" + userId, json -> new UserImpl(this, json));
 	}
 
 	@Override
 	public User loadUserByUsername(String username) {
-		return new UserImpl(this, getAsJson("api/users/username/" + username));
+		return new UserImpl(this, getAsValidatedJson("api/users/username/" + username));
 	}
 
 	@Override
@@ -496,8 +605,9 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public void postUserStatus(String userId, String status) throws NotFoundException {
-		client.post("api/users/" + userId + "/status", tokenHolder,
+		client.postIdempotent("api/users/" + userId + "/status", tokenHolder,
 			Collections.singletonList(new BasicNameValuePair("status", status)));
+		invalidate(loadedUsers, userId);
 	}
 
 	@Override
@@ -513,7 +623,7 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public DataSet loadDataSet(String id) throws NotFoundException {
-		return new DataSetImpl(this, getAsJson("api/dataSets/" + id));
+		return loadEntity(dataSets, id, "api/dataSets/" + id, json -> new DataSetImpl(this, json));
 	}
 
 	@Override
@@ -524,17 +634,114 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 			return;
 		}
 		try {
-			client.postUpload("api/import/" + id, tokenHolder, data.toJson().toString());
+			client.postUpload("api/import/" + id, tokenHolder, tableJson(data));
 		} catch (UnexpectedResponseException e) {
-			if (e.getResponseCode() == 400) {
-				Pattern codePattern = Pattern.compile(".*?'(.*?)'.*");
-				Matcher codeMatcher = codePattern.matcher(e.getResponseContent());
-				if (codeMatcher.matches()) {
-					throw new UnknownServerColumnException(id, codeMatcher.group(1));
+			throw uploadException(id, e);
+		}
+		invalidateDataSet(id);
+	}
+
+	/**
+	 * Writes the given data table as the content of a data upload, generating
+	 * the JSON one row at a time while it is sent.
+	 * 
+	 * @param data the data to upload
+	 * @return a writer generating the same content as {@link DataTable#toJson()}
+	 */
+	static JsonStreamWriter tableJson(DataTable data) {
+		return tableJson(data, data.getRows(), data.getOverwritePolicy());
+	}
+
+	/**
+	 * Writes some rows of a data table as the content of a data upload,
+	 * generating the JSON one row at a time while it is sent. The template ID
+	 * and split column have no getters and are read from the table's fields;
+	 * if the fields can't be read, a warning is logged when the class is
+	 * loaded and uploads are built in memory through {@link DataTable#toJson()}.
+	 * 
+	 * @param table the table defining columns, template and split column
+	 * @param rows the rows to upload
+	 * @param policy the overwrite policy to send with the rows
+	 * @return a writer generating the content of the upload
+	 */
+	static JsonStreamWriter tableJson(DataTable table, Collection<DataRow> rows, OverwritePolicy policy) {
+		return generator -> {
+			if (TABLE_TEMPLATE_ID == null || TABLE_SPLIT_BY_COLUMN == null) {
+				// unknown version of the data table, let it build the content in memory
+				ObjectNode json = (ObjectNode) table.toJson();
+				ArrayNode data = json.putArray("data");
+				for (DataRow row : rows) {
+					data.add(row.toJson());
 				}
+				json.set("overwrite", policy.toJson());
+				generator.writeTree(json);
+				return;
+			}
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("columns");
+			for (DataColumn column : table.getColumns()) {
+				generator.writeTree(column.toJson());
+			}
+			generator.writeEndArray();
+			generator.writeArrayFieldStart("data");
+			for (DataRow row : rows) {
+				generator.writeTree(row.toJson());
+			}
+			generator.writeEndArray();
+			generator.writeFieldName("overwrite");
+			generator.writeTree(policy.toJson());
+			writeTableField(generator, table, "templateId", TABLE_TEMPLATE_ID);
+			writeTableField(generator, table, "splitByColumn", TABLE_SPLIT_BY_COLUMN);
+			generator.writeEndObject();
+		};
+	}
+
+	private static void writeTableField(JsonGenerator generator, DataTable data, String name, Field field) throws IOException {
+		try {
+			Integer value = (Integer) field.get(data);
+			if (value != null) {
+				generator.writeNumberField(name, value);
+			}
+		} catch (IllegalAccessException e) {
+			throw new InternalConfigurationException("Failed to read data table field " + name, e);
+		}
+	}
+
+	/**
+	 * Returns a field of {@link DataTable} that has no getter, logging a
+	 * warning if it can't be accessed.
+	 * 
+	 * @return the accessible field, or <tt>null</tt> if there is no such field
+	 */
+	private static Field tableField(String name) {
+		try {
+			Field field = DataTable.class.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (NoSuchFieldException | RuntimeException e) {
+			System.getLogger(BellaDatiServiceImpl.class.getName()).log(System.Logger.Level.WARNING,
+				"Cannot read DataTable." + name + ", data uploads will be built in memory instead of streamed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Translates an error response to a data upload into the exception to
+	 * throw to the caller.
+	 * 
+	 * @param id ID of the data set the data was uploaded to
+	 * @param e the exception thrown by the client
+	 * @return the exception to throw
+	 */
+	static RuntimeException uploadException(String id, UnexpectedResponseException e) {
+		if (e.getResponseCode() == 400) {
+			Pattern codePattern = Pattern.compile(".*?'(.*?)'.*");
+			Matcher codeMatcher = codePattern.matcher(e.getResponseContent());
+			if (codeMatcher.matches()) {
+				return new UnknownServerColumnException(id, codeMatcher.group(1));
 			}
-			throw new UnexpectedResponseException(e.getResponseCode(), e.getResponseContent(), e);
 		}
+		return new UnexpectedResponseException(e.getResponseCode(), e.getResponseContent(), e);
 	}
 
 	@Override
@@ -573,25 +780,29 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 			dataSetList.setAccessible(true);
 			dataSetList.set(this, new DataSetList());
 
-			Field commentLists = getClass().getDeclaredField("commentLists");
-			commentLists.setAccessible(true);
-			commentLists.set(this, Collections.synchronizedMap(new HashMap<String, PaginatedList<Comment>>()));
-
-			Field reportAttributeValues = getClass().getDeclaredField("dataSetAttributeValues");
-			reportAttributeValues.setAccessible(true);
-			reportAttributeValues.set(this, new HashMap<String, Map<String, CachedListImpl<AttributeValue>>>());
-
-			Field dataSourceList = getClass().getDeclaredField("dataSourceList");
-			dataSourceList.setAccessible(true);
-			dataSourceList.set(this, new HashMap<String, CachedListImpl<DataSource>>());
-
 			Field importFormList = getClass().getDeclaredField("importFormList");
 			importFormList.setAccessible(true);
 			importFormList.set(this, new ImportFormList());
 
-			Field dataSourceImportList = getClass().getDeclaredField("dataSourceImportList");
-			dataSourceImportList.setAccessible(true);
-			dataSourceImportList.set(this, new HashMap<String, CachedListImpl<DataSourceImport>>());
+			for (String name : CACHES) {
+				Field cache = getClass().getDeclaredField(name);
+				cache.setAccessible(true);
+				cache.set(this, new BoundedCache<Object>(name));
+			}
+
+			for (String name : ENTITY_CACHES) {
+				Field cache = getClass().getDeclaredField(name);
+				cache.setAccessible(true);
+				cache.set(this, EntityCache.create(name));
+			}
+
+			Field validatedJson = getClass().getDeclaredField("validatedJson");
+			validatedJson.setAccessible(true);
+			validatedJson.set(this, newValidatedJsonCache());
+
+			Field coalescer = getClass().getDeclaredField("coalescer");
+			coalescer.setAccessible(true);
+			coalescer.set(this, new RequestCoalescer());
 		} catch (NoSuchFieldException e) {
 			throw new InternalConfigurationException("Failed to set service fields", e);
 		} catch (IllegalAccessException e) {
@@ -727,13 +938,117 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	/**
 	 * Helper method to invoke GET operation on the specified relative URI and to read result as {@link JsonNode}.
+	 * Concurrent calls for the same URI share one request and its result.
 	 * 
 	 * @param relativeUri the relative URI to load JSON from
 	 * @return the JsonNode parsed from the response
 	 * @throws InvalidJsonException if response cannot be parsed into JSON
 	 */
 	public JsonNode getAsJson(String relativeUri) throws InvalidJsonException {
-		return client.getAsJson(relativeUri, tokenHolder);
+		return coalescer.execute(flightKey(relativeUri), () -> client.getAsJson(relativeUri, tokenHolder));
+	}
+
+	/** Identifies identical requests, made for the same URI with the same token. */
+	private String flightKey(String relativeUri) {
+		return tokenHolder.getToken() + " " + relativeUri;
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI and to read result incrementally while it is
+	 * received.
+	 * 
+	 * @param relativeUri the relative URI to load JSON from
+	 * @param handler reads the JSON response
+	 * @return the result returned by the handler
+	 * @throws InvalidJsonException if response cannot be parsed into JSON
+	 */
+	public <T> T getAsJson(String relativeUri, JsonStreamHandler<T> handler) throws InvalidJsonException {
+		return client.getAsJson(relativeUri, tokenHolder, handler);
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI, revalidating a result previously built from
+	 * it. If the server confirms that nothing has changed, the previous result is returned without parsing the response.
+	 * 
+	 * @param relativeUri the relative URI to load JSON from
+	 * @param handler reads the JSON response
+	 * @param previous result previously built from the same URI, may be <tt>null</tt>
+	 * @return the result built from the current response, or <tt>previous</tt> if it is still valid
+	 * @throws InvalidJsonException if response cannot be parsed into JSON
+	 */
+	public <T> ValidatedContent<T> getAsJson(String relativeUri, JsonStreamHandler<T> handler, ValidatedContent<T> previous)
+		throws InvalidJsonException {
+		return client.getAsJson(relativeUri, tokenHolder, handler, previous);
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI and to read result as {@link JsonNode}. The
+	 * JSON is kept and revalidated when it is loaded again, so that unchanged entities aren't downloaded and parsed
+	 * again. Up to <tt>bdRevalidationCacheSize</tt> (default 100) responses are kept. Concurrent calls for the same URI
+	 * share one request and its result.
+	 * 
+	 * @param relativeUri the relative URI to load JSON from
+	 * @return the JsonNode parsed from the response
+	 * @throws InvalidJsonException if response cannot be parsed into JSON
+	 */
+	public JsonNode getAsValidatedJson(String relativeUri) throws InvalidJsonException {
+		return coalescer.execute(flightKey(relativeUri), () -> loadValidatedJson(relativeUri));
+	}
+
+	private JsonNode loadValidatedJson(String relativeUri) {
+		ValidatedContent<JsonNode> previous = validatedJson.get(relativeUri);
+		CacheLookupEvent.record("validatedJson", relativeUri, previous != null);
+		ValidatedContent<JsonNode> current = client.getAsJson(relativeUri, tokenHolder, previous);
+		if (current.isRevalidatable()) {
+			validatedJson.put(relativeUri, current);
+		} else if (previous != null) {
+			validatedJson.remove(relativeUri);
+		}
+		return current.getValue();
+	}
+
+	private static Map<String, ValidatedContent<JsonNode>> newValidatedJsonCache() {
+		final int maxEntries = BellaDatiClient.readFromProperty("bdRevalidationCacheSize", 100);
+		return Collections.synchronizedMap(new LinkedHashMap<String, ValidatedContent<JsonNode>>(16, 0.75f, true) {
+			private static final long serialVersionUID = -5470453418498702434L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ValidatedContent<JsonNode>> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI without blocking the calling thread.
+	 * 
+	 * @param relativeUri the relative URI to load from
+	 * @return a future completed with the response content
+	 */
+	public CompletableFuture<byte[]> getAsync(String relativeUri) {
+		return client.getAsync(relativeUri, tokenHolder);
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI without blocking the calling thread and to
+	 * read result as {@link JsonNode}. Concurrent calls for the same URI share one request and its result.
+	 * 
+	 * @param relativeUri the relative URI to load JSON from
+	 * @return a future completed with the JsonNode parsed from the response
+	 */
+	public CompletableFuture<JsonNode> getAsJsonAsync(String relativeUri) {
+		return coalescer.executeAsync(flightKey(relativeUri), () -> client.getAsJsonAsync(relativeUri, tokenHolder));
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI without blocking the calling thread and to
+	 * read result as {@link BufferedImage}.
+	 * 
+	 * @param relativeUri the relative URI to load image from
+	 * @return a future completed with the BufferedImage parsed from the response
+	 */
+	public CompletableFuture<BufferedImage> getAsImageAsync(String relativeUri) {
+		return client.getAsImageAsync(relativeUri, tokenHolder);
 	}
 
 	/**
@@ -757,6 +1072,32 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 		return client.getAsStream(relativeUri, tokenHolder);
 	}
 
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI and to stream the result directly from the
+	 * connection. The caller must close the returned stream.
+	 * 
+	 * @param relativeUri the relative URI to load stream from
+	 * @return the InputStream reading the response
+	 */
+	public InputStream openStream(String relativeUri) {
+		return client.openStream(relativeUri, tokenHolder);
+	}
+
+	/**
+	 * Helper method to invoke GET operation on the specified relative URI and to write the result directly into a file,
+	 * without buffering it in memory.
+	 * 
+	 * @param relativeUri the relative URI to download from
+	 * @param target the file to write to, created if it doesn't exist
+	 * @param resume <tt>true</tt> to continue a partial download in the file using a byte range request if the server
+	 *            confirms the content hasn't changed, <tt>false</tt> to replace its content
+	 * @return the size of the downloaded file
+	 * @throws IOException if the file cannot be written
+	 */
+	public long download(String relativeUri, Path target, boolean resume) throws IOException {
+		return client.download(relativeUri, tokenHolder, target, resume);
+	}
+
 	@Override
 	public CachedList<Form> getImportForms() {
 		return importFormList;
@@ -764,7 +1105,7 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public Form loadImportForm(String id) throws NotFoundException {
-		return new FormImpl(getAsJson("api/import/forms/" + id));
+		return new FormImpl(getAsValidatedJson("api/import/forms/" + id));
 	}
 
 	@Override
@@ -802,17 +1143,78 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public Object loadFile(String absolutePath) throws URISyntaxException {
-		URIBuilder builder = new URIBuilder();
-		builder.setPath("api/utils/file/" + absolutePath);
-		return getAsStream(builder.build().toString());
+		return getAsStream(fileUri(absolutePath));
+	}
+
+	/**
+	 * Opens the file at the given path on the server, streaming it directly from the connection instead of loading it
+	 * into memory. The returned stream holds a connection until it is closed, so it must always be closed.
+	 * 
+	 * @param absolutePath absolute path of the file on the server
+	 * @return the stream reading the file
+	 * @throws URISyntaxException if the path is not valid in a URI
+	 */
+	public InputStream openFile(String absolutePath) throws URISyntaxException {
+		return openStream(fileUri(absolutePath));
+	}
+
+	/**
+	 * Downloads the file at the given path on the server directly into a local file.
+	 * 
+	 * @param absolutePath absolute path of the file on the server
+	 * @param target the local file to write to, created if it doesn't exist
+	 * @param resume <tt>true</tt> to continue a partial download in the local file, <tt>false</tt> to replace its content
+	 * @return the size of the downloaded file
+	 * @throws URISyntaxException if the path is not valid in a URI
+	 * @throws IOException if the local file cannot be written
+	 */
+	public long loadFile(String absolutePath, Path target, boolean resume) throws URISyntaxException, IOException {
+		return download(fileUri(absolutePath), target, resume);
 	}
 
 	@Override
 	public Object mergePdfFiles(List<String> paths) throws URISyntaxException {
+		return getAsStream(mergePdfFilesUri(paths));
+	}
+
+	/**
+	 * Merges the PDF files at the given paths on the server, streaming the result directly from the connection instead
+	 * of loading it into memory. The returned stream holds a connection until it is closed, so it must always be closed.
+	 * 
+	 * @param paths absolute paths of the PDF files on the server
+	 * @return the stream reading the merged PDF
+	 * @throws URISyntaxException if a path is not valid in a URI
+	 */
+	public InputStream openMergedPdfFiles(List<String> paths) throws URISyntaxException {
+		return openStream(mergePdfFilesUri(paths));
+	}
+
+	/**
+	 * Merges the PDF files at the given paths on the server and downloads the result directly into a local file. The
+	 * merged file is generated again for each request, so a partial download can't be resumed and the local file's
+	 * content is replaced.
+	 * 
+	 * @param paths absolute paths of the PDF files on the server
+	 * @param target the local file to write to, created if it doesn't exist
+	 * @return the size of the downloaded file
+	 * @throws URISyntaxException if a path is not valid in a URI
+	 * @throws IOException if the local file cannot be written
+	 */
+	public long mergePdfFiles(List<String> paths, Path target) throws URISyntaxException, IOException {
+		return download(mergePdfFilesUri(paths), target, false);
+	}
+
+	private static String fileUri(String absolutePath) throws URISyntaxException {
+		URIBuilder builder = new URIBuilder();
+		builder.setPath("api/utils/file/" + absolutePath);
+		return builder.build().toString();
+	}
+
+	private static String mergePdfFilesUri(List<String> paths) throws URISyntaxException {
 		String joinedPaths = StringUtils.join(paths, ";");
 		URIBuilder builder = new URIBuilder();
 		builder.setPath("api/utils/mergePdfFiles/" + joinedPaths);
-		return getAsStream(builder.build().toString());
+		return builder.build().toString();
 	}
 
 	@Override
@@ -840,41 +1242,13 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public PaginatedIdList<DataRow> getDataSetData(String dataSetId) {
-		PaginatedIdList<DataRow> existing = dataSetData.get(dataSetId);
-		if (existing != null) {
-			return existing;
-		} else {
-			synchronized (dataSetData) {
-				existing = dataSetData.get(dataSetId);
-				if (existing != null) {
-					return existing;
-				} else {
-					DataRowList newList = new DataRowList(dataSetId);
-					dataSetData.put(dataSetId, newList);
-					return newList;
-				}
-			}
-		}
+		return dataSetData.get(dataSetId, key -> new DataRowList(dataSetId));
 	}
 
 	@Override
 	public PaginatedIdList<DataRow> getDataSetDataFiltered(String dataSetId, Filter<?>... filters) throws NotFoundException {
 		String id = dataSetId + Arrays.stream(filters).map(Filter::hashCode).map(i -> i.toString()).collect(Collectors.joining("-","-",""));
-		PaginatedIdList<DataRow> existing = dataSetData.get(id);
-		if (existing != null) {
-			return existing;
-		} else {
-			synchronized (dataSetData) {
-				existing = dataSetData.get(id);
-				if (existing != null) {
-					return existing;
-				} else {
-					DataRowList newList = new DataRowList(dataSetId, buildUri(dataSetId, filters));
-					dataSetData.put(id, newList);
-					return newList;
-				}
-			}
-		}
+		return dataSetData.get(id, key -> new DataRowList(dataSetId, buildUri(dataSetId, filters)));
 	}
 
 	private String buildUri(String dataSetId, Filter<?>... filters) {
@@ -889,34 +1263,58 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public void patchDataSetData(String dataSetId, Collection<DataRow> rows, Collection<String> matchAttributes) throws NotFoundException {
-		ObjectMapper objectMapper = new ObjectMapper();
-		ObjectNode json = objectMapper.createObjectNode();
-
-		ArrayNode rowsArray = objectMapper.createArrayNode();
-		rows.forEach(row -> rowsArray.add(row.toJsonObject()));
-
-		ArrayNode attrArray = objectMapper.createArrayNode();
-		matchAttributes.forEach(a -> attrArray.add(a));
-
-		json.set("dataRows", rowsArray);
-		json.set("matchAttributes", attrArray);
-		client.patch("api/dataSets/" + dataSetId + "/data", tokenHolder, json);
+		client.patchIdempotent("api/dataSets/" + dataSetId + "/data", tokenHolder, patchJson(rows, matchAttributes));
+		invalidateDataSet(dataSetId);
+	}
+
+	/** Writes the request content to patch the given rows. */
+	static JsonStreamWriter patchJson(Collection<DataRow> rows, Collection<String> matchAttributes) {
+		return generator -> {
+			generator.writeStartObject();
+			generator.writeFieldName("dataRows");
+			rowsJson(rows).write(generator);
+			generator.writeArrayFieldStart("matchAttributes");
+			for (String attribute : matchAttributes) {
+				generator.writeString(attribute);
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+		};
 	}
 
 	@Override
 	public void postDataSetData(String dataSetId, DataRow row) throws NotFoundException {
 		client.post("api/dataSets/" + dataSetId + "/data", tokenHolder,
 			Collections.singletonList(new BasicNameValuePair("dataRow", row.toJsonObject().toString())));
+		invalidateDataSet(dataSetId);
 	}
 
 	@Override
 	public void postDataSetData(String dataSetId, Collection<DataRow> rows) throws NotFoundException {
-		ObjectMapper objectMapper = new ObjectMapper();
-		ArrayNode arrayNode = objectMapper.createArrayNode();
-		rows.forEach(row -> arrayNode.add(row.toJsonObject()));
+		client.postForm("api/dataSets/" + dataSetId + "/data", tokenHolder, "dataRow", rowsJson(rows));
+		invalidateDataSet(dataSetId);
+	}
 
-		client.post("api/dataSets/" + dataSetId + "/data", tokenHolder,
-				Collections.singletonList(new BasicNameValuePair("dataRow", arrayNode.toString())));
+	/**
+	 * Opens a writer posting rows into the data set with the given ID in
+	 * batches. The writer must be closed to post the last rows.
+	 * 
+	 * @param dataSetId ID of the data set
+	 * @return a writer accepting rows from any thread
+	 */
+	public DataSetWriter openDataSetWriter(String dataSetId) {
+		return new DataSetWriter(this, dataSetId);
+	}
+
+	/** Writes a JSON array containing the given rows, one row at a time. */
+	static JsonStreamWriter rowsJson(Collection<DataRow> rows) {
+		return generator -> {
+			generator.writeStartArray();
+			for (DataRow row : rows) {
+				generator.writeTree(row.toJsonObject());
+			}
+			generator.writeEndArray();
+		};
 	}
 
 	@Override
@@ -926,35 +1324,38 @@ public class BellaDatiServiceImpl implements BellaDatiService {
 
 	@Override
 	public void replaceDataSetData(String dataSetId, Collection<DataRow> rows, Filter<?>... filters) throws NotFoundException {
-		ObjectMapper objectMapper = new ObjectMapper();
-		ObjectNode json = objectMapper.createObjectNode();
-
-		ArrayNode rowsArray = objectMapper.createArrayNode();
-		rows.forEach(row -> rowsArray.add(row.toJsonObject()));
-
-		ObjectNode filterNode = new ObjectMapper().createObjectNode();
-		for (Filter<?> filter : filters) {
-			filterNode.setAll(filter.toJson());
-		}
-		ObjectNode drilldownNode = new ObjectMapper().createObjectNode();
-		drilldownNode.set("drilldown", filterNode);
-
-		json.set("dataRows", rowsArray);
-		json.set("filter", drilldownNode);
+		client.postIdempotent("api/dataSets/" + dataSetId + "/replace", tokenHolder, replaceJson(rows, filters));
+		invalidateDataSet(dataSetId);
+	}
 
-		client.post("api/dataSets/" + dataSetId + "/replace", tokenHolder, json);
+	/** Writes the request content to replace the rows matching the filters. */
+	static JsonStreamWriter replaceJson(Collection<DataRow> rows, Filter<?>... filters) {
+		ObjectNode filter = drilldownJson(filters);
+		return generator -> {
+			generator.writeStartObject();
+			generator.writeFieldName("dataRows");
+			rowsJson(rows).write(generator);
+			generator.writeFieldName("filter");
+			generator.writeTree(filter);
+			generator.writeEndObject();
+		};
 	}
 
 	@Override
 	public void deleteDataSetData(String dataSetId, Filter<?>... filters) throws NotFoundException {
-		ObjectNode filterNode = new ObjectMapper().createObjectNode();
+		client.delete("api/dataSets/" + dataSetId + "/data/", tokenHolder, null, drilldownJson(filters));
+		invalidateDataSet(dataSetId);
+	}
+
+	/** Builds a drilldown filter node from the given filters. */
+	private static ObjectNode drilldownJson(Filter<?>... filters) {
+		ObjectNode filterNode = JsonSupport.createObjectNode();
 		for (Filter<?> filter : filters) {
 			filterNode.setAll(filter.toJson());
 		}
-		ObjectNode drilldownNode = new ObjectMapper().createObjectNode();
+		ObjectNode drilldownNode = JsonSupport.createObjectNode();
 		drilldownNode.set("drilldown", filterNode);
-
-		client.delete("api/dataSets/" + dataSetId + "/data/", tokenHolder, null, drilldownNode);
+		return drilldownNode;
 	}
 
 	/** Paginated list class for data rows. */
@@ -0,0 +1,392 @@
+package com.belladati.sdk.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * A cache of limited size whose entries expire some time after they were
+ * added. Entries are kept in a segmented LRU: new entries start in a
+ * probation segment and move to a protected segment, holding up to 80% of the
+ * entries, once they are used again. When the cache is full, the least
+ * recently used entry on probation is evicted first, so that a burst of
+ * entries used only once, such as lists for many different filters, doesn't
+ * evict the entries in regular use.
+ * <p>
+ * Lookups don't lock: entries are held in a {@link ConcurrentHashMap} and
+ * created through its atomic <tt>compute</tt>, so concurrent lookups of the
+ * same key share one entry. Uses and additions are recorded in lock-free
+ * buffers and applied to the eviction order by whichever thread acquires the
+ * eviction lock without waiting. Uses are overwritten when their ring is full,
+ * which only makes the eviction order less precise. The cache may briefly
+ * exceed its size while another thread holds the eviction lock.
+ * <p>
+ * The size is read from <tt>bdServiceCacheSize</tt> with the cache name
+ * appended, e.g. <tt>bdServiceCacheSizeDataSetData</tt>, or from
+ * <tt>bdServiceCacheSize</tt> (default 1000). The time to live in
+ * milliseconds is read from <tt>bdServiceCacheTtl</tt> in the same way
+ * (default 30 minutes, <tt>0</tt> to keep entries until they are evicted).
+ * The <tt>bdCache</tt> properties configure the HTTP response cache instead.
+ *
+ *
+ */
+public class BoundedCache<V> {
+
+	/** most uses waiting to be applied to the eviction order, a power of two */
+	private static final int READ_BUFFER_SIZE = 128;
+	/** number of waiting uses after which they are applied */
+	private static final int READ_DRAIN_THRESHOLD = 32;
+
+	private final String name;
+	private final int maxSize;
+	private final int maxProtected;
+	private final long ttlNanos;
+
+	private final ConcurrentHashMap<String, Node<V>> data = new ConcurrentHashMap<String, Node<V>>();
+
+	/** guards the eviction order, only ever acquired without waiting by lookups */
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	/** entries used once, in access order */
+	private final LinkedHashMap<String, Node<V>> probation = new LinkedHashMap<String, Node<V>>(16, 0.75f, true);
+	/** entries used more than once, in access order */
+	private final LinkedHashMap<String, Node<V>> protectedEntries = new LinkedHashMap<String, Node<V>>(16, 0.75f, true);
+
+	/** ring of entries used since the eviction order was last updated */
+	private final AtomicReferenceArray<Node<V>> readBuffer = new AtomicReferenceArray<Node<V>>(READ_BUFFER_SIZE);
+	/** number of uses recorded in the ring */
+	private final AtomicLong readsRecorded = new AtomicLong();
+	/** number of uses applied to the eviction order, written while holding the eviction lock */
+	private volatile long readsDrained;
+	/** entries added or removed since the eviction order was last updated */
+	private final Queue<Node<V>> writeBuffer = new ConcurrentLinkedQueue<Node<V>>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	/**
+	 * Creates a cache configured from the system properties.
+	 *
+	 * @param name name of the cache, used in statistics and property names
+	 */
+	BoundedCache(String name) {
+		this(name, readSetting("bdServiceCacheSize", name, 1000), readSetting("bdServiceCacheTtl", name, 30 * 60 * 1000));
+	}
+
+	/**
+	 * Creates a cache with the given limits.
+	 *
+	 * @param name name of the cache, used in statistics
+	 * @param maxSize the largest number of entries to keep
+	 * @param ttlMillis time after which entries expire, <tt>0</tt> to keep
+	 *            them until they are evicted
+	 */
+	BoundedCache(String name, int maxSize, long ttlMillis) {
+		this.name = name;
+		this.maxSize = Math.max(1, maxSize);
+		this.maxProtected = Math.max(1, this.maxSize * 4 / 5);
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+	}
+
+	/** Reads a setting for the named cache, falling back to the setting for all caches. */
+	static int readSetting(String property, String name, int defaultValue) {
+		String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		return readFromProperty(property + suffix, readFromProperty(property, defaultValue));
+	}
+
+	/**
+	 * Returns the entry for the given key, creating it if there is none. If
+	 * several threads look up a missing key at the same time, only one of
+	 * them creates the entry and all receive it. Creating an entry blocks
+	 * other threads creating an entry for the same key, so it must be cheap
+	 * and must not access the cache.
+	 *
+	 * @param key the key to look up
+	 * @param loader creates the entry if the key isn't cached
+	 * @return the cached or created entry
+	 */
+	public V get(String key, Function<String, V> loader) {
+		long now = System.nanoTime();
+		Node<V> node = data.get(key);
+		if (node == null || isExpired(node, now)) {
+			boolean[] created = new boolean[1];
+			node = data.compute(key, (k, existing) -> {
+				if (existing != null && !isExpired(existing, now)) {
+					return existing;
+				} else if (existing != null) {
+					expirations.increment();
+				}
+				created[0] = true;
+				return new Node<V>(k, loader.apply(k), now);
+			});
+			if (created[0]) {
+				CacheLookupEvent.record(name, key, false);
+				misses.increment();
+				afterWrite(node);
+				return node.value;
+			}
+		}
+		CacheLookupEvent.record(name, key, true);
+		hits.increment();
+		afterRead(node);
+		return node.value;
+	}
+
+	/**
+	 * Returns the entry for the given key, if it is cached.
+	 *
+	 * @param key the key to look up
+	 * @return the cached entry, or <tt>null</tt> if there is none
+	 */
+	public V getIfPresent(String key) {
+		Node<V> node = data.get(key);
+		if (node == null || isExpired(node, System.nanoTime())) {
+			return null;
+		}
+		afterRead(node);
+		return node.value;
+	}
+
+	/**
+	 * Adds or replaces the entry for the given key.
+	 *
+	 * @param key the key to store the entry under
+	 * @param value the entry to store
+	 */
+	public void put(String key, V value) {
+		Node<V> node = new Node<V>(key, value, System.nanoTime());
+		data.put(key, node);
+		afterWrite(node);
+	}
+
+	private boolean isExpired(Node<V> node, long now) {
+		return ttlNanos > 0 && now - node.created >= ttlNanos;
+	}
+
+	private void afterRead(Node<V> node) {
+		long recorded = readsRecorded.getAndIncrement();
+		// overwrites uses not applied yet if the ring is full
+		readBuffer.lazySet((int) (recorded & (READ_BUFFER_SIZE - 1)), node);
+		if (recorded - readsDrained >= READ_DRAIN_THRESHOLD) {
+			tryDrain();
+		}
+	}
+
+	private void afterWrite(Node<V> node) {
+		writeBuffer.offer(node);
+		tryDrain();
+	}
+
+	/** Updates the eviction order, unless another thread already does. */
+	private void tryDrain() {
+		if (evictionLock.tryLock()) {
+			try {
+				drain();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	/** Applies buffered changes to the eviction order and evicts entries. */
+	private void drain() {
+		Node<V> node;
+		while ((node = writeBuffer.poll()) != null) {
+			if (data.get(node.key) == node) {
+				// added, possibly replacing an expired entry
+				protectedEntries.remove(node.key);
+				probation.remove(node.key);
+				probation.put(node.key, node);
+			} else {
+				// removed or replaced since
+				probation.remove(node.key, node);
+				protectedEntries.remove(node.key, node);
+			}
+		}
+		long recorded = readsRecorded.get();
+		for (long i = Math.max(readsDrained, recorded - READ_BUFFER_SIZE); i < recorded; i++) {
+			node = readBuffer.getAndSet((int) (i & (READ_BUFFER_SIZE - 1)), null);
+			if (node != null && protectedEntries.get(node.key) != node && probation.get(node.key) == node) {
+				probation.remove(node.key);
+				protectedEntries.put(node.key, node);
+				demote();
+			}
+		}
+		readsDrained = recorded;
+		evict();
+	}
+
+	/** Moves the least recently used protected entries back on probation. */
+	private void demote() {
+		while (protectedEntries.size() > maxProtected) {
+			Iterator<Map.Entry<String, Node<V>>> eldest = protectedEntries.entrySet().iterator();
+			Map.Entry<String, Node<V>> demoted = eldest.next();
+			eldest.remove();
+			probation.put(demoted.getKey(), demoted.getValue());
+		}
+	}
+
+	/** Evicts the least recently used entries until the cache fits its size. */
+	private void evict() {
+		while (data.size() > maxSize && !(probation.isEmpty() && protectedEntries.isEmpty())) {
+			LinkedHashMap<String, Node<V>> segment = probation.isEmpty() ? protectedEntries : probation;
+			Iterator<Node<V>> eldest = segment.values().iterator();
+			Node<V> victim = eldest.next();
+			eldest.remove();
+			if (data.remove(victim.key, victim)) {
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry for the given key.
+	 *
+	 * @param key the key to remove
+	 */
+	public void invalidate(String key) {
+		Node<V> removed = data.remove(key);
+		if (removed != null) {
+			afterWrite(removed);
+		}
+	}
+
+	/**
+	 * Removes all entries whose key matches the given condition.
+	 *
+	 * @param condition selects the keys to remove
+	 */
+	public void invalidateIf(Predicate<String> condition) {
+		for (Node<V> node : data.values()) {
+			if (condition.test(node.key) && data.remove(node.key, node)) {
+				writeBuffer.offer(node);
+			}
+		}
+		tryDrain();
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void invalidateAll() {
+		evictionLock.lock();
+		try {
+			data.clear();
+			probation.clear();
+			protectedEntries.clear();
+			writeBuffer.clear();
+			for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+				readBuffer.set(i, null);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the name of this cache.
+	 *
+	 * @return the cache name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of entries currently cached, including expired
+	 * entries that haven't been removed yet.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return data.size();
+	}
+	/**
+	 * Returns the largest number of entries this cache keeps.
+	 *
+	 * @return the maximum size
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of lookups that found an entry.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that had to create an entry.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the fraction of lookups that found an entry.
+	 *
+	 * @return the hit rate between 0 and 1, 0 if there were no lookups
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Returns the number of entries removed to keep the cache within its
+	 * size.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of entries removed because they expired.
+	 *
+	 * @return the number of expirations
+	 */
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Cache(" + name + ", size: " + size() + "/" + maxSize + ", hits: " + getHits() + ", misses: " + getMisses()
+			+ ", evictions: " + getEvictions() + ", expirations: " + getExpirations() + ")";
+	}
+
+	/** A cached value with its key and the time it was added. */
+	private static class Node<V> {
+		private final String key;
+		private final V value;
+		private final long created;
+
+		private Node(String key, V value, long created) {
+			this.key = key;
+			this.value = value;
+			this.created = created;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.belladati.sdk.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * A response whose body has been received completely.
+ *
+ *
+ */
+class BufferedTransportResponse implements TransportResponse {
+
+	private final int statusCode;
+	private final Map<String, String> headers;
+	private final byte[] body;
+
+	/**
+	 * Creates a new response.
+	 *
+	 * @param statusCode the HTTP status code
+	 * @param headers the first value of each header, keyed by case-insensitive
+	 *            name
+	 * @param body the response body, may be <tt>null</tt>
+	 */
+	BufferedTransportResponse(int statusCode, Map<String, String> headers, byte[] body) {
+		this.statusCode = statusCode;
+		this.headers = headers;
+		this.body = body != null ? body : new byte[0];
+	}
+
+	@Override
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	@Override
+	public InputStream getBody() {
+		return new ByteArrayInputStream(body);
+	}
+
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,253 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.dataset.data.OverwritePolicy;
+import com.belladati.sdk.exception.ConnectionException;
+import com.belladati.sdk.exception.server.InternalErrorException;
+import com.belladati.sdk.exception.server.UnexpectedResponseException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Uploads data into a data set in chunks sent in parallel. Rows are split
+ * into chunks of at most <tt>bdImportChunkRows</tt> rows (default 10000) and
+ * about <tt>bdImportChunkBytes</tt> bytes of JSON (default 4 MB). Up to
+ * <tt>bdImportMaxInFlight</tt> chunks (default 4) are uploaded at the same
+ * time; further rows are only read once a chunk has completed.
+ * <p>
+ * A chunk failing with a connection error, an internal server error or a
+ * status code indicating the server is overloaded is sent again, up to
+ * <tt>bdImportChunkRetries</tt> times (default 2), without resending the
+ * other chunks. Since the server may have imported a chunk before the
+ * connection failed, a retried chunk can be imported twice. Once a chunk has
+ * failed for good, no further chunks are started.
+ * <p>
+ * The overwrite policy of the table is applied to the whole import: a
+ * policy deleting all data (or all data within a date range) is sent with
+ * the first chunk only, which is uploaded before all others. A policy
+ * deleting data by attribute members would let each chunk delete the rows
+ * of the others, so such tables are uploaded in a single request.
+ *
+ *
+ */
+public class BulkImport {
+
+	private static final ThreadFactory THREADS = Thread.ofVirtual().name("belladati-import-", 0).factory();
+
+	private final BellaDatiServiceImpl service;
+	private final String dataSetId;
+
+	private int chunkRows = readFromProperty("bdImportChunkRows", 10000);
+	private int chunkBytes = readFromProperty("bdImportChunkBytes", 4 * 1024 * 1024);
+	private int maxInFlight = readFromProperty("bdImportMaxInFlight", 4);
+	private int maxRetries = readFromProperty("bdImportChunkRetries", 2);
+
+	BulkImport(BellaDatiServiceImpl service, String dataSetId) {
+		this.service = service;
+		this.dataSetId = dataSetId;
+	}
+
+	/**
+	 * Returns the ID of the data set the data is uploaded into.
+	 *
+	 * @return the data set ID
+	 */
+	public String getDataSetId() {
+		return dataSetId;
+	}
+
+	/**
+	 * Sets the largest number of rows sent in one chunk.
+	 *
+	 * @param chunkRows the number of rows per chunk, at least 1
+	 * @return this import
+	 */
+	public BulkImport setChunkRows(int chunkRows) {
+		this.chunkRows = atLeast(1, chunkRows, "chunk rows");
+		return this;
+	}
+
+	/**
+	 * Sets the approximate largest size of a chunk's JSON content. A chunk
+	 * always contains at least one row.
+	 *
+	 * @param chunkBytes the size of a chunk in bytes, at least 1
+	 * @return this import
+	 */
+	public BulkImport setChunkBytes(int chunkBytes) {
+		this.chunkBytes = atLeast(1, chunkBytes, "chunk bytes");
+		return this;
+	}
+
+	/**
+	 * Sets the number of chunks uploaded at the same time.
+	 *
+	 * @param maxInFlight the number of concurrent uploads, at least 1
+	 * @return this import
+	 */
+	public BulkImport setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = atLeast(1, maxInFlight, "chunks in flight");
+		return this;
+	}
+
+	/**
+	 * Sets how often a failed chunk is sent again.
+	 *
+	 * @param maxRetries the number of retries per chunk, <tt>0</tt> to never
+	 *            retry
+	 * @return this import
+	 */
+	public BulkImport setMaxRetries(int maxRetries) {
+		this.maxRetries = atLeast(0, maxRetries, "retries");
+		return this;
+	}
+
+	private static int atLeast(int min, int value, String name) {
+		if (value < min) {
+			throw new IllegalArgumentException("Number of " + name + " must be at least " + min + ", was " + value);
+		}
+		return value;
+	}
+
+	/**
+	 * Uploads the rows of the given table.
+	 *
+	 * @param data the data to upload
+	 * @return the outcome of the import
+	 */
+	public BulkImportResult upload(DataTable data) {
+		return upload(data, data.getRows().iterator());
+	}
+
+	/**
+	 * Uploads rows read from the given source. The rows are read as chunks are
+	 * sent, so they don't need to be held in memory all at once.
+	 *
+	 * @param table the table defining columns, overwrite policy, template and
+	 *            split column; its own rows are not uploaded
+	 * @param rows the rows to upload, matching the columns of the table
+	 * @return the outcome of the import
+	 */
+	public BulkImportResult upload(DataTable table, Iterator<DataRow> rows) {
+		OverwritePolicy policy = table.getOverwritePolicy();
+		String mode = policy.toJson().path("policy").asText();
+		boolean singleChunk = "DELETE_BY_MEMBERS".equals(mode);
+		boolean deleteFirst = "DELETE_ALL".equals(mode);
+
+		BulkImportResult result = new BulkImportResult();
+		Semaphore window = new Semaphore(maxInFlight);
+		try (ExecutorService executor = Executors.newThreadPerTaskExecutor(THREADS)) {
+			int index = 0;
+			long firstRow = 0;
+			while (rows.hasNext() && !result.isAborted()) {
+				List<DataRow> batch = nextChunk(rows, singleChunk);
+				BulkImportResult.Chunk chunk = new BulkImportResult.Chunk(index++, firstRow, batch.size());
+				firstRow += batch.size();
+				if (deleteFirst && chunk.getIndex() == 0) {
+					// the old data must be deleted before any other chunk is imported
+					upload(table, batch, policy, chunk, result);
+					continue;
+				}
+				OverwritePolicy chunkPolicy = deleteFirst ? OverwritePolicy.deleteNone() : policy;
+				window.acquire();
+				if (result.isAborted()) {
+					// a chunk failed while waiting for the window
+					break;
+				}
+				executor.execute(() -> {
+					try {
+						upload(table, batch, chunkPolicy, chunk, result);
+					} finally {
+						window.release();
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.abort();
+		}
+		return result.finish();
+	}
+
+	/** Reads the rows of the next chunk from the source. */
+	private List<DataRow> nextChunk(Iterator<DataRow> rows, boolean all) {
+		List<DataRow> chunk = new ArrayList<DataRow>();
+		long size = 0;
+		while (rows.hasNext() && (all || chunk.size() < chunkRows && size < chunkBytes)) {
+			DataRow row = rows.next();
+			chunk.add(row);
+			size += estimateSize(row);
+		}
+		return chunk;
+	}
+
+	/** Estimates the size of a row's JSON, without generating it. */
+	private static long estimateSize(DataRow row) {
+		long size = 2;
+		for (String value : row.getAll()) {
+			size += value == null ? 5 : value.length() + 3;
+		}
+		return size;
+	}
+
+	/** Uploads one chunk, retrying it if it fails. */
+	private void upload(DataTable table, List<DataRow> rows, OverwritePolicy policy, BulkImportResult.Chunk chunk,
+		BulkImportResult result) {
+		RetryPolicy retryPolicy = service.getClient().getRetryPolicy();
+		long start = System.nanoTime();
+		long delay = 0;
+		int attempts = 0;
+		while (true) {
+			attempts++;
+			try {
+				service.getClient().postUpload("api/import/" + dataSetId, service.getTokenHolder(),
+					BellaDatiServiceImpl.tableJson(table, rows, policy));
+				service.invalidateDataSet(dataSetId);
+				result.completed(chunk, attempts, System.nanoTime() - start, null);
+				return;
+			} catch (RuntimeException e) {
+				if (attempts > maxRetries || !isRetryable(e, retryPolicy) || result.isAborted()) {
+					result.completed(chunk, attempts, System.nanoTime() - start, uploadException(e));
+					return;
+				}
+				delay = retryPolicy.nextDelay(delay, null);
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					result.completed(chunk, attempts, System.nanoTime() - start, uploadException(e));
+					return;
+				}
+			}
+		}
+	}
+
+	private static boolean isRetryable(RuntimeException e, RetryPolicy retryPolicy) {
+		if (e instanceof UnexpectedResponseException) {
+			return retryPolicy.isRetryable(((UnexpectedResponseException) e).getResponseCode());
+		}
+		return e instanceof ConnectionException || e instanceof InternalErrorException;
+	}
+
+	private RuntimeException uploadException(RuntimeException e) {
+		if (e instanceof UnexpectedResponseException) {
+			return BellaDatiServiceImpl.uploadException(dataSetId, (UnexpectedResponseException) e);
+		}
+		return e;
+	}
+
+	@Override
+	public String toString() {
+		return "Bulk import(data set: " + dataSetId + ", chunk rows: " + chunkRows + ", chunk bytes: " + chunkBytes
+			+ ", in flight: " + maxInFlight + ", retries: " + maxRetries + ")";
+	}
+}
@@ -0,0 +1,257 @@
+package com.belladati.sdk.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of a {@link BulkImport}: the chunks that were uploaded or failed,
+ * with the throughput of the import and the latency of its chunks.
+ *
+ *
+ */
+public class BulkImportResult {
+
+	private final long start = System.nanoTime();
+	private volatile long end;
+	private volatile boolean aborted;
+
+	private final List<Chunk> chunks = Collections.synchronizedList(new ArrayList<Chunk>());
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder rowsUploaded = new LongAdder();
+	private final LongAdder rowsFailed = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+
+	BulkImportResult() {}
+
+	/**
+	 * Records a chunk that has been uploaded or has failed for good. A failed
+	 * chunk stops the import.
+	 */
+	void completed(Chunk chunk, int attempts, long latencyNanos, RuntimeException failure) {
+		chunk.attempts = attempts;
+		chunk.latencyNanos = latencyNanos;
+		chunk.failure = failure;
+		chunks.add(chunk);
+		retries.add(attempts - 1);
+		if (failure == null) {
+			rowsUploaded.add(chunk.rows);
+			latency.record(latencyNanos);
+		} else {
+			rowsFailed.add(chunk.rows);
+			aborted = true;
+		}
+	}
+
+	/** Stops the import from starting further chunks. */
+	void abort() {
+		aborted = true;
+	}
+
+	boolean isAborted() {
+		return aborted;
+	}
+
+	BulkImportResult finish() {
+		end = System.nanoTime();
+		chunks.sort(Comparator.comparingInt(Chunk::getIndex));
+		return this;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if all rows have been uploaded.
+	 *
+	 * @return <tt>true</tt> if no chunk failed and the import wasn't stopped
+	 */
+	public boolean isComplete() {
+		return !aborted;
+	}
+
+	/**
+	 * Returns the chunks that have been sent, ordered by their position in
+	 * the data. If the import was stopped, rows after the last chunk have not
+	 * been sent.
+	 *
+	 * @return the chunks of the import
+	 */
+	public List<Chunk> getChunks() {
+		synchronized (chunks) {
+			return new ArrayList<Chunk>(chunks);
+		}
+	}
+
+	/**
+	 * Returns the chunks that failed to upload.
+	 *
+	 * @return the failed chunks, ordered by their position in the data
+	 */
+	public List<Chunk> getFailedChunks() {
+		List<Chunk> failed = new ArrayList<Chunk>();
+		for (Chunk chunk : getChunks()) {
+			if (chunk.failure != null) {
+				failed.add(chunk);
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Returns the exception the first failed chunk failed with. Uploads
+	 * rejected because of an unknown column fail with an
+	 * {@link com.belladati.sdk.exception.dataset.data.UnknownServerColumnException}.
+	 *
+	 * @return the exception of the first failed chunk, or <tt>null</tt> if no
+	 *         chunk failed
+	 */
+	public RuntimeException getFailure() {
+		List<Chunk> failed = getFailedChunks();
+		return failed.isEmpty() ? null : failed.get(0).failure;
+	}
+
+	/**
+	 * Returns the number of rows uploaded.
+	 *
+	 * @return the number of rows in successful chunks
+	 */
+	public long getRowsUploaded() {
+		return rowsUploaded.sum();
+	}
+
+	/**
+	 * Returns the number of rows that failed to upload.
+	 *
+	 * @return the number of rows in failed chunks
+	 */
+	public long getRowsFailed() {
+		return rowsFailed.sum();
+	}
+
+	/**
+	 * Returns the number of times a chunk was sent again after failing.
+	 *
+	 * @return the number of retries of all chunks
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * Returns the time the import took.
+	 *
+	 * @return the duration of the import in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis((end == 0 ? System.nanoTime() : end) - start);
+	}
+
+	/**
+	 * Returns the number of rows uploaded per second.
+	 *
+	 * @return the upload throughput in rows per second
+	 */
+	public double getRowsPerSecond() {
+		long nanos = (end == 0 ? System.nanoTime() : end) - start;
+		return nanos <= 0 ? 0 : getRowsUploaded() * 1e9 / nanos;
+	}
+
+	/**
+	 * Returns the latency of the successful chunks, from the first attempt
+	 * until the chunk was imported.
+	 *
+	 * @return the chunk latency distribution
+	 */
+	public LatencyHistogram getChunkLatency() {
+		return latency;
+	}
+
+	@Override
+	public String toString() {
+		return "Bulk import(" + (isComplete() ? "complete" : "incomplete") + ", rows: " + getRowsUploaded() + ", failed rows: "
+			+ getRowsFailed() + ", chunks: " + chunks.size() + ", retries: " + getRetries() + ", "
+			+ String.format("%.1f", getRowsPerSecond()) + " rows/s, chunk latency: " + latency + ")";
+	}
+
+	/**
+	 * A chunk of rows uploaded in one request.
+	 *
+	 *
+	 */
+	public static class Chunk {
+		private final int index;
+		private final long firstRow;
+		private final int rows;
+		private volatile int attempts;
+		private volatile long latencyNanos;
+		private volatile RuntimeException failure;
+
+		Chunk(int index, long firstRow, int rows) {
+			this.index = index;
+			this.firstRow = firstRow;
+			this.rows = rows;
+		}
+
+		/**
+		 * Returns the position of this chunk in the import.
+		 *
+		 * @return the index of the chunk, starting at <tt>0</tt>
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the position of the chunk's first row in the data.
+		 *
+		 * @return the index of the first row, starting at <tt>0</tt>
+		 */
+		public long getFirstRow() {
+			return firstRow;
+		}
+
+		/**
+		 * Returns the number of rows in this chunk.
+		 *
+		 * @return the number of rows
+		 */
+		public int getRows() {
+			return rows;
+		}
+
+		/**
+		 * Returns the number of times this chunk was sent.
+		 *
+		 * @return the number of attempts, including the first
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		/**
+		 * Returns the time from the first attempt until the chunk was uploaded
+		 * or failed for good.
+		 *
+		 * @return the latency of the chunk in milliseconds
+		 */
+		public long getLatencyMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+		}
+
+		/**
+		 * Returns the exception this chunk failed with.
+		 *
+		 * @return the exception, or <tt>null</tt> if the chunk was uploaded
+		 */
+		public RuntimeException getFailure() {
+			return failure;
+		}
+
+		@Override
+		public String toString() {
+			return "Chunk(" + index + ", rows: " + firstRow + "-" + (firstRow + rows - 1) + ", attempts: " + attempts + ", "
+				+ getLatencyMillis() + " ms" + (failure != null ? ", failed: " + failure : "") + ")";
+		}
+	}
+}
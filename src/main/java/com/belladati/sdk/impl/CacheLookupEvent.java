@@ -0,0 +1,47 @@
+package com.belladati.sdk.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a lookup in one of the caches kept by
+ * {@link BellaDatiServiceImpl}, such as cached lists of users or data set rows.
+ * Recorded with a stack trace, to show which operation looked up the cache.
+ *
+ *
+ */
+@Name("com.belladati.sdk.CacheLookup")
+@Label("BellaDati Cache Lookup")
+@Category({ "BellaDati SDK", "Cache" })
+@Description("Lookup in a cache of the BellaDati SDK")
+final class CacheLookupEvent extends jdk.jfr.Event {
+
+	@Label("Cache")
+	String cache;
+
+	@Label("Key")
+	String key;
+
+	@Label("Hit")
+	@Description("Whether the cache already contained the key")
+	boolean hit;
+
+	/**
+	 * Records a lookup if the event is enabled.
+	 *
+	 * @param cache name of the cache
+	 * @param key the key looked up
+	 * @param hit <tt>true</tt> if the cache contained the key
+	 */
+	static void record(String cache, String key, boolean hit) {
+		CacheLookupEvent event = new CacheLookupEvent();
+		if (event.shouldCommit()) {
+			event.cache = cache;
+			event.key = key;
+			event.hit = hit;
+			event.commit();
+		}
+	}
+}
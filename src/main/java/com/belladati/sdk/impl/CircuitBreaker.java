@@ -0,0 +1,195 @@
+package com.belladati.sdk.impl;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Stops sending requests to a server that keeps failing. After
+ * <tt>bdCircuitBreakerThreshold</tt> consecutive failures (default 5, 0
+ * disables the breaker), the breaker opens and requests fail immediately.
+ * After <tt>bdCircuitBreakerOpenTime</tt> milliseconds (default 30000), a
+ * single trial request is let through: if it succeeds the breaker closes,
+ * otherwise it opens again.
+ * <p>
+ * Connection failures and responses with a 5xx status code count as failures.
+ * Requests that time out or are interrupted while waiting on the client, e.g.
+ * for a limiter or a pooled connection, don't count, since they say nothing
+ * about the server. All clients connecting to the same base URL share one
+ * breaker.
+ *
+ *
+ */
+public class CircuitBreaker {
+
+	/** State of a circuit breaker. */
+	public enum State {
+		/** requests are sent normally */
+		CLOSED,
+		/** requests fail without being sent */
+		OPEN,
+		/** a trial request is sent to check if the server has recovered */
+		HALF_OPEN
+	}
+
+	private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final String baseUrl;
+	private final int threshold = readFromProperty("bdCircuitBreakerThreshold", 5);
+	private final int openTime = readFromProperty("bdCircuitBreakerOpenTime", 30000);
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInFlight;
+
+	private final LongAdder timesOpened = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	private CircuitBreaker(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	/**
+	 * Returns the circuit breaker for the given base URL.
+	 *
+	 * @param baseUrl the base URL of the server
+	 * @return the breaker shared by all clients of that server
+	 */
+	static CircuitBreaker forBaseUrl(String baseUrl) {
+		return BREAKERS.computeIfAbsent(baseUrl, CircuitBreaker::new);
+	}
+
+	/**
+	 * Checks whether a request may be sent. Each permitted request must be
+	 * followed by a call to {@link #onSuccess()}, {@link #onFailure()} or
+	 * {@link #release()}.
+	 *
+	 * @throws CircuitOpenException if the breaker is open
+	 */
+	synchronized void acquire() throws CircuitOpenException {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openTime) {
+			state = State.HALF_OPEN;
+		}
+		if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+			rejected.increment();
+			throw new CircuitOpenException(baseUrl);
+		}
+		if (state == State.HALF_OPEN) {
+			trialInFlight = true;
+		}
+	}
+
+	/** Records a successful request, closing the breaker. */
+	synchronized void onSuccess() {
+		consecutiveFailures = 0;
+		trialInFlight = false;
+		state = State.CLOSED;
+	}
+
+	/** Records a failed request, opening the breaker if needed. */
+	synchronized void onFailure() {
+		consecutiveFailures++;
+		trialInFlight = false;
+		if (threshold > 0 && (state == State.HALF_OPEN || consecutiveFailures >= threshold)) {
+			if (state != State.OPEN) {
+				timesOpened.increment();
+			}
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+
+	/** Releases a permitted request that could not be sent. */
+	synchronized void release() {
+		trialInFlight = false;
+	}
+
+	/**
+	 * Records the outcome of a request that received a response.
+	 *
+	 * @param statusCode status code of the response
+	 */
+	void onResponse(int statusCode) {
+		if (statusCode >= 500) {
+			onFailure();
+		} else {
+			onSuccess();
+		}
+	}
+
+	/**
+	 * Records the outcome of a request that failed with an exception.
+	 *
+	 * @param e the exception the request failed with
+	 */
+	void onException(IOException e) {
+		if (isClientWait(e)) {
+			release();
+		} else {
+			onFailure();
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a request timed out or was interrupted while
+	 * waiting on the client rather than failing on the server. Read and connect
+	 * timeouts are also {@link InterruptedIOException}s, but do count against
+	 * the server.
+	 */
+	private static boolean isClientWait(IOException e) {
+		return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException);
+	}
+
+	/**
+	 * Returns the current state of the breaker.
+	 *
+	 * @return the current state
+	 */
+	public synchronized State getState() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openTime) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the number of failures since the last successful request.
+	 *
+	 * @return the number of consecutive failures
+	 */
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * Returns how often the breaker has opened.
+	 *
+	 * @return the number of times the breaker opened
+	 */
+	public long getTimesOpened() {
+		return timesOpened.sum();
+	}
+
+	/**
+	 * Returns the number of requests rejected while the breaker was open.
+	 *
+	 * @return the number of rejected requests
+	 */
+	public long getRejectedRequests() {
+		return rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker(" + baseUrl + ", state: " + getState() + ", consecutive failures: " + getConsecutiveFailures()
+			+ ", opened: " + getTimesOpened() + ", rejected: " + getRejectedRequests() + ")";
+	}
+}
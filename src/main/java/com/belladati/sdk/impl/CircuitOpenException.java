@@ -0,0 +1,19 @@
+package com.belladati.sdk.impl;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the {@link CircuitBreaker} for
+ * the server is open.
+ *
+ *
+ */
+public class CircuitOpenException extends IOException {
+
+	/** The serialVersionUID */
+	private static final long serialVersionUID = -3907519146254390381L;
+
+	public CircuitOpenException(String baseUrl) {
+		super("Circuit breaker open for " + baseUrl + ", not sending request");
+	}
+}
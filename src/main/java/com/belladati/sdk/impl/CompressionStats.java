@@ -0,0 +1,84 @@
+package com.belladati.sdk.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how much content a {@link BellaDatiClient} transfers before
+ * and after compression. Response bytes are counted as they are read, request
+ * bytes when a request body is prepared.
+ *
+ *
+ */
+public class CompressionStats {
+
+	private final LongAdder responseBytes = new LongAdder();
+	private final LongAdder decodedResponseBytes = new LongAdder();
+	private final LongAdder requestBytes = new LongAdder();
+	private final LongAdder uncompressedRequestBytes = new LongAdder();
+
+	void responseRead(int bytes) {
+		responseBytes.add(bytes);
+	}
+
+	void responseDecoded(int bytes) {
+		decodedResponseBytes.add(bytes);
+	}
+
+	void requestPrepared(long uncompressedBytes, long bytes) {
+		uncompressedRequestBytes.add(uncompressedBytes);
+		requestBytes.add(bytes);
+	}
+
+	/**
+	 * Returns the number of response body bytes received, as sent by the
+	 * server.
+	 *
+	 * @return the number of response bytes received
+	 */
+	public long getResponseBytes() {
+		return responseBytes.sum();
+	}
+
+	/**
+	 * Returns the number of response body bytes after decompression.
+	 *
+	 * @return the number of decoded response bytes
+	 */
+	public long getDecodedResponseBytes() {
+		return decodedResponseBytes.sum();
+	}
+
+	/**
+	 * Returns the number of request body bytes sent to the server.
+	 *
+	 * @return the number of request bytes sent
+	 */
+	public long getRequestBytes() {
+		return requestBytes.sum();
+	}
+
+	/**
+	 * Returns the number of request body bytes before compression.
+	 *
+	 * @return the number of uncompressed request bytes
+	 */
+	public long getUncompressedRequestBytes() {
+		return uncompressedRequestBytes.sum();
+	}
+
+	/**
+	 * Returns the number of bytes that did not need to be transferred thanks
+	 * to compression, in both directions.
+	 *
+	 * @return the number of bytes saved
+	 */
+	public long getSavedBytes() {
+		return getDecodedResponseBytes() - getResponseBytes() + getUncompressedRequestBytes() - getRequestBytes();
+	}
+
+	@Override
+	public String toString() {
+		return "Compression(response bytes: " + getResponseBytes() + ", decoded: " + getDecodedResponseBytes()
+			+ ", request bytes: " + getRequestBytes() + ", uncompressed: " + getUncompressedRequestBytes() + ")";
+	}
+}
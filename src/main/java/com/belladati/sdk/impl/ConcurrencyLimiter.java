@@ -0,0 +1,270 @@
+package com.belladati.sdk.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of requests of one {@link EndpointFamily} in flight to a
+ * server, adapting the limit to the latency the server shows. Requests over
+ * the limit wait in line until an earlier request completes.
+ * <p>
+ * The limit follows the gradient of the latency: a short-term average is
+ * compared to a long-term average, and while the short-term latency rises
+ * above the long-term latency by more than the tolerance, the limit is
+ * lowered in proportion. While latency is stable and the limit is in use, the
+ * limit grows. Responses with status 429 or 503 and connection failures lower
+ * the limit multiplicatively, at most once per round trip.
+ * <p>
+ * The limit starts at <tt>bdConcurrencyLimit</tt> and stays between
+ * <tt>bdMinConcurrency</tt> (default 1) and <tt>bdMaxConcurrency</tt>
+ * (default: the size of the family's connection pool, see
+ * {@link EndpointFamily#getMaxConnections()}; 0 disables the limiter). All
+ * clients connecting to the same base URL share one limiter per family.
+ *
+ *
+ */
+public class ConcurrencyLimiter {
+
+	private static final Map<String, ConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+
+	/** factor by which the limit is lowered after a rejected request */
+	private static final double BACKOFF = 0.9;
+	/** ratio of short-term to long-term latency tolerated without lowering the limit */
+	private static final double TOLERANCE = 1.5;
+	/** weight of a new limit compared to the previous one */
+	private static final double SMOOTHING = 0.2;
+	private static final double SHORT_TERM_WEIGHT = 0.2;
+	private static final double LONG_TERM_WEIGHT = 0.01;
+
+	private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+	private final EndpointFamily family;
+	private final int minLimit;
+	private final int maxLimit;
+
+	private double limit;
+	private int inFlight;
+	private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<CompletableFuture<Void>>();
+
+	private double shortTermLatency;
+	private double longTermLatency;
+	private long loweredAt = System.nanoTime();
+
+	private final LongAdder queued = new LongAdder();
+	private final LongAdder drops = new LongAdder();
+
+	private ConcurrencyLimiter(EndpointFamily family) {
+		this.family = family;
+		this.maxLimit = Math.max(0, family.readLimit("bdMaxConcurrency", family.getMaxConnections()));
+		this.minLimit = Math.max(1, Math.min(maxLimit, family.readLimit("bdMinConcurrency", 1)));
+		this.limit = Math.max(minLimit, Math.min(maxLimit, family.readLimit("bdConcurrencyLimit", maxLimit)));
+	}
+
+	/**
+	 * Returns the concurrency limiter for the given family of endpoints on a
+	 * server.
+	 *
+	 * @param baseUrl the base URL of the server
+	 * @param family the family of endpoints
+	 * @return the limiter shared by all clients of that server
+	 */
+	static ConcurrencyLimiter forServer(String baseUrl, EndpointFamily family) {
+		return LIMITERS.computeIfAbsent(baseUrl + " " + family, key -> new ConcurrencyLimiter(family));
+	}
+
+	/**
+	 * Asks for permission to send a request. The returned future completes
+	 * when the request may be sent. Each permitted request must be followed
+	 * by a call to {@link #release(long, long, boolean)} or
+	 * {@link #releaseUnused()}; requests no longer waiting must be withdrawn
+	 * using {@link #withdraw(CompletableFuture)}.
+	 *
+	 * @return a future completing when the request may be sent
+	 */
+	synchronized CompletableFuture<Void> acquire() {
+		if (maxLimit == 0) {
+			return GRANTED;
+		}
+		if (waiting.isEmpty() && inFlight < (int) limit) {
+			inFlight++;
+			return GRANTED;
+		}
+		CompletableFuture<Void> permit = new CompletableFuture<Void>();
+		waiting.add(permit);
+		queued.increment();
+		return permit;
+	}
+
+	/**
+	 * Withdraws a request waiting for permission.
+	 *
+	 * @param permit the future returned by {@link #acquire()}
+	 * @return <tt>true</tt> if the request was withdrawn, <tt>false</tt> if
+	 *         permission was already granted and must be released
+	 */
+	boolean withdraw(CompletableFuture<Void> permit) {
+		if (permit.cancel(false)) {
+			synchronized (this) {
+				waiting.remove(permit);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Releases a permitted request after it completed, adjusting the limit
+	 * to the observed latency.
+	 *
+	 * @param startedAt time the request was sent, from {@link System#nanoTime()}
+	 * @param latency time until the response arrived, in nanoseconds
+	 * @param dropped <tt>true</tt> if the server rejected the request as
+	 *            overloaded or the request failed
+	 */
+	void release(long startedAt, long latency, boolean dropped) {
+		if (maxLimit == 0) {
+			return;
+		}
+		List<CompletableFuture<Void>> granted;
+		synchronized (this) {
+			adjust(startedAt, latency, dropped);
+			inFlight--;
+			granted = grant();
+		}
+		complete(granted);
+	}
+
+	/** Releases a permitted request that could not be sent. */
+	void releaseUnused() {
+		if (maxLimit == 0) {
+			return;
+		}
+		List<CompletableFuture<Void>> granted;
+		synchronized (this) {
+			inFlight--;
+			granted = grant();
+		}
+		complete(granted);
+	}
+
+	private void adjust(long startedAt, long latency, boolean dropped) {
+		if (dropped) {
+			drops.increment();
+			// requests sent before the last decrease don't reflect it yet
+			if (startedAt - loweredAt > 0) {
+				limit = Math.max(minLimit, limit * BACKOFF);
+				loweredAt = System.nanoTime();
+			}
+			return;
+		}
+		if (longTermLatency == 0) {
+			shortTermLatency = latency;
+			longTermLatency = latency;
+		} else {
+			shortTermLatency += (latency - shortTermLatency) * SHORT_TERM_WEIGHT;
+			longTermLatency += (latency - longTermLatency) * LONG_TERM_WEIGHT;
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longTermLatency / Math.max(1, shortTermLatency)));
+		if (gradient == 1.0 && inFlight * 2 < limit) {
+			// the limit isn't being used, nothing shows it could be higher
+			return;
+		}
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+	}
+
+	/**
+	 * Takes waiting requests off the queue while the limit allows.
+	 *
+	 * @return the requests to be notified outside the lock
+	 */
+	private List<CompletableFuture<Void>> grant() {
+		List<CompletableFuture<Void>> granted = new ArrayList<CompletableFuture<Void>>();
+		while (inFlight < (int) limit && !waiting.isEmpty()) {
+			CompletableFuture<Void> permit = waiting.poll();
+			if (!permit.isDone()) {
+				inFlight++;
+				granted.add(permit);
+			}
+		}
+		return granted;
+	}
+
+	private void complete(List<CompletableFuture<Void>> granted) {
+		for (CompletableFuture<Void> permit : granted) {
+			if (!permit.complete(null)) {
+				// cancelled in the meantime
+				releaseUnused();
+			}
+		}
+	}
+
+	/**
+	 * Returns the current limit on requests in flight.
+	 *
+	 * @return the current limit, 0 if the limiter is disabled
+	 */
+	public synchronized int getLimit() {
+		return maxLimit == 0 ? 0 : (int) limit;
+	}
+
+	/**
+	 * Returns the number of requests currently in flight.
+	 *
+	 * @return the number of requests in flight
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Returns the number of requests currently waiting to be sent.
+	 *
+	 * @return the number of waiting requests
+	 */
+	public synchronized int getWaiting() {
+		return waiting.size();
+	}
+
+	/**
+	 * Returns the number of requests that had to wait before being sent.
+	 *
+	 * @return the number of queued requests
+	 */
+	public long getQueuedRequests() {
+		return queued.sum();
+	}
+
+	/**
+	 * Returns the number of requests rejected by the server as overloaded or
+	 * failing to connect.
+	 *
+	 * @return the number of dropped requests
+	 */
+	public long getDroppedRequests() {
+		return drops.sum();
+	}
+
+	/**
+	 * Returns the long-term average latency used as reference for adapting
+	 * the limit.
+	 *
+	 * @return the average latency in milliseconds
+	 */
+	public synchronized double getAverageLatency() {
+		return longTermLatency / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter(" + family + ", limit: " + getLimit() + ", in flight: " + getInFlight() + ", waiting: "
+			+ getWaiting() + ", queued: " + getQueuedRequests() + ", dropped: " + getDroppedRequests() + ")";
+	}
+}
@@ -0,0 +1,294 @@
+package com.belladati.sdk.impl;
+
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.http.io.HttpConnectionFactory;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how the connection pool of a {@link BellaDatiClient} is
+ * used. Every request sent over the network either reuses a pooled
+ * connection (a hit) or has to open a new one (a miss). Statistics of the
+ * blocking and the asynchronous connection pool are combined.
+ * <p>
+ * If the transport keeps a separate pool for each {@link EndpointFamily}, the
+ * statistics of each of these bulkheads are available through
+ * {@link #getBulkhead(EndpointFamily)}, and are combined in their parent.
+ *
+ *
+ */
+public class ConnectionPoolStats {
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder opened = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	private final List<ConnPoolControl<?>> pools = new CopyOnWriteArrayList<ConnPoolControl<?>>();
+
+	/** statistics this bulkhead's are combined in, <tt>null</tt> if this isn't a bulkhead */
+	private final ConnectionPoolStats parent;
+	private final Map<EndpointFamily, ConnectionPoolStats> bulkheads = new ConcurrentHashMap<EndpointFamily, ConnectionPoolStats>();
+
+	/**
+	 * Creates statistics for a transport.
+	 */
+	public ConnectionPoolStats() {
+		this(null);
+	}
+
+	private ConnectionPoolStats(ConnectionPoolStats parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * Returns the statistics of the connection pool reserved for a family of
+	 * endpoints, creating them if needed.
+	 *
+	 * @param family the family of endpoints
+	 * @return the statistics of the family's bulkhead
+	 */
+	ConnectionPoolStats bulkhead(EndpointFamily family) {
+		return bulkheads.computeIfAbsent(family, key -> new ConnectionPoolStats(this));
+	}
+
+	/**
+	 * Wraps the default connection factory to count the number of
+	 * connections opened.
+	 *
+	 * @return a connection factory to register with the connection manager
+	 */
+	HttpConnectionFactory<ManagedHttpClientConnection> countingConnectionFactory() {
+		return new HttpConnectionFactory<ManagedHttpClientConnection>() {
+			@Override
+			public ManagedHttpClientConnection createConnection(Socket socket) throws IOException {
+				connectionOpened();
+				return ManagedHttpClientConnectionFactory.INSTANCE.createConnection(socket);
+			}
+
+			@Override
+			public ManagedHttpClientConnection createConnection(SSLSocket sslSocket, Socket socket) throws IOException {
+				connectionOpened();
+				return ManagedHttpClientConnectionFactory.INSTANCE.createConnection(sslSocket, socket);
+			}
+		};
+	}
+
+	/**
+	 * Creates a session listener counting the number of connections opened by
+	 * the asynchronous client.
+	 * 
+	 * @return a session listener to register with the asynchronous client
+	 */
+	IOSessionListener countingSessionListener() {
+		return new IOSessionListener() {
+			@Override
+			public void connected(IOSession session) {
+				connectionOpened();
+			}
+
+			@Override
+			public void startTls(IOSession session) {}
+
+			@Override
+			public void inputReady(IOSession session) {}
+
+			@Override
+			public void outputReady(IOSession session) {}
+
+			@Override
+			public void timeout(IOSession session) {}
+
+			@Override
+			public void exception(IOSession session, Exception ex) {}
+
+			@Override
+			public void disconnected(IOSession session) {}
+		};
+	}
+
+	void bind(ConnPoolControl<?> pool) {
+		pools.add(pool);
+		if (parent != null) {
+			parent.bind(pool);
+		}
+	}
+
+	void requestSent() {
+		requests.increment();
+		if (parent != null) {
+			parent.requestSent();
+		}
+	}
+
+	private void connectionOpened() {
+		opened.increment();
+		if (parent != null) {
+			parent.connectionOpened();
+		}
+	}
+
+	/** Records a request that timed out waiting for a pooled connection. */
+	void requestRejected() {
+		rejected.increment();
+		if (parent != null) {
+			parent.requestRejected();
+		}
+	}
+
+	/**
+	 * Returns the statistics of the connection pool reserved for a family of
+	 * endpoints.
+	 *
+	 * @param family the family of endpoints
+	 * @return the statistics of the family's pool, or <tt>null</tt> if the
+	 *         transport doesn't keep separate pools
+	 */
+	public ConnectionPoolStats getBulkhead(EndpointFamily family) {
+		return bulkheads.get(family);
+	}
+
+	/**
+	 * Returns the statistics of all connection pools reserved for a family of
+	 * endpoints.
+	 *
+	 * @return the statistics of each family's pool, empty if the transport
+	 *         doesn't keep separate pools
+	 */
+	public Map<EndpointFamily, ConnectionPoolStats> getBulkheads() {
+		Map<EndpointFamily, ConnectionPoolStats> result = new EnumMap<EndpointFamily, ConnectionPoolStats>(EndpointFamily.class);
+		result.putAll(bulkheads);
+		return result;
+	}
+
+	/**
+	 * Returns the number of requests sent over the network, excluding
+	 * responses served from the local cache.
+	 *
+	 * @return the number of requests sent
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of new connections opened to the server.
+	 *
+	 * @return the number of pool misses
+	 */
+	public long getMisses() {
+		return opened.sum();
+	}
+
+	/**
+	 * Returns the number of requests that were sent over a reused pooled
+	 * connection.
+	 *
+	 * @return the number of pool hits
+	 */
+	public long getHits() {
+		return Math.max(0, getRequests() - getMisses());
+	}
+
+	/**
+	 * Returns the share of requests that reused a pooled connection, between
+	 * 0 and 1.
+	 *
+	 * @return the pool hit ratio
+	 */
+	public double getHitRatio() {
+		long total = getRequests();
+		return total == 0 ? 0 : (double) getHits() / total;
+	}
+
+	/**
+	 * Returns the number of connections currently in use.
+	 *
+	 * @return the number of leased connections
+	 */
+	public int getLeased() {
+		int leased = 0;
+		for (ConnPoolControl<?> pool : pools) {
+			leased += pool.getTotalStats().getLeased();
+		}
+		return leased;
+	}
+
+	/**
+	 * Returns the number of idle connections kept alive in the pool.
+	 *
+	 * @return the number of available connections
+	 */
+	public int getAvailable() {
+		int available = 0;
+		for (ConnPoolControl<?> pool : pools) {
+			available += pool.getTotalStats().getAvailable();
+		}
+		return available;
+	}
+
+	/**
+	 * Returns the number of requests waiting for a connection.
+	 *
+	 * @return the number of pending connection requests
+	 */
+	public int getPending() {
+		int pending = 0;
+		for (ConnPoolControl<?> pool : pools) {
+			pending += pool.getTotalStats().getPending();
+		}
+		return pending;
+	}
+
+	/**
+	 * Returns the maximum number of connections the pools may open.
+	 *
+	 * @return the total size of the pools, 0 if the transport has no pool
+	 */
+	public int getMaxTotal() {
+		int max = 0;
+		for (ConnPoolControl<?> pool : pools) {
+			max += pool.getMaxTotal();
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the share of connections in use, between 0 and 1. A saturated
+	 * pool makes further requests wait for a connection.
+	 *
+	 * @return the pool utilization
+	 */
+	public double getUtilization() {
+		int max = getMaxTotal();
+		return max == 0 ? 0 : Math.min(1, (double) getLeased() / max);
+	}
+
+	/**
+	 * Returns the number of requests that failed because no pooled connection
+	 * became available within <tt>bdConnectionRequestTimeout</tt>.
+	 *
+	 * @return the number of rejected requests
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Pool(requests: " + getRequests() + ", hits: " + getHits() + ", misses: " + getMisses() + ", leased: "
+			+ getLeased() + ", available: " + getAvailable() + ", pending: " + getPending() + ", rejected: " + getRejected()
+			+ (bulkheads.isEmpty() ? "" : ", bulkheads: " + getBulkheads()) + ")";
+	}
+}
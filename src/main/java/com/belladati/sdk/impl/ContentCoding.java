@@ -0,0 +1,140 @@
+package com.belladati.sdk.impl;
+
+import org.apache.hc.client5.http.entity.DeflateInputStream;
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses request bodies and decompresses response bodies, recording the
+ * number of bytes before and after in {@link CompressionStats}.
+ *
+ *
+ */
+final class ContentCoding {
+
+	/** content encodings accepted in responses */
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	/** request bodies smaller than this aren't worth compressing */
+	static final int MIN_COMPRESS_SIZE = 1024;
+
+	private ContentCoding() {}
+
+	/**
+	 * Wraps a response body to decode it according to its content encoding.
+	 * Unknown encodings are passed through unchanged.
+	 *
+	 * @param content the response body as received
+	 * @param encoding value of the <tt>Content-Encoding</tt> header, may be
+	 *            <tt>null</tt>
+	 * @param stats statistics to record transferred bytes in
+	 * @return a stream reading the decoded body
+	 * @throws IOException if the body cannot be decoded
+	 */
+	static InputStream decode(InputStream content, String encoding, CompressionStats stats) throws IOException {
+		InputStream received = new CountingInputStream(content, stats, true);
+		InputStream decoded;
+		String coding = encoding == null ? "identity" : encoding.trim().toLowerCase(Locale.ROOT);
+		if (!"identity".equals(coding)) {
+			// responses without body, e.g. 204, can't be decoded
+			PushbackInputStream in = new PushbackInputStream(received);
+			int first = in.read();
+			if (first < 0) {
+				return in;
+			}
+			in.unread(first);
+			received = in;
+		}
+		switch (coding) {
+			case "gzip":
+			case "x-gzip":
+				decoded = new GZIPInputStream(received);
+				break;
+			case "deflate":
+				// handles both zlib wrapped and raw deflate content
+				decoded = new DeflateInputStream(received);
+				break;
+			default:
+				decoded = received;
+		}
+		return new CountingInputStream(decoded, stats, false);
+	}
+
+	/**
+	 * Builds a request body from the given content, compressing it using
+	 * gzip if requested and the content is large enough to benefit.
+	 *
+	 * @param content the request body
+	 * @param contentType type of the content
+	 * @param compress <tt>true</tt> if the content may be compressed
+	 * @param stats statistics to record transferred bytes in
+	 * @return a request body
+	 */
+	static RequestBody encode(byte[] content, ContentType contentType, boolean compress, CompressionStats stats) {
+		if (!compress || content.length < MIN_COMPRESS_SIZE) {
+			stats.requestPrepared(content.length, content.length);
+			return RequestBody.of(content, contentType.toString(), null);
+		}
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(content.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(buf)) {
+			gzip.write(content);
+		} catch (IOException e) {
+			// can't happen writing to memory
+			throw new IllegalStateException("Failed to compress request", e);
+		}
+		byte[] compressed = buf.toByteArray();
+		stats.requestPrepared(content.length, compressed.length);
+		return RequestBody.of(compressed, contentType.toString(), "gzip");
+	}
+
+	/** Counts the bytes read through the stream. */
+	private static class CountingInputStream extends FilterInputStream {
+		private final CompressionStats stats;
+		private final boolean received;
+
+		private CountingInputStream(InputStream in, CompressionStats stats, boolean received) {
+			super(in);
+			this.stats = stats;
+			this.received = received;
+		}
+
+		private void count(int bytes) {
+			if (bytes > 0) {
+				if (received) {
+					stats.responseRead(bytes);
+				} else {
+					stats.responseDecoded(bytes);
+				}
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			count(b < 0 ? 0 : 1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			count(read);
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count((int) skipped);
+			return skipped;
+		}
+	}
+}
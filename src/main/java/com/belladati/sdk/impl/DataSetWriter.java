@@ -0,0 +1,314 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataColumn;
+import com.belladati.sdk.dataset.data.DataRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Posts rows into a data set in batches. Rows can be written from any number
+ * of threads; they are collected in a lock-free queue and posted by a
+ * background thread in batches of up to <tt>bdWriterBatchRows</tt> rows
+ * (default 1000) or about <tt>bdWriterBatchBytes</tt> bytes of JSON (default
+ * 1 MB). A batch is posted as soon as it is full, or once its first row has
+ * waited <tt>bdWriterLinger</tt> milliseconds (default 100).
+ * <p>
+ * At most <tt>bdWriterCapacity</tt> rows (default 10000) are held by the
+ * writer, including the batch being posted. Writing further rows blocks
+ * until a batch has been posted.
+ * <p>
+ * Batches are posted in the order their rows were written. A batch that
+ * fails is dropped; its exception is thrown by the next call to
+ * {@link #flush()} or {@link #close()}. Closing the writer posts all rows
+ * still waiting.
+ *
+ *
+ */
+public class DataSetWriter implements AutoCloseable {
+
+	private final BellaDatiServiceImpl service;
+	private final String dataSetId;
+
+	private final int batchRows = Math.max(1, readFromProperty("bdWriterBatchRows", 1000));
+	private final int batchBytes = Math.max(1, readFromProperty("bdWriterBatchBytes", 1024 * 1024));
+	private final long lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, readFromProperty("bdWriterLinger", 100)));
+	private final int capacity = Math.max(1, readFromProperty("bdWriterCapacity", 10000));
+
+	private final Queue<DataRow> queue = new ConcurrentLinkedQueue<DataRow>();
+	/** free places for rows, limiting the rows held by the writer */
+	private final Semaphore space = new Semaphore(capacity);
+	private final AtomicLong pendingRows = new AtomicLong();
+	private final AtomicLong pendingBytes = new AtomicLong();
+	/** rows counted before they are queued, so a flush covers every row already queued */
+	private final AtomicLong written = new AtomicLong();
+	/** rows taken from the queue and posted or dropped */
+	private final AtomicLong completed = new AtomicLong();
+	/** highest number of written rows a caller is waiting to be flushed */
+	private final LongAccumulator flushTarget = new LongAccumulator(Math::max, 0);
+	/** writes in progress, which must be queued before the writer can close */
+	private final AtomicInteger activeWrites = new AtomicInteger();
+	private volatile boolean closed;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition progress = lock.newCondition();
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+	private final LongAdder rowsPosted = new LongAdder();
+	private final LongAdder rowsFailed = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+	private final Thread poster;
+
+	DataSetWriter(BellaDatiServiceImpl service, String dataSetId) {
+		this.service = service;
+		this.dataSetId = dataSetId;
+		this.poster = Thread.ofVirtual().name("belladati-writer-" + dataSetId).start(this::run);
+	}
+
+	/**
+	 * Returns the ID of the data set the rows are posted to.
+	 *
+	 * @return the data set ID
+	 */
+	public String getDataSetId() {
+		return dataSetId;
+	}
+
+	/**
+	 * Writes a row, waiting for space if the writer is full.
+	 *
+	 * @param row the row to post
+	 * @throws InterruptedException if interrupted while waiting for space
+	 * @throws IllegalStateException if the writer has been closed
+	 */
+	public void write(DataRow row) throws InterruptedException {
+		activeWrites.incrementAndGet();
+		try {
+			checkOpen();
+			space.acquire();
+			enqueue(row);
+		} finally {
+			activeWrites.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Writes a row if there is space for it within the given time.
+	 *
+	 * @param row the row to post
+	 * @param timeout how long to wait for space
+	 * @param unit the unit of the timeout
+	 * @return <tt>true</tt> if the row was written, <tt>false</tt> if the
+	 *         writer stayed full
+	 * @throws InterruptedException if interrupted while waiting for space
+	 * @throws IllegalStateException if the writer has been closed
+	 */
+	public boolean write(DataRow row, long timeout, TimeUnit unit) throws InterruptedException {
+		activeWrites.incrementAndGet();
+		try {
+			checkOpen();
+			if (!space.tryAcquire(timeout, unit)) {
+				return false;
+			}
+			enqueue(row);
+			return true;
+		} finally {
+			activeWrites.decrementAndGet();
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Writer for data set " + dataSetId + " already closed");
+		}
+	}
+
+	private void enqueue(DataRow row) {
+		long size = estimateSize(row);
+		written.incrementAndGet();
+		queue.offer(row);
+		long rows = pendingRows.incrementAndGet();
+		long bytes = pendingBytes.addAndGet(size);
+		if (rows == 1 || rows >= batchRows || bytes >= batchBytes) {
+			LockSupport.unpark(poster);
+		}
+	}
+
+	/**
+	 * Posts all rows written so far, waiting until they have been posted.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws RuntimeException the exception a batch failed with since the
+	 *             last flush, if any
+	 */
+	public void flush() throws InterruptedException {
+		long target = written.get();
+		flushTarget.accumulate(target);
+		LockSupport.unpark(poster);
+		lock.lock();
+		try {
+			while (completed.get() < target) {
+				progress.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+		throwFailure();
+	}
+
+	/**
+	 * Posts all rows still waiting and stops the writer. If interrupted while
+	 * waiting, the remaining rows are posted in the background.
+	 *
+	 * @throws RuntimeException the exception a batch failed with since the
+	 *             last flush, if any
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(poster);
+		try {
+			poster.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		throwFailure();
+	}
+
+	private void throwFailure() {
+		RuntimeException e = failure.getAndSet(null);
+		if (e != null) {
+			throw e;
+		}
+	}
+
+	/** Posts batches until the writer is closed and all rows are posted. */
+	private void run() {
+		while (true) {
+			if (pendingRows.get() <= 0) {
+				if (closed && activeWrites.get() == 0 && queue.isEmpty()) {
+					return;
+				}
+				// woken by the first row, a flush or closing
+				LockSupport.parkNanos(this, lingerNanos > 0 ? lingerNanos : TimeUnit.MILLISECONDS.toNanos(100));
+				if (queue.isEmpty()) {
+					continue;
+				}
+			}
+			long lingerEnd = System.nanoTime() + lingerNanos;
+			while (!closed && completed.get() >= flushTarget.get() && pendingRows.get() < batchRows
+				&& pendingBytes.get() < batchBytes) {
+				long wait = lingerEnd - System.nanoTime();
+				if (wait <= 0) {
+					break;
+				}
+				LockSupport.parkNanos(this, wait);
+			}
+			postBatch();
+		}
+	}
+
+	private void postBatch() {
+		List<DataRow> batch = new ArrayList<DataRow>();
+		long bytes = 0;
+		while (batch.size() < batchRows && bytes < batchBytes) {
+			DataRow row = queue.poll();
+			if (row == null) {
+				break;
+			}
+			batch.add(row);
+			bytes += estimateSize(row);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			service.postDataSetData(dataSetId, batch);
+			rowsPosted.add(batch.size());
+			batches.increment();
+		} catch (RuntimeException e) {
+			rowsFailed.add(batch.size());
+			failure.compareAndSet(null, e);
+		} finally {
+			pendingRows.addAndGet(-batch.size());
+			pendingBytes.addAndGet(-bytes);
+			space.release(batch.size());
+			completed.addAndGet(batch.size());
+			lock.lock();
+			try {
+				progress.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/** Estimates the size of a row's JSON object, without generating it. */
+	private static long estimateSize(DataRow row) {
+		List<DataColumn> columns = row.getColumns();
+		List<String> values = row.getAll();
+		long size = 2;
+		for (int i = 0; i < values.size(); i++) {
+			String value = values.get(i);
+			size += columns.get(i).getCode().length() + (value == null ? 4 : value.length() + 2) + 4;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of rows written and not yet posted.
+	 *
+	 * @return the number of waiting rows
+	 */
+	public long getPendingRows() {
+		return written.get() - completed.get();
+	}
+
+	/**
+	 * Returns the number of rows posted to the data set.
+	 *
+	 * @return the number of posted rows
+	 */
+	public long getRowsPosted() {
+		return rowsPosted.sum();
+	}
+
+	/**
+	 * Returns the number of rows dropped because their batch failed.
+	 *
+	 * @return the number of failed rows
+	 */
+	public long getRowsFailed() {
+		return rowsFailed.sum();
+	}
+
+	/**
+	 * Returns the number of batches posted to the data set.
+	 *
+	 * @return the number of requests sent
+	 */
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Data set writer(" + dataSetId + ", posted: " + getRowsPosted() + " rows in " + getBatches() + " batches, failed: "
+			+ getRowsFailed() + ", pending: " + getPendingRows() + (closed ? ", closed" : "") + ")";
+	}
+}
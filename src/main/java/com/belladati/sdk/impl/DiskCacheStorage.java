@@ -0,0 +1,685 @@
+package com.belladati.sdk.impl;
+
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.AbstractBinaryCacheStorage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Stores cached HTTP responses in a directory on disk, so that they survive
+ * restarts and are shared by all processes on the host using the same
+ * directory. Used instead of the in-memory cache if the
+ * <tt>bdCacheDirectory</tt> system property is set.
+ * <p>
+ * Each response is kept in its own file, which is written to a temporary file
+ * first and then moved into place, so that a crash never leaves a partially
+ * written entry behind. A memory-mapped index in the same directory tracks the
+ * size and last access of each entry. Once the entries exceed
+ * <tt>bdCacheSize</tt> megabytes (default 100) or <tt>bdCacheMaxEntries</tt>
+ * entries (default 1000), the least recently used ones are evicted. The index
+ * is only changed while holding a lock on its file, shared with other
+ * processes. When a directory is opened, the index is checked against the
+ * entry files and rebuilt if it's damaged.
+ * <p>
+ * Cached responses are private to the OAuth token they were loaded with and
+ * are kept across restarts. On file systems supporting POSIX permissions, the
+ * directory and its files are created readable by their owner only; a
+ * directory that already exists keeps its permissions. Responses are only
+ * returned again to requests signed with the same consumer key and token,
+ * but any process running as the same user can read the files, so the
+ * directory shouldn't be shared with untrusted processes.
+ *
+ *
+ */
+public class DiskCacheStorage extends AbstractBinaryCacheStorage<DiskCacheStorage.Snapshot> {
+
+	private static final Map<Path, DiskCacheStorage> STORAGES = new ConcurrentHashMap<Path, DiskCacheStorage>();
+
+	private static final String INDEX_FILE = "index";
+	private static final String ENTRY_SUFFIX = ".entry";
+	private static final String TEMP_SUFFIX = ".tmp";
+	/** temporary files older than this were left behind by a crash */
+	private static final long STALE_TEMP_MILLIS = 10 * 60 * 1000;
+
+	private static final int MAGIC = 0x42444331;
+	private static final int HEADER_SIZE = 64;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int SLOTS_OFFSET = 4;
+	private static final int ENTRIES_OFFSET = 8;
+	private static final int SIZE_OFFSET = 16;
+	private static final int CLOCK_OFFSET = 24;
+
+	private static final int SLOT_SIZE = 32;
+	private static final int HASH_OFFSET = 0;
+	private static final int ENTRY_SIZE_OFFSET = 8;
+	private static final int ACCESS_OFFSET = 16;
+	private static final int VERSION_OFFSET = 24;
+
+	private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+	private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+	private final Path directory;
+	/** <tt>true</tt> if files can be created with POSIX permissions */
+	private final boolean posix;
+	private final long maxSize;
+	private final int maxEntries;
+	/** guards the index against other threads, the file lock against other processes */
+	private final ReentrantLock lock = new ReentrantLock();
+	private FileChannel channel;
+	private MappedByteBuffer index;
+	private int slots;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Content of an entry together with its version in the index, to detect
+	 * concurrent updates.
+	 */
+	static class Snapshot {
+		private final long version;
+		private final byte[] content;
+
+		private Snapshot(long version, byte[] content) {
+			this.version = version;
+			this.content = content;
+		}
+	}
+
+	/** Operation on the index, run while holding the lock. */
+	private interface IndexOperation<R> {
+		R run() throws IOException;
+	}
+
+	/**
+	 * Opens a cache in the given directory.
+	 *
+	 * @param directory directory holding the cache, created if necessary
+	 * @param maxSize maximum size of all entries in bytes
+	 * @param maxEntries maximum number of entries
+	 * @throws IOException if the directory can't be opened
+	 */
+	DiskCacheStorage(Path directory, long maxSize, int maxEntries) throws IOException {
+		super(3);
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+		Files.createDirectories(directory, permissions(DIRECTORY_PERMISSIONS));
+		openIndex(Integer.highestOneBit(Math.max(8, maxEntries) * 4 - 1));
+		// an index created by another process may have fewer slots
+		this.maxEntries = Math.min(maxEntries, slots / 2);
+		locked(() -> {
+			reconcile();
+			evict();
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the cache in the given directory, sized through system
+	 * properties when it's first opened.
+	 *
+	 * @param directory directory holding the cache
+	 * @return the cache shared by all clients using that directory
+	 * @throws IOException if the directory can't be opened
+	 */
+	static DiskCacheStorage forDirectory(Path directory) throws IOException {
+		Path key = directory.toAbsolutePath().normalize();
+		DiskCacheStorage storage = STORAGES.get(key);
+		if (storage == null) {
+			synchronized (STORAGES) {
+				storage = STORAGES.get(key);
+				if (storage == null) {
+					storage = new DiskCacheStorage(key, readFromProperty("bdCacheSize", 100) * 1024L * 1024L,
+						readFromProperty("bdCacheMaxEntries", 1000));
+					STORAGES.put(key, storage);
+				}
+			}
+		}
+		return storage;
+	}
+
+	/**
+	 * Maps the index file, initializing it if it doesn't exist or is damaged.
+	 *
+	 * @param defaultSlots number of slots of a new index, a power of two
+	 */
+	private void openIndex(int defaultSlots) throws IOException {
+		channel = FileChannel.open(directory.resolve(INDEX_FILE),
+			EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), permissions(FILE_PERMISSIONS));
+		lock.lock();
+		try {
+			FileLock fileLock = channel.lock();
+			try {
+				int existingSlots = readExistingSlots();
+				slots = existingSlots > 0 ? existingSlots : defaultSlots;
+				index = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+				if (existingSlots <= 0) {
+					// no usable index, the entry files are added back when reconciling
+					for (int i = 0; i < index.capacity(); i += 8) {
+						index.putLong(i, 0);
+					}
+					index.putInt(SLOTS_OFFSET, slots);
+					index.putInt(MAGIC_OFFSET, MAGIC);
+				}
+			} finally {
+				fileLock.release();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of slots of the index file if its header is valid.
+	 *
+	 * @return the number of slots, or 0 if the index isn't usable
+	 */
+	private int readExistingSlots() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (channel.read(header, 0) < HEADER_SIZE || header.getInt(MAGIC_OFFSET) != MAGIC) {
+			return 0;
+		}
+		int existingSlots = header.getInt(SLOTS_OFFSET);
+		if (existingSlots <= 0 || Integer.bitCount(existingSlots) != 1
+			|| channel.size() < HEADER_SIZE + (long) existingSlots * SLOT_SIZE) {
+			return 0;
+		}
+		return existingSlots;
+	}
+
+	/**
+	 * Rebuilds the index from the entry files, keeping the access order of
+	 * entries already in the index. Files missing from the index are added as
+	 * least recently used, and temporary files left behind by crashed writers
+	 * are deleted.
+	 */
+	private void reconcile() throws IOException {
+		Map<Long, long[]> known = new HashMap<Long, long[]>();
+		for (int slot = 0; slot < slots; slot++) {
+			long hash = slotLong(slot, HASH_OFFSET);
+			if (hash != 0) {
+				known.put(hash, new long[] { slotLong(slot, ACCESS_OFFSET), slotLong(slot, VERSION_OFFSET) });
+			}
+			for (int offset = 0; offset < SLOT_SIZE; offset += 8) {
+				setSlotLong(slot, offset, 0);
+			}
+		}
+
+		long totalSize = 0;
+		int entries = 0;
+		long clock = index.getLong(CLOCK_OFFSET);
+		long now = System.currentTimeMillis();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				if (name.endsWith(TEMP_SUFFIX)) {
+					if (now - Files.getLastModifiedTime(file).toMillis() > STALE_TEMP_MILLIS) {
+						Files.deleteIfExists(file);
+					}
+					continue;
+				}
+				long hash = name.endsWith(ENTRY_SUFFIX) ? parseHash(name.substring(0, name.length() - ENTRY_SUFFIX.length())) : 0;
+				if (hash == 0) {
+					continue;
+				}
+				if (entries >= slots / 2) {
+					Files.deleteIfExists(file);
+					continue;
+				}
+				long size = Files.size(file);
+				long[] previous = known.get(hash);
+				int slot = insertSlot(hash, size, previous == null ? 0 : previous[0]);
+				if (previous != null) {
+					setSlotLong(slot, VERSION_OFFSET, previous[1]);
+					clock = Math.max(clock, previous[0]);
+				}
+				totalSize += size;
+				entries++;
+			}
+		}
+		index.putLong(SIZE_OFFSET, totalSize);
+		index.putInt(ENTRIES_OFFSET, entries);
+		index.putLong(CLOCK_OFFSET, clock);
+	}
+
+	@Override
+	protected String digestToStorageKey(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			long hash = ByteBuffer.wrap(digest).getLong();
+			// 0 marks empty slots in the index
+			return String.format("%016x", hash == 0 ? 1 : hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	protected void store(String storageKey, byte[] content) throws ResourceIOException {
+		long hash = parseHash(storageKey);
+		Path temp = writeTemp(storageKey, content);
+		locked(() -> {
+			moveIntoPlace(temp, hash, content.length);
+			evict();
+			return null;
+		});
+	}
+
+	@Override
+	protected byte[] restore(String storageKey) throws ResourceIOException {
+		Snapshot snapshot = read(parseHash(storageKey), true);
+		if (snapshot == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return snapshot.content;
+	}
+
+	@Override
+	protected Snapshot getForUpdateCAS(String storageKey) throws ResourceIOException {
+		return read(parseHash(storageKey), false);
+	}
+
+	@Override
+	protected byte[] getStorageObject(Snapshot snapshot) throws ResourceIOException {
+		return snapshot.content;
+	}
+
+	@Override
+	protected boolean updateCAS(String storageKey, Snapshot snapshot, byte[] content) throws ResourceIOException {
+		long hash = parseHash(storageKey);
+		Path temp = writeTemp(storageKey, content);
+		boolean updated = locked(() -> {
+			int slot = findSlot(hash);
+			if (slot < 0 || slotLong(slot, VERSION_OFFSET) != snapshot.version) {
+				return false;
+			}
+			moveIntoPlace(temp, hash, content.length);
+			evict();
+			return true;
+		});
+		if (!updated) {
+			deleteQuietly(temp);
+		}
+		return updated;
+	}
+
+	@Override
+	protected void delete(String storageKey) throws ResourceIOException {
+		long hash = parseHash(storageKey);
+		locked(() -> {
+			int slot = findSlot(hash);
+			if (slot >= 0) {
+				removeEntry(slot);
+			}
+			return null;
+		});
+	}
+
+	@Override
+	protected Map<String, byte[]> bulkRestore(Collection<String> storageKeys) throws ResourceIOException {
+		Map<String, byte[]> contents = new HashMap<String, byte[]>();
+		for (String storageKey : storageKeys) {
+			byte[] content = restore(storageKey);
+			if (content != null) {
+				contents.put(storageKey, content);
+			}
+		}
+		return contents;
+	}
+
+	/**
+	 * Reads an entry from disk.
+	 *
+	 * @param hash hash of the entry's key
+	 * @param access <tt>true</tt> to mark the entry as most recently used
+	 * @return the entry's content, or <tt>null</tt> if it isn't cached
+	 */
+	private Snapshot read(long hash, boolean access) throws ResourceIOException {
+		long version = locked(() -> {
+			int slot = findSlot(hash);
+			if (slot < 0) {
+				return -1L;
+			}
+			if (access) {
+				setSlotLong(slot, ACCESS_OFFSET, tick());
+			}
+			return slotLong(slot, VERSION_OFFSET);
+		});
+		if (version < 0) {
+			return null;
+		}
+		try {
+			return new Snapshot(version, Files.readAllBytes(entryFile(hash)));
+		} catch (NoSuchFileException e) {
+			// removed by another process since looking it up, or lost in a crash
+			locked(() -> {
+				int slot = findSlot(hash);
+				if (slot >= 0 && slotLong(slot, VERSION_OFFSET) == version && !Files.exists(entryFile(hash))) {
+					removeEntry(slot);
+				}
+				return null;
+			});
+			return null;
+		} catch (IOException e) {
+			throw new ResourceIOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes content to a new temporary file in the cache directory.
+	 *
+	 * @return the temporary file
+	 */
+	private Path writeTemp(String storageKey, byte[] content) throws ResourceIOException {
+		Path temp = directory.resolve(storageKey + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+		try (SeekableByteChannel out = Files.newByteChannel(temp, EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+			permissions(FILE_PERMISSIONS))) {
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			while (buffer.hasRemaining()) {
+				out.write(buffer);
+			}
+			return temp;
+		} catch (IOException e) {
+			deleteQuietly(temp);
+			throw new ResourceIOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Replaces an entry's file with the given temporary file and updates the
+	 * index. Must be called while holding the lock.
+	 */
+	private void moveIntoPlace(Path temp, long hash, long size) throws IOException {
+		try {
+			Files.move(temp, entryFile(hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			deleteQuietly(temp);
+			throw e;
+		}
+		int slot = findSlot(hash);
+		if (slot < 0) {
+			insertSlot(hash, size, tick());
+			index.putInt(ENTRIES_OFFSET, index.getInt(ENTRIES_OFFSET) + 1);
+			index.putLong(SIZE_OFFSET, index.getLong(SIZE_OFFSET) + size);
+		} else {
+			index.putLong(SIZE_OFFSET, index.getLong(SIZE_OFFSET) - slotLong(slot, ENTRY_SIZE_OFFSET) + size);
+			setSlotLong(slot, ENTRY_SIZE_OFFSET, size);
+			setSlotLong(slot, ACCESS_OFFSET, tick());
+			setSlotLong(slot, VERSION_OFFSET, slotLong(slot, VERSION_OFFSET) + 1);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries until the cache is within its
+	 * bounds. Must be called while holding the lock.
+	 */
+	private void evict() throws IOException {
+		while (index.getLong(SIZE_OFFSET) > maxSize || index.getInt(ENTRIES_OFFSET) > maxEntries) {
+			int oldest = -1;
+			long oldestAccess = Long.MAX_VALUE;
+			for (int slot = 0; slot < slots; slot++) {
+				if (slotLong(slot, HASH_OFFSET) != 0 && slotLong(slot, ACCESS_OFFSET) < oldestAccess) {
+					oldest = slot;
+					oldestAccess = slotLong(slot, ACCESS_OFFSET);
+				}
+			}
+			if (oldest < 0) {
+				return;
+			}
+			removeEntry(oldest);
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Removes an entry from the index and deletes its file. Must be called
+	 * while holding the lock.
+	 */
+	private void removeEntry(int slot) throws IOException {
+		long hash = slotLong(slot, HASH_OFFSET);
+		index.putInt(ENTRIES_OFFSET, index.getInt(ENTRIES_OFFSET) - 1);
+		index.putLong(SIZE_OFFSET, index.getLong(SIZE_OFFSET) - slotLong(slot, ENTRY_SIZE_OFFSET));
+		removeSlot(slot);
+		Files.deleteIfExists(entryFile(hash));
+	}
+
+	private int findSlot(long hash) {
+		int mask = slots - 1;
+		for (int slot = (int) (hash ^ (hash >>> 32)) & mask;; slot = (slot + 1) & mask) {
+			long slotHash = slotLong(slot, HASH_OFFSET);
+			if (slotHash == hash) {
+				return slot;
+			}
+			if (slotHash == 0) {
+				return -1;
+			}
+		}
+	}
+
+	private int insertSlot(long hash, long size, long access) {
+		int mask = slots - 1;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (slotLong(slot, HASH_OFFSET) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		setSlotLong(slot, ENTRY_SIZE_OFFSET, size);
+		setSlotLong(slot, ACCESS_OFFSET, access);
+		setSlotLong(slot, VERSION_OFFSET, 0);
+		setSlotLong(slot, HASH_OFFSET, hash);
+		return slot;
+	}
+
+	/**
+	 * Clears a slot, shifting back following slots of the same probe sequence
+	 * so that lookups don't need tombstones.
+	 */
+	private void removeSlot(int slot) {
+		int mask = slots - 1;
+		int empty = slot;
+		for (int next = (slot + 1) & mask;; next = (next + 1) & mask) {
+			long hash = slotLong(next, HASH_OFFSET);
+			if (hash == 0) {
+				break;
+			}
+			int home = (int) (hash ^ (hash >>> 32)) & mask;
+			// move the slot back unless its home lies cyclically in (empty, next]
+			boolean stays = empty <= next ? (empty < home && home <= next) : (empty < home || home <= next);
+			if (!stays) {
+				for (int offset = 0; offset < SLOT_SIZE; offset += 8) {
+					setSlotLong(empty, offset, slotLong(next, offset));
+				}
+				empty = next;
+			}
+		}
+		for (int offset = 0; offset < SLOT_SIZE; offset += 8) {
+			setSlotLong(empty, offset, 0);
+		}
+	}
+
+	/** Returns the next value of the access clock, shared by all processes. */
+	private long tick() {
+		long clock = index.getLong(CLOCK_OFFSET) + 1;
+		index.putLong(CLOCK_OFFSET, clock);
+		return clock;
+	}
+
+	private long slotLong(int slot, int offset) {
+		return index.getLong(HEADER_SIZE + slot * SLOT_SIZE + offset);
+	}
+
+	private void setSlotLong(int slot, int offset, long value) {
+		index.putLong(HEADER_SIZE + slot * SLOT_SIZE + offset, value);
+	}
+
+	/**
+	 * Returns the attributes to create a file with the given permissions, or
+	 * none if the file system doesn't support them.
+	 */
+	private FileAttribute<?>[] permissions(Set<PosixFilePermission> permissions) {
+		return posix ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(permissions) } : new FileAttribute<?>[0];
+	}
+
+	private Path entryFile(long hash) {
+		return directory.resolve(String.format("%016x", hash) + ENTRY_SUFFIX);
+	}
+
+	private static long parseHash(String storageKey) {
+		try {
+			return storageKey.length() == 16 ? Long.parseUnsignedLong(storageKey, 16) : 0;
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// left for cleanup when the cache is next opened
+		}
+	}
+
+	/**
+	 * Runs an operation on the index while holding the lock, reopening the
+	 * index file if an interrupted thread closed it.
+	 */
+	private <R> R locked(IndexOperation<R> operation) throws ResourceIOException {
+		lock.lock();
+		try {
+			if (!channel.isOpen()) {
+				channel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			FileLock fileLock = channel.lock();
+			try {
+				return operation.run();
+			} finally {
+				fileLock.release();
+			}
+		} catch (ResourceIOException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ResourceIOException(e.getMessage(), e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the index file. Entries remain on disk for the next time the
+	 * directory is opened.
+	 */
+	void close() throws IOException {
+		STORAGES.remove(directory, this);
+		lock.lock();
+		try {
+			channel.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the directory holding this cache.
+	 *
+	 * @return the cache directory
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the total size of all cached entries, including those stored by
+	 * other processes.
+	 *
+	 * @return the size of the cache in bytes
+	 */
+	public long getSize() {
+		lock.lock();
+		try {
+			return index.getLong(SIZE_OFFSET);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of cached entries, including those stored by other
+	 * processes.
+	 *
+	 * @return the number of entries
+	 */
+	public int getEntryCount() {
+		lock.lock();
+		try {
+			return index.getInt(ENTRIES_OFFSET);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups by this process that found an entry.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups by this process that found no entry.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of entries this process evicted to keep the cache
+	 * within its bounds.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "DiskCache(" + directory + ", entries: " + getEntryCount() + ", size: " + getSize() + ", hits: " + getHits()
+			+ ", misses: " + getMisses() + ", evictions: " + getEvictions() + ")";
+	}
+}
@@ -0,0 +1,100 @@
+package com.belladati.sdk.impl;
+
+import java.net.URI;
+import java.util.regex.Pattern;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Groups of API endpoints with similar load on the server. Rate and
+ * concurrency limits are applied separately to each family, so that bulk
+ * imports don't hold up interactive requests such as view rendering.
+ * {@link ApacheHttpTransport} also keeps a separate connection pool for each
+ * family, so that slow exports or uploads can't take all connections.
+ * <p>
+ * Limits are configured through system properties. A property with the
+ * family name appended, e.g. <tt>bdRateLimitImport</tt>, takes precedence
+ * over the property applying to all families, e.g. <tt>bdRateLimit</tt>.
+ *
+ *
+ */
+public enum EndpointFamily {
+
+	/** importing data and writing data set rows, reading rows is metadata */
+	IMPORT("Import", 6),
+	/** rendering views */
+	VIEWS("Views", 10),
+	/** exporting views to files and downloading files */
+	EXPORT("Export", 6),
+	/** everything else: reports, dashboards, users, data set definitions */
+	METADATA("Metadata", 18);
+
+	/** default connection limit of the whole client, divided between the families */
+	private static final int DEFAULT_MAX_CONNECTIONS = 40;
+
+	private static final Pattern IMPORT_PATH = Pattern.compile(".*/api/(import/.*|dataSets/[^/]+/(data|replace)(/.*)?)");
+	private static final Pattern EXPORT_PATH = Pattern.compile(".*/api/(reports/views/[^/]+/export/.*|utils/(file/.*|mergePdfFiles))");
+	private static final Pattern VIEWS_PATH = Pattern.compile(".*/api/reports/views/.*");
+
+	private final String propertySuffix;
+	/** connections of the family out of {@link #DEFAULT_MAX_CONNECTIONS} */
+	private final int defaultShare;
+
+	private EndpointFamily(String propertySuffix, int defaultShare) {
+		this.propertySuffix = propertySuffix;
+		this.defaultShare = defaultShare;
+	}
+
+	/**
+	 * Returns the family of a request to the endpoint at the given URI. Only
+	 * requests writing data belong to {@link #IMPORT}, so that reading rows or
+	 * listing imports doesn't wait behind uploads.
+	 *
+	 * @param method HTTP method of the request
+	 * @param uri URI of the endpoint
+	 * @return the family the request belongs to
+	 */
+	static EndpointFamily of(String method, URI uri) {
+		String path = uri.getPath();
+		if (path == null) {
+			return METADATA;
+		}
+		if (!"GET".equalsIgnoreCase(method) && IMPORT_PATH.matcher(path).matches()) {
+			return IMPORT;
+		}
+		if (EXPORT_PATH.matcher(path).matches()) {
+			return EXPORT;
+		}
+		if (VIEWS_PATH.matcher(path).matches()) {
+			return VIEWS;
+		}
+		return METADATA;
+	}
+
+	/**
+	 * Reads a limit for this family from the system properties.
+	 *
+	 * @param property name of the property applying to all families
+	 * @param defaultValue value to use if neither property is set
+	 * @return the configured limit
+	 */
+	int readLimit(String property, int defaultValue) {
+		return readFromProperty(property + propertySuffix, readFromProperty(property, defaultValue));
+	}
+
+	/**
+	 * Returns the maximum number of connections to keep open for this family.
+	 * <tt>bdMaxConnections</tt> (default 40) limits the connections of the
+	 * whole client and is divided between the families, so that their pools
+	 * together don't exceed it. A family's limit can be set with the family
+	 * name appended, e.g. <tt>bdMaxConnectionsExport</tt>, but not above
+	 * <tt>bdMaxConnections</tt>.
+	 *
+	 * @return the size of the family's connection pool
+	 */
+	int getMaxConnections() {
+		int total = Math.max(1, readFromProperty("bdMaxConnections", DEFAULT_MAX_CONNECTIONS));
+		int share = Math.max(1, total * defaultShare / DEFAULT_MAX_CONNECTIONS);
+		return Math.max(1, Math.min(total, readFromProperty("bdMaxConnections" + propertySuffix, share)));
+	}
+}
@@ -0,0 +1,158 @@
+package com.belladati.sdk.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated measurements of all requests sent to one endpoint with one HTTP
+ * method.
+ *
+ *
+ */
+public class EndpointMetrics {
+
+	private final String method;
+	private final String endpoint;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder requestBytes = new LongAdder();
+	private final LongAdder responseBytes = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<Integer, LongAdder>();
+
+	EndpointMetrics(String method, String endpoint) {
+		this.method = method;
+		this.endpoint = endpoint;
+	}
+
+	void record(RequestMetric metric) {
+		requests.increment();
+		latency.record(metric.getLatencyNanos());
+		requestBytes.add(metric.getRequestBytes());
+		responseBytes.add(metric.getResponseBytes());
+		retries.add(metric.getRetries());
+		waitNanos.add(metric.getWaitNanos());
+		if (metric.getStatusCode() == 0) {
+			failures.increment();
+		} else {
+			statusCodes.computeIfAbsent(metric.getStatusCode(), code -> new LongAdder()).increment();
+		}
+	}
+
+	/**
+	 * Returns the HTTP method of the requests.
+	 *
+	 * @return the request method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Returns the endpoint template, e.g. <tt>api/reports/{id}</tt>.
+	 *
+	 * @return the endpoint template
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * Returns the distribution of request latencies.
+	 *
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the number of completed requests.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of requests that received no response, e.g. because
+	 * the connection failed.
+	 *
+	 * @return the number of failed requests
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * Returns the number of request body bytes sent.
+	 *
+	 * @return the number of bytes sent
+	 */
+	public long getRequestBytes() {
+		return requestBytes.sum();
+	}
+
+	/**
+	 * Returns the number of response body bytes received, before decoding.
+	 *
+	 * @return the number of bytes received
+	 */
+	public long getResponseBytes() {
+		return responseBytes.sum();
+	}
+
+	/**
+	 * Returns the number of retries made.
+	 *
+	 * @return the number of retries
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * Returns the total time requests waited for the request limits before
+	 * being sent.
+	 *
+	 * @return the wait time in nanoseconds
+	 */
+	public long getWaitNanos() {
+		return waitNanos.sum();
+	}
+
+	/**
+	 * Returns the number of responses received with the given status code.
+	 *
+	 * @param statusCode the HTTP status code
+	 * @return the number of responses with that code
+	 */
+	public long getStatusCount(int statusCode) {
+		LongAdder count = statusCodes.get(statusCode);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * Returns the number of responses received per status code.
+	 *
+	 * @return status codes mapped to their number of responses
+	 */
+	public Map<Integer, Long> getStatusCounts() {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		for (Map.Entry<Integer, LongAdder> entry : statusCodes.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		return counts;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + endpoint + "(requests: " + getRequests() + ", failures: " + getFailures() + ", status: "
+			+ getStatusCounts() + ", " + latency + ")";
+	}
+}
@@ -0,0 +1,150 @@
+package com.belladati.sdk.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Keeps entities loaded by ID, such as reports or data sets, so that loading
+ * them again doesn't request and parse them again. Entities are returned from
+ * the cache for <tt>bdEntityCacheTtl</tt> milliseconds after they were loaded
+ * (default 60 seconds). After that, the entity's JSON is loaded again; if its
+ * <tt>lastChange</tt> is the same as before, the cached entity is kept and
+ * returned without building it again.
+ * <p>
+ * Up to <tt>bdEntityCacheSize</tt> entities (default 100) are kept. Both
+ * settings can be set for each type by appending the cache name, e.g.
+ * <tt>bdEntityCacheTtlReports</tt>. The cache is only used if
+ * <tt>bdEntityCache</tt> is set to <tt>true</tt>.
+ *
+ *
+ */
+public class EntityCache<T> {
+
+	private final BoundedCache<Entry<T>> cache;
+	private final long ttlNanos;
+
+	private final LongAdder revalidations = new LongAdder();
+
+	/**
+	 * Creates a cache configured from the system properties.
+	 *
+	 * @param name name of the cache, used in statistics and property names
+	 */
+	EntityCache(String name) {
+		this(name, BoundedCache.readSetting("bdEntityCacheSize", name, 100),
+			BoundedCache.readSetting("bdEntityCacheTtl", name, 60 * 1000));
+	}
+
+	/**
+	 * Creates a cache with the given limits.
+	 *
+	 * @param name name of the cache, used in statistics
+	 * @param maxSize the largest number of entities to keep
+	 * @param ttlMillis time for which entities are returned without loading
+	 *            them again
+	 */
+	EntityCache(String name, int maxSize, long ttlMillis) {
+		// entities aren't removed when they expire, so they can be revalidated
+		this.cache = new BoundedCache<Entry<T>>(name, maxSize, 0);
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+	}
+
+	/**
+	 * Creates a cache for the given type if entity caching is enabled.
+	 *
+	 * @param name name of the cache, used in statistics and property names
+	 * @return a new cache, or <tt>null</tt> if entities shouldn't be cached
+	 */
+	static <T> EntityCache<T> create(String name) {
+		return readFromProperty("bdEntityCache", false) ? new EntityCache<T>(name) : null;
+	}
+
+	/**
+	 * Returns the entity with the given ID, loading it if it isn't cached or
+	 * has expired. An expired entity whose <tt>lastChange</tt> hasn't changed
+	 * is returned again.
+	 *
+	 * @param id ID of the entity
+	 * @param loader loads the entity's JSON
+	 * @param factory builds the entity from its JSON
+	 * @return the cached or loaded entity
+	 */
+	T load(String id, Supplier<JsonNode> loader, Function<JsonNode, T> factory) {
+		Entry<T> entry = cache.getIfPresent(id);
+		long now = System.nanoTime();
+		if (entry != null && now - entry.loaded < ttlNanos) {
+			return entry.entity;
+		}
+		JsonNode json = loader.get();
+		String lastChange = json.hasNonNull("lastChange") ? json.get("lastChange").asText() : null;
+		if (entry != null && lastChange != null && lastChange.equals(entry.lastChange)) {
+			revalidations.increment();
+			cache.put(id, new Entry<T>(entry.entity, lastChange, now));
+			return entry.entity;
+		}
+		T entity = factory.apply(json);
+		cache.put(id, new Entry<T>(entity, lastChange, now));
+		return entity;
+	}
+
+	/**
+	 * Removes the entity with the given ID, so that it is loaded again the
+	 * next time.
+	 *
+	 * @param id ID of the entity
+	 */
+	public void invalidate(String id) {
+		cache.invalidate(id);
+	}
+
+	/**
+	 * Removes all entities.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Returns the cache holding the entities, with its size and evictions.
+	 *
+	 * @return the underlying cache
+	 */
+	public BoundedCache<?> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Returns the number of expired entities returned again because their
+	 * <tt>lastChange</tt> hadn't changed.
+	 *
+	 * @return the number of revalidated entities
+	 */
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Entity cache(" + cache.getName() + ", size: " + cache.size() + "/" + cache.getMaxSize() + ", revalidations: "
+			+ getRevalidations() + ")";
+	}
+
+	/** A cached entity with the time it was loaded or last revalidated. */
+	private static class Entry<T> {
+		private final T entity;
+		private final String lastChange;
+		private final long loaded;
+
+		private Entry(T entity, String lastChange, long loaded) {
+			this.entity = entity;
+			this.lastChange = lastChange;
+			this.loaded = loaded;
+		}
+	}
+}
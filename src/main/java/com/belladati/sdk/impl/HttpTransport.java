@@ -0,0 +1,53 @@
+package com.belladati.sdk.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends requests built by {@link BellaDatiClient} to the server. The client
+ * takes care of building requests, OAuth signing, content coding and mapping
+ * error responses to exceptions; a transport only needs to move bytes.
+ * <p>
+ * Transports must not decode compressed responses themselves, since
+ * {@link CompressionStats} counts the bytes as they were received. Before
+ * sending a request, a transport calls {@link TransportRequest#sign()} so that
+ * each attempt is sent with a fresh signature.
+ * <p>
+ * {@link ApacheHttpTransport} is used by default. {@link JdkHttpTransport} can
+ * be chosen by setting the <tt>bdTransport</tt> system property to
+ * <tt>jdk</tt>.
+ *
+ *
+ */
+public interface HttpTransport extends Closeable {
+
+	/**
+	 * Sends a request, blocking until the response headers are received. The
+	 * caller must close the response to release the connection.
+	 *
+	 * @param request the request to send
+	 * @return the response, with a body that may still be read from the
+	 *         connection
+	 * @throws IOException if the request cannot be sent
+	 */
+	TransportResponse execute(TransportRequest request) throws IOException;
+
+	/**
+	 * Sends a request without blocking the calling thread. The response body
+	 * is completely received before the returned future completes. Cancelling
+	 * the future aborts the exchange if possible.
+	 *
+	 * @param request the request to send
+	 * @return a future completed with the response, or with an
+	 *         {@link IOException} if the request cannot be sent
+	 */
+	CompletableFuture<TransportResponse> executeAsync(TransportRequest request);
+
+	/**
+	 * Returns statistics on the connections opened by this transport.
+	 *
+	 * @return the connection pool statistics
+	 */
+	ConnectionPoolStats getPoolStats();
+}
@@ -0,0 +1,238 @@
+package com.belladati.sdk.impl;
+
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * {@link HttpTransport} based on the JDK's {@link HttpClient}. It negotiates
+ * HTTP/2 on its own and has no dependencies beyond the JDK, but doesn't cache
+ * responses.
+ * <p>
+ * The JDK client always keeps connections alive and manages them internally,
+ * so <tt>bdKeepAlive</tt> and <tt>bdMaxConnections</tt> have no effect, and
+ * the pool statistics only count requests. Request bodies of known length
+ * are buffered in memory before they are sent; streamed bodies, such as data
+ * uploads, are written through a pipe while the client sends them.
+ *
+ *
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+	/** headers set by the JDK client itself, which it refuses to accept */
+	private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+	private final ConnectionPoolStats poolStats = new ConnectionPoolStats();
+	private final HttpClient client;
+	private final Duration responseTimeout;
+
+	/**
+	 * Creates a new transport configured through system properties.
+	 *
+	 * @param versionPolicy HTTP versions to use; HTTP/2 is attempted unless
+	 *            set to <tt>FORCE_HTTP_1</tt>
+	 */
+	public JdkHttpTransport(HttpVersionPolicy versionPolicy) {
+		int globalTimeout = readFromProperty("bdTimeout", 100000);
+		int connectTimeout = readFromProperty("bdConnectTimeout", globalTimeout);
+		int socketTimeout = readFromProperty("bdSocketTimeout", globalTimeout);
+
+		this.responseTimeout = Duration.ofMillis(socketTimeout);
+		this.client = HttpClient.newBuilder()
+				.version(versionPolicy == HttpVersionPolicy.FORCE_HTTP_1 ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2)
+				.connectTimeout(Duration.ofMillis(connectTimeout))
+				.sslContext(BellaDatiClient.buildSslContext())
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		HttpRequest jdkRequest = toJdkRequest(request);
+		try {
+			poolStats.requestSent();
+			HttpResponse<InputStream> response = client.send(jdkRequest, BodyHandlers.ofInputStream());
+			return new StreamingResponse(response);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a response");
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+		HttpRequest jdkRequest;
+		try {
+			jdkRequest = toJdkRequest(request);
+		} catch (IOException | RuntimeException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+
+		poolStats.requestSent();
+		CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(jdkRequest, BodyHandlers.ofByteArray());
+		exchange.whenComplete((response, e) -> {
+			if (e != null) {
+				result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+			} else {
+				result.complete(new BufferedTransportResponse(response.statusCode(), firstValues(response.headers()),
+					response.body()));
+			}
+		});
+		// abort the exchange if the caller is no longer interested
+		result.whenComplete((response, e) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Signs a request and converts it into a request for the JDK client.
+	 *
+	 * @param request the request to convert
+	 * @return a request with the same method, URI, headers and content
+	 * @throws IOException if the request content cannot be read
+	 */
+	private HttpRequest toJdkRequest(TransportRequest request) throws IOException {
+		request.sign();
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri()).timeout(responseTimeout);
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+				builder.setHeader(header.getKey(), header.getValue());
+			}
+		}
+		RequestBody body = request.getBody();
+		BodyPublisher publisher = BodyPublishers.noBody();
+		if (body != null) {
+			publisher = body.getContentLength() < 0 ? BodyPublishers.ofInputStream(() -> stream(body))
+				: BodyPublishers.ofByteArray(body.toByteArray());
+			builder.setHeader("Content-Type", body.getContentType());
+			if (body.getContentEncoding() != null) {
+				builder.setHeader("Content-Encoding", body.getContentEncoding());
+			}
+		}
+		return builder.method(request.getMethod(), publisher).build();
+	}
+
+	/**
+	 * Streams a body of unknown length, writing it on a virtual thread while
+	 * the client sends it.
+	 *
+	 * @param body the body to stream
+	 * @return a stream reading the body as it is written
+	 */
+	private static InputStream stream(RequestBody body) {
+		try {
+			return new PipedBody(body);
+		} catch (IOException e) {
+			// can't happen connecting new pipes
+			throw new IllegalStateException("Failed to stream request body", e);
+		}
+	}
+
+	private static Map<String, String> firstValues(HttpHeaders headers) {
+		Map<String, String> values = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		headers.map().forEach((name, list) -> {
+			if (!list.isEmpty()) {
+				values.putIfAbsent(name, list.get(0));
+			}
+		});
+		return values;
+	}
+
+	@Override
+	public ConnectionPoolStats getPoolStats() {
+		return poolStats;
+	}
+
+	@Override
+	public void close() {
+		client.close();
+	}
+
+	/** Response whose body is read from the connection as it arrives. */
+	private static class StreamingResponse implements TransportResponse {
+		private final HttpResponse<InputStream> response;
+
+		private StreamingResponse(HttpResponse<InputStream> response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return response.statusCode();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return response.headers().firstValue(name).orElse(null);
+		}
+
+		@Override
+		public InputStream getBody() {
+			return response.body();
+		}
+
+		@Override
+		public void close() throws IOException {
+			response.body().close();
+		}
+	}
+
+	/** Pipe reading a request body while it is written on a virtual thread. */
+	private static class PipedBody extends PipedInputStream {
+		private volatile IOException failure;
+
+		private PipedBody(RequestBody body) throws IOException {
+			super(64 * 1024);
+			PipedOutputStream out = new PipedOutputStream(this);
+			Thread.ofVirtual().name("belladati-request-body").start(() -> {
+				try {
+					body.writeTo(out);
+				} catch (IOException e) {
+					failure = e;
+				} catch (RuntimeException e) {
+					failure = new IOException("Failed to write request body", e);
+				} finally {
+					// after recording any failure, so that the reader sees it
+					try {
+						out.close();
+					} catch (IOException ignored) {}
+				}
+			});
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read < 0 && failure != null) {
+				// don't end a truncated body as if it was complete
+				throw failure;
+			}
+			return read;
+		}
+	}
+}
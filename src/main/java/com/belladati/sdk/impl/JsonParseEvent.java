@@ -0,0 +1,30 @@
+package com.belladati.sdk.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering parsing a JSON response, so that parsing time
+ * and allocation can be attributed to the endpoint the JSON was loaded from.
+ *
+ *
+ */
+@Name("com.belladati.sdk.JsonParse")
+@Label("BellaDati JSON Parse")
+@Category({ "BellaDati SDK", "JSON" })
+@Description("JSON response parsed by the BellaDati SDK")
+@StackTrace(false)
+final class JsonParseEvent extends jdk.jfr.Event {
+
+	@Label("Endpoint")
+	@Description("Endpoint template with IDs replaced by placeholders")
+	String endpoint;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+}
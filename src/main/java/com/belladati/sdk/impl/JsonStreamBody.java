@@ -0,0 +1,169 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request body generated by a {@link JsonStreamWriter} while it is sent. The
+ * length of the body isn't known in advance, so it is sent using chunked
+ * transfer encoding and memory use doesn't depend on its size. If requested,
+ * the body is compressed on the fly.
+ * <p>
+ * Bodies too small to be worth compressing are detected by generating their
+ * beginning once up front; they are kept in memory and sent as is.
+ *
+ *
+ */
+final class JsonStreamBody implements RequestBody {
+
+	private final JsonStreamWriter writer;
+	private final String contentType;
+	private final boolean compress;
+	private final CompressionStats stats;
+	private final LongAdder written = new LongAdder();
+
+	/** the whole content if it is small, <tt>null</tt> if not yet known */
+	private byte[] small;
+	private boolean prepared;
+
+	JsonStreamBody(JsonStreamWriter writer, String contentType, boolean compress, CompressionStats stats) {
+		this.writer = writer;
+		this.contentType = contentType;
+		this.compress = compress;
+		this.stats = stats;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public String getContentEncoding() {
+		return compress && prepare() == null ? "gzip" : null;
+	}
+
+	@Override
+	public long getContentLength() {
+		byte[] content = prepare();
+		return content != null ? content.length : -1;
+	}
+
+	/**
+	 * Generates the beginning of the body to find out whether it is small.
+	 *
+	 * @return the content if it is small, <tt>null</tt> otherwise
+	 */
+	private synchronized byte[] prepare() {
+		if (!prepared) {
+			ByteArrayOutputStream buf = new ByteArrayOutputStream(ContentCoding.MIN_COMPRESS_SIZE);
+			try (JsonGenerator generator = JsonSupport.createGenerator(new LimitedOutputStream(buf))) {
+				writer.write(generator);
+			} catch (LimitExceededException e) {
+				// large, generated again while sending
+				prepared = true;
+				return null;
+			} catch (IOException e) {
+				// can't happen writing to memory, unless the writer fails
+				throw new IllegalStateException("Failed to write request body", e);
+			}
+			small = buf.toByteArray();
+			stats.requestPrepared(small.length, small.length);
+			prepared = true;
+		}
+		return small;
+	}
+
+	/**
+	 * Returns the number of bytes written by this body so far, counting every
+	 * time it was written.
+	 *
+	 * @return the number of bytes written
+	 */
+	long getBytesWritten() {
+		return written.sum();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		byte[] small = prepare();
+		if (small != null) {
+			out.write(small);
+			written.add(small.length);
+			return;
+		}
+		CountingOutputStream encoded = new CountingOutputStream(out);
+		GZIPOutputStream gzip = compress ? new GZIPOutputStream(encoded, 8192) : null;
+		CountingOutputStream content = new CountingOutputStream(gzip != null ? gzip : encoded);
+		try (JsonGenerator generator = JsonSupport.createGenerator(content)) {
+			// the transport closes its stream once the request is complete
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			writer.write(generator);
+		}
+		if (gzip != null) {
+			gzip.finish();
+		}
+		written.add(encoded.count);
+		stats.requestPrepared(content.count, encoded.count);
+	}
+
+	/** Stops generating content once it is too large to be sent as is. */
+	private static class LimitedOutputStream extends FilterOutputStream {
+		private int count;
+
+		private LimitedOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			count += len;
+			if (count >= ContentCoding.MIN_COMPRESS_SIZE) {
+				throw new LimitExceededException();
+			}
+			out.write(b, off, len);
+		}
+	}
+
+	/** Thrown when the beginning of a large body has been generated. */
+	private static class LimitExceededException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private LimitExceededException() {
+			super("Body too large to send as is");
+		}
+	}
+
+	/** Counts the bytes written through the stream. */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
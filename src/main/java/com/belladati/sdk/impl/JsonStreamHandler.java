@@ -0,0 +1,23 @@
+package com.belladati.sdk.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Handles a JSON response incrementally while it is read from the server,
+ * without building the whole document tree in memory first.
+ *
+ * @param <T> type of the result built from the response
+ */
+public interface JsonStreamHandler<T> {
+
+	/**
+	 * Reads the response from the given parser.
+	 *
+	 * @param parser parser positioned before the first token of the response
+	 * @return the result built from the response
+	 * @throws IOException if the response cannot be read or parsed
+	 */
+	T handle(JsonParser parser) throws IOException;
+}
@@ -0,0 +1,23 @@
+package com.belladati.sdk.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes a JSON request body incrementally while it is sent to the server,
+ * without building the whole document tree in memory first. Writers may be
+ * called more than once for the same request, e.g. when it is retried, and
+ * must write the same content each time.
+ *
+ */
+public interface JsonStreamWriter {
+
+	/**
+	 * Writes the request body to the given generator.
+	 *
+	 * @param generator generator writing to the request
+	 * @throws IOException if the body cannot be written
+	 */
+	void write(JsonGenerator generator) throws IOException;
+}
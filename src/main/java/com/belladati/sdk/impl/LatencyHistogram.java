@@ -0,0 +1,131 @@
+package com.belladati.sdk.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of request latencies, in the style of an HDR histogram.
+ * Latencies are counted in microsecond buckets whose width grows with the
+ * latency, so that every recorded value is within about 3% of its bucket's
+ * bounds. Recording only increments a counter, without locking or
+ * allocation.
+ *
+ *
+ */
+public class LatencyHistogram {
+
+	/** each power of two is split into 2^SUB_BUCKET_BITS buckets */
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** highest power of two tracked, larger latencies are counted as the largest value */
+	private static final int MAX_EXPONENT = 40;
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(bucketOf(MAX_VALUE) + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	void record(long nanos) {
+		long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+		counts.incrementAndGet(bucketOf(micros));
+		count.increment();
+		sum.add(micros);
+		max.accumulate(micros);
+	}
+
+	/**
+	 * Returns the bucket counting the given value. Values below
+	 * {@link #SUB_BUCKETS} have a bucket each, larger values share buckets of
+	 * the same relative width.
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	/** Returns the largest value counted in the given bucket. */
+	private static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		long lowest = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 *
+	 * @return the number of latencies
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the average of the recorded latencies.
+	 *
+	 * @return the mean latency in microseconds, 0 if nothing was recorded
+	 */
+	public double getMeanMicros() {
+		long recorded = count.sum();
+		return recorded == 0 ? 0 : (double) sum.sum() / recorded;
+	}
+
+	/**
+	 * Returns the highest recorded latency.
+	 *
+	 * @return the maximum latency in microseconds
+	 */
+	public long getMaxMicros() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the latency below which the given percentage of recorded
+	 * latencies fall.
+	 *
+	 * @param percentile the percentile between 0 and 100, e.g. 99.9
+	 * @return the latency at the percentile in microseconds, 0 if nothing was
+	 *         recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), getMaxMicros());
+			}
+		}
+		return getMaxMicros();
+	}
+
+	@Override
+	public String toString() {
+		return "Latency(count: " + getCount() + ", p50: " + getPercentileMicros(50) + "us, p99: " + getPercentileMicros(99)
+			+ "us, max: " + getMaxMicros() + "us)";
+	}
+}
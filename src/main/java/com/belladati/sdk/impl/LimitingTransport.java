@@ -0,0 +1,226 @@
+package com.belladati.sdk.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends requests through another transport, applying the {@link RateLimiter}
+ * and {@link ConcurrencyLimiter} of the request's {@link EndpointFamily}.
+ * Blocking requests hold their place until the response is closed, so that
+ * streamed responses count as in flight while they are being read.
+ * <p>
+ * Requests wait for their turn at most <tt>bdConnectionRequestTimeout</tt>
+ * milliseconds, the same as for a pooled connection of their family.
+ *
+ *
+ */
+class LimitingTransport implements HttpTransport {
+
+	private final HttpTransport delegate;
+	private final Map<EndpointFamily, RateLimiter> rateLimiters = new EnumMap<EndpointFamily, RateLimiter>(EndpointFamily.class);
+	private final Map<EndpointFamily, ConcurrencyLimiter> concurrencyLimiters = new EnumMap<EndpointFamily, ConcurrencyLimiter>(
+		EndpointFamily.class);
+	private final Map<EndpointFamily, Long> waitTimeouts = new EnumMap<EndpointFamily, Long>(EndpointFamily.class);
+
+	LimitingTransport(HttpTransport delegate, String baseUrl) {
+		this.delegate = delegate;
+		for (EndpointFamily family : EndpointFamily.values()) {
+			rateLimiters.put(family, RateLimiter.forServer(baseUrl, family));
+			concurrencyLimiters.put(family, ConcurrencyLimiter.forServer(baseUrl, family));
+			waitTimeouts.put(family,
+				TimeUnit.MILLISECONDS.toNanos(family.readLimit("bdConnectionRequestTimeout", family.readLimit("bdTimeout", 100000))));
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the server rejected a request because it is
+	 * overloaded.
+	 */
+	private static boolean isOverloaded(int statusCode) {
+		return statusCode == 429 || statusCode == 503;
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		EndpointFamily family = EndpointFamily.of(request.getMethod(), request.getUri());
+		long delay = rateLimiters.get(family).reserve();
+		long waitStart = System.nanoTime();
+		long deadline = waitStart + waitTimeouts.get(family);
+		if (delay > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to send " + request);
+			}
+		}
+		ConcurrencyLimiter limiter = concurrencyLimiters.get(family);
+		CompletableFuture<Void> permit = limiter.acquire();
+		try {
+			permit.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			withdraw(limiter, permit);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to send " + request);
+		} catch (TimeoutException e) {
+			withdraw(limiter, permit);
+			throw new InterruptedIOException("Timed out waiting to send " + request + ", " + limiter);
+		} catch (ExecutionException e) {
+			// permits don't fail
+			throw new IllegalStateException(e);
+		}
+		long start = System.nanoTime();
+		request.waited(start - waitStart);
+		TransportResponse response;
+		try {
+			response = delegate.execute(request);
+		} catch (IOException e) {
+			limiter.release(start, System.nanoTime() - start, true);
+			throw e;
+		} catch (RuntimeException e) {
+			limiter.releaseUnused();
+			throw e;
+		}
+		long latency = System.nanoTime() - start;
+		boolean overloaded = isOverloaded(response.getStatusCode());
+		return new PermitResponse(response, () -> limiter.release(start, latency, overloaded));
+	}
+
+	private static void withdraw(ConcurrencyLimiter limiter, CompletableFuture<Void> permit) {
+		if (!limiter.withdraw(permit)) {
+			limiter.releaseUnused();
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		EndpointFamily family = EndpointFamily.of(request.getMethod(), request.getUri());
+		CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+		long waitStart = System.nanoTime();
+		long delay = rateLimiters.get(family).reserve();
+		Executor executor = delay > 0 ? CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS) : Runnable::run;
+		executor.execute(() -> {
+			if (result.isDone()) {
+				// cancelled while waiting for the rate limit
+				return;
+			}
+			ConcurrencyLimiter limiter = concurrencyLimiters.get(family);
+			CompletableFuture<Void> permit = limiter.acquire();
+			AtomicBoolean released = new AtomicBoolean();
+			result.whenComplete((response, e) -> {
+				if (result.isCancelled() && !limiter.withdraw(permit) && released.compareAndSet(false, true)) {
+					limiter.releaseUnused();
+				}
+			});
+			permit.thenRun(() -> {
+				request.waited(System.nanoTime() - waitStart);
+				send(request, limiter, released, result);
+			});
+		});
+		return result;
+	}
+
+	/**
+	 * Sends a permitted asynchronous request, releasing its place in the
+	 * limiter when complete.
+	 *
+	 * @param request the request to send
+	 * @param limiter the limiter that permitted the request
+	 * @param released set when the place in the limiter has been released
+	 * @param result the future to complete with the outcome
+	 */
+	private void send(TransportRequest request, ConcurrencyLimiter limiter, AtomicBoolean released,
+		CompletableFuture<TransportResponse> result) {
+		if (result.isDone()) {
+			// cancelled, the place is released by the cancellation
+			return;
+		}
+		long start = System.nanoTime();
+		CompletableFuture<TransportResponse> exchange = delegate.executeAsync(request);
+		// abort the exchange if the caller is no longer interested
+		result.whenComplete((response, e) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		exchange.whenComplete((response, e) -> {
+			long latency = System.nanoTime() - start;
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (released.compareAndSet(false, true)) {
+				if (cause instanceof CancellationException) {
+					limiter.releaseUnused();
+				} else {
+					limiter.release(start, latency,
+						cause instanceof IOException || (cause == null && isOverloaded(response.getStatusCode())));
+				}
+			}
+			if (cause != null) {
+				result.completeExceptionally(cause);
+			} else if (!result.complete(response)) {
+				try {
+					response.close();
+				} catch (IOException ignored) {}
+			}
+		});
+	}
+
+	@Override
+	public ConnectionPoolStats getPoolStats() {
+		return delegate.getPoolStats();
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	/** Response releasing its place in the limiter when closed. */
+	private static class PermitResponse implements TransportResponse {
+
+		private final TransportResponse response;
+		private final Runnable release;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		PermitResponse(TransportResponse response, Runnable release) {
+			this.response = response;
+			this.release = release;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return response.getStatusCode();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return response.getHeader(name);
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return response.getBody();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				response.close();
+			} finally {
+				if (closed.compareAndSet(false, true)) {
+					release.run();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.belladati.sdk.impl;
+
+/**
+ * Receives the measurements of every request sent by a
+ * {@link BellaDatiClient}, e.g. to export them to a monitoring system.
+ * Register listeners with {@link RequestMetrics#addListener(MetricsListener)}.
+ * <p>
+ * Listeners are called on the thread completing the request, so they should
+ * return quickly. Exceptions thrown by listeners are ignored.
+ *
+ *
+ */
+public interface MetricsListener {
+
+	/**
+	 * Called when a request has completed, successfully or not.
+	 *
+	 * @param metric measurements of the request
+	 */
+	void requestCompleted(RequestMetric metric);
+}
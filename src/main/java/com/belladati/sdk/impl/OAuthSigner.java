@@ -0,0 +1,335 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.InternalConfigurationException;
+import oauth.signpost.http.HttpParameters;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Signs requests using OAuth 1.0a with HMAC-SHA1, writing the same
+ * <tt>Authorization</tt> header as signpost's consumers. A signer holds the
+ * credentials of one {@link TokenHolder} and is safe to share between
+ * threads.
+ * <p>
+ * Signing is the hot path of every request, so everything depending only on
+ * the credentials is prepared once: the HMAC key, the encoded fragments of
+ * the signature base string and of the header. Each thread reuses its own
+ * {@link Mac} and buffers, and nonces are drawn from
+ * {@link ThreadLocalRandom} rather than a shared generator. Requests with
+ * query parameters, form-encoded bodies or additional OAuth parameters take
+ * a slower path sorting all parameters.
+ *
+ *
+ */
+public final class OAuthSigner {
+
+	private static final String ALGORITHM = "HmacSHA1";
+	private static final String SIGNATURE_METHOD = "HMAC-SHA1";
+	private static final String VERSION = "1.0";
+	private static final String FORM_ENCODED = "application/x-www-form-urlencoded";
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final String consumerKey;
+	private final String token;
+	private final SecretKeySpec key;
+	private final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(this::newThreadState);
+
+	/*
+	 * Fragments of the encoded signature base string and of the header,
+	 * around the nonce, timestamp and signature.
+	 */
+	private final String baseBeforeNonce;
+	private final String baseBeforeTimestamp;
+	private final String baseAfterTimestamp;
+	private final String headerBeforeNonce;
+	private final String headerBeforeSignature;
+	private final String headerBeforeTimestamp;
+	private final String headerAfterTimestamp;
+
+	/**
+	 * Creates a signer for the given credentials.
+	 *
+	 * @param consumerKey the consumer key
+	 * @param consumerSecret the consumer secret
+	 * @param token the access or request token, may be <tt>null</tt>
+	 * @param tokenSecret the token secret, may be <tt>null</tt>
+	 */
+	OAuthSigner(String consumerKey, String consumerSecret, String token, String tokenSecret) {
+		this.consumerKey = percentEncode(consumerKey);
+		this.token = token == null || token.isEmpty() ? null : percentEncode(token);
+		this.key = new SecretKeySpec((percentEncode(consumerSecret) + '&' + percentEncode(tokenSecret))
+			.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+
+		String tokenParameter = this.token == null ? "" : "&oauth_token=" + this.token;
+		this.baseBeforeNonce = percentEncode("oauth_consumer_key=" + this.consumerKey + "&oauth_nonce=");
+		this.baseBeforeTimestamp = percentEncode("&oauth_signature_method=" + SIGNATURE_METHOD + "&oauth_timestamp=");
+		this.baseAfterTimestamp = percentEncode(tokenParameter + "&oauth_version=" + VERSION);
+
+		String tokenElement = this.token == null ? "" : ", oauth_token=\"" + this.token + "\"";
+		this.headerBeforeNonce = "OAuth oauth_consumer_key=\"" + this.consumerKey + "\", oauth_nonce=\"";
+		this.headerBeforeSignature = "\", oauth_signature=\"";
+		this.headerBeforeTimestamp = "\", oauth_signature_method=\"" + SIGNATURE_METHOD + "\", oauth_timestamp=\"";
+		this.headerAfterTimestamp = "\"" + tokenElement + ", oauth_version=\"" + VERSION + "\"";
+	}
+
+	private ThreadState newThreadState() {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return new ThreadState(mac);
+		} catch (GeneralSecurityException e) {
+			throw new InternalConfigurationException("Failed to set up OAuth signature", e);
+		}
+	}
+
+	/**
+	 * Signs the request by setting its <tt>Authorization</tt> header.
+	 *
+	 * @param request the request to sign
+	 * @param additionalParameters additional OAuth parameters with encoded
+	 *            values, may be <tt>null</tt>
+	 */
+	public void sign(TransportRequest request, HttpParameters additionalParameters) {
+		sign(request, additionalParameters, Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE),
+			Long.toString(System.currentTimeMillis() / 1000));
+	}
+
+	/**
+	 * Signs the request using the given nonce and timestamp.
+	 *
+	 * @param request the request to sign
+	 * @param additionalParameters additional OAuth parameters with encoded
+	 *            values, may be <tt>null</tt>
+	 * @param nonce the nonce, consisting of unreserved characters
+	 * @param timestamp the timestamp in seconds
+	 */
+	void sign(TransportRequest request, HttpParameters additionalParameters, String nonce, String timestamp) {
+		boolean form = request.getBody() != null && request.getBody().getContentType() != null
+			&& request.getBody().getContentType().startsWith(FORM_ENCODED);
+		if (request.getUri().getRawQuery() == null && !form
+			&& (additionalParameters == null || additionalParameters.isEmpty())) {
+			request.setHeader("Authorization", signFast(request, nonce, timestamp));
+		} else {
+			request.setHeader("Authorization", signSorted(request, form, additionalParameters, nonce, timestamp));
+		}
+	}
+
+	/**
+	 * Signs a request whose only parameters are the OAuth defaults, using
+	 * the prepared fragments.
+	 */
+	private String signFast(TransportRequest request, String nonce, String timestamp) {
+		ThreadState state = threadState.get();
+		StringBuilder base = state.builder();
+		appendBaseStart(base, request);
+		base.append(baseBeforeNonce).append(nonce).append(baseBeforeTimestamp).append(timestamp).append(baseAfterTimestamp);
+		String signature = percentEncode(state.sign(base));
+
+		return new StringBuilder(headerBeforeNonce.length() + headerAfterTimestamp.length() + 120).append(headerBeforeNonce)
+			.append(nonce).append(headerBeforeSignature).append(signature).append(headerBeforeTimestamp).append(timestamp)
+			.append(headerAfterTimestamp).toString();
+	}
+
+	/**
+	 * Signs a request with further parameters, sorting them into the base
+	 * string the same way signpost does.
+	 */
+	private String signSorted(TransportRequest request, boolean form, HttpParameters additionalParameters, String nonce,
+		String timestamp) {
+		Map<String, SortedSet<String>> parameters = new TreeMap<String, SortedSet<String>>();
+		if (additionalParameters != null) {
+			for (String name : additionalParameters.keySet()) {
+				parameters.computeIfAbsent(name, n -> new TreeSet<String>()).addAll(additionalParameters.get(name));
+			}
+		}
+		addForm(parameters, request.getUri().getRawQuery());
+		if (form) {
+			try {
+				addForm(parameters, new String(request.getBody().toByteArray(), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new InternalConfigurationException("Failed to read form parameters", e);
+			}
+		}
+		putIfAbsent(parameters, "oauth_consumer_key", consumerKey);
+		putIfAbsent(parameters, "oauth_signature_method", SIGNATURE_METHOD);
+		putIfAbsent(parameters, "oauth_timestamp", timestamp);
+		putIfAbsent(parameters, "oauth_nonce", nonce);
+		putIfAbsent(parameters, "oauth_version", VERSION);
+		if (token != null) {
+			putIfAbsent(parameters, "oauth_token", token);
+		}
+		parameters.remove("oauth_signature");
+
+		StringBuilder normalized = new StringBuilder();
+		for (Map.Entry<String, SortedSet<String>> entry : parameters.entrySet()) {
+			if (entry.getKey().equals("realm")) {
+				continue;
+			}
+			for (String value : entry.getValue()) {
+				if (normalized.length() > 0) {
+					normalized.append('&');
+				}
+				normalized.append(entry.getKey()).append('=').append(value);
+			}
+		}
+		ThreadState state = threadState.get();
+		StringBuilder base = state.builder();
+		appendBaseStart(base, request);
+		percentEncode(normalized, base);
+		putIfAbsent(parameters, "oauth_signature", percentEncode(state.sign(base)));
+
+		StringBuilder header = new StringBuilder("OAuth ");
+		if (parameters.containsKey("realm")) {
+			appendHeaderElement(header, "realm", parameters.get("realm"));
+		}
+		for (Map.Entry<String, SortedSet<String>> entry : parameters.entrySet()) {
+			if (entry.getKey().startsWith("oauth_") || entry.getKey().startsWith("x_oauth_")) {
+				appendHeaderElement(header, entry.getKey(), entry.getValue());
+			}
+		}
+		return header.toString();
+	}
+
+	private static void putIfAbsent(Map<String, SortedSet<String>> parameters, String name, String value) {
+		if (!parameters.containsKey(name)) {
+			parameters.put(name, new TreeSet<String>(Collections.singleton(value)));
+		}
+	}
+
+	private static void appendHeaderElement(StringBuilder header, String name, SortedSet<String> values) {
+		if (header.length() > "OAuth ".length()) {
+			header.append(", ");
+		}
+		header.append(name).append("=\"").append(values.isEmpty() ? null : values.first()).append('"');
+	}
+
+	/**
+	 * Adds the parameters of a form-encoded string, decoding and encoding
+	 * them again to normalize their encoding.
+	 */
+	private static void addForm(Map<String, SortedSet<String>> parameters, String form) {
+		if (form == null || form.isEmpty()) {
+			return;
+		}
+		for (String pair : form.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? null : pair.substring(equals + 1);
+			parameters.computeIfAbsent(percentEncode(percentDecode(name)), n -> new TreeSet<String>())
+				.add(percentEncode(percentDecode(value)));
+		}
+	}
+
+	/**
+	 * Appends the method and the encoded normalized URL of the request to the
+	 * signature base string.
+	 */
+	private static void appendBaseStart(StringBuilder base, TransportRequest request) {
+		URI uri = request.getUri();
+		String scheme = uri.getScheme().toLowerCase();
+		String authority = uri.getRawAuthority().toLowerCase();
+		if ((scheme.equals("http") && uri.getPort() == 80) || (scheme.equals("https") && uri.getPort() == 443)) {
+			authority = authority.substring(0, authority.lastIndexOf(':'));
+		}
+		String path = uri.getRawPath();
+		base.append(request.getMethod()).append('&');
+		percentEncode(scheme, base);
+		percentEncode("://", base);
+		percentEncode(authority, base);
+		percentEncode(path == null || path.isEmpty() ? "/" : path, base);
+		base.append('&');
+	}
+
+	/**
+	 * Encodes a string as required by OAuth: all characters except
+	 * unreserved ones are encoded as UTF-8 bytes.
+	 *
+	 * @param value the string to encode, may be <tt>null</tt>
+	 * @return the encoded string, empty for <tt>null</tt>
+	 */
+	static String percentEncode(String value) {
+		if (value == null) {
+			return "";
+		}
+		StringBuilder encoded = new StringBuilder(value.length() + 16);
+		percentEncode(value, encoded);
+		return encoded.toString();
+	}
+
+	private static void percentEncode(CharSequence value, StringBuilder out) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (isUnreserved(c)) {
+				out.append(c);
+			} else if (c < 0x80) {
+				appendEncoded(out, c);
+			} else {
+				// rare, encode the code point as UTF-8
+				int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+				for (byte b : value.subSequence(i, end).toString().getBytes(StandardCharsets.UTF_8)) {
+					appendEncoded(out, b & 0xff);
+				}
+				i = end - 1;
+			}
+		}
+	}
+
+	private static boolean isUnreserved(char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_'
+			|| c == '~';
+	}
+
+	private static void appendEncoded(StringBuilder out, int b) {
+		out.append('%').append(HEX[b >> 4]).append(HEX[b & 0xf]);
+	}
+
+	private static String percentDecode(String value) {
+		return value == null ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+	}
+
+	/** Buffers reused by one thread. */
+	private static class ThreadState {
+		private final Mac mac;
+		private final StringBuilder builder = new StringBuilder(256);
+		private byte[] bytes = new byte[256];
+
+		ThreadState(Mac mac) {
+			this.mac = mac;
+		}
+
+		StringBuilder builder() {
+			builder.setLength(0);
+			return builder;
+		}
+
+		/**
+		 * Signs a base string, which consists of ASCII characters only.
+		 *
+		 * @return the Base64-encoded signature
+		 */
+		String sign(StringBuilder base) {
+			int length = base.length();
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			for (int i = 0; i < length; i++) {
+				bytes[i] = (byte) base.charAt(i);
+			}
+			mac.update(bytes, 0, length);
+			return Base64.getEncoder().encodeToString(mac.doFinal());
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package com.belladati.sdk.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds a response body in fixed-size chunks taken from a shared pool, so
+ * that reading a response doesn't allocate and copy a growing array. Closing
+ * the buffer returns its chunks to the pool.
+ * <p>
+ * The pool holds up to <tt>bdBufferPoolSize</tt> (default 32) chunks of 64
+ * KB. It is shared by all threads without thread-local state or locks, so it
+ * also works with virtual threads. Chunks needed while the pool is empty are
+ * allocated and dropped when the pool is full.
+ *
+ *
+ */
+public final class PooledBuffer implements Closeable {
+
+	/** size of the pooled chunks */
+	static final int CHUNK_SIZE = 64 * 1024;
+
+	/** largest body read into an array sized from its declared length */
+	private static final int MAX_PRESIZED = BellaDatiClient.readFromProperty("bdMaxPresizedBody", 64 * 1024 * 1024);
+
+	private static final AtomicReferenceArray<byte[]> POOL = new AtomicReferenceArray<byte[]>(
+		Math.max(0, BellaDatiClient.readFromProperty("bdBufferPoolSize", 32)));
+
+	private byte[][] chunks = new byte[4][];
+	private int chunkCount;
+	/** bytes used in the last chunk */
+	private int position;
+	private boolean closed;
+
+	private PooledBuffer() {}
+
+	/**
+	 * Reads a stream to its end into pooled chunks. The caller must close the
+	 * returned buffer to return the chunks to the pool.
+	 *
+	 * @param in the stream to read
+	 * @return a buffer holding the content of the stream
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static PooledBuffer read(InputStream in) throws IOException {
+		PooledBuffer buffer = new PooledBuffer();
+		try {
+			buffer.readFrom(in);
+			return buffer;
+		} catch (IOException | RuntimeException e) {
+			buffer.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads a stream to its end into an array. If the length of the content
+	 * is known, the array is allocated with that size and filled directly;
+	 * otherwise the content is read into pooled chunks and copied into an
+	 * array of the right size once.
+	 *
+	 * @param in the stream to read
+	 * @param expectedLength the declared length of the content, e.g. from the
+	 *            <tt>Content-Length</tt> header, or -1 if unknown
+	 * @return the content of the stream
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static byte[] readBytes(InputStream in, long expectedLength) throws IOException {
+		if (expectedLength < 0 || expectedLength > MAX_PRESIZED) {
+			try (PooledBuffer buffer = read(in)) {
+				return buffer.toByteArray();
+			}
+		}
+		byte[] content = new byte[(int) expectedLength];
+		int read = in.readNBytes(content, 0, content.length);
+		if (read < content.length) {
+			// the connection ended early, return what was received
+			return Arrays.copyOf(content, read);
+		}
+		int next = in.read();
+		if (next < 0) {
+			return content;
+		}
+		// more content than declared, keep reading
+		try (PooledBuffer buffer = new PooledBuffer()) {
+			buffer.write(content, 0, content.length);
+			buffer.write(new byte[] { (byte) next }, 0, 1);
+			buffer.readFrom(in);
+			return buffer.toByteArray();
+		}
+	}
+
+	private void readFrom(InputStream in) throws IOException {
+		while (true) {
+			byte[] chunk = writableChunk();
+			int read = in.read(chunk, position, chunk.length - position);
+			if (read < 0) {
+				return;
+			}
+			position += read;
+		}
+	}
+
+	private void write(byte[] content, int offset, int length) {
+		while (length > 0) {
+			byte[] chunk = writableChunk();
+			int count = Math.min(length, chunk.length - position);
+			System.arraycopy(content, offset, chunk, position, count);
+			position += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	/** Returns the last chunk, adding a new one if it is full. */
+	private byte[] writableChunk() {
+		if (chunkCount > 0 && position < CHUNK_SIZE) {
+			return chunks[chunkCount - 1];
+		}
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+		}
+		byte[] chunk = acquire();
+		chunks[chunkCount++] = chunk;
+		position = 0;
+		return chunk;
+	}
+
+	/**
+	 * Returns the number of bytes held by this buffer.
+	 *
+	 * @return the size of the content
+	 */
+	public long size() {
+		return chunkCount == 0 ? 0 : (long) (chunkCount - 1) * CHUNK_SIZE + position;
+	}
+
+	/**
+	 * Returns the chunk holding the whole content, if it fits into one, so
+	 * that it can be parsed without copying.
+	 *
+	 * @return the only chunk, filled up to {@link #size()}, or <tt>null</tt>
+	 *         if the content spans several chunks
+	 */
+	byte[] singleChunk() {
+		checkOpen();
+		return chunkCount == 1 ? chunks[0] : chunkCount == 0 ? new byte[0] : null;
+	}
+
+	/**
+	 * Copies the content into a new array.
+	 *
+	 * @return the content of this buffer
+	 */
+	public byte[] toByteArray() {
+		checkOpen();
+		long size = size();
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Content too large for an array: " + size + " bytes");
+		}
+		byte[] content = new byte[(int) size];
+		for (int i = 0; i < chunkCount; i++) {
+			int length = i == chunkCount - 1 ? position : CHUNK_SIZE;
+			System.arraycopy(chunks[i], 0, content, i * CHUNK_SIZE, length);
+		}
+		return content;
+	}
+
+	/**
+	 * Opens a stream reading the content directly from the chunks. The
+	 * stream must not be used after the buffer is closed.
+	 *
+	 * @return a stream on the content of this buffer
+	 */
+	public InputStream openStream() {
+		checkOpen();
+		return new InputStream() {
+			private int chunk;
+			private int offset;
+
+			private int available(int index) {
+				return (index == chunkCount - 1 ? position : CHUNK_SIZE) - offset;
+			}
+
+			@Override
+			public int read() {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				checkOpen();
+				while (chunk < chunkCount && available(chunk) == 0) {
+					chunk++;
+					offset = 0;
+				}
+				if (chunk >= chunkCount) {
+					return len == 0 ? 0 : -1;
+				}
+				int count = Math.min(len, available(chunk));
+				System.arraycopy(chunks[chunk], offset, b, off, count);
+				offset += count;
+				return count;
+			}
+
+			@Override
+			public int available() {
+				long remaining = 0;
+				for (int i = chunk; i < chunkCount; i++) {
+					remaining += i == chunk ? available(i) : i == chunkCount - 1 ? position : CHUNK_SIZE;
+				}
+				return (int) Math.min(Integer.MAX_VALUE, remaining);
+			}
+		};
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Buffer already closed");
+		}
+	}
+
+	/**
+	 * Returns the chunks of this buffer to the pool.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (int i = 0; i < chunkCount; i++) {
+			release(chunks[i]);
+			chunks[i] = null;
+		}
+		chunkCount = 0;
+	}
+
+	/** Takes a chunk from the pool, allocating one if the pool is empty. */
+	private static byte[] acquire() {
+		int size = POOL.length();
+		if (size > 0) {
+			int start = ThreadLocalRandom.current().nextInt(size);
+			for (int i = 0; i < size; i++) {
+				int slot = (start + i) % size;
+				if (POOL.get(slot) != null) {
+					byte[] chunk = POOL.getAndSet(slot, null);
+					if (chunk != null) {
+						return chunk;
+					}
+				}
+			}
+		}
+		return new byte[CHUNK_SIZE];
+	}
+
+	/** Returns a chunk to the pool, dropping it if the pool is full. */
+	private static void release(byte[] chunk) {
+		int size = POOL.length();
+		if (size == 0) {
+			return;
+		}
+		int start = ThreadLocalRandom.current().nextInt(size);
+		for (int i = 0; i < size; i++) {
+			int slot = (start + i) % size;
+			if (POOL.get(slot) == null && POOL.compareAndSet(slot, null, chunk)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of chunks currently waiting in the pool.
+	 *
+	 * @return the number of pooled chunks
+	 */
+	static int pooledChunks() {
+		int count = 0;
+		for (int i = 0; i < POOL.length(); i++) {
+			if (POOL.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
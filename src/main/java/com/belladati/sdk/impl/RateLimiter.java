@@ -0,0 +1,117 @@
+package com.belladati.sdk.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket limiting the rate at which requests of one
+ * {@link EndpointFamily} are sent to a server. The bucket holds up to
+ * <tt>bdRateBurst</tt> tokens (by default the same as the rate) and is
+ * refilled at <tt>bdRateLimit</tt> tokens per second (default 0, unlimited).
+ * Each request takes a token; requests finding the bucket empty are delayed
+ * until their token is available, in the order they arrived.
+ * <p>
+ * All clients connecting to the same base URL share one limiter per family.
+ *
+ *
+ */
+public class RateLimiter {
+
+	private static final Map<String, RateLimiter> LIMITERS = new ConcurrentHashMap<String, RateLimiter>();
+
+	private final EndpointFamily family;
+	private final int rate;
+	private final int burst;
+
+	private double tokens;
+	private long refilledAt = System.nanoTime();
+
+	private final LongAdder delayed = new LongAdder();
+	private final LongAdder totalDelay = new LongAdder();
+
+	private RateLimiter(EndpointFamily family) {
+		this.family = family;
+		this.rate = Math.max(0, family.readLimit("bdRateLimit", 0));
+		this.burst = Math.max(1, family.readLimit("bdRateBurst", rate));
+		this.tokens = burst;
+	}
+
+	/**
+	 * Returns the rate limiter for the given family of endpoints on a server.
+	 *
+	 * @param baseUrl the base URL of the server
+	 * @param family the family of endpoints
+	 * @return the limiter shared by all clients of that server
+	 */
+	static RateLimiter forServer(String baseUrl, EndpointFamily family) {
+		return LIMITERS.computeIfAbsent(baseUrl + " " + family, key -> new RateLimiter(family));
+	}
+
+	/**
+	 * Takes a token from the bucket, borrowing it from the future if the
+	 * bucket is empty.
+	 *
+	 * @return nanoseconds to wait before sending the request, 0 to send it
+	 *         immediately
+	 */
+	synchronized long reserve() {
+		if (rate == 0) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1e9);
+		refilledAt = now;
+		tokens--;
+		if (tokens >= 0) {
+			return 0;
+		}
+		long wait = (long) Math.ceil(-tokens * 1e9 / rate);
+		delayed.increment();
+		totalDelay.add(wait);
+		return wait;
+	}
+
+	/**
+	 * Returns the number of requests allowed per second.
+	 *
+	 * @return the request rate, 0 if unlimited
+	 */
+	public int getRate() {
+		return rate;
+	}
+
+	/**
+	 * Returns the number of requests that may be sent at once without delay.
+	 *
+	 * @return the size of the bucket
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Returns the number of requests that had to wait for a token.
+	 *
+	 * @return the number of delayed requests
+	 */
+	public long getDelayedRequests() {
+		return delayed.sum();
+	}
+
+	/**
+	 * Returns the total time requests were delayed.
+	 *
+	 * @return the total delay in milliseconds
+	 */
+	public long getTotalDelay() {
+		return TimeUnit.NANOSECONDS.toMillis(totalDelay.sum());
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimiter(" + family + ", rate: " + rate + "/s, burst: " + burst + ", delayed: " + getDelayedRequests()
+			+ ", total delay: " + getTotalDelay() + " ms)";
+	}
+}
@@ -0,0 +1,94 @@
+package com.belladati.sdk.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Body of a {@link TransportRequest}. Bodies can be written any number of
+ * times, so that requests can be signed and retried.
+ *
+ *
+ */
+public interface RequestBody {
+
+	/**
+	 * Returns the content type of the body.
+	 *
+	 * @return the content type, including parameters such as the charset
+	 */
+	String getContentType();
+
+	/**
+	 * Returns the content encoding applied to the body.
+	 *
+	 * @return the content encoding, or <tt>null</tt> if the body isn't encoded
+	 */
+	String getContentEncoding();
+
+	/**
+	 * Returns the length of the body in bytes.
+	 *
+	 * @return the length of the body, or <tt>-1</tt> if unknown
+	 */
+	long getContentLength();
+
+	/**
+	 * Writes the body to the given stream.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the body cannot be written
+	 */
+	void writeTo(OutputStream out) throws IOException;
+
+	/**
+	 * Returns the body as a byte array, buffering it in memory if needed.
+	 *
+	 * @return the content of the body
+	 * @throws IOException if the body cannot be written
+	 */
+	default byte[] toByteArray() throws IOException {
+		long length = getContentLength();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(length > 0 && length < Integer.MAX_VALUE ? (int) length : 8192);
+		writeTo(buf);
+		return buf.toByteArray();
+	}
+
+	/**
+	 * Creates a body with the given content.
+	 *
+	 * @param content the content of the body
+	 * @param contentType the content type
+	 * @param contentEncoding the content encoding applied to the content, may
+	 *            be <tt>null</tt>
+	 * @return a body with the given content
+	 */
+	static RequestBody of(byte[] content, String contentType, String contentEncoding) {
+		return new RequestBody() {
+			@Override
+			public String getContentType() {
+				return contentType;
+			}
+
+			@Override
+			public String getContentEncoding() {
+				return contentEncoding;
+			}
+
+			@Override
+			public long getContentLength() {
+				return content.length;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(content);
+			}
+
+			@Override
+			public byte[] toByteArray() {
+				return content;
+			}
+		};
+	}
+}
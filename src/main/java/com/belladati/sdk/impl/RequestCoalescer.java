@@ -0,0 +1,210 @@
+package com.belladati.sdk.impl;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical GET requests share one request to the server.
+ * While a request for a URL is in flight, further requests for the same URL
+ * and OAuth token wait for it and receive the same parsed result instead of
+ * being sent again. Results are not cached: once the request completes, the
+ * next request for the URL is sent to the server.
+ * <p>
+ * Since results are shared between callers, they must not be modified.
+ * Coalescing can be disabled by setting <tt>bdCoalesceRequests</tt> to
+ * <tt>false</tt>.
+ *
+ *
+ */
+public class RequestCoalescer {
+
+	private final boolean enabled = BellaDatiClient.readFromProperty("bdCoalesceRequests", true);
+	private final Map<String, Flight<?>> inFlight = new ConcurrentHashMap<String, Flight<?>>();
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Loads a result, or waits for the result of an identical request already
+	 * in flight.
+	 *
+	 * @param key identifies the request, including URL and token
+	 * @param loader sends the request and parses the result
+	 * @return the result of this or the identical request
+	 */
+	<T> T execute(String key, Supplier<T> loader) {
+		if (!enabled) {
+			requests.increment();
+			return loader.get();
+		}
+		Flight<T> flight = new Flight<T>();
+		Flight<T> existing = join(key, flight);
+		if (existing != null) {
+			try {
+				return existing.join();
+			} catch (CompletionException e) {
+				throw unwrap(e);
+			}
+		}
+		try {
+			T result = loader.get();
+			flight.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Loads a result without blocking, or shares the result of an identical
+	 * request already in flight. Cancelling the returned future aborts the
+	 * request once no other caller is waiting for it.
+	 *
+	 * @param key identifies the request, including URL and token
+	 * @param loader sends the request and parses the result
+	 * @return a future completed with the result of this or the identical
+	 *         request
+	 */
+	<T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader) {
+		if (!enabled) {
+			requests.increment();
+			return loader.get();
+		}
+		Flight<T> flight = new Flight<T>();
+		Flight<T> existing = join(key, flight);
+		if (existing == null) {
+			try {
+				CompletableFuture<T> exchange = loader.get();
+				flight.exchange = exchange;
+				exchange.whenComplete((result, e) -> {
+					inFlight.remove(key, flight);
+					if (e != null) {
+						flight.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+					} else {
+						flight.complete(result);
+					}
+				});
+			} catch (RuntimeException e) {
+				inFlight.remove(key, flight);
+				flight.completeExceptionally(e);
+			}
+		}
+		Flight<T> shared = existing != null ? existing : flight;
+		CompletableFuture<T> result = shared.thenApply(value -> value);
+		result.whenComplete((value, e) -> {
+			if (result.isCancelled()) {
+				leave(key, shared);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Registers a request as in flight, unless an identical one already is.
+	 * Either way, the caller is counted as waiting for the request.
+	 *
+	 * @return the identical request in flight, or <tt>null</tt> if the new
+	 *         request has been registered and must be sent
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Flight<T> join(String key, Flight<T> flight) {
+		Flight<T> joined = (Flight<T>) inFlight.compute(key, (k, existing) -> {
+			Flight<?> current = existing != null ? existing : flight;
+			current.callers++;
+			return current;
+		});
+		if (joined != flight) {
+			coalesced.increment();
+			return joined;
+		}
+		requests.increment();
+		return null;
+	}
+
+	/**
+	 * Stops waiting for a request, aborting it if no other caller is waiting.
+	 */
+	private void leave(String key, Flight<?> flight) {
+		boolean[] abandoned = new boolean[1];
+		inFlight.computeIfPresent(key, (k, existing) -> {
+			if (existing != flight || --existing.callers > 0) {
+				return existing;
+			}
+			abandoned[0] = true;
+			return null;
+		});
+		CompletableFuture<?> exchange = flight.exchange;
+		if (abandoned[0] && exchange != null) {
+			exchange.cancel(true);
+		}
+	}
+
+	private static RuntimeException unwrap(CompletionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return e;
+	}
+
+	/**
+	 * Returns the number of requests sent to the server.
+	 *
+	 * @return the number of requests sent
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of requests that shared the result of an identical
+	 * request in flight instead of being sent.
+	 *
+	 * @return the number of coalesced requests
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Returns the fraction of requests that shared the result of an identical
+	 * request.
+	 *
+	 * @return the hit rate between 0 and 1, 0 if no requests have been made
+	 */
+	public double getHitRate() {
+		long total = getRequests() + getCoalesced();
+		return total == 0 ? 0 : (double) getCoalesced() / total;
+	}
+
+	/**
+	 * Returns the number of distinct requests currently in flight.
+	 *
+	 * @return the number of requests in flight
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	@Override
+	public String toString() {
+		return "Coalescing(requests: " + getRequests() + ", coalesced: " + getCoalesced() + ", in flight: " + getInFlight() + ")";
+	}
+
+	/** A request in flight, shared by all callers waiting for it. */
+	private static class Flight<T> extends CompletableFuture<T> {
+		/** callers waiting for the result, guarded by the in-flight map */
+		private int callers;
+		/** the request sent by an asynchronous caller, <tt>null</tt> if sent synchronously */
+		private volatile CompletableFuture<T> exchange;
+	}
+}
@@ -0,0 +1,51 @@
+package com.belladati.sdk.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering a request sent by a {@link BellaDatiClient},
+ * from sending it until its response has been read. Recorded if enabled in the
+ * JFR configuration, e.g. with <tt>-XX:StartFlightRecording</tt>.
+ *
+ *
+ */
+@Name("com.belladati.sdk.Request")
+@Label("BellaDati Request")
+@Category({ "BellaDati SDK", "HTTP" })
+@Description("Request sent to the BellaDati server")
+@StackTrace(false)
+final class RequestEvent extends jdk.jfr.Event {
+
+	@Label("Method")
+	String method;
+
+	@Label("Endpoint")
+	@Description("Endpoint template with IDs replaced by placeholders")
+	String endpoint;
+
+	@Label("Status Code")
+	@Description("Status code of the final response, 0 if there was none")
+	int statusCode;
+
+	@Label("Request Bytes")
+	@DataAmount
+	long requestBytes;
+
+	@Label("Response Bytes")
+	@DataAmount
+	long responseBytes;
+
+	@Label("Retries")
+	int retries;
+
+	@Label("Wait Time")
+	@Description("Time spent waiting for the rate and concurrency limits")
+	@Timespan
+	long waitTime;
+}
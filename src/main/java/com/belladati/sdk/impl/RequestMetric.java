@@ -0,0 +1,137 @@
+package com.belladati.sdk.impl;
+
+import java.net.URI;
+
+/**
+ * Measurements of a single request sent by a {@link BellaDatiClient}, passed
+ * to {@link MetricsListener}s when the request completes.
+ *
+ *
+ */
+public class RequestMetric {
+
+	private final String method;
+	private final String endpoint;
+	private final URI uri;
+	private final int statusCode;
+	private final long latencyNanos;
+	private final long requestBytes;
+	private final long responseBytes;
+	private final int retries;
+	private final long waitNanos;
+	private final Throwable failure;
+
+	RequestMetric(String method, String endpoint, URI uri, int statusCode, long latencyNanos, long requestBytes,
+		long responseBytes, int retries, long waitNanos, Throwable failure) {
+		this.method = method;
+		this.endpoint = endpoint;
+		this.uri = uri;
+		this.statusCode = statusCode;
+		this.latencyNanos = latencyNanos;
+		this.requestBytes = requestBytes;
+		this.responseBytes = responseBytes;
+		this.retries = retries;
+		this.waitNanos = waitNanos;
+		this.failure = failure;
+	}
+
+	/**
+	 * Returns the HTTP method of the request.
+	 *
+	 * @return the request method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Returns the endpoint template the request was sent to, with IDs and
+	 * other parameters replaced by placeholders, e.g.
+	 * <tt>api/reports/{id}</tt>.
+	 *
+	 * @return the endpoint template
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * Returns the full URI the request was sent to.
+	 *
+	 * @return the request URI
+	 */
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * Returns the status code of the final response.
+	 *
+	 * @return the status code, or 0 if no response was received
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the time from sending the request until its response was read,
+	 * including retries and waiting for the request limits.
+	 *
+	 * @return the latency in nanoseconds
+	 */
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	/**
+	 * Returns the size of the request body as sent, once per attempt.
+	 *
+	 * @return the number of bytes sent
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Returns the size of the response body as received, before decoding.
+	 *
+	 * @return the number of bytes received
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * Returns the number of times the request was retried.
+	 *
+	 * @return the number of retries
+	 */
+	public int getRetries() {
+		return retries;
+	}
+
+	/**
+	 * Returns the time the request waited for a connection slot, as limited
+	 * by the rate and concurrency limiters of its {@link EndpointFamily}.
+	 *
+	 * @return the wait time in nanoseconds
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	/**
+	 * Returns the reason no response was received.
+	 *
+	 * @return the connection failure, or <tt>null</tt> if the server responded
+	 *         or the request failed before being sent
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + endpoint + " -> " + (failure != null ? failure : statusCode) + " in " + latencyNanos / 1000 + "us";
+	}
+}
@@ -0,0 +1,186 @@
+package com.belladati.sdk.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Measurements of the requests sent by a {@link BellaDatiClient}, aggregated
+ * per endpoint and passed on to registered {@link MetricsListener}s.
+ * <p>
+ * Requests are grouped by endpoint templates derived from their URLs, e.g.
+ * <tt>api/reports/{id}</tt>. At most <tt>bdMetricsMaxEndpoints</tt> (default
+ * 200) endpoints are tracked separately, further endpoints are aggregated as
+ * <tt>{other}</tt>.
+ *
+ *
+ */
+public class RequestMetrics {
+
+	/** endpoint aggregating requests once the maximum number of endpoints is reached */
+	static final String OTHER_ENDPOINT = "{other}";
+
+	/** path parameters not recognizable by their digits, with their placeholders */
+	private static final Pattern[] PARAMETER_PATHS = { Pattern.compile("(api/utils/(?:file|mergePdfFiles)/)(.+)"),
+		Pattern.compile("(api/users/username/)([^/]+)"), Pattern.compile("(api/users/)([^/]+)(/(?:accessToken|requests))"),
+		Pattern.compile("(api/dataSets/[^/]+/attributes/)([^/]+/[^/]+)(/image)") };
+	private static final String[] PLACEHOLDERS = { "{path}", "{username}", "{username}", "{code}/{value}" };
+
+	private final String basePath;
+	private final int maxEndpoints = readFromProperty("bdMetricsMaxEndpoints", 200);
+	private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+	private final List<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+
+	/**
+	 * Creates metrics for a client.
+	 *
+	 * @param baseUrl the base URL of the client, removed from endpoint
+	 *            templates
+	 */
+	RequestMetrics(String baseUrl) {
+		String path = URI.create(baseUrl).getRawPath();
+		this.basePath = path == null || path.isEmpty() ? "/" : path;
+	}
+
+	/**
+	 * Registers a listener to be called after every request.
+	 *
+	 * @param listener the listener to add
+	 */
+	public void addListener(MetricsListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a previously registered listener.
+	 *
+	 * @param listener the listener to remove
+	 */
+	public void removeListener(MetricsListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the metrics of all endpoints requests have been sent to.
+	 *
+	 * @return the metrics of each endpoint and method
+	 */
+	public Collection<EndpointMetrics> getEndpoints() {
+		return new ArrayList<EndpointMetrics>(endpoints.values());
+	}
+
+	/**
+	 * Returns the metrics of an endpoint.
+	 *
+	 * @param method the HTTP method
+	 * @param endpoint the endpoint template, e.g. <tt>api/reports/{id}</tt>
+	 * @return the metrics of the endpoint, or <tt>null</tt> if no requests
+	 *         have been sent to it
+	 */
+	public EndpointMetrics getEndpoint(String method, String endpoint) {
+		return endpoints.get(method + " " + endpoint);
+	}
+
+	/**
+	 * Records a completed request.
+	 *
+	 * @param request the request that was sent
+	 * @param statusCode status code of the response, 0 if there was none
+	 * @param latency time from sending the request until its response was
+	 *            read in nanoseconds
+	 * @param responseBytes number of bytes received
+	 * @param failure reason no response was received, may be <tt>null</tt>
+	 * @return the measurements of the request
+	 */
+	RequestMetric record(TransportRequest request, int statusCode, long latency, long responseBytes, Throwable failure) {
+		String endpoint = templateOf(request.getUri());
+		RequestBody body = request.getBody();
+		int attempts = Math.max(1, request.getAttempts());
+		long requestBytes = body == null ? 0 : Math.max(0, body.getContentLength()) * attempts;
+		if (body instanceof JsonStreamBody) {
+			// counted while writing, including every attempt
+			requestBytes = ((JsonStreamBody) body).getBytesWritten();
+		}
+		RequestMetric metric = new RequestMetric(request.getMethod(), endpoint, request.getUri(), failure == null ? statusCode : 0,
+			latency, requestBytes, responseBytes, attempts - 1, request.getWaitNanos(), failure);
+		endpointFor(request.getMethod(), endpoint).record(metric);
+		for (MetricsListener listener : listeners) {
+			try {
+				listener.requestCompleted(metric);
+			} catch (RuntimeException e) {
+				// listeners must not break requests
+			}
+		}
+		return metric;
+	}
+
+	private EndpointMetrics endpointFor(String method, String endpoint) {
+		String key = method + " " + endpoint;
+		EndpointMetrics metrics = endpoints.get(key);
+		if (metrics != null) {
+			return metrics;
+		}
+		if (endpoints.size() >= maxEndpoints) {
+			return endpoints.computeIfAbsent(method + " " + OTHER_ENDPOINT, k -> new EndpointMetrics(method, OTHER_ENDPOINT));
+		}
+		return endpoints.computeIfAbsent(key, k -> new EndpointMetrics(method, endpoint));
+	}
+
+	/**
+	 * Derives the endpoint template from a request URI, relative to the base
+	 * URL and without query. Path segments containing digits are taken to be
+	 * IDs, other parameters are recognized by the endpoints they belong to.
+	 *
+	 * @param uri URI of the request
+	 * @return the endpoint template
+	 */
+	String templateOf(URI uri) {
+		String path = uri.getRawPath();
+		if (path == null) {
+			return "";
+		}
+		if (path.startsWith(basePath)) {
+			path = path.substring(basePath.length());
+		} else if (path.startsWith("/")) {
+			path = path.substring(1);
+		}
+		for (int i = 0; i < PARAMETER_PATHS.length; i++) {
+			Matcher matcher = PARAMETER_PATHS[i].matcher(path);
+			if (matcher.matches()) {
+				path = matcher.group(1) + PLACEHOLDERS[i] + (matcher.groupCount() > 2 ? matcher.group(3) : "");
+				break;
+			}
+		}
+		String[] segments = path.split("/", -1);
+		StringBuilder template = new StringBuilder(path.length());
+		for (int i = 0; i < segments.length; i++) {
+			if (i > 0) {
+				template.append('/');
+			}
+			template.append(!segments[i].startsWith("{") && containsDigit(segments[i]) ? "{id}" : segments[i]);
+		}
+		return template.toString();
+	}
+
+	private static boolean containsDigit(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			if (Character.isDigit(segment.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "RequestMetrics" + endpoints.values();
+	}
+}
@@ -0,0 +1,177 @@
+package com.belladati.sdk.impl;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.belladati.sdk.impl.BellaDatiClient.readFromProperty;
+
+/**
+ * Decides which failed requests are retried and how long to wait before each
+ * retry. Delays follow decorrelated jitter: each delay is picked at random
+ * between the base delay and three times the previous delay, capped at the
+ * maximum delay. This spreads retries of many clients over time instead of
+ * sending them in lockstep. A <tt>Retry-After</tt> header sent by the server
+ * takes precedence.
+ * <p>
+ * Requests are only retried if they can safely be sent again: requests using
+ * one of the methods set in <tt>bdRetryMethods</tt> (by default <tt>GET</tt>,
+ * <tt>HEAD</tt>, <tt>PUT</tt>, <tt>DELETE</tt> and <tt>OPTIONS</tt>), and
+ * requests explicitly marked as idempotent. Other settings are read from
+ * <tt>bdMaxRetries</tt>, <tt>bdRetryBaseDelay</tt> and
+ * <tt>bdRetryMaxDelay</tt>.
+ *
+ *
+ */
+public class RetryPolicy {
+
+	/** status codes indicating the server may accept the request later */
+	private static final Set<Integer> RETRY_STATUS_CODES = new HashSet<Integer>(Arrays.asList(429, 502, 503, 504));
+
+	private final int maxRetries = readFromProperty("bdMaxRetries", 3);
+	private final int baseDelay = readFromProperty("bdRetryBaseDelay", 100);
+	private final int maxDelay = readFromProperty("bdRetryMaxDelay", 10000);
+	private final Set<String> methods = parseMethods(System.getProperty("bdRetryMethods", "GET,HEAD,PUT,DELETE,OPTIONS"));
+
+	private final LongAdder retries = new LongAdder();
+
+	private static Set<String> parseMethods(String value) {
+		Set<String> methods = new HashSet<String>();
+		for (String method : value.split(",")) {
+			if (!method.trim().isEmpty()) {
+				methods.add(method.trim().toUpperCase(Locale.ROOT));
+			}
+		}
+		return methods;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the request may be sent again if it fails.
+	 *
+	 * @param request the request to check
+	 * @return <tt>true</tt> if the request may be retried
+	 */
+	boolean isRetryable(TransportRequest request) {
+		return maxRetries > 0 && (request.isIdempotent() || methods.contains(request.getMethod()));
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a request failing with the given exception may
+	 * succeed when retried. Timeouts, unknown hosts and SSL failures aren't
+	 * retried.
+	 *
+	 * @param e the exception the request failed with
+	 * @return <tt>true</tt> if the request should be retried
+	 */
+	boolean isRetryable(IOException e) {
+		return !(e instanceof InterruptedIOException || e instanceof UnknownHostException || e instanceof SSLException
+			|| e instanceof CircuitOpenException);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a request answered with the given status code
+	 * may succeed when retried.
+	 *
+	 * @param statusCode the response status code
+	 * @return <tt>true</tt> if the request should be retried
+	 */
+	boolean isRetryable(int statusCode) {
+		return RETRY_STATUS_CODES.contains(statusCode);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if another attempt may be made after the given
+	 * number of attempts.
+	 *
+	 * @param attempts the number of attempts made so far
+	 * @return <tt>true</tt> if another attempt may be made
+	 */
+	boolean hasAttemptsLeft(int attempts) {
+		return attempts <= maxRetries;
+	}
+
+	/**
+	 * Picks the delay before the next retry.
+	 *
+	 * @param previousDelay the delay before the previous retry in
+	 *            milliseconds, <tt>0</tt> before the first retry
+	 * @param retryAfter value of the <tt>Retry-After</tt> header of the
+	 *            failed response, may be <tt>null</tt>
+	 * @return the delay in milliseconds, or <tt>-1</tt> if the server asked to
+	 *         wait longer than the maximum delay
+	 */
+	long nextDelay(long previousDelay, String retryAfter) {
+		long requested = parseRetryAfter(retryAfter);
+		if (requested > maxDelay) {
+			return -1;
+		} else if (requested >= 0) {
+			return requested;
+		}
+		long upper = Math.max(baseDelay, previousDelay * 3);
+		long delay = upper > baseDelay ? ThreadLocalRandom.current().nextLong(baseDelay, upper + 1) : baseDelay;
+		return Math.min(maxDelay, delay);
+	}
+
+	/** Counts a retry in the statistics. */
+	void retrying() {
+		retries.increment();
+	}
+
+	/**
+	 * Parses the value of a <tt>Retry-After</tt> header, which is either a
+	 * number of seconds or an HTTP date.
+	 *
+	 * @param value the header value, may be <tt>null</tt>
+	 * @return the delay requested in milliseconds, or <tt>-1</tt> if none
+	 */
+	static long parseRetryAfter(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return -1;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			try {
+				ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+			} catch (DateTimeParseException e2) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of retries made.
+	 *
+	 * @return the number of retries
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * Returns the maximum number of retries per request.
+	 *
+	 * @return the maximum number of retries
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy(max retries: " + maxRetries + ", delay: " + baseDelay + "-" + maxDelay + " ms, methods: " + methods
+			+ ", retries: " + getRetries() + ")";
+	}
+}
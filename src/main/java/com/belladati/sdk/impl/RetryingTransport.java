@@ -0,0 +1,157 @@
+package com.belladati.sdk.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests through another transport, retrying them according to a
+ * {@link RetryPolicy} and failing fast while the {@link CircuitBreaker} of the
+ * server is open. Every attempt is signed again by the underlying transport.
+ *
+ *
+ */
+class RetryingTransport implements HttpTransport {
+
+	private final HttpTransport delegate;
+	private final RetryPolicy policy;
+	private final CircuitBreaker breaker;
+
+	RetryingTransport(HttpTransport delegate, RetryPolicy policy, CircuitBreaker breaker) {
+		this.delegate = delegate;
+		this.policy = policy;
+		this.breaker = breaker;
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		boolean retryable = policy.isRetryable(request);
+		long delay = 0;
+		for (int attempt = 1;; attempt++) {
+			breaker.acquire();
+			request.attemptStarted();
+			TransportResponse response;
+			try {
+				response = delegate.execute(request);
+			} catch (IOException e) {
+				breaker.onException(e);
+				if (!retryable || !policy.hasAttemptsLeft(attempt) || !policy.isRetryable(e)) {
+					throw e;
+				}
+				delay = policy.nextDelay(delay, null);
+				sleep(delay);
+				continue;
+			} catch (RuntimeException e) {
+				breaker.release();
+				throw e;
+			}
+			breaker.onResponse(response.getStatusCode());
+			if (!retryable || !policy.hasAttemptsLeft(attempt) || !policy.isRetryable(response.getStatusCode())) {
+				return response;
+			}
+			long nextDelay = policy.nextDelay(delay, response.getHeader("Retry-After"));
+			if (nextDelay < 0) {
+				return response;
+			}
+			response.close();
+			delay = nextDelay;
+			sleep(delay);
+		}
+	}
+
+	private void sleep(long delay) throws InterruptedIOException {
+		policy.retrying();
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+		attemptAsync(request, policy.isRetryable(request), 1, 0, result);
+		return result;
+	}
+
+	/**
+	 * Makes an asynchronous attempt, scheduling the next attempt if needed.
+	 *
+	 * @param request the request to send
+	 * @param retryable <tt>true</tt> if the request may be retried
+	 * @param attempt number of this attempt, starting at 1
+	 * @param delay the delay before this attempt in milliseconds
+	 * @param result the future to complete with the final outcome
+	 */
+	private void attemptAsync(TransportRequest request, boolean retryable, int attempt, long delay,
+		CompletableFuture<TransportResponse> result) {
+		if (result.isDone()) {
+			// cancelled while waiting to retry
+			return;
+		}
+		try {
+			breaker.acquire();
+		} catch (CircuitOpenException e) {
+			result.completeExceptionally(e);
+			return;
+		}
+		request.attemptStarted();
+		CompletableFuture<TransportResponse> exchange = delegate.executeAsync(request);
+		// abort the exchange if the caller is no longer interested
+		result.whenComplete((response, e) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		exchange.whenComplete((response, e) -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			long nextDelay;
+			if (cause instanceof IOException) {
+				breaker.onException((IOException) cause);
+				if (!retryable || !policy.hasAttemptsLeft(attempt) || !policy.isRetryable((IOException) cause)) {
+					result.completeExceptionally(cause);
+					return;
+				}
+				nextDelay = policy.nextDelay(delay, null);
+			} else if (cause != null) {
+				breaker.release();
+				result.completeExceptionally(cause);
+				return;
+			} else {
+				breaker.onResponse(response.getStatusCode());
+				nextDelay = retryable && policy.hasAttemptsLeft(attempt) && policy.isRetryable(response.getStatusCode())
+					? policy.nextDelay(delay, response.getHeader("Retry-After")) : -1;
+				if (nextDelay < 0) {
+					if (!result.complete(response)) {
+						closeQuietly(response);
+					}
+					return;
+				}
+				closeQuietly(response);
+			}
+			policy.retrying();
+			CompletableFuture.delayedExecutor(nextDelay, TimeUnit.MILLISECONDS)
+				.execute(() -> attemptAsync(request, retryable, attempt + 1, nextDelay, result));
+		});
+	}
+
+	private static void closeQuietly(TransportResponse response) {
+		try {
+			response.close();
+		} catch (IOException ignored) {}
+	}
+
+	@Override
+	public ConnectionPoolStats getPoolStats() {
+		return delegate.getPoolStats();
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+}
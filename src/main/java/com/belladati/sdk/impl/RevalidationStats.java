@@ -0,0 +1,60 @@
+package com.belladati.sdk.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how often a {@link BellaDatiClient} revalidates previously
+ * loaded content with a conditional request, and how often the server
+ * confirms that it hasn't changed.
+ *
+ *
+ */
+public class RevalidationStats {
+
+	private final LongAdder conditionalRequests = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+
+	void requestSent() {
+		conditionalRequests.increment();
+	}
+
+	void notModified() {
+		notModified.increment();
+	}
+
+	/**
+	 * Returns the number of conditional requests sent.
+	 *
+	 * @return the number of conditional requests
+	 */
+	public long getConditionalRequests() {
+		return conditionalRequests.sum();
+	}
+
+	/**
+	 * Returns the number of conditional requests answered with <tt>304 Not
+	 * Modified</tt>, reusing the previously loaded content.
+	 *
+	 * @return the number of revalidated responses
+	 */
+	public long getNotModified() {
+		return notModified.sum();
+	}
+
+	/**
+	 * Returns the fraction of conditional requests that reused the previously
+	 * loaded content.
+	 *
+	 * @return the hit rate between 0 and 1, 0 if no conditional requests have
+	 *         been sent
+	 */
+	public double getHitRate() {
+		long requests = getConditionalRequests();
+		return requests == 0 ? 0 : (double) getNotModified() / requests;
+	}
+
+	@Override
+	public String toString() {
+		return "Revalidation(conditional requests: " + getConditionalRequests() + ", not modified: " + getNotModified() + ")";
+	}
+}
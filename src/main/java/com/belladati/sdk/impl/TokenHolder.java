@@ -4,21 +4,22 @@ import oauth.signpost.OAuthConsumer;
 import oauth.signpost.commonshttp5.CommonsHttpOAuthConsumer;
 
 import java.io.Serializable;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class TokenHolder implements Serializable {
 
 	/** The serialVersionUID */
 	private static final long serialVersionUID = 8122702080702303615L;
 
-	private static final Random RANDOM = new Random();
-
 	private final String consumerKey;
 	private final String consumerSecret;
 
 	private String token;
 	private String tokenSecret;
 
+	/** signs requests with the current token, created when first needed */
+	private transient volatile OAuthSigner signer;
+
 	public TokenHolder(String consumerKey, String consumerSecret) {
 		this.consumerKey = consumerKey;
 		this.consumerSecret = consumerSecret;
@@ -32,13 +33,33 @@ public class TokenHolder implements Serializable {
 			protected String generateNonce() {
 				// thread-safe nonce generation
 				// http://code.google.com/p/oauth-signpost/issues/detail?id=41
-				return Long.toString(RANDOM.nextLong());
+				return Long.toString(ThreadLocalRandom.current().nextLong());
                     }
 		};
 		consumer.setTokenWithSecret(token, tokenSecret);
 		return consumer;
 	}
 
+	/**
+	 * Returns the signer for requests using the current token. The signer is
+	 * shared by all requests until the token changes.
+	 * 
+	 * @return the signer for the current token
+	 */
+	public OAuthSigner getSigner() {
+		OAuthSigner signer = this.signer;
+		if (signer == null) {
+			synchronized (this) {
+				signer = this.signer;
+				if (signer == null) {
+					signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+					this.signer = signer;
+				}
+			}
+		}
+		return signer;
+	}
+
 	public String getConsumerKey() {
 		return consumerKey;
 	}
@@ -51,8 +72,9 @@ public class TokenHolder implements Serializable {
 		return token;
 	}
 
-	public void setToken(String token, String tokenSecret) {
+	public synchronized void setToken(String token, String tokenSecret) {
 		this.token = token;
 		this.tokenSecret = tokenSecret;
+		this.signer = null;
 	}
 }
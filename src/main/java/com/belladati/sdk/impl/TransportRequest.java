@@ -0,0 +1,164 @@
+package com.belladati.sdk.impl;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A request to be sent by an {@link HttpTransport}, independent of the HTTP
+ * library used to send it.
+ *
+ *
+ */
+public class TransportRequest {
+
+	private final String method;
+	private final URI uri;
+	private final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+	private RequestBody body;
+	private boolean streaming;
+	private boolean idempotent;
+	private Signer signer;
+	/** number of times the request has been sent, updated while it's in flight */
+	private volatile int attempts;
+	/** time spent waiting for the request limits, updated while it's in flight */
+	private volatile long waitNanos;
+
+	public TransportRequest(String method, URI uri) {
+		this.method = method;
+		this.uri = uri;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * Returns the request headers. Header names are case-insensitive.
+	 *
+	 * @return an unmodifiable view of the headers
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	public TransportRequest setHeader(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	public RequestBody getBody() {
+		return body;
+	}
+
+	public TransportRequest setBody(RequestBody body) {
+		this.body = body;
+		return this;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the response should be read from the connection
+	 * as it arrives rather than buffered. Streamed responses aren't cached.
+	 *
+	 * @return <tt>true</tt> if the response should be streamed
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	public TransportRequest setStreaming(boolean streaming) {
+		this.streaming = streaming;
+		return this;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the request has been marked as idempotent, i.e.
+	 * sending it more than once has the same effect as sending it once. This
+	 * allows retrying requests that aren't idempotent by their method, such
+	 * as <tt>POST</tt>.
+	 *
+	 * @return <tt>true</tt> if the request may be sent repeatedly
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+
+	public TransportRequest setIdempotent(boolean idempotent) {
+		this.idempotent = idempotent;
+		return this;
+	}
+
+	/**
+	 * Sets the hook called by the transport to sign the request.
+	 *
+	 * @param signer signs the request, may be <tt>null</tt>
+	 * @return this request
+	 */
+	public TransportRequest setSigner(Signer signer) {
+		this.signer = signer;
+		return this;
+	}
+
+	/**
+	 * Signs the request by calling the signing hook, if there is one.
+	 * Transports call this immediately before sending the request, and again
+	 * for every attempt if they retry it.
+	 */
+	public void sign() {
+		if (signer != null) {
+			signer.sign(this);
+		}
+	}
+
+	/**
+	 * Returns the number of times the request has been sent, including
+	 * retries.
+	 *
+	 * @return the number of attempts
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	void attemptStarted() {
+		attempts++;
+	}
+
+	/**
+	 * Returns the time the request has waited for the rate and concurrency
+	 * limits before being sent, across all attempts.
+	 *
+	 * @return the wait time in nanoseconds
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	void waited(long nanos) {
+		waitNanos += nanos;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + uri;
+	}
+
+	/** Adds authentication to a request before it is sent. */
+	public interface Signer {
+		/**
+		 * Signs the given request, typically by setting headers.
+		 *
+		 * @param request the request to sign
+		 */
+		void sign(TransportRequest request);
+	}
+}
@@ -0,0 +1,39 @@
+package com.belladati.sdk.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A response received by an {@link HttpTransport}. The body is returned as it
+ * was sent by the server, i.e. still compressed if a content encoding was
+ * applied.
+ *
+ *
+ */
+public interface TransportResponse extends Closeable {
+
+	/**
+	 * Returns the HTTP status code of the response.
+	 *
+	 * @return the status code
+	 */
+	int getStatusCode();
+
+	/**
+	 * Returns the first value of the given response header.
+	 *
+	 * @param name name of the header, case-insensitive
+	 * @return the header value, or <tt>null</tt> if there is no such header
+	 */
+	String getHeader(String name);
+
+	/**
+	 * Returns the response body. Closing the stream or the response releases
+	 * the connection.
+	 *
+	 * @return the response body, empty if there is none
+	 * @throws IOException if the body cannot be opened
+	 */
+	InputStream getBody() throws IOException;
+}
@@ -0,0 +1,64 @@
+package com.belladati.sdk.impl;
+
+/**
+ * Content loaded from the server together with the validators the server
+ * sent for it. Passing it back when loading the same URL again makes the
+ * request conditional: if the content hasn't changed, the server responds
+ * with <tt>304 Not Modified</tt> and the content is reused without being
+ * downloaded or parsed again.
+ *
+ * @param <T> type of the content
+ *
+ *
+ */
+public class ValidatedContent<T> {
+
+	private final T value;
+	private final String etag;
+	private final String lastModified;
+
+	ValidatedContent(T value, String etag, String lastModified) {
+		this.value = value;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Returns the content built from the response.
+	 *
+	 * @return the content
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the entity tag sent by the server.
+	 *
+	 * @return the <tt>ETag</tt> header of the response, or <tt>null</tt>
+	 */
+	public String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * Returns the time the content was last modified according to the
+	 * server.
+	 *
+	 * @return the <tt>Last-Modified</tt> header of the response, or
+	 *         <tt>null</tt>
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the server sent validators allowing the
+	 * content to be revalidated.
+	 *
+	 * @return <tt>true</tt> if the content can be revalidated
+	 */
+	public boolean isRevalidatable() {
+		return etag != null || lastModified != null;
+	}
+}
@@ -3,8 +3,8 @@ package com.belladati.sdk.user.impl;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
 import com.belladati.sdk.user.UserCreateBuilder;
 import com.belladati.sdk.user.UserRole;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
@@ -87,9 +87,7 @@ public class UserCreateBuilderImpl implements UserCreateBuilder {
 
 	@Override
 	public JsonNode toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-
-		ObjectNode object = mapper.createObjectNode();
+		ObjectNode object = JsonSupport.createObjectNode();
 		object.put("domain_id", domainId);
 		object.put("username", username);
 		object.put("email", email);
@@ -103,14 +101,14 @@ public class UserCreateBuilderImpl implements UserCreateBuilder {
 			object.put("locale", locale);
 		}
 		if (roles != null && !roles.isEmpty()) {
-			ArrayNode array = mapper.createArrayNode();
+			ArrayNode array = JsonSupport.createArrayNode();
 			for (UserRole role : roles) {
 				array.add(role.getJsonRole());
 			}
 			object.put("roles", array);
 		}
 		if (userGroupIds != null && !userGroupIds.isEmpty()) {
-			ArrayNode array = mapper.createArrayNode();
+			ArrayNode array = JsonSupport.createArrayNode();
 			for (String group : userGroupIds) {
 				array.add(group);
 			}
@@ -3,8 +3,8 @@ package com.belladati.sdk.user.impl;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
 import com.belladati.sdk.user.UserEditBuilder;
 import com.belladati.sdk.user.UserRole;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
@@ -87,9 +87,7 @@ public class UserEditBuilderImpl implements UserEditBuilder {
 
 	@Override
 	public JsonNode toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-
-		ObjectNode object = mapper.createObjectNode();
+		ObjectNode object = JsonSupport.createObjectNode();
 		object.put("username", username);
 		object.put("email", email);
 		object.put("firstName", firstName);
@@ -102,14 +100,14 @@ public class UserEditBuilderImpl implements UserEditBuilder {
 			object.put("locale", locale);
 		}
 		if (roles != null && !roles.isEmpty()) {
-			ArrayNode array = mapper.createArrayNode();
+			ArrayNode array = JsonSupport.createArrayNode();
 			for (UserRole role : roles) {
 				array.add(role.getJsonRole());
 			}
 			object.put("roles", array);
 		}
 		if (userGroupIds != null && !userGroupIds.isEmpty()) {
-			ArrayNode array = mapper.createArrayNode();
+			ArrayNode array = JsonSupport.createArrayNode();
 			for (String group : userGroupIds) {
 				array.add(group);
 			}
@@ -124,9 +122,10 @@ public class UserEditBuilderImpl implements UserEditBuilder {
 		if (posted) {
 			throw new IllegalStateException("Request already submitted to server.");
 		}
-		byte[] response = service.getClient().post("api/users/" + userId, service.getTokenHolder(),
+		byte[] response = service.getClient().postIdempotent("api/users/" + userId, service.getTokenHolder(),
 			Collections.singletonList(new BasicNameValuePair("data", toJson().toString())));
 		posted = true;
+		service.invalidateUser(userId);
 		return new String(response);
 	}
 
@@ -2,8 +2,8 @@ package com.belladati.sdk.user.impl;
 
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
 import com.belladati.sdk.user.UserGroupCreateBuilder;
+import com.belladati.sdk.util.impl.JsonSupport;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
 
@@ -40,9 +40,7 @@ public class UserGroupCreateBuilderImpl implements UserGroupCreateBuilder {
 
 	@Override
 	public JsonNode toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-
-		ObjectNode object = mapper.createObjectNode();
+		ObjectNode object = JsonSupport.createObjectNode();
 		object.put("domain_id", domainId);
 		object.put("name", name);
 
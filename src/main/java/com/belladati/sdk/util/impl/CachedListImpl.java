@@ -5,9 +5,9 @@ import java.util.Collections;
 import java.util.List;
 
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.impl.ValidatedContent;
 import com.belladati.sdk.util.CachedList;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 
 public abstract class CachedListImpl<T> implements CachedList<T> {
 
@@ -18,6 +18,7 @@ public abstract class CachedListImpl<T> implements CachedList<T> {
 	private final String field;
 
 	private boolean isLoaded = false;
+	private ValidatedContent<List<T>> validated;
 
 	public CachedListImpl(BellaDatiServiceImpl service, String uri, String field) {
 		this.service = service;
@@ -37,18 +38,23 @@ public abstract class CachedListImpl<T> implements CachedList<T> {
 
 	@Override
 	public CachedList<T> load() {
-		data.clear();
-		JsonNode json = service.getAsJson(uri);
-
-		if (json.get(field) instanceof ArrayNode) {
-			ArrayNode nodes = (ArrayNode) json.get(field);
-			for (JsonNode node : nodes) {
+		// revalidate the previous list, parse only if the server sends a new one
+		ValidatedContent<List<T>> loaded = service.getAsJson(uri, parser -> {
+			List<T> list = new ArrayList<T>();
+			// parse elements while they are read instead of loading the whole list as a tree
+			JsonListReader.read(parser, field, node -> {
 				try {
-					data.add(parse(service, node));
+					list.add(parse(service, node));
 				} catch (ParseException e) {
 					// nothing to do, just ignore
 				}
-			}
+			});
+			return list;
+		}, validated);
+		if (loaded != validated) {
+			data.clear();
+			data.addAll(loaded.getValue());
+			validated = loaded;
 		}
 		isLoaded = true;
 		return this;
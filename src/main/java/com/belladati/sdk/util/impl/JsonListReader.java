@@ -0,0 +1,54 @@
+package com.belladati.sdk.util.impl;
+
+import com.belladati.sdk.exception.server.InvalidJsonException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads a JSON object containing a list of elements from a stream. Elements
+ * of the list are passed on one by one as soon as they are parsed, so only a
+ * single element is held as a tree at any time.
+ *
+ *
+ */
+class JsonListReader {
+
+	private JsonListReader() {}
+
+	/**
+	 * Reads a JSON object from the parser, passing each element of the array
+	 * in the given field to the element handler.
+	 *
+	 * @param parser parser positioned before the start of the object
+	 * @param field name of the field containing the elements
+	 * @param elementHandler called for each element, in order
+	 * @return all other scalar fields of the object, by name
+	 * @throws IOException if the JSON cannot be read
+	 */
+	static Map<String, JsonNode> read(JsonParser parser, String field, Consumer<JsonNode> elementHandler) throws IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new InvalidJsonException("Expected JSON object, was " + parser.currentToken());
+		}
+		Map<String, JsonNode> values = new HashMap<String, JsonNode>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.currentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals(name) && token == JsonToken.START_ARRAY) {
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					elementHandler.accept(parser.<JsonNode> readValueAsTree());
+				}
+			} else if (token.isScalarValue()) {
+				values.put(name, parser.<JsonNode> readValueAsTree());
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,161 @@
+package com.belladati.sdk.util.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Shared JSON facilities used by the SDK to parse and serialize JSON.
+ * <p>
+ * Creating an {@link ObjectMapper} is expensive, so all JSON handling goes
+ * through a single, pre-configured instance. Readers and writers created from
+ * it are immutable and safe to use from any thread. Parse and write buffers
+ * are recycled through a shared pool rather than per thread, which also works
+ * well with virtual threads.
+ *
+ *
+ */
+public final class JsonSupport {
+
+	private static final JsonFactory FACTORY = JsonFactory.builder()
+		.recyclerPool(JsonRecyclerPools.sharedConcurrentDequePool()).build();
+
+	private static final ObjectMapper MAPPER = new ObjectMapper(FACTORY);
+
+	private static final ObjectReader READER = MAPPER.reader();
+
+	private static final ObjectWriter WRITER = MAPPER.writer();
+
+	private JsonSupport() {}
+
+	/**
+	 * Returns the shared JSON factory.
+	 *
+	 * @return the shared JSON factory
+	 */
+	public static JsonFactory factory() {
+		return FACTORY;
+	}
+
+	/**
+	 * Returns the shared reader used to parse JSON trees.
+	 *
+	 * @return the shared reader
+	 */
+	public static ObjectReader reader() {
+		return READER;
+	}
+
+	/**
+	 * Returns the shared writer used to serialize JSON.
+	 *
+	 * @return the shared writer
+	 */
+	public static ObjectWriter writer() {
+		return WRITER;
+	}
+
+	/**
+	 * Creates a new, empty object node.
+	 *
+	 * @return a new object node
+	 */
+	public static ObjectNode createObjectNode() {
+		return JsonNodeFactory.instance.objectNode();
+	}
+
+	/**
+	 * Creates a new, empty array node.
+	 *
+	 * @return a new array node
+	 */
+	public static ArrayNode createArrayNode() {
+		return JsonNodeFactory.instance.arrayNode();
+	}
+
+	/**
+	 * Parses the given content into a JSON tree.
+	 *
+	 * @param content the JSON content
+	 * @return the parsed tree
+	 * @throws IOException if the content is not valid JSON
+	 */
+	public static JsonNode readTree(byte[] content) throws IOException {
+		return READER.readTree(content);
+	}
+
+	/**
+	 * Parses part of the given array into a JSON tree.
+	 *
+	 * @param content array holding the JSON content
+	 * @param offset index of the first byte of the content
+	 * @param length number of bytes of the content
+	 * @return the parsed tree
+	 * @throws IOException if the content is not valid JSON
+	 */
+	public static JsonNode readTree(byte[] content, int offset, int length) throws IOException {
+		return READER.readTree(content, offset, length);
+	}
+
+	/**
+	 * Parses the content of the given stream into a JSON tree.
+	 *
+	 * @param content stream to read JSON from
+	 * @return the parsed tree
+	 * @throws IOException if the stream cannot be read or its content is not
+	 *             valid JSON
+	 */
+	public static JsonNode readTree(InputStream content) throws IOException {
+		return READER.readTree(content);
+	}
+
+	/**
+	 * Creates a parser reading from the given stream. The parser can read
+	 * subtrees of the content using {@link JsonParser#readValueAsTree()}.
+	 *
+	 * @param content stream to read JSON from
+	 * @return a new parser
+	 * @throws IOException if the parser cannot be created
+	 */
+	public static JsonParser createParser(InputStream content) throws IOException {
+		return READER.createParser(content);
+	}
+
+	/**
+	 * Creates a generator writing UTF-8 encoded JSON to the given stream.
+	 *
+	 * @param out stream to write to
+	 * @return a new generator
+	 * @throws IOException if the generator cannot be created
+	 */
+	public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+		return WRITER.createGenerator(out);
+	}
+
+	/**
+	 * Serializes the given node into UTF-8 encoded bytes.
+	 *
+	 * @param node the node to serialize
+	 * @return the serialized node
+	 */
+	public static byte[] toBytes(JsonNode node) {
+		try {
+			return WRITER.writeValueAsBytes(node);
+		} catch (IOException e) {
+			// JSON trees are always serializable
+			throw new IllegalStateException("Failed to serialize JSON", e);
+		}
+	}
+}
@@ -1,18 +1,23 @@
 package com.belladati.sdk.util.impl;
 
 import com.belladati.sdk.exception.InternalConfigurationException;
+import com.belladati.sdk.exception.server.InvalidJsonException;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
 import com.belladati.sdk.util.PaginatedList;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.apache.hc.core5.net.URIBuilder;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public abstract class PaginatedListImpl<T> implements PaginatedList<T> {
 
@@ -79,18 +84,93 @@ public abstract class PaginatedListImpl<T> implements PaginatedList<T> {
 	}
 
 	private PaginatedList<T> addFrom(String parameterizedUri) {
-		JsonNode json = service.getAsJson(parameterizedUri);
+		// parse elements while they are read instead of loading the whole page as a tree
+		List<T> pageData = new ArrayList<T>();
+		Map<String, JsonNode> values = service.getAsJson(parameterizedUri, parser -> readPage(parser, pageData));
+		return addPage(values, pageData);
+	}
 
-		size = json.get("size").asInt();
-		page = size == 0 ? 0 : json.get("offset").asInt() / size;
+	private Map<String, JsonNode> readPage(JsonParser parser, List<T> pageData) throws IOException {
+		return JsonListReader.read(parser, field, node -> pageData.add(parse(service, node)));
+	}
 
-		ArrayNode nodes = (ArrayNode) json.get(field);
-		for (JsonNode node : nodes) {
-			currentData.add(parse(service, node));
-		}
+	private PaginatedList<T> addPage(Map<String, JsonNode> values, List<T> pageData) {
+		size = values.get("size").asInt();
+		page = size == 0 ? 0 : values.get("offset").asInt() / size;
+
+		currentData.addAll(pageData);
 		return this;
 	}
 
+	/**
+	 * Loads the first page of this list without blocking the calling thread.
+	 * The list must not be used until the returned future has completed.
+	 * 
+	 * @param executor runs the parsing of the response
+	 * @return a future completed with this list
+	 */
+	public CompletableFuture<PaginatedList<T>> loadAsync(Executor executor) {
+		return loadFromAsync(relativeUrl, true, executor);
+	}
+
+	/**
+	 * Loads the given page of this list without blocking the calling thread.
+	 * The list must not be used until the returned future has completed.
+	 * 
+	 * @param page number of the page to load, starting at 0
+	 * @param size size of the page to load
+	 * @param executor runs the parsing of the response
+	 * @return a future completed with this list
+	 * @throws IllegalArgumentException if page is &lt; 0 or size is &lt;= 0
+	 */
+	public CompletableFuture<PaginatedList<T>> loadAsync(int page, int size, Executor executor)
+		throws IllegalArgumentException {
+		if (page < 0) {
+			throw new IllegalArgumentException("Page must be >= 0, was " + page);
+		}
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size must be > 0, was " + size);
+		}
+		return loadFromAsync(buildUri(page, size).toString(), true, executor);
+	}
+
+	/**
+	 * Loads the next page of this list without blocking the calling thread.
+	 * The list must not be used until the returned future has completed.
+	 * 
+	 * @param executor runs the parsing of the response
+	 * @return a future completed with this list
+	 */
+	public CompletableFuture<PaginatedList<T>> loadNextAsync(Executor executor) {
+		if (!isLoaded()) {
+			return loadAsync(executor);
+		}
+		if (!hasNextPage()) {
+			return CompletableFuture.completedFuture(this);
+		}
+		return loadFromAsync(buildUri(page + 1, size).toString(), false, executor);
+	}
+
+	private CompletableFuture<PaginatedList<T>> loadFromAsync(String parameterizedUri, boolean replace, Executor executor) {
+		return service.getAsync(parameterizedUri).thenApplyAsync(content -> {
+			List<T> pageData = new ArrayList<T>();
+			Map<String, JsonNode> values;
+			try (JsonParser parser = JsonSupport.reader().createParser(content)) {
+				values = readPage(parser, pageData);
+			} catch (IOException e) {
+				throw new InvalidJsonException("Could not parse JSON response", e);
+			}
+			if (replace) {
+				currentData.clear();
+			}
+			addPage(values, pageData);
+			if (replace) {
+				firstPage = page;
+			}
+			return this;
+		}, executor);
+	}
+
 	@Override
 	public PaginatedList<T> loadNext() {
 		if (!isLoaded()) {
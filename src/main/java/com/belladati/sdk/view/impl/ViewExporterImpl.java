@@ -9,7 +9,10 @@ import com.belladati.sdk.view.export.ViewExportType;
 import com.belladati.sdk.view.export.ViewExporter;
 import org.apache.hc.core5.net.URIBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 
 /**
  * This class exports view to various export types {@link ViewExportType}
@@ -33,7 +36,79 @@ public final class ViewExporterImpl implements ViewExporter {
 
 	@Override
 	public ViewExport exportPdf(PageSize pageSize, PageOrientation pageOrientation) {
+		return export(ViewExportType.PDF, this.service.getAsStream(pdfUri(pageSize, pageOrientation)));
+	}
+
+	/**
+	 * Exports the view as PDF, streaming it directly from the connection
+	 * instead of loading it into memory. The export's input stream holds a
+	 * connection until it is closed, so it must always be closed.
+	 * 
+	 * @param pageSize size of the pages, may be <tt>null</tt>
+	 * @param pageOrientation orientation of the pages, may be <tt>null</tt>
+	 * @return the export reading the PDF from the connection
+	 */
+	public ViewExport openPdf(PageSize pageSize, PageOrientation pageOrientation) {
+		return export(ViewExportType.PDF, this.service.openStream(pdfUri(pageSize, pageOrientation)));
+	}
+
+	/**
+	 * Exports the view as PDF directly into the given file, without buffering
+	 * it in memory. Exports are generated again for each request, so a partial
+	 * export can't be resumed and the file's content is replaced.
+	 * 
+	 * @param pageSize size of the pages, may be <tt>null</tt>
+	 * @param pageOrientation orientation of the pages, may be <tt>null</tt>
+	 * @param target the file to write to, created if it doesn't exist
+	 * @return the size of the exported file
+	 * @throws IOException if the file cannot be written
+	 */
+	public long exportPdf(PageSize pageSize, PageOrientation pageOrientation, Path target) throws IOException {
+		return this.service.download(pdfUri(pageSize, pageOrientation), target, false);
+	}
+
+	@Override
+	public ViewExport exportPng(Integer width, Integer height) {
+		return export(ViewExportType.PNG, this.service.getAsStream(pngUri(width, height)));
+	}
+
+	/**
+	 * Exports the view as PNG image, streaming it directly from the connection
+	 * instead of loading it into memory. The export's input stream holds a
+	 * connection until it is closed, so it must always be closed.
+	 * 
+	 * @param width width of the image, may be <tt>null</tt>
+	 * @param height height of the image, may be <tt>null</tt>
+	 * @return the export reading the image from the connection
+	 */
+	public ViewExport openPng(Integer width, Integer height) {
+		return export(ViewExportType.PNG, this.service.openStream(pngUri(width, height)));
+	}
+
+	/**
+	 * Exports the view as PNG image directly into the given file, without
+	 * buffering it in memory. Exports are generated again for each request, so
+	 * a partial export can't be resumed and the file's content is replaced.
+	 * 
+	 * @param width width of the image, may be <tt>null</tt>
+	 * @param height height of the image, may be <tt>null</tt>
+	 * @param target the file to write to, created if it doesn't exist
+	 * @return the size of the exported file
+	 * @throws IOException if the file cannot be written
+	 */
+	public long exportPng(Integer width, Integer height, Path target) throws IOException {
+		return this.service.download(pngUri(width, height), target, false);
+	}
+
+	private ViewExport export(ViewExportType exportType, InputStream stream) {
 		ViewExport viewExport = new ViewExport();
+		viewExport.setViewId(viewId);
+		viewExport.setExportType(exportType);
+		viewExport.setInputStream(stream);
+		return viewExport;
+	}
+
+	private String pdfUri(PageSize pageSize, PageOrientation pageOrientation) {
 		try {
 			URIBuilder builder = new URIBuilder("api/reports/views/" + viewId + "/export/pdf");
 			if (pageSize != null) {
@@ -42,18 +117,13 @@ public final class ViewExporterImpl implements ViewExporter {
 			if (pageOrientation != null) {
 				builder.addParameter("pageOrientation", pageOrientation.name());
 			}
-			viewExport.setViewId(viewId);
-			viewExport.setExportType(ViewExportType.PDF);
-			viewExport.setInputStream(this.service.getAsStream(builder.build().toString()));
+			return builder.build().toString();
 		} catch (URISyntaxException e) {
 			throw new InternalConfigurationException("Invalid URI", e);
 		}
-		return viewExport;
 	}
 
-	@Override
-	public ViewExport exportPng(Integer width, Integer height) {
-		ViewExport viewExport = new ViewExport();
+	private String pngUri(Integer width, Integer height) {
 		try {
 			URIBuilder builder = new URIBuilder("api/reports/views/" + viewId + "/image");
 			if (width != null) {
@@ -62,13 +132,10 @@ public final class ViewExporterImpl implements ViewExporter {
 			if (height != null) {
 				builder.addParameter("height", height.toString());
 			}
-			viewExport.setViewId(viewId);
-			viewExport.setExportType(ViewExportType.PNG);
-			viewExport.setInputStream(this.service.getAsStream(builder.build().toString()));
+			return builder.build().toString();
 		} catch (URISyntaxException e) {
 			throw new InternalConfigurationException("Invalid URI", e);
 		}
-		return viewExport;
 	}
 
 }
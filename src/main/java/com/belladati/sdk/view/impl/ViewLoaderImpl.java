@@ -18,6 +18,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class ViewLoaderImpl implements ViewLoader {
 
@@ -78,22 +80,45 @@ public class ViewLoaderImpl implements ViewLoader {
 
 	@Override
 	public Object loadContent() {
+		if (viewType == ViewType.IMAGE) {
+			return new ImageViewImpl.ImageImpl(viewId, service.getAsImage(buildUri()));
+		}
+		return toContent(service.getAsJson(buildUri()));
+	}
+
+	/**
+	 * Loads the view content without blocking the calling thread.
+	 * 
+	 * @param executor runs the processing of the response
+	 * @return a future completed with the view content
+	 */
+	public CompletableFuture<Object> loadContentAsync(Executor executor) {
+		if (viewType == ViewType.IMAGE) {
+			return service.getAsImageAsync(buildUri())
+				.thenApplyAsync(image -> new ImageViewImpl.ImageImpl(viewId, image), executor);
+		}
+		return service.getAsJsonAsync(buildUri()).thenApplyAsync(this::toContent, executor);
+	}
+
+	private String buildUri() {
 		try {
 			URIBuilder builder = new URIBuilder("api/reports/views/" + viewId + "/" + viewType.getUri());
 
 			if (viewType == ViewType.IMAGE) {
-				return new ImageViewImpl.ImageImpl(viewId, service.getAsImage(builder.build().toString()));
+				return builder.build().toString();
 			}
-
-			JsonNode json = service.getAsJson(service
+			return service
 				.appendLocale(service.appendDateTime(service.appendFilter(builder, filters), dateInterval, timeInterval), locale)
-				.build().toString());
-			if (viewType == ViewType.TABLE) {
-				return new TableImpl(service, viewId, json, filters).setLocale(locale);
-			}
-			return json;
+				.build().toString();
 		} catch (URISyntaxException e) {
 			throw new InternalConfigurationException(e);
 		}
 	}
+
+	private Object toContent(JsonNode json) {
+		if (viewType == ViewType.TABLE) {
+			return new TableImpl(service, viewId, json, filters).setLocale(locale);
+		}
+		return json;
+	}
 }
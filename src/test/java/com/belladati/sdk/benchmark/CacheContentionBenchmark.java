@@ -0,0 +1,142 @@
+package com.belladati.sdk.benchmark;
+
+import com.belladati.sdk.dataset.AttributeValue;
+import com.belladati.sdk.impl.BellaDatiClient;
+import com.belladati.sdk.impl.BellaDatiServiceImpl;
+import com.belladati.sdk.impl.TokenHolder;
+import com.belladati.sdk.util.CachedList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares the throughput of concurrent cached list lookups in the service
+ * against the locking the service used before: a <tt>synchronized</tt>
+ * method, as <tt>getAttributeValues</tt> was, and a synchronized map with a
+ * double-checked <tt>synchronized</tt> block, as the other lookups were. All
+ * lookups hit the cache, so the numbers show the cost of the lookup itself
+ * under contention, with platform and with virtual threads.
+ * <p>
+ * Not run as part of the test suite; run the main method with the test
+ * classpath.
+ *
+ *
+ */
+public class CacheContentionBenchmark {
+
+	private static final int[] THREADS = { 1, 4, 16, 64 };
+	private static final int KEYS = 256;
+	private static final long WARMUP_MILLIS = 1000;
+	private static final long MEASURE_MILLIS = 2000;
+
+	private interface Lookup {
+		Object get(String dataSetId, String attributeCode);
+	}
+
+	public static void main(String[] args) throws Exception {
+		BellaDatiServiceImpl service = new BellaDatiServiceImpl(new BellaDatiClient("http://localhost:1/", false),
+			new TokenHolder("key", "secret"));
+		SynchronizedMethod synchronizedMethod = new SynchronizedMethod(service);
+		DoubleChecked doubleChecked = new DoubleChecked(service);
+
+		System.out.printf("%-22s %-9s %8s %14s%n", "lookup", "threads", "count", "ops/s");
+		for (boolean virtual : new boolean[] { false, true }) {
+			for (int threads : THREADS) {
+				run("synchronized method", virtual, threads, synchronizedMethod::get);
+				run("double-checked", virtual, threads, doubleChecked::get);
+				run("service", virtual, threads, service::getAttributeValues);
+			}
+		}
+	}
+
+	private static void run(String name, boolean virtual, int threads, Lookup lookup) throws Exception {
+		measure(virtual, threads, lookup, WARMUP_MILLIS);
+		long ops = measure(virtual, threads, lookup, MEASURE_MILLIS);
+		System.out.printf("%-22s %-9s %8d %14.0f%n", name, virtual ? "virtual" : "platform", threads, ops * 1000.0 / MEASURE_MILLIS);
+	}
+
+	/** Looks up random keys from all threads for the given time. */
+	private static long measure(boolean virtual, int threads, Lookup lookup, long millis) throws Exception {
+		ExecutorService executor = virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					long ops = 0;
+					while (running.get()) {
+						if (lookup.get("ds" + ThreadLocalRandom.current().nextInt(KEYS), "attribute") == null) {
+							throw new IllegalStateException("Lookup failed");
+						}
+						ops++;
+					}
+					return ops;
+				}));
+			}
+			start.countDown();
+			Thread.sleep(millis);
+			running.set(false);
+			long ops = 0;
+			for (Future<Long> future : futures) {
+				ops += future.get();
+			}
+			return ops;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Lookup guarded by a lock on the whole service. */
+	private static class SynchronizedMethod {
+		private final BellaDatiServiceImpl service;
+		private final Map<String, Map<String, CachedList<AttributeValue>>> values = new HashMap<String, Map<String, CachedList<AttributeValue>>>();
+
+		private SynchronizedMethod(BellaDatiServiceImpl service) {
+			this.service = service;
+		}
+
+		private synchronized Object get(String dataSetId, String attributeCode) {
+			Map<String, CachedList<AttributeValue>> attributes = values.computeIfAbsent(dataSetId,
+				id -> new HashMap<String, CachedList<AttributeValue>>());
+			return attributes.computeIfAbsent(attributeCode, code -> service.getAttributeValues(dataSetId, code));
+		}
+	}
+
+	/** Lookup in a synchronized map, locking the map again to add entries. */
+	private static class DoubleChecked {
+		private final BellaDatiServiceImpl service;
+		private final Map<String, CachedList<AttributeValue>> values = Collections
+			.synchronizedMap(new HashMap<String, CachedList<AttributeValue>>());
+
+		private DoubleChecked(BellaDatiServiceImpl service) {
+			this.service = service;
+		}
+
+		private Object get(String dataSetId, String attributeCode) {
+			String key = dataSetId + "/" + attributeCode;
+			CachedList<AttributeValue> existing = values.get(key);
+			if (existing != null) {
+				return existing;
+			}
+			synchronized (values) {
+				existing = values.get(key);
+				if (existing == null) {
+					existing = service.getAttributeValues(dataSetId, attributeCode);
+					values.put(key, existing);
+				}
+				return existing;
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.belladati.sdk.benchmark;
+
+import com.belladati.sdk.impl.BellaDatiClient;
+import com.belladati.sdk.impl.ConnectionPoolStats;
+import com.belladati.sdk.impl.TokenHolder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput of many concurrent view loads over HTTP/1.1 with a small
+ * connection pool against HTTP/2 multiplexing them over a single connection.
+ * A local server simulates server latency by delaying every response. The
+ * <tt>NEGOTIATE</tt> run shows the fallback to HTTP/1.1, since HTTP/2 is only
+ * negotiated through ALPN on TLS connections.
+ * <p>
+ * Not run as part of the test suite; run the main method with the test
+ * classpath.
+ *
+ *
+ */
+public class Http2ConcurrencyBenchmark {
+
+	private static final int THREADS = 64;
+	private static final int REQUESTS_PER_THREAD = 20;
+	private static final int LATENCY_MILLIS = 20;
+	private static final int MAX_CONNECTIONS = 4;
+
+	private static final String CONTENT = "{\"id\":\"view\",\"name\":\"View\",\"type\":\"chart\",\"content\":{}}";
+
+	public static void main(String[] args) throws Exception {
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+		System.setProperty("bdKeepAlive", "true");
+		System.setProperty("bdMaxConnections", "" + MAX_CONNECTIONS);
+		try {
+			run(HttpVersionPolicy.FORCE_HTTP_1, HttpVersionPolicy.FORCE_HTTP_1, scheduler);
+			run(HttpVersionPolicy.NEGOTIATE, HttpVersionPolicy.FORCE_HTTP_1, scheduler);
+			run(HttpVersionPolicy.FORCE_HTTP_2, HttpVersionPolicy.FORCE_HTTP_2, scheduler);
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	private static void run(HttpVersionPolicy clientPolicy, HttpVersionPolicy serverPolicy, ScheduledExecutorService scheduler)
+		throws Exception {
+		HttpAsyncServer server = startServer(serverPolicy, scheduler);
+		try {
+			ListenerEndpoint endpoint = server.listen(new InetSocketAddress("localhost", 0), URIScheme.HTTP).get();
+			String url = "http://localhost:" + ((InetSocketAddress) endpoint.getAddress()).getPort() + "/";
+
+			System.setProperty("bdHttpVersionPolicy", clientPolicy.name());
+			run(clientPolicy.name(), new BellaDatiClient(url, false));
+		} finally {
+			server.close(CloseMode.IMMEDIATE);
+		}
+	}
+
+	private static void run(String name, BellaDatiClient client) throws Exception {
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+		// warm up
+		load(client, tokenHolder, 4);
+
+		ConnectionPoolStats stats = client.getPoolStats();
+		long missesBefore = stats.getMisses();
+		long start = System.nanoTime();
+		load(client, tokenHolder, REQUESTS_PER_THREAD);
+		long elapsed = System.nanoTime() - start;
+
+		int total = THREADS * REQUESTS_PER_THREAD;
+		System.out.printf("%-14s %6d requests in %6d ms, %8.0f req/s, %3d new connections%n", name, total,
+			TimeUnit.NANOSECONDS.toMillis(elapsed), total / (elapsed / 1e9), stats.getMisses() - missesBefore);
+	}
+
+	private static void load(BellaDatiClient client, TokenHolder tokenHolder, int requests) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < requests; i++) {
+						client.get("api/reports/views/" + thread + "-" + i + "/chart", tokenHolder);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static HttpAsyncServer startServer(HttpVersionPolicy policy, ScheduledExecutorService scheduler) {
+		HttpAsyncServer server = H2ServerBootstrap.bootstrap()
+			.setVersionPolicy(policy)
+			.register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+				@Override
+				public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request, EntityDetails entityDetails,
+					HttpContext context) {
+					return new BasicRequestConsumer<Void>(entityDetails != null ? new DiscardingEntityConsumer<Void>() : null);
+				}
+
+				@Override
+				public void handle(Message<HttpRequest, Void> message, ResponseTrigger responseTrigger, HttpContext context) {
+					scheduler.schedule(() -> {
+						try {
+							responseTrigger.submitResponse(
+								AsyncResponseBuilder.create(200).setEntity(CONTENT, ContentType.APPLICATION_JSON).build(), context);
+						} catch (HttpException | IOException e) {
+							e.printStackTrace();
+						}
+					}, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+				}
+			}).create();
+		server.start();
+		return server;
+	}
+}
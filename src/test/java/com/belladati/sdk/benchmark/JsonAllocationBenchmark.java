@@ -0,0 +1,68 @@
+package com.belladati.sdk.benchmark;
+
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares allocation and time per parse of a typical list response when
+ * creating a new {@link ObjectMapper} for each request against using the
+ * shared {@link JsonSupport} reader.
+ * <p>
+ * Not run as part of the test suite; run the main method with the test
+ * classpath.
+ *
+ *
+ */
+public class JsonAllocationBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int ITERATIONS = 100000;
+
+	private interface Parse {
+		JsonNode parse(byte[] content) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		byte[] content = buildResponse(20);
+
+		run("new ObjectMapper per call", content, bytes -> new ObjectMapper().readTree(bytes));
+		run("shared ObjectMapper", content, JsonSupport::readTree);
+	}
+
+	private static void run(String name, byte[] content, Parse parse) throws Exception {
+		long sink = 0;
+		for (int i = 0; i < WARMUP; i++) {
+			sink += parse.parse(content).size();
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += parse.parse(content).size();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		System.out.printf("%-28s %10.0f ns/op %10d B/op (%d)%n", name, (double) elapsed / ITERATIONS, allocated / ITERATIONS,
+			sink);
+	}
+
+	private static byte[] buildResponse(int elements) {
+		ObjectNode json = JsonSupport.createObjectNode();
+		ArrayNode reports = json.putArray("reports");
+		for (int i = 0; i < elements; i++) {
+			reports.addObject().put("id", "report" + i).put("name", "Report " + i).put("description", "Description " + i)
+				.put("owner", "owner@example.com").put("lastChange", "Mon, 16 Apr 2012 10:17:26 GMT");
+		}
+		json.put("size", elements).put("offset", 0);
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,99 @@
+package com.belladati.sdk.benchmark;
+
+import com.belladati.sdk.impl.OAuthSigner;
+import com.belladati.sdk.impl.TokenHolder;
+import com.belladati.sdk.impl.TransportRequest;
+import oauth.signpost.OAuthConsumer;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares signing throughput and allocation per request of a new signpost
+ * consumer per request, as the client used to sign, against the shared
+ * {@link OAuthSigner}, with 1 to 64 threads signing concurrently.
+ * <p>
+ * Not run as part of the test suite; run the main method with the test
+ * classpath.
+ *
+ *
+ */
+public class OAuthSigningBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+	private static final long WARMUP_MILLIS = 1000;
+	private static final long MEASURE_MILLIS = 2000;
+
+	private static final URI VIEW_URI = URI.create("https://service.belladati.com/api/reports/views/12345/chart");
+
+	private interface Sign {
+		void sign() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		TokenHolder tokenHolder = new TokenHolder("consumerKey", "consumerSecret");
+		tokenHolder.setToken("accessToken1234567890", "accessTokenSecret1234567890");
+
+		System.out.printf("%-22s %8s %14s %10s%n", "signer", "threads", "ops/s", "B/op");
+		for (int threads : THREADS) {
+			run("signpost per request", threads, () -> {
+				OAuthConsumer consumer = tokenHolder.createConsumer();
+				HttpGet request = new HttpGet(VIEW_URI);
+				consumer.sign(request);
+			});
+			run("shared OAuthSigner", threads, () -> {
+				OAuthSigner signer = tokenHolder.getSigner();
+				TransportRequest request = new TransportRequest("GET", VIEW_URI);
+				signer.sign(request, null);
+			});
+		}
+	}
+
+	private static void run(String name, int threads, Sign sign) throws Exception {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		AtomicBoolean measuring = new AtomicBoolean();
+		AtomicBoolean stopped = new AtomicBoolean();
+		LongAdder operations = new LongAdder();
+		LongAdder allocated = new LongAdder();
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			new Thread(() -> {
+				long count = 0;
+				long allocatedBefore = 0;
+				boolean counting = false;
+				try {
+					while (!stopped.get()) {
+						if (!counting && measuring.get()) {
+							counting = true;
+							allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+						}
+						sign.sign();
+						if (counting) {
+							count++;
+						}
+					}
+					operations.add(count);
+					allocated.add(threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore);
+				} catch (Exception e) {
+					e.printStackTrace();
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		Thread.sleep(WARMUP_MILLIS);
+		long start = System.nanoTime();
+		measuring.set(true);
+		Thread.sleep(MEASURE_MILLIS);
+		stopped.set(true);
+		long elapsed = System.nanoTime() - start;
+		done.await();
+
+		long ops = operations.sum();
+		System.out.printf("%-22s %8d %14.0f %10d%n", name, threads, ops * 1e9 / elapsed, ops == 0 ? 0 : allocated.sum() / ops);
+	}
+}
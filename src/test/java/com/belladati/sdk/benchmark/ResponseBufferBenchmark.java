@@ -0,0 +1,88 @@
+package com.belladati.sdk.benchmark;
+
+import com.belladati.sdk.impl.PooledBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares allocation per response and throughput of reading response
+ * bodies of 1 KB, 1 MB and 50 MB the way the client used to, copying through
+ * a small buffer into a growing array, against {@link PooledBuffer} with and
+ * without a known <tt>Content-Length</tt>.
+ * <p>
+ * Not run as part of the test suite; run the main method with the test
+ * classpath.
+ *
+ *
+ */
+public class ResponseBufferBenchmark {
+
+	private static final int[] SIZES = { 1024, 1024 * 1024, 50 * 1024 * 1024 };
+	private static final long WARMUP_MILLIS = 1000;
+	private static final long MEASURE_MILLIS = 3000;
+
+	private interface Read {
+		int read(InputStream in, long length) throws IOException;
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.out.printf("%-26s %10s %12s %14s%n", "reader", "body", "ops/s", "B/op");
+		for (int size : SIZES) {
+			byte[] body = new byte[size];
+			run("copy to growing array", body, (in, length) -> copy(in).length);
+			run("pooled, known length", body, (in, length) -> PooledBuffer.readBytes(in, length).length);
+			run("pooled, unknown length", body, (in, length) -> PooledBuffer.readBytes(in, -1).length);
+			run("pooled, no copy", body, (in, length) -> {
+				try (PooledBuffer buffer = PooledBuffer.read(in)) {
+					return (int) buffer.size();
+				}
+			});
+		}
+	}
+
+	/** Reads the stream the way the client did before using pooled buffers. */
+	private static byte[] copy(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+		byte[] buffer = new byte[128];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static void run(String name, byte[] body, Read read) throws Exception {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+		while (System.nanoTime() < warmupEnd) {
+			read.read(new ByteArrayInputStream(body), body.length);
+		}
+
+		// the input stream itself is allocated outside of the measurement
+		ByteArrayInputStream in = new ByteArrayInputStream(body);
+		long ops = 0;
+		long allocated = 0;
+		long start = System.nanoTime();
+		long end = start + MEASURE_MILLIS * 1_000_000;
+		while (System.nanoTime() < end) {
+			in.reset();
+			long before = threadBean.getCurrentThreadAllocatedBytes();
+			if (read.read(in, body.length) != body.length) {
+				throw new IllegalStateException("Incomplete read");
+			}
+			allocated += threadBean.getCurrentThreadAllocatedBytes() - before;
+			ops++;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.printf("%-26s %10s %12.0f %14d%n", name, size(body.length), ops * 1e9 / elapsed, allocated / ops);
+	}
+
+	private static String size(int bytes) {
+		return bytes >= 1024 * 1024 ? bytes / (1024 * 1024) + " MB" : bytes / 1024 + " KB";
+	}
+}
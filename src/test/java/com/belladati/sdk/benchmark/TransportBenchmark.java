@@ -0,0 +1,143 @@
+package com.belladati.sdk.benchmark;
+
+import com.belladati.sdk.impl.ApacheHttpTransport;
+import com.belladati.sdk.impl.BellaDatiClient;
+import com.belladati.sdk.impl.HttpTransport;
+import com.belladati.sdk.impl.JdkHttpTransport;
+import com.belladati.sdk.impl.TokenHolder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput and latency of the Apache and the JDK
+ * {@link HttpTransport} loading JSON from a local HTTP/1.1 server over kept
+ * alive connections. Latency is measured per request in the client, including
+ * signing and parsing.
+ * <p>
+ * Not run as part of the test suite; run the main method with the test
+ * classpath.
+ *
+ *
+ */
+public class TransportBenchmark {
+
+	private static final int THREADS = 16;
+	private static final int WARMUP_REQUESTS = 500;
+	private static final int REQUESTS_PER_THREAD = 2000;
+
+	private static final String CONTENT = "{\"id\":\"view\",\"name\":\"View\",\"type\":\"chart\",\"content\":{}}";
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("bdKeepAlive", "true");
+		System.setProperty("bdMaxConnections", "" + THREADS);
+		HttpAsyncServer server = startServer();
+		try {
+			ListenerEndpoint endpoint = server.listen(new InetSocketAddress("localhost", 0), URIScheme.HTTP).get();
+			String url = "http://localhost:" + ((InetSocketAddress) endpoint.getAddress()).getPort() + "/";
+
+			// run each twice, alternating, to even out JIT effects
+			for (int round = 0; round < 2; round++) {
+				try (HttpTransport transport = new ApacheHttpTransport(HttpVersionPolicy.FORCE_HTTP_1)) {
+					run("apache", new BellaDatiClient(url, false, transport));
+				}
+				try (HttpTransport transport = new JdkHttpTransport(HttpVersionPolicy.FORCE_HTTP_1)) {
+					run("jdk", new BellaDatiClient(url, false, transport));
+				}
+			}
+		} finally {
+			server.close(CloseMode.IMMEDIATE);
+		}
+	}
+
+	private static void run(String name, BellaDatiClient client) throws Exception {
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+		load(client, tokenHolder, WARMUP_REQUESTS);
+
+		long start = System.nanoTime();
+		long[] latencies = load(client, tokenHolder, REQUESTS_PER_THREAD);
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		System.out.printf("%-7s %6d requests in %5d ms, %8.0f req/s, latency p50 %6.0f us, p90 %6.0f us, p99 %6.0f us, max %6.0f us%n",
+			name, latencies.length, TimeUnit.NANOSECONDS.toMillis(elapsed), latencies.length / (elapsed / 1e9),
+			percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99),
+			latencies[latencies.length - 1] / 1e3);
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		return sorted[(int) Math.min(sorted.length - 1, Math.round(p * sorted.length))] / 1e3;
+	}
+
+	private static long[] load(BellaDatiClient client, TokenHolder tokenHolder, int requests) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					long[] latencies = new long[requests];
+					for (int i = 0; i < requests; i++) {
+						long start = System.nanoTime();
+						// distinct URLs, so that the Apache transport doesn't answer from its cache
+						client.getAsJson("api/reports/views/" + thread + "-" + i + "/chart", tokenHolder);
+						latencies[i] = System.nanoTime() - start;
+					}
+					return latencies;
+				}));
+			}
+			long[] all = new long[THREADS * requests];
+			for (int t = 0; t < THREADS; t++) {
+				System.arraycopy(futures.get(t).get(), 0, all, t * requests, requests);
+			}
+			return all;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static HttpAsyncServer startServer() {
+		HttpAsyncServer server = H2ServerBootstrap.bootstrap()
+			.setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_1)
+			.register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+				@Override
+				public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request, EntityDetails entityDetails,
+					HttpContext context) {
+					return new BasicRequestConsumer<Void>(entityDetails != null ? new DiscardingEntityConsumer<Void>() : null);
+				}
+
+				@Override
+				public void handle(Message<HttpRequest, Void> message, ResponseTrigger responseTrigger, HttpContext context)
+					throws HttpException, IOException {
+					responseTrigger.submitResponse(
+						AsyncResponseBuilder.create(200).setEntity(CONTENT, ContentType.APPLICATION_JSON).build(), context);
+				}
+			}).create();
+		server.start();
+		return server;
+	}
+}
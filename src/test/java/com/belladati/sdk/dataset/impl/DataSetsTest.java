@@ -344,6 +344,26 @@ public class DataSetsTest extends SDKTest {
 		assertEquals(info.getColumns().size(), 2);
 	}
 
+	/** Large data pages are read regardless of field order in the response. */
+	public void loadDataSetDataLargePage() {
+		int rows = 10000;
+		StringBuilder content = new StringBuilder("{\"data\":[");
+		for (int i = 0; i < rows; i++) {
+			content.append(i == 0 ? "" : ",").append("{\"UID\":\"").append(i).append("\",\"L_ATTRIBUTE\":\"value ")
+				.append(i).append("\"}");
+		}
+		content.append("],\"other\":{\"size\":1,\"nested\":[1,2]},\"size\":").append(rows).append(",\"offset\":0}");
+		server.register(String.format(dataUri, id), content.toString());
+
+		PaginatedIdList<DataRow> dataList = getService().getDataSetData(id);
+		dataList.load();
+
+		assertEquals(dataList.size(), rows);
+		assertEquals(dataList.getPageSize(), rows);
+		assertEquals(dataList.get(0).getId(), "0");
+		assertEquals(dataList.get(rows - 1).get("L_ATTRIBUTE"), "value " + (rows - 1));
+	}
+
 	/** Posts data set data row. */
 	public void postDataSetData() {
 		ObjectNode expectedNode = builder.buildDataSetDataRowNode("456", "L_ATTRIBUTE", "My Value", "M_INDICATOR", "11.99");
@@ -0,0 +1,153 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataColumn;
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.exception.dataset.data.UnknownServerColumnException;
+import com.belladati.sdk.exception.server.NotFoundException;
+import com.belladati.sdk.report.Report;
+import com.belladati.sdk.report.ReportInfo;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.PaginatedIdList;
+import com.belladati.sdk.view.ViewType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the non-blocking {@link AsyncBellaDatiService}.
+ *
+ *
+ */
+@Test
+public class AsyncServiceTest extends SDKTest {
+
+	private final String reportsUri = "/api/reports";
+	private final String id = "123";
+
+	/** reports are loaded asynchronously and requests are signed */
+	public void loadReport() throws Exception {
+		server.register(reportsUri + "/" + id, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				assertEquals(holder.authHeaders.get("oauth_consumer_key"), "key");
+				assertNotNull(holder.authHeaders.get("oauth_signature"));
+				holder.response.setEntity(new StringEntity(
+					builder.buildReportNode(id, "name", "description", "owner", "Mon, 16 Apr 2012 10:17:26 GMT").toString()));
+			}
+		});
+
+		Report report = getService().async().loadReport(id).get(10, TimeUnit.SECONDS);
+
+		server.assertRequestUris(reportsUri + "/" + id);
+		assertEquals(report.getId(), id);
+		assertEquals(report.getName(), "name");
+	}
+
+	/** many requests can be in flight at the same time */
+	public void loadReportsConcurrently() throws Exception {
+		int count = 50;
+		List<CompletableFuture<Report>> futures = new ArrayList<CompletableFuture<Report>>();
+		for (int i = 0; i < count; i++) {
+			server.register(reportsUri + "/" + i,
+				builder.buildReportNode("" + i, "name " + i, null, "owner", "Mon, 16 Apr 2012 10:17:26 GMT").toString());
+		}
+		AsyncBellaDatiService async = getService().async();
+		for (int i = 0; i < count; i++) {
+			futures.add(async.loadReport("" + i));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[count])).get(30, TimeUnit.SECONDS);
+
+		for (int i = 0; i < count; i++) {
+			assertEquals(futures.get(i).get().getName(), "name " + i);
+		}
+		assertEquals(getService().getClient().getPoolStats().getRequests(), count);
+	}
+
+	/** errors complete the future with the exception the blocking call throws */
+	public void loadDataSetNotFound() throws Exception {
+		server.registerError("/api/dataSets/" + id, 404, "");
+
+		try {
+			getService().async().loadDataSet(id).join();
+			fail("No exception thrown");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof NotFoundException, "Unexpected cause " + e.getCause());
+		}
+	}
+
+	/** view content is loaded asynchronously */
+	public void loadViewContent() throws Exception {
+		server.register("/api/reports/views/" + id + "/chart", "{\"key\":\"value\"}");
+
+		Object content = getService().async().loadViewContent(id, ViewType.CHART).get(10, TimeUnit.SECONDS);
+
+		assertTrue(content instanceof JsonNode);
+		assertEquals(((JsonNode) content).get("key").asText(), "value");
+	}
+
+	/** list pages are loaded into the list obtained from the service */
+	public void loadListPage() throws Exception {
+		ObjectNode item = builder.buildReportNode(id, "name", null, "owner", "Mon, 16 Apr 2012 10:17:26 GMT");
+		server.registerPaginatedItem(reportsUri, "reports", item);
+		PaginatedIdList<ReportInfo> list = getService().getReportInfo();
+
+		PaginatedIdList<ReportInfo> loaded = getService().async().load(list, 0, 10).get(10, TimeUnit.SECONDS);
+
+		assertTrue(loaded == list);
+		assertTrue(list.isLoaded());
+		assertEquals(list.size(), 1);
+		assertEquals(list.get(0).getId(), id);
+		assertEquals(server.getRequestUris().size(), 1);
+	}
+
+	/** rows are posted asynchronously */
+	public void postDataSetData() throws Exception {
+		List<DataColumn> columns = Arrays.asList(new DataColumn("L_ATTRIBUTE"));
+		DataRow row = new DataRow("456", columns);
+		row.setAll("value");
+		server.register("/api/dataSets/" + id + "/data", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				holder.assertPost();
+				Map<String, String> formParams = holder.getFormParameters();
+				assertEquals(formParams.get("dataRow"), "[" + row.toJsonObject() + "]");
+				holder.response.setEntity(new StringEntity(""));
+			}
+		});
+
+		getService().async().postDataSetData(id, Arrays.asList(row)).get(10, TimeUnit.SECONDS);
+
+		server.assertRequestUris("/api/dataSets/" + id + "/data");
+	}
+
+	/** upload errors are translated like in the blocking API */
+	public void uploadUnknownColumn() throws Exception {
+		server.registerError("/api/import/" + id, 400, "Column 'column' not found");
+		DataTable table = DataTable.createBasicInstance("column").createRow("content");
+
+		try {
+			getService().async().uploadData(id, table).join();
+			fail("No exception thrown");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof UnknownServerColumnException, "Unexpected cause " + e.getCause());
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.user.User;
+import com.belladati.sdk.util.CachedList;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the bounded caches kept by the service.
+ *
+ *
+ */
+@Test
+public class BoundedCacheTest extends SDKTest {
+
+	private static final int THREADS = 64;
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetProperties() {
+		System.clearProperty("bdServiceCacheSize");
+		System.clearProperty("bdServiceCacheSizeUsers");
+		System.clearProperty("bdServiceCacheTtl");
+	}
+
+	/** entries are created once and then returned from the cache */
+	public void hitsAndMisses() {
+		BoundedCache<String> cache = new BoundedCache<String>("test", 10, 0);
+		AtomicInteger loads = new AtomicInteger();
+
+		assertEquals(cache.get("a", key -> key + loads.incrementAndGet()), "a1");
+		assertEquals(cache.get("a", key -> key + loads.incrementAndGet()), "a1");
+
+		assertEquals(loads.get(), 1);
+		assertEquals(cache.getHits(), 1);
+		assertEquals(cache.getMisses(), 1);
+		assertEquals(cache.getHitRate(), 0.5);
+	}
+
+	/** the cache doesn't grow beyond its size */
+	public void sizeBound() {
+		BoundedCache<String> cache = new BoundedCache<String>("test", 10, 0);
+
+		for (int i = 0; i < 100; i++) {
+			cache.get("key" + i, key -> key);
+		}
+
+		assertEquals(cache.size(), 10);
+		assertEquals(cache.getEvictions(), 90);
+		assertNull(cache.getIfPresent("key0"));
+		assertEquals(cache.getIfPresent("key99"), "key99");
+	}
+
+	/** entries used again survive a burst of entries used once */
+	public void frequentEntriesSurvive() {
+		BoundedCache<String> cache = new BoundedCache<String>("test", 10, 0);
+		for (int i = 0; i < 5; i++) {
+			cache.get("hot" + i, key -> key);
+			cache.get("hot" + i, key -> key);
+		}
+
+		for (int i = 0; i < 100; i++) {
+			cache.get("cold" + i, key -> key);
+		}
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(cache.getIfPresent("hot" + i), "hot" + i);
+		}
+	}
+
+	/** entries expire after their time to live */
+	public void expiry() throws InterruptedException {
+		BoundedCache<String> cache = new BoundedCache<String>("test", 10, 20);
+		cache.get("a", key -> "old");
+
+		Thread.sleep(50);
+
+		assertEquals(cache.get("a", key -> "new"), "new");
+		assertEquals(cache.getExpirations(), 1);
+		assertEquals(cache.getMisses(), 2);
+	}
+
+	/** entries can be removed explicitly */
+	public void invalidation() {
+		BoundedCache<String> cache = new BoundedCache<String>("test", 10, 0);
+		cache.get("ds1/a", key -> key);
+		cache.get("ds1/b", key -> key);
+		cache.get("ds2/a", key -> key);
+		cache.get("ds2/b", key -> key);
+
+		cache.invalidate("ds2/a");
+		assertNull(cache.getIfPresent("ds2/a"));
+		cache.invalidateIf(key -> key.startsWith("ds1/"));
+		assertEquals(cache.size(), 1);
+		cache.invalidateAll();
+		assertEquals(cache.size(), 0);
+	}
+
+	/** the size of each cache can be configured */
+	public void configuredSize() {
+		System.setProperty("bdServiceCacheSize", "50");
+		System.setProperty("bdServiceCacheSizeUsers", "5");
+
+		assertEquals(new BoundedCache<String>("users").getMaxSize(), 5);
+		assertEquals(new BoundedCache<String>("userGroups").getMaxSize(), 50);
+	}
+
+	/** the service's caches are bounded and can be cleared */
+	public void serviceCaches() {
+		System.setProperty("bdServiceCacheSizeUsers", "5");
+		BellaDatiServiceImpl service = new BellaDatiServiceImpl(getService().getClient(), getService().getTokenHolder());
+
+		CachedList<User> first = service.getDomainUsers("domain0", null);
+		assertSame(service.getDomainUsers("domain0", null), first);
+		for (int i = 1; i < 20; i++) {
+			service.getDomainUsers("domain" + i, null);
+		}
+
+		BoundedCache<?> users = service.getCaches().get(0);
+		assertEquals(users.getName(), "users");
+		assertEquals(users.size(), 5);
+		service.invalidateCaches();
+		assertEquals(users.size(), 0);
+		assertNotSame(service.getDomainUsers("domain0", null), first);
+	}
+
+	/** concurrent lookups of the same keys create each entry once */
+	public void concurrentLookups() throws Exception {
+		BoundedCache<Object> cache = new BoundedCache<Object>("test", 1000, 0);
+		AtomicInteger loads = new AtomicInteger();
+		int lookups = 10000;
+
+		List<Object> first = runConcurrently(() -> {
+			Object[] entries = new Object[16];
+			for (int i = 0; i < lookups; i++) {
+				Object entry = cache.get("key" + i % 16, key -> {
+					loads.incrementAndGet();
+					return new Object();
+				});
+				if (entries[i % 16] == null) {
+					entries[i % 16] = entry;
+				} else {
+					assertSame(entry, entries[i % 16]);
+				}
+			}
+			return entries[0];
+		});
+
+		assertEquals(loads.get(), 16);
+		assertEquals(cache.getHits() + cache.getMisses(), (long) THREADS * lookups);
+		for (Object entry : first) {
+			assertSame(entry, first.get(0));
+		}
+	}
+
+	/** concurrent lookups of many keys keep the cache within its size */
+	public void concurrentEviction() throws Exception {
+		BoundedCache<String> cache = new BoundedCache<String>("test", 100, 0);
+
+		runConcurrently(() -> {
+			for (int i = 0; i < 10000; i++) {
+				String key = "key" + ThreadLocalRandom.current().nextInt(1000);
+				assertEquals(cache.get(key, k -> k), key);
+				if (i % 1000 == 0) {
+					cache.invalidate(key);
+				}
+			}
+			return null;
+		});
+		// the last lookup applies what other threads left for the eviction order
+		cache.get("last", key -> key);
+
+		assertTrue(cache.size() <= 100, "Cache too large: " + cache.size());
+		assertTrue(cache.getEvictions() > 0);
+		assertEquals(cache.getIfPresent("last"), "last");
+	}
+
+	/** concurrent service lookups share the same lists */
+	public void concurrentServiceLookups() throws Exception {
+		BellaDatiServiceImpl service = getService();
+		List<Object> lists = runConcurrently(() -> {
+			Object values = service.getAttributeValues("ds", "attribute");
+			assertSame(service.getDataSources("ds"), service.getDataSources("ds"));
+			assertSame(service.getDataSourceImports("source"), service.getDataSourceImports("source"));
+			return values;
+		});
+
+		for (Object list : lists) {
+			assertSame(list, lists.get(0));
+		}
+	}
+
+	/** Runs a task on many threads at once, returning their results. */
+	private static <T> List<T> runConcurrently(Callable<T> task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return task.call();
+				}));
+			}
+			start.countDown();
+			List<T> results = new ArrayList<T>();
+			for (Future<T> future : futures) {
+				results.add(future.get(30, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.dataset.data.OverwritePolicy;
+import com.belladati.sdk.exception.dataset.data.UnknownServerColumnException;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests uploading data in chunks sent in parallel.
+ *
+ *
+ */
+@Test
+public class BulkImportTest extends SDKTest {
+
+	private final String id = "123";
+	private final String importUri = "/api/import/" + id;
+
+	/** bodies of the requests received by the server, in order of arrival */
+	private List<JsonNode> received;
+	private AtomicInteger inFlight;
+	private AtomicInteger maxInFlight;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupReceived() {
+		received = Collections.synchronizedList(new ArrayList<JsonNode>());
+		inFlight = new AtomicInteger();
+		maxInFlight = new AtomicInteger();
+	}
+
+	/** rows are split into chunks of the configured size */
+	public void chunkRows() {
+		register(0);
+		DataTable table = buildTable(2500);
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(1000).upload(table);
+
+		assertTrue(result.isComplete());
+		assertEquals(result.getRowsUploaded(), 2500);
+		assertEquals(result.getChunks().size(), 3);
+		assertEquals(result.getChunks().get(2).getFirstRow(), 2000);
+		assertEquals(result.getChunks().get(2).getRows(), 500);
+		assertEquals(result.getChunkLatency().getCount(), 3);
+		assertEquals(received.size(), 3);
+		assertEquals(receivedRows(), rows(table.getRows()));
+		for (JsonNode body : received) {
+			assertEquals(body.get("columns"), table.toJson().get("columns"));
+		}
+	}
+
+	/** chunks are limited to the configured size in bytes */
+	public void chunkBytes() {
+		register(0);
+		DataTable table = buildTable(1000);
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkBytes(2000).upload(table);
+
+		assertTrue(result.getChunks().size() > 5, "Too few chunks: " + result.getChunks().size());
+		for (JsonNode body : received) {
+			assertTrue(body.get("data").toString().length() < 2500, "Chunk too large: " + body.get("data").toString().length());
+		}
+		assertEquals(receivedRows(), rows(table.getRows()));
+	}
+
+	/** no more chunks than configured are uploaded at the same time */
+	public void inFlightWindow() {
+		register(50);
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(10).setMaxInFlight(3).upload(buildTable(200));
+
+		assertTrue(result.isComplete());
+		assertEquals(result.getChunks().size(), 20);
+		assertTrue(maxInFlight.get() <= 3, "Too many chunks in flight: " + maxInFlight.get());
+		assertTrue(maxInFlight.get() > 1, "Chunks not uploaded in parallel");
+		assertTrue(result.getRowsPerSecond() > 0);
+	}
+
+	/** a failed chunk is sent again on its own */
+	public void retryChunk() {
+		AtomicInteger failures = new AtomicInteger(1);
+		server.register(importUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				JsonNode body = JsonSupport.readTree(holder.getRequestBodyBytes());
+				if (body.get("data").size() == 5 && failures.getAndDecrement() > 0) {
+					holder.response.setCode(503);
+					return;
+				}
+				received.add(body);
+			}
+		});
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(10).upload(buildTable(25));
+
+		assertTrue(result.isComplete());
+		assertEquals(result.getRetries(), 1);
+		assertEquals(result.getChunks().get(2).getAttempts(), 2);
+		assertEquals(result.getChunks().get(0).getAttempts(), 1);
+		assertEquals(received.size(), 3);
+		assertEquals(result.getRowsUploaded(), 25);
+	}
+
+	/** chunks failing for good are reported and stop the import */
+	public void retriesExhausted() {
+		server.registerError(importUri, 503, "");
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(10).setMaxInFlight(1).setMaxRetries(1)
+			.upload(buildTable(30));
+
+		assertFalse(result.isComplete());
+		assertEquals(result.getChunks().size(), 1);
+		assertEquals(result.getChunks().get(0).getAttempts(), 2);
+		assertEquals(result.getRowsFailed(), 10);
+		assertEquals(result.getRowsUploaded(), 0);
+		assertEquals(result.getFailedChunks(), result.getChunks());
+	}
+
+	/** unknown columns are reported per chunk without retrying */
+	public void unknownColumn() {
+		server.registerError(importUri, 400, "Indicator/attribute 'attribute' doesn't exist");
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(10).setMaxInFlight(1).upload(buildTable(30));
+
+		assertFalse(result.isComplete());
+		assertEquals(result.getRetries(), 0);
+		UnknownServerColumnException e = (UnknownServerColumnException) result.getFailure();
+		assertEquals(e.getId(), id);
+		assertEquals(e.getColumn(), "attribute");
+	}
+
+	/** data is deleted only by the first chunk, before the others are sent */
+	public void deleteAllFirst() {
+		register(20);
+		DataTable table = buildTable(100).setOverwritePolicy(OverwritePolicy.deleteAll());
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(10).upload(table);
+
+		assertTrue(result.isComplete());
+		assertEquals(received.size(), 10);
+		assertEquals(received.get(0).get("overwrite"), OverwritePolicy.deleteAll().toJson());
+		assertEquals(received.get(0).get("data").get(0), table.getRows().get(0).toJson());
+		for (JsonNode body : received.subList(1, received.size())) {
+			assertEquals(body.get("overwrite"), OverwritePolicy.deleteNone().toJson());
+		}
+	}
+
+	/** tables overwriting by attribute members are uploaded at once */
+	public void byAttributesSingleRequest() {
+		register(0);
+		DataTable table = buildTable(100).setOverwritePolicy(OverwritePolicy.byAttributes("attribute"));
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(10).upload(table);
+
+		assertEquals(result.getChunks().size(), 1);
+		assertEquals(received.size(), 1);
+		assertEquals(received.get(0), table.toJson());
+	}
+
+	/** rows can be read from a source while they are uploaded */
+	public void rowSource() {
+		register(0);
+		DataTable template = DataTable.createBasicInstance("attribute", "indicator").setTemplateId(7);
+		Iterator<DataRow> rows = new Iterator<DataRow>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < 50;
+			}
+
+			@Override
+			public DataRow next() {
+				return new DataRow(template.getColumns()).setAll("value " + next, "" + next++);
+			}
+		};
+
+		BulkImportResult result = getService().setupBulkImport(id).setChunkRows(20).upload(template, rows);
+
+		assertEquals(result.getRowsUploaded(), 50);
+		assertEquals(received.size(), 3);
+		assertEquals(template.getRows().size(), 0);
+		assertEquals(received.get(0).get("templateId").asInt(), 7);
+	}
+
+	/** empty tables aren't uploaded */
+	public void emptyTable() {
+		register(0);
+
+		BulkImportResult result = getService().setupBulkImport(id).upload(buildTable(0));
+
+		assertTrue(result.isComplete());
+		assertEquals(result.getChunks().size(), 0);
+		assertEquals(received.size(), 0);
+		assertNull(result.getFailure());
+	}
+
+	/** invalid settings are rejected */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalidInFlight() {
+		getService().setupBulkImport(id).setMaxInFlight(0);
+	}
+
+	private void register(long delayMillis) {
+		server.register(importUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				try {
+					received.add(JsonSupport.readTree(holder.getRequestBodyBytes()));
+					Thread.sleep(delayMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			}
+		});
+	}
+
+	/** Returns the rows received by the server, ordered by their content. */
+	private List<String> receivedRows() {
+		List<JsonNode> rows = new ArrayList<JsonNode>();
+		synchronized (received) {
+			for (JsonNode body : received) {
+				body.get("data").forEach(rows::add);
+			}
+		}
+		return sorted(rows);
+	}
+
+	private static List<String> rows(List<DataRow> rows) {
+		List<JsonNode> json = new ArrayList<JsonNode>();
+		rows.forEach(row -> json.add(row.toJson()));
+		return sorted(json);
+	}
+
+	private static List<String> sorted(List<JsonNode> rows) {
+		List<String> sorted = new ArrayList<String>();
+		rows.forEach(row -> sorted.add(row.toString()));
+		Collections.sort(sorted);
+		return sorted;
+	}
+}
@@ -0,0 +1,169 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests keeping separate connection pools for each family of endpoints.
+ *
+ *
+ */
+@Test
+public class BulkheadTest extends SDKTest {
+
+	private static final Set<String> PROPERTIES = Set.of("bdKeepAlive", "bdMaxConnections", "bdMaxConnectionsExport",
+		"bdConnectionRequestTimeoutExport", "bdMaxConcurrency", "bdMaxRetries", "bdCircuitBreakerThreshold");
+
+	private final String exportUri = "/api/reports/views/123/export/pdf";
+	private final String reportUri = "/api/reports/123";
+	private final TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+	/** limiters are shared per base URL, keep tests apart if a port is reused */
+	private String basePath;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupBasePath() {
+		basePath = "/" + UUID.randomUUID();
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetPools() {
+		PROPERTIES.forEach(System::clearProperty);
+	}
+
+	/** each family's pool has its own size */
+	public void poolSizes() throws IOException {
+		System.setProperty("bdMaxConnectionsExport", "3");
+		ConnectionPoolStats stats = client().getPoolStats();
+
+		assertEquals(stats.getBulkhead(EndpointFamily.EXPORT).getMaxTotal(), 3);
+		assertEquals(stats.getBulkhead(EndpointFamily.METADATA).getMaxTotal(), 18);
+		assertEquals(stats.getBulkheads().size(), EndpointFamily.values().length);
+		assertEquals(stats.getMaxTotal(), 3 + 18 + 10 + 6);
+	}
+
+	/** the common property limits all pools together */
+	public void commonPoolSize() throws IOException {
+		System.setProperty("bdMaxConnections", "80");
+		ConnectionPoolStats stats = client().getPoolStats();
+
+		assertEquals(stats.getBulkhead(EndpointFamily.METADATA).getMaxTotal(), 36);
+		assertEquals(stats.getMaxTotal(), 80);
+	}
+
+	/** the default pools together keep the default client limit */
+	public void defaultPoolSize() throws IOException {
+		assertEquals(client().getPoolStats().getMaxTotal(), 40);
+	}
+
+	/** a family's pool isn't larger than the common limit */
+	public void familyPoolCapped() throws IOException {
+		System.setProperty("bdMaxConnections", "5");
+		System.setProperty("bdMaxConnectionsExport", "50");
+		ConnectionPoolStats stats = client().getPoolStats();
+
+		assertEquals(stats.getBulkhead(EndpointFamily.EXPORT).getMaxTotal(), 5);
+		assertEquals(stats.getBulkhead(EndpointFamily.IMPORT).getMaxTotal(), 1);
+	}
+
+	/** requests are counted in their family's bulkhead and in the total */
+	public void requestsPerBulkhead() throws IOException {
+		server.register(basePath + exportUri, "pdf");
+		server.register(basePath + reportUri, "{}");
+		BellaDatiClient client = client();
+
+		client.get(exportUri, tokenHolder);
+		client.get(reportUri, tokenHolder);
+		client.get(reportUri, tokenHolder);
+
+		ConnectionPoolStats stats = client.getPoolStats();
+		assertEquals(stats.getBulkhead(EndpointFamily.EXPORT).getRequests(), 1);
+		assertEquals(stats.getBulkhead(EndpointFamily.METADATA).getRequests(), 2);
+		assertEquals(stats.getBulkhead(EndpointFamily.IMPORT).getRequests(), 0);
+		assertEquals(stats.getRequests(), 3);
+		assertEquals(stats.getMisses(), 3);
+	}
+
+	/** a saturated export pool rejects further exports but not other requests */
+	public void saturatedPool() throws IOException {
+		System.setProperty("bdMaxConnectionsExport", "1");
+		System.setProperty("bdConnectionRequestTimeoutExport", "200");
+		System.setProperty("bdMaxConcurrency", "0");
+		System.setProperty("bdMaxRetries", "0");
+		server.register(basePath + exportUri, "pdf");
+		server.register(basePath + reportUri, "{}");
+		BellaDatiClient client = client();
+		ConnectionPoolStats export = client.getPoolStats().getBulkhead(EndpointFamily.EXPORT);
+
+		try (InputStream stream = client.openStream(exportUri, tokenHolder)) {
+			assertEquals(export.getLeased(), 1);
+			assertEquals(export.getUtilization(), 1.0);
+
+			try {
+				client.get(exportUri, tokenHolder);
+				fail("Expected the export pool to be exhausted");
+			} catch (RuntimeException e) {
+				// expected
+			}
+			assertEquals(new String(client.get(reportUri, tokenHolder)), "{}");
+		}
+
+		assertEquals(export.getRejected(), 1);
+		assertEquals(export.getLeased(), 0);
+		assertEquals(client.getPoolStats().getRejected(), 1);
+		assertEquals(client.getPoolStats().getBulkhead(EndpointFamily.METADATA).getRejected(), 0);
+		assertTrue(client.getPoolStats().toString().contains("EXPORT"));
+	}
+
+	/** rejections by a starved export pool don't open the breaker for other families */
+	public void starvedPoolKeepsBreakerClosed() throws IOException {
+		System.setProperty("bdMaxConnectionsExport", "1");
+		System.setProperty("bdConnectionRequestTimeoutExport", "100");
+		System.setProperty("bdMaxConcurrency", "0");
+		System.setProperty("bdMaxRetries", "0");
+		System.setProperty("bdCircuitBreakerThreshold", "2");
+		server.register(basePath + exportUri, "pdf");
+		server.register(basePath + reportUri, "{}");
+		BellaDatiClient client = client();
+
+		try (InputStream stream = client.openStream(exportUri, tokenHolder)) {
+			for (int i = 0; i < 3; i++) {
+				try {
+					client.get(exportUri, tokenHolder);
+					fail("Expected the export pool to be exhausted");
+				} catch (RuntimeException e) {
+					// expected
+				}
+			}
+			assertEquals(client.getCircuitBreaker().getState(), CircuitBreaker.State.CLOSED);
+			assertEquals(new String(client.get(reportUri, tokenHolder)), "{}");
+		}
+
+		assertEquals(client.getPoolStats().getBulkhead(EndpointFamily.EXPORT).getRejected(), 3);
+		assertEquals(client.getPoolStats().getBulkhead(EndpointFamily.METADATA).getRejected(), 0);
+	}
+
+	/** by default, the concurrency limit follows the pool size */
+	public void concurrencyFollowsPoolSize() throws IOException {
+		System.setProperty("bdMaxConnectionsExport", "2");
+		BellaDatiClient client = client();
+
+		assertEquals(client.getConcurrencyLimiter(EndpointFamily.EXPORT).getLimit(), 2);
+	}
+
+	private BellaDatiClient client() throws IOException {
+		server.start();
+		return new BellaDatiClient(server.getHttpURL() + basePath, false);
+	}
+}
@@ -0,0 +1,202 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.server.NotFoundException;
+import com.belladati.sdk.report.Report;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests sharing one request between concurrent identical requests.
+ *
+ *
+ */
+@Test
+public class CoalescingTest extends SDKTest {
+
+	private static final int THREADS = 8;
+
+	private final String id = "123";
+	private final String reportUri = "/api/reports/" + id;
+
+	private AtomicInteger requests;
+	private CountDownLatch release;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupServerResponse() {
+		requests = new AtomicInteger();
+		release = new CountDownLatch(1);
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetCoalescing() {
+		System.clearProperty("bdCoalesceRequests");
+		release.countDown();
+	}
+
+	/** concurrent loads of the same report send one request */
+	public void concurrentLoads() throws Exception {
+		registerBlockingReport(200);
+		RequestCoalescer coalescer = getService().getRequestCoalescer();
+
+		List<Future<Report>> reports = loadConcurrently(coalescer, THREADS);
+
+		for (Future<Report> report : reports) {
+			assertEquals(report.get(10, TimeUnit.SECONDS).getId(), id);
+		}
+		assertEquals(requests.get(), 1);
+		assertEquals(coalescer.getRequests(), 1);
+		assertEquals(coalescer.getCoalesced(), THREADS - 1);
+		assertEquals(coalescer.getHitRate(), (double) (THREADS - 1) / THREADS);
+		assertEquals(coalescer.getInFlight(), 0);
+	}
+
+	/** without coalescing, every load sends its own request */
+	public void disabled() throws Exception {
+		System.setProperty("bdCoalesceRequests", "false");
+		registerBlockingReport(200);
+		release.countDown();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Report>> reports = new ArrayList<Future<Report>>();
+			for (int i = 0; i < THREADS; i++) {
+				reports.add(executor.submit(() -> getService().loadReport(id)));
+			}
+			for (Future<Report> report : reports) {
+				report.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(requests.get(), THREADS);
+		assertEquals(getService().getRequestCoalescer().getCoalesced(), 0);
+	}
+
+	/** sequential loads are not coalesced */
+	public void sequentialLoads() {
+		registerBlockingReport(200);
+		release.countDown();
+
+		getService().loadReport(id);
+		getService().loadReport(id);
+
+		assertEquals(requests.get(), 2);
+		assertEquals(getService().getRequestCoalescer().getCoalesced(), 0);
+	}
+
+	/** all callers receive the error of the shared request */
+	public void sharedFailure() throws Exception {
+		registerBlockingReport(404);
+		RequestCoalescer coalescer = getService().getRequestCoalescer();
+
+		List<Future<Report>> reports = loadConcurrently(coalescer, THREADS);
+
+		for (Future<Report> report : reports) {
+			try {
+				report.get(10, TimeUnit.SECONDS);
+				fail("Expected NotFoundException");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof NotFoundException, "Unexpected " + e.getCause());
+			}
+		}
+		assertEquals(requests.get(), 1);
+		assertEquals(coalescer.getInFlight(), 0);
+	}
+
+	/** asynchronous loads share the request and its parsed result */
+	public void asyncLoads() throws Exception {
+		registerBlockingReport(200);
+		RequestCoalescer coalescer = getService().getRequestCoalescer();
+
+		CompletableFuture<JsonNode> first = getService().getAsJsonAsync(reportUri);
+		CompletableFuture<JsonNode> second = getService().getAsJsonAsync(reportUri);
+		assertEquals(coalescer.getCoalesced(), 1);
+		release.countDown();
+
+		assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+		assertEquals(requests.get(), 1);
+	}
+
+	/** the shared request is aborted only when all callers cancel */
+	public void asyncCancel() throws Exception {
+		registerBlockingReport(200);
+		RequestCoalescer coalescer = getService().getRequestCoalescer();
+
+		CompletableFuture<JsonNode> first = getService().getAsJsonAsync(reportUri);
+		CompletableFuture<JsonNode> second = getService().getAsJsonAsync(reportUri);
+		first.cancel(true);
+		assertEquals(coalescer.getInFlight(), 1);
+		second.cancel(true);
+		assertEquals(coalescer.getInFlight(), 0);
+
+		try {
+			second.join();
+			fail("Expected cancellation");
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Loads the report from several threads, releasing the server's response
+	 * once all of them have joined the request.
+	 */
+	private List<Future<Report>> loadConcurrently(RequestCoalescer coalescer, int threads) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Report>> reports = new ArrayList<Future<Report>>();
+		for (int i = 0; i < threads; i++) {
+			reports.add(executor.submit(() -> getService().loadReport(id)));
+		}
+		executor.shutdown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (coalescer.getRequests() + coalescer.getCoalesced() < threads && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		release.countDown();
+		return reports;
+	}
+
+	private void registerBlockingReport(int status) {
+		// requests still blocked when a test ends must not count in the next test
+		AtomicInteger requests = this.requests;
+		CountDownLatch release = this.release;
+		server.register(reportUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				requests.incrementAndGet();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				holder.response.setCode(status);
+				if (status == 200) {
+					holder.response.setEntity(new StringEntity(builder.buildReportNode(id, "name", "", "owner", null).toString()));
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,171 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests compression of responses and request bodies.
+ *
+ *
+ */
+@Test
+public class CompressionTest extends SDKTest {
+
+	private final String uri = "/api/dataSets/id/data";
+	private final String importUri = "/api/import/id";
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetCompression() {
+		System.clearProperty("bdCompressUploads");
+	}
+
+	/** gzip responses are accepted and decoded */
+	public void gzipResponse() throws IOException {
+		ObjectNode data = buildData(500);
+		byte[] content = data.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = gzip(content);
+		registerCompressed(compressed, "gzip");
+
+		assertEquals(getService().getAsJson(uri), data);
+
+		CompressionStats stats = getService().getClient().getCompressionStats();
+		assertEquals(stats.getResponseBytes(), compressed.length);
+		assertEquals(stats.getDecodedResponseBytes(), content.length);
+		assertTrue(stats.getSavedBytes() > 0);
+	}
+
+	/** deflate responses are accepted and decoded */
+	public void deflateResponse() throws IOException {
+		ObjectNode data = buildData(10);
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(buf)) {
+			out.write(data.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		registerCompressed(buf.toByteArray(), "deflate");
+
+		assertEquals(getService().getAsJson(uri), data);
+	}
+
+	/** compressed responses are decoded when loaded asynchronously */
+	public void gzipResponseAsync() throws Exception {
+		ObjectNode data = buildData(10);
+		registerCompressed(gzip(data.toString().getBytes(StandardCharsets.UTF_8)), "gzip");
+
+		assertEquals(getService().getAsJsonAsync(uri).get(10, TimeUnit.SECONDS), data);
+	}
+
+	/** uncompressed responses are counted without change */
+	public void plainResponse() {
+		server.register(uri, "{}");
+
+		getService().getAsJson(uri);
+
+		CompressionStats stats = getService().getClient().getCompressionStats();
+		assertEquals(stats.getResponseBytes(), 2);
+		assertEquals(stats.getDecodedResponseBytes(), 2);
+	}
+
+	/** uploads are sent uncompressed by default */
+	public void uploadUncompressedByDefault() {
+		DataTable table = buildTable(200);
+		server.register(importUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				assertNull(holder.request.getFirstHeader("Content-Encoding"));
+				assertEquals(JsonSupport.readTree(holder.getRequestBodyBytes()), table.toJson());
+			}
+		});
+
+		getService().uploadData("id", table);
+
+		server.assertRequestUris(importUri);
+	}
+
+	/** uploads are compressed if enabled */
+	public void uploadCompressed() {
+		System.setProperty("bdCompressUploads", "true");
+		DataTable table = buildTable(200);
+		server.register(importUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				assertNotNull(holder.request.getFirstHeader("Content-Encoding"));
+				assertEquals(holder.request.getFirstHeader("Content-Encoding").getValue(), "gzip");
+				byte[] body = new GZIPInputStream(new ByteArrayInputStream(holder.getRequestBodyBytes())).readAllBytes();
+				assertEquals(JsonSupport.readTree(body), table.toJson());
+			}
+		});
+
+		getService().uploadData("id", table);
+
+		server.assertRequestUris(importUri);
+		CompressionStats stats = getService().getClient().getCompressionStats();
+		assertTrue(stats.getRequestBytes() < stats.getUncompressedRequestBytes());
+	}
+
+	/** small request bodies are not compressed */
+	public void smallUploadUncompressed() {
+		System.setProperty("bdCompressUploads", "true");
+		DataTable table = buildTable(1);
+		server.register(importUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				assertNull(holder.request.getFirstHeader("Content-Encoding"));
+			}
+		});
+
+		getService().uploadData("id", table);
+
+		server.assertRequestUris(importUri);
+	}
+
+	private void registerCompressed(byte[] content, String encoding) {
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				String accept = holder.request.getFirstHeader("Accept-Encoding").getValue();
+				assertTrue(accept.contains(encoding), "Unexpected Accept-Encoding " + accept);
+				holder.response.setEntity(new ByteArrayEntity(content, ContentType.APPLICATION_JSON, encoding));
+			}
+		});
+	}
+
+	private ObjectNode buildData(int rows) {
+		ObjectNode data = JsonSupport.createObjectNode();
+		ArrayNode array = data.putArray("data");
+		for (int i = 0; i < rows; i++) {
+			array.addObject().put("UID", "" + i).put("L_ATTRIBUTE", "value " + i).put("M_INDICATOR", i);
+		}
+		return data.put("size", rows).put("offset", 0);
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(buf)) {
+			out.write(content);
+		}
+		return buf.toByteArray();
+	}
+}
@@ -0,0 +1,77 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests connection reuse and pool statistics of the {@link BellaDatiClient}.
+ *
+ *
+ */
+@Test
+public class ConnectionPoolTest extends SDKTest {
+
+	private final String uri = "/some/uri";
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetKeepAlive() {
+		System.clearProperty("bdKeepAlive");
+		System.clearProperty("bdHttpVersionPolicy");
+	}
+
+	/** without keep-alive, every request opens a new connection */
+	public void noReuseByDefault() throws Exception {
+		server.register(uri, "content");
+		server.start();
+		BellaDatiClient client = new BellaDatiClient(server.getHttpURL(), false);
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+		for (int i = 0; i < 3; i++) {
+			client.get(uri, tokenHolder);
+		}
+
+		assertEquals(client.getPoolStats().getRequests(), 3);
+		assertEquals(client.getPoolStats().getMisses(), 3);
+		assertEquals(client.getPoolStats().getHits(), 0);
+	}
+
+	/** with keep-alive, subsequent requests reuse the pooled connection */
+	public void reuseWithKeepAlive() throws Exception {
+		System.setProperty("bdKeepAlive", "true");
+		server.register(uri, "content");
+		server.start();
+		BellaDatiClient client = new BellaDatiClient(server.getHttpURL(), false);
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(new String(client.get(uri, tokenHolder)), "content");
+		}
+
+		assertEquals(client.getPoolStats().getRequests(), 3);
+		assertEquals(client.getPoolStats().getMisses(), 1);
+		assertEquals(client.getPoolStats().getHits(), 2);
+		assertEquals(client.getPoolStats().getLeased(), 0);
+		assertTrue(client.getPoolStats().getAvailable() > 0);
+	}
+
+	/** with HTTP/2 enabled, an HTTP/1.1 server is still reached over a reused connection */
+	public void http2FallsBackToHttp1() throws Exception {
+		System.setProperty("bdHttpVersionPolicy", "negotiate");
+		server.register(uri, "content");
+		server.start();
+		BellaDatiClient client = new BellaDatiClient(server.getHttpURL(), false);
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+		assertTrue(client.isHttp2());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(new String(client.get(uri, tokenHolder)), "content");
+		}
+
+		assertEquals(client.getPoolStats().getRequests(), 3);
+		assertEquals(client.getPoolStats().getMisses(), 1);
+	}
+}
@@ -0,0 +1,235 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.exception.server.InternalErrorException;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests posting rows written by many threads in batches.
+ *
+ *
+ */
+@Test
+public class DataSetWriterTest extends SDKTest {
+
+	private static final Set<String> PROPERTIES = Set.of("bdWriterBatchRows", "bdWriterBatchBytes", "bdWriterLinger",
+		"bdWriterCapacity");
+
+	private final String id = "123";
+	private final String dataUri = "/api/dataSets/" + id + "/data";
+	private final DataTable table = DataTable.createBasicInstance("attribute", "indicator");
+
+	/** rows of the batches received by the server, in order of arrival */
+	private List<JsonNode> batches;
+	private CountDownLatch release;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupBatches() {
+		batches = Collections.synchronizedList(new ArrayList<JsonNode>());
+		release = new CountDownLatch(0);
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetProperties() {
+		PROPERTIES.forEach(System::clearProperty);
+		release.countDown();
+	}
+
+	/** rows are posted in batches of the configured size */
+	public void batchRows() throws InterruptedException {
+		System.setProperty("bdWriterBatchRows", "100");
+		System.setProperty("bdWriterLinger", "10000");
+		register();
+
+		try (DataSetWriter writer = getService().openDataSetWriter(id)) {
+			for (int i = 0; i < 250; i++) {
+				writer.write(row(i));
+			}
+			writer.flush();
+
+			assertEquals(writer.getPendingRows(), 0);
+			assertEquals(writer.getRowsPosted(), 250);
+			assertEquals(writer.getBatches(), 3);
+		}
+		assertEquals(batchSizes(), List.of(100, 100, 50));
+		assertEquals(batches.get(0).get(0).get("attribute").asText(), "value 0");
+		assertEquals(batches.get(2).get(49).get("attribute").asText(), "value 249");
+	}
+
+	/** batches are limited to the configured size in bytes */
+	public void batchBytes() throws InterruptedException {
+		System.setProperty("bdWriterBatchBytes", "1000");
+		register();
+
+		try (DataSetWriter writer = getService().openDataSetWriter(id)) {
+			for (int i = 0; i < 200; i++) {
+				writer.write(row(i));
+			}
+		}
+		assertTrue(batches.size() > 5, "Too few batches: " + batches.size());
+		for (JsonNode batch : batches) {
+			assertTrue(batch.toString().length() < 1500, "Batch too large: " + batch.toString().length());
+		}
+		assertEquals(totalRows(), 200);
+	}
+
+	/** rows are posted once they have waited for the linger time */
+	public void linger() throws InterruptedException {
+		System.setProperty("bdWriterLinger", "50");
+		register();
+
+		try (DataSetWriter writer = getService().openDataSetWriter(id)) {
+			for (int i = 0; i < 10; i++) {
+				writer.write(row(i));
+			}
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (batches.isEmpty() && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(batchSizes(), List.of(10));
+		}
+	}
+
+	/** rows written from many threads are all posted in few requests */
+	public void concurrentWriters() throws Exception {
+		System.setProperty("bdWriterBatchRows", "500");
+		register();
+		int threads = 8;
+		int rows = 500;
+
+		DataSetWriter writer = getService().openDataSetWriter(id);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < rows; i++) {
+						writer.write(row(thread * rows + i));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		writer.close();
+
+		assertEquals(totalRows(), threads * rows);
+		assertEquals(writer.getRowsPosted(), threads * rows);
+		assertTrue(batches.size() < threads * rows / 100, "Too many requests: " + batches.size());
+	}
+
+	/** writing blocks while the writer is full */
+	public void backPressure() throws InterruptedException {
+		System.setProperty("bdWriterBatchRows", "10");
+		System.setProperty("bdWriterCapacity", "10");
+		release = new CountDownLatch(1);
+		register();
+
+		try (DataSetWriter writer = getService().openDataSetWriter(id)) {
+			for (int i = 0; i < 10; i++) {
+				assertTrue(writer.write(row(i), 1, TimeUnit.SECONDS));
+			}
+			assertFalse(writer.write(row(10), 100, TimeUnit.MILLISECONDS));
+
+			release.countDown();
+			assertTrue(writer.write(row(10), 5, TimeUnit.SECONDS));
+		}
+		assertEquals(totalRows(), 11);
+	}
+
+	/** failed batches are reported by the next flush */
+	public void failedBatch() throws InterruptedException {
+		server.registerError(dataUri, 500, "");
+
+		DataSetWriter writer = getService().openDataSetWriter(id);
+		writer.write(row(0));
+		try {
+			writer.flush();
+			fail("Expected InternalErrorException");
+		} catch (InternalErrorException e) {
+			// expected
+		}
+		assertEquals(writer.getRowsFailed(), 1);
+		writer.flush();
+		writer.close();
+	}
+
+	/** closed writers don't accept rows */
+	public void writeAfterClose() throws InterruptedException {
+		register();
+		DataSetWriter writer = getService().openDataSetWriter(id);
+		writer.write(row(0));
+		writer.close();
+
+		assertEquals(totalRows(), 1);
+		try {
+			writer.write(row(1));
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	private void register() {
+		CountDownLatch release = this.release;
+		server.register(dataUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				String form = new String(holder.getRequestBodyBytes(), StandardCharsets.UTF_8);
+				batches.add(JsonSupport.readTree(URLDecoder.decode(form.substring("dataRow=".length()), StandardCharsets.UTF_8)
+					.getBytes(StandardCharsets.UTF_8)));
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	private List<Integer> batchSizes() {
+		List<Integer> sizes = new ArrayList<Integer>();
+		synchronized (batches) {
+			batches.forEach(batch -> sizes.add(batch.size()));
+		}
+		return sizes;
+	}
+
+	private int totalRows() {
+		return batchSizes().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	private DataRow row(int i) {
+		return new DataRow(table.getColumns()).setAll("value " + i, "" + i);
+	}
+}
@@ -0,0 +1,257 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests caching responses on disk.
+ *
+ *
+ */
+@Test
+public class DiskCacheTest extends SDKTest {
+
+	private Path directory;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("bd-cache");
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void deleteDirectory() throws IOException {
+		System.clearProperty("bdCacheDirectory");
+		DiskCacheStorage storage = DiskCacheStorage.forDirectory(directory);
+		storage.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	/** cacheable responses are stored in the configured directory */
+	public void responsesCachedOnDisk() throws IOException {
+		System.setProperty("bdCacheDirectory", directory.toString());
+		AtomicInteger requests = new AtomicInteger();
+		server.register("/api/reports/123/thumbnail", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				requests.incrementAndGet();
+				holder.response.setHeader("Cache-Control", "max-age=3600");
+				holder.response.setEntity(new StringEntity("{\"id\":\"123\"}"));
+			}
+		});
+
+		getService().getAsJson("/api/reports/123/thumbnail");
+		getService().getAsJson("/api/reports/123/thumbnail");
+
+		assertEquals(requests.get(), 1);
+		DiskCacheStorage storage = DiskCacheStorage.forDirectory(directory);
+		// responses are stored as variants for the token, next to the entry listing them
+		assertEquals(storage.getEntryCount(), 2);
+		assertEquals(storage.getHits(), 2);
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(files.filter(file -> file.toString().endsWith(".entry")).count(), 2);
+		}
+	}
+
+	/** cached responses are only returned to requests signed with the same token */
+	public void separatedByToken() throws IOException {
+		System.setProperty("bdCacheDirectory", directory.toString());
+		AtomicInteger requests = new AtomicInteger();
+		server.register("/api/reports/123/thumbnail", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				requests.incrementAndGet();
+				String authorization = holder.request.getFirstHeader("Authorization").getValue();
+				holder.response.setHeader("Cache-Control", "max-age=3600");
+				holder.response.setEntity(new StringEntity(authorization.contains("\"first\"") ? "first" : "second"));
+			}
+		});
+		BellaDatiClient client = getService().getClient();
+		TokenHolder first = new TokenHolder("key", "secret");
+		first.setToken("first", "secret");
+		TokenHolder second = new TokenHolder("key", "secret");
+		second.setToken("second", "secret");
+
+		assertEquals(new String(client.get("api/reports/123/thumbnail", first)), "first");
+		assertEquals(new String(client.get("api/reports/123/thumbnail", second)), "second");
+		assertEquals(new String(client.get("api/reports/123/thumbnail", first)), "first");
+		assertEquals(new String(client.get("api/reports/123/thumbnail", second)), "second");
+
+		assertEquals(requests.get(), 2);
+	}
+
+	/** the cache directory and its files can only be read by their owner */
+	public void ownerOnly() throws Exception {
+		Path cacheDirectory = directory.resolve("cache");
+		DiskCacheStorage storage = new DiskCacheStorage(cacheDirectory, 1024 * 1024, 100);
+		try {
+			storage.putEntry("first", entry("first"));
+			if (cacheDirectory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDirectory)), "rwx------");
+				try (Stream<Path> files = Files.list(cacheDirectory)) {
+					files.forEach(file -> {
+						try {
+							assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), "rw-------", file.toString());
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+					});
+				}
+			}
+		} finally {
+			storage.close();
+		}
+	}
+
+	/** clients using the same directory share the cache */
+	public void sharedByDirectory() throws IOException {
+		assertSame(DiskCacheStorage.forDirectory(directory), DiskCacheStorage.forDirectory(directory.resolve(".")));
+	}
+
+	/** entries are still there after reopening the directory */
+	public void warmRestart() throws Exception {
+		DiskCacheStorage storage = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		storage.putEntry("first", entry("first content"));
+		storage.close();
+
+		DiskCacheStorage reopened = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		try {
+			assertEquals(content(reopened.getEntry("first")), "first content");
+			assertEquals(reopened.getEntryCount(), 1);
+			assertEquals(reopened.getSize(), Files.size(directory.resolve(reopened.digestToStorageKey("first") + ".entry")));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	/** the least recently used entry is evicted once the entry limit is reached */
+	public void evictLeastRecentlyUsed() throws Exception {
+		DiskCacheStorage storage = new DiskCacheStorage(directory, 1024 * 1024, 2);
+		try {
+			storage.putEntry("first", entry("first"));
+			storage.putEntry("second", entry("second"));
+			storage.getEntry("first");
+			storage.putEntry("third", entry("third"));
+
+			assertNotNull(storage.getEntry("first"));
+			assertNull(storage.getEntry("second"));
+			assertNotNull(storage.getEntry("third"));
+			assertEquals(storage.getEntryCount(), 2);
+			assertEquals(storage.getEvictions(), 1);
+		} finally {
+			storage.close();
+		}
+	}
+
+	/** entries are evicted to stay within the size limit */
+	public void evictBySize() throws Exception {
+		DiskCacheStorage storage = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		storage.putEntry("first", entry("first"));
+		long entrySize = storage.getSize();
+		storage.close();
+
+		long maxSize = entrySize * 3 + entrySize / 2;
+		storage = new DiskCacheStorage(directory, maxSize, 100);
+		try {
+			for (int i = 0; i < 10; i++) {
+				storage.putEntry("entry" + i, entry("entry" + i));
+			}
+			assertEquals(storage.getEntryCount(), 3);
+			assertTrue(storage.getSize() <= maxSize);
+			assertNotNull(storage.getEntry("entry9"));
+			assertNull(storage.getEntry("first"));
+		} finally {
+			storage.close();
+		}
+	}
+
+	/** a damaged index is rebuilt from the entry files */
+	public void damagedIndex() throws Exception {
+		DiskCacheStorage storage = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		storage.putEntry("first", entry("first"));
+		storage.putEntry("second", entry("second"));
+		storage.close();
+		Files.write(directory.resolve("index"), "garbage".getBytes(StandardCharsets.UTF_8));
+		Files.write(directory.resolve("0123456789abcdef.1234.tmp"), new byte[10]);
+		Files.setLastModifiedTime(directory.resolve("0123456789abcdef.1234.tmp"), FileTime.fromMillis(0));
+
+		DiskCacheStorage reopened = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		try {
+			assertEquals(reopened.getEntryCount(), 2);
+			assertEquals(content(reopened.getEntry("second")), "second");
+			assertFalse(Files.exists(directory.resolve("0123456789abcdef.1234.tmp")));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	/** entries whose files were deleted are treated as missing */
+	public void deletedEntryFile() throws Exception {
+		DiskCacheStorage storage = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		try {
+			storage.putEntry("first", entry("first"));
+			Files.delete(directory.resolve(storage.digestToStorageKey("first") + ".entry"));
+
+			assertNull(storage.getEntry("first"));
+			assertEquals(storage.getEntryCount(), 0);
+			assertEquals(storage.getSize(), 0);
+		} finally {
+			storage.close();
+		}
+	}
+
+	/** existing entries can be updated */
+	public void updateEntry() throws Exception {
+		DiskCacheStorage storage = new DiskCacheStorage(directory, 1024 * 1024, 100);
+		try {
+			storage.putEntry("first", entry("first"));
+			storage.updateEntry("first", existing -> entry(content(existing) + " updated"));
+
+			assertEquals(content(storage.getEntry("first")), "first updated");
+			assertEquals(storage.getEntryCount(), 1);
+		} finally {
+			storage.close();
+		}
+	}
+
+	private static HttpCacheEntry entry(String content) {
+		Instant now = Instant.now();
+		return new HttpCacheEntry(now, now, 200, new Header[] { new BasicHeader("Cache-Control", "max-age=3600") },
+			new HeapResource(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static String content(HttpCacheEntry entry) {
+		try {
+			return new String(entry.getResource().get(), StandardCharsets.UTF_8);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
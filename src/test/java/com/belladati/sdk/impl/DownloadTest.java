@@ -0,0 +1,288 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.server.NotFoundException;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.PageOrientation;
+import com.belladati.sdk.util.PageSize;
+import com.belladati.sdk.view.impl.ViewExporterImpl;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests downloading responses directly into files.
+ *
+ *
+ */
+@Test
+public class DownloadTest extends SDKTest {
+
+	private final String fileUri = "/api/utils/file/reports/archive.pdf";
+	private final byte[] content = new byte[200 * 1024];
+	private final String etag = "\"v1\"";
+
+	/** range headers received by the server */
+	private List<String> ranges;
+	private Path directory;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupFiles() throws IOException {
+		new Random(1).nextBytes(content);
+		ranges = new ArrayList<String>();
+		directory = Files.createTempDirectory("belladati-download");
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void deleteFiles() throws IOException {
+		System.clearProperty("bdDownloadMaxInFlight");
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/** the response is written into the file */
+	public void download() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, false), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList((String) null));
+		assertFalse(Files.exists(directory.resolve("archive.pdf.validator")));
+	}
+
+	/** without resuming, existing content is replaced */
+	public void replace() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+		Files.write(target, new byte[300 * 1024]);
+
+		getService().loadFile("reports/archive.pdf", target, false);
+
+		assertEquals(Files.readAllBytes(target), content);
+	}
+
+	/** a partial download is completed with a range request */
+	public void resume() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+		writePartial(target, Arrays.copyOf(content, 70000), etag);
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, true), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList("bytes=70000-"));
+		assertFalse(Files.exists(directory.resolve("archive.pdf.validator")));
+	}
+
+	/** a partial download without validator is started over */
+	public void resumeWithoutValidator() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+		Files.write(target, new byte[70000]);
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, true), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList((String) null));
+	}
+
+	/** if the content changed since the partial download, it is downloaded again */
+	public void contentChanged() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+		writePartial(target, new byte[70000], "\"v0\"");
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, true), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList("bytes=70000-"));
+	}
+
+	/** if the server ignores the range, the file is downloaded again */
+	public void rangesNotSupported() throws Exception {
+		registerRanges(fileUri, content, false);
+		Path target = directory.resolve("archive.pdf");
+		writePartial(target, new byte[70000], etag);
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, true), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList("bytes=70000-"));
+	}
+
+	/** a complete file isn't downloaded again */
+	public void alreadyComplete() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+		writePartial(target, content, etag);
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, true), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList("bytes=" + content.length + "-"));
+	}
+
+	/** a file longer than the content is downloaded again */
+	public void longerThanContent() throws Exception {
+		registerRanges(fileUri, content, true);
+		Path target = directory.resolve("archive.pdf");
+		writePartial(target, new byte[content.length + 10], etag);
+
+		assertEquals(getService().loadFile("reports/archive.pdf", target, true), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+		assertEquals(ranges, Arrays.asList("bytes=" + (content.length + 10) + "-", null));
+	}
+
+	/** errors are thrown as for other requests */
+	public void notFound() throws Exception {
+		server.registerError("/api/utils/file/reports/missing.pdf", 404, "");
+		Path target = directory.resolve("missing.pdf");
+
+		try {
+			getService().loadFile("reports/missing.pdf", target, false);
+			fail("Expected NotFoundException");
+		} catch (NotFoundException e) {
+			// expected
+		}
+		assertEquals(Files.size(target), 0);
+	}
+
+	/** merged PDFs are written into the file */
+	public void mergePdfFiles() throws Exception {
+		registerRanges("/api/utils/mergePdfFiles/*", content, true);
+		Path target = directory.resolve("merged.pdf");
+
+		assertEquals(getService().mergePdfFiles(Arrays.asList("a.pdf", "b.pdf"), target), content.length);
+
+		assertEquals(Files.readAllBytes(target), content);
+	}
+
+	/** view exports are written into the file */
+	public void exportPdf() throws Exception {
+		registerRanges("/api/reports/views/123/export/pdf", content, true);
+		Path target = directory.resolve("view.pdf");
+
+		new ViewExporterImpl(getService(), "123").exportPdf(PageSize.A4, PageOrientation.LANDSCAPE, target);
+
+		assertEquals(Files.readAllBytes(target), content);
+		server.assertRequestUris("/api/reports/views/123/export/pdf");
+	}
+
+	/** batches of downloads run in parallel */
+	public void downloadAll() throws Exception {
+		Map<String, Path> downloads = new LinkedHashMap<String, Path>();
+		for (int i = 0; i < 10; i++) {
+			byte[] view = Arrays.copyOf(content, 1000 * (i + 1));
+			registerRanges("/api/reports/views/" + i + "/image", view, true);
+			downloads.put("api/reports/views/" + i + "/image", directory.resolve(i + ".png"));
+		}
+
+		getService().async().downloadAll(downloads, false).get(10, TimeUnit.SECONDS);
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Files.size(directory.resolve(i + ".png")), 1000 * (i + 1));
+		}
+		assertEquals((long) getService().async().exportPng("0", null, null, directory.resolve("0.png")).get(10,
+			TimeUnit.SECONDS), 1000);
+	}
+
+	/** no more downloads than the window allows run at once */
+	public void downloadWindow() throws Exception {
+		System.setProperty("bdDownloadMaxInFlight", "2");
+		AtomicInteger current = new AtomicInteger();
+		AtomicInteger maximum = new AtomicInteger();
+		Map<String, Path> downloads = new LinkedHashMap<String, Path>();
+		for (int i = 0; i < 8; i++) {
+			server.register("/api/utils/file/" + i, new TestRequestHandler() {
+				@Override
+				protected void handle(HttpHolder holder) {
+					maximum.accumulateAndGet(current.incrementAndGet(), Math::max);
+					try {
+						Thread.sleep(50);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					current.decrementAndGet();
+					holder.response.setEntity(new ByteArrayEntity(content, ContentType.APPLICATION_OCTET_STREAM));
+				}
+			});
+			downloads.put("api/utils/file/" + i, directory.resolve(i + ".pdf"));
+		}
+
+		getService().async().downloadAll(downloads, false).get(10, TimeUnit.SECONDS);
+
+		assertTrue(maximum.get() <= 2, "Too many concurrent downloads: " + maximum.get());
+		for (int i = 0; i < 8; i++) {
+			assertEquals(Files.size(directory.resolve(i + ".pdf")), content.length);
+		}
+	}
+
+	/** Writes a partial download with the given validator. */
+	private static void writePartial(Path target, byte[] content, String validator) throws IOException {
+		Files.write(target, content);
+		Files.write(target.resolveSibling(target.getFileName() + ".validator"), validator.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Serves the given content, answering range requests if
+	 * <tt>supportRanges</tt> is set and the content matches
+	 * <tt>If-Range</tt>.
+	 */
+	private void registerRanges(String uri, byte[] content, boolean supportRanges) {
+		List<String> ranges = this.ranges;
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) {
+				Header range = holder.request.getFirstHeader("Range");
+				Header ifRange = holder.request.getFirstHeader("If-Range");
+				synchronized (ranges) {
+					ranges.add(range == null ? null : range.getValue());
+				}
+				holder.response.setHeader("ETag", etag);
+				if (range == null || !supportRanges || (ifRange != null && !ifRange.getValue().equals(etag))) {
+					holder.response.setEntity(new ByteArrayEntity(content, ContentType.APPLICATION_OCTET_STREAM));
+					return;
+				}
+				int start = Integer.parseInt(range.getValue().replaceAll("bytes=(\\d+)-", "$1"));
+				if (start >= content.length) {
+					holder.response.setCode(416);
+					holder.response.setHeader("Content-Range", "bytes */" + content.length);
+					return;
+				}
+				holder.response.setCode(206);
+				holder.response.setHeader("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+				holder.response.setEntity(new ByteArrayEntity(Arrays.copyOfRange(content, start, content.length),
+					ContentType.APPLICATION_OCTET_STREAM));
+			}
+		});
+	}
+}
@@ -0,0 +1,204 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.DataSet;
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.domain.DomainEditBuilder;
+import com.belladati.sdk.report.Report;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests caching entities loaded by ID.
+ *
+ *
+ */
+@Test
+public class EntityCacheTest extends SDKTest {
+
+	private static final Set<String> PROPERTIES = Set.of("bdEntityCache", "bdEntityCacheTtl", "bdEntityCacheTtlReports",
+		"bdEntityCacheSize", "bdEntityCacheSizeReports");
+
+	private final String id = "123";
+	private final String reportUri = "/api/reports/" + id;
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetProperties() {
+		PROPERTIES.forEach(System::clearProperty);
+	}
+
+	/** without configuration, entities are loaded every time */
+	public void disabledByDefault() {
+		AtomicInteger requests = registerReport(new AtomicReference<String>("Mon, 16 Apr 2012 10:17:26 GMT"));
+		BellaDatiServiceImpl service = newService();
+
+		assertNotSame(service.loadReport(id), service.loadReport(id));
+		assertEquals(requests.get(), 2);
+		assertTrue(service.getEntityCaches().isEmpty());
+	}
+
+	/** entities are returned from the cache until they expire */
+	public void cachedUntilExpired() {
+		System.setProperty("bdEntityCache", "true");
+		AtomicInteger requests = registerReport(new AtomicReference<String>("Mon, 16 Apr 2012 10:17:26 GMT"));
+		BellaDatiServiceImpl service = newService();
+
+		Report report = service.loadReport(id);
+		assertSame(service.loadReport(id), report);
+		assertEquals(requests.get(), 1);
+	}
+
+	/** expired entities are kept if their last change is the same */
+	public void revalidatedByLastChange() {
+		System.setProperty("bdEntityCache", "true");
+		System.setProperty("bdEntityCacheTtlReports", "0");
+		AtomicReference<String> lastChange = new AtomicReference<String>("Mon, 16 Apr 2012 10:17:26 GMT");
+		AtomicInteger requests = registerReport(lastChange);
+		BellaDatiServiceImpl service = newService();
+
+		Report report = service.loadReport(id);
+		assertSame(service.loadReport(id), report);
+		lastChange.set("Tue, 17 Apr 2012 08:00:00 GMT");
+		assertNotSame(service.loadReport(id), report);
+
+		assertEquals(requests.get(), 3);
+		assertEquals(service.getEntityCaches().get(0).getRevalidations(), 1);
+	}
+
+	/** entities without last change are built again once expired */
+	public void noLastChange() {
+		System.setProperty("bdEntityCache", "true");
+		System.setProperty("bdEntityCacheTtl", "0");
+		AtomicInteger requests = registerReport(new AtomicReference<String>(null));
+		BellaDatiServiceImpl service = newService();
+
+		assertNotSame(service.loadReport(id), service.loadReport(id));
+		assertEquals(requests.get(), 2);
+	}
+
+	/** posting a comment removes the report from the cache */
+	public void invalidatedByComment() {
+		System.setProperty("bdEntityCache", "true");
+		AtomicInteger requests = registerReport(new AtomicReference<String>("Mon, 16 Apr 2012 10:17:26 GMT"));
+		server.register(reportUri + "/comments", "");
+		BellaDatiServiceImpl service = newService();
+
+		Report report = service.loadReport(id);
+		report.postComment("comment");
+
+		assertNotSame(service.loadReport(id), report);
+		assertEquals(requests.get(), 2);
+	}
+
+	/** editing a domain removes it from the cache */
+	public void invalidatedByDomainEdit() {
+		System.setProperty("bdEntityCache", "true");
+		AtomicInteger requests = new AtomicInteger();
+		server.register("/api/domains/" + id, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				requests.incrementAndGet();
+				holder.response.setEntity(new StringEntity(
+					builder.buildDomainNode(id, "name", "description", "yyyy-MM-dd", "hh:mm:ss", "UTC", "EN", "true").toString()));
+			}
+		});
+		BellaDatiServiceImpl service = newService();
+
+		assertSame(service.loadDomain(id), service.loadDomain(id));
+		DomainEditBuilder edit = service.setupDomainEditBuilder(id);
+		edit.setDescription("changed");
+		edit.post();
+		service.loadDomain(id);
+
+		// two loads and the edit
+		assertEquals(requests.get(), 3);
+	}
+
+	/** changing a data set's rows removes it from the cache */
+	public void invalidatedByDataChanges() throws Exception {
+		System.setProperty("bdEntityCache", "true");
+		AtomicInteger requests = new AtomicInteger();
+		server.register("/api/dataSets/" + id, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				requests.incrementAndGet();
+				holder.response.setEntity(new StringEntity(
+					builder.buildDataSetNode(id, "name", "", "owner", "Mon, 16 Apr 2012 10:17:26 GMT").toString()));
+			}
+		});
+		server.register("/api/dataSets/" + id + "/data", "");
+		server.register("/api/dataSets/" + id + "/data/", "");
+		server.register("/api/dataSets/" + id + "/replace", "");
+		BellaDatiServiceImpl service = newService();
+		List<DataRow> rows = buildTable(1).getRows();
+
+		DataSet dataSet = service.loadDataSet(id);
+		assertSame(service.loadDataSet(id), dataSet);
+		service.patchDataSetData(id, rows, Arrays.asList("attribute"));
+		assertNotSame(service.loadDataSet(id), dataSet);
+
+		dataSet = service.loadDataSet(id);
+		service.replaceDataSetData(id, rows);
+		assertNotSame(service.loadDataSet(id), dataSet);
+
+		dataSet = service.loadDataSet(id);
+		service.deleteDataSetData(id);
+		assertNotSame(service.loadDataSet(id), dataSet);
+
+		dataSet = service.loadDataSet(id);
+		service.async().patchDataSetData(id, rows, Arrays.asList("attribute")).get(10, TimeUnit.SECONDS);
+		assertNotSame(service.loadDataSet(id), dataSet);
+
+		dataSet = service.loadDataSet(id);
+		service.async().replaceDataSetData(id, rows).get(10, TimeUnit.SECONDS);
+		assertNotSame(service.loadDataSet(id), dataSet);
+
+		assertEquals(requests.get(), 6);
+	}
+
+	/** the number of cached entities can be configured for each type */
+	public void configuredSize() {
+		System.setProperty("bdEntityCache", "true");
+		System.setProperty("bdEntityCacheSize", "50");
+		System.setProperty("bdEntityCacheSizeReports", "5");
+		BellaDatiServiceImpl service = newService();
+
+		assertEquals(service.getEntityCaches().get(0).getCache().getName(), "reports");
+		assertEquals(service.getEntityCaches().get(0).getCache().getMaxSize(), 5);
+		assertEquals(service.getEntityCaches().get(1).getCache().getMaxSize(), 50);
+	}
+
+	/** Creates a service reading the current properties. */
+	private BellaDatiServiceImpl newService() {
+		return new BellaDatiServiceImpl(getService().getClient(), getService().getTokenHolder());
+	}
+
+	/** Registers the report with the given last change, counting requests. */
+	private AtomicInteger registerReport(AtomicReference<String> lastChange) {
+		AtomicInteger requests = new AtomicInteger();
+		server.register(reportUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				requests.incrementAndGet();
+				holder.response
+					.setEntity(new StringEntity(builder.buildReportNode(id, "name", "", "owner", lastChange.get()).toString()));
+			}
+		});
+		return requests;
+	}
+}
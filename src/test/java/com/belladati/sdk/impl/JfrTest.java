@@ -0,0 +1,108 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the Flight Recorder events emitted by the SDK.
+ *
+ *
+ */
+@Test
+public class JfrTest extends SDKTest {
+
+	private final String content = "{\"id\":\"123\"}";
+
+	private Recording recording;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void startRecording() {
+		recording = new Recording();
+		recording.enable("com.belladati.sdk.Request");
+		recording.enable("com.belladati.sdk.JsonParse");
+		recording.enable("com.belladati.sdk.CacheLookup");
+		recording.start();
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void closeRecording() {
+		recording.close();
+	}
+
+	/** requests are recorded with their endpoint, status and size */
+	public void requestEvent() throws IOException {
+		server.register("/api/reports/123", content);
+
+		getService().getAsJson("/api/reports/123");
+
+		List<RecordedEvent> events = events("com.belladati.sdk.Request");
+		assertEquals(events.size(), 1);
+		RecordedEvent event = events.get(0);
+		assertEquals(event.getString("method"), "GET");
+		assertEquals(event.getString("endpoint"), "api/reports/{id}");
+		assertEquals(event.getInt("statusCode"), 200);
+		assertEquals(event.getLong("responseBytes"), content.length());
+		assertEquals(event.getInt("retries"), 0);
+		assertFalse(event.getDuration().isNegative());
+	}
+
+	/** parsing JSON responses is recorded, synchronously and asynchronously */
+	public void jsonParseEvent() throws Exception {
+		server.register("/api/reports/123", content);
+
+		getService().getAsJson("/api/reports/123");
+		getService().getAsJsonAsync("/api/reports/123").get(10, TimeUnit.SECONDS);
+		getService().getClient().getAsJson("api/reports/123", new TokenHolder("key", "secret"), parser -> parser.readValueAsTree());
+
+		List<RecordedEvent> events = events("com.belladati.sdk.JsonParse");
+		assertEquals(events.size(), 3);
+		for (RecordedEvent event : events) {
+			assertEquals(event.getString("endpoint"), "api/reports/{id}");
+			assertEquals(event.getLong("bytes"), content.length());
+		}
+	}
+
+	/** cache lookups are recorded as misses and hits */
+	public void cacheLookupEvent() throws IOException {
+		getService().getDataSetData("ds");
+		getService().getDataSetData("ds");
+		getService().getDomainUsers("domain", null);
+
+		List<RecordedEvent> events = events("com.belladati.sdk.CacheLookup");
+		assertEquals(events.size(), 3);
+		assertEquals(events.get(0).getString("cache"), "dataSetData");
+		assertEquals(events.get(0).getString("key"), "ds");
+		assertFalse(events.get(0).getBoolean("hit"));
+		assertTrue(events.get(1).getBoolean("hit"));
+		assertEquals(events.get(2).getString("cache"), "users");
+		assertFalse(events.get(2).getBoolean("hit"));
+	}
+
+	private List<RecordedEvent> events(String name) throws IOException {
+		recording.stop();
+		Path file = Files.createTempFile("belladati", ".jfr");
+		try {
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file).stream().filter(event -> event.getEventType().getName().equals(name))
+				.sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime())).collect(Collectors.toList());
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests rate and concurrency limits on requests.
+ *
+ *
+ */
+@Test
+public class LimiterTest extends SDKTest {
+
+	private static final Set<String> PROPERTIES = Set.of("bdRateLimit", "bdRateLimitMetadata", "bdRateLimitImport", "bdRateBurst",
+		"bdMaxConcurrency", "bdMaxConcurrencyViews", "bdConcurrencyLimit", "bdMaxRetries", "bdRetryBaseDelay");
+
+	private final String uri = "/some/uri";
+	private final TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+	/** limiters are shared per base URL, keep tests apart if a port is reused */
+	private String basePath;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupBasePath() {
+		basePath = "/" + UUID.randomUUID();
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetLimits() {
+		PROPERTIES.forEach(System::clearProperty);
+	}
+
+	/** endpoints are assigned to families by their path */
+	public void endpointFamilies() {
+		assertEquals(EndpointFamily.of("POST", URI.create("http://host/api/import/forms")), EndpointFamily.IMPORT);
+		assertEquals(EndpointFamily.of("POST", URI.create("http://host/api/import/123")), EndpointFamily.IMPORT);
+		assertEquals(EndpointFamily.of("POST", URI.create("http://host/api/dataSets/123/data")), EndpointFamily.IMPORT);
+		assertEquals(EndpointFamily.of("POST", URI.create("http://host/api/dataSets/123/replace")), EndpointFamily.IMPORT);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/reports/views/123/chart")), EndpointFamily.VIEWS);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/reports/views/123/image")), EndpointFamily.VIEWS);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/reports/views/123/export/pdf")), EndpointFamily.EXPORT);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/utils/mergePdfFiles")), EndpointFamily.EXPORT);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/utils/file/some/file.txt")), EndpointFamily.EXPORT);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/dataSets/123/data")), EndpointFamily.METADATA);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/import/forms")), EndpointFamily.METADATA);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/dataSets/123")), EndpointFamily.METADATA);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/api/reports/123")), EndpointFamily.METADATA);
+		assertEquals(EndpointFamily.of("GET", URI.create("http://host/oauth/accessToken")), EndpointFamily.METADATA);
+	}
+
+	/** requests over the rate limit are delayed */
+	public void rateLimit() throws Exception {
+		System.setProperty("bdRateLimitMetadata", "10");
+		System.setProperty("bdRateBurst", "1");
+		registerContent(uri);
+		BellaDatiClient client = client();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			client.get(uri, tokenHolder);
+		}
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+		RateLimiter limiter = client.getRateLimiter(EndpointFamily.METADATA);
+		assertEquals(limiter.getRate(), 10);
+		assertEquals(limiter.getDelayedRequests(), 3);
+	}
+
+	/** asynchronous requests over the rate limit are delayed */
+	public void rateLimitAsync() throws Exception {
+		System.setProperty("bdRateLimit", "10");
+		System.setProperty("bdRateBurst", "2");
+		registerContent(uri);
+		BellaDatiClient client = client();
+
+		long start = System.nanoTime();
+		List<CompletableFuture<byte[]>> futures = new ArrayList<CompletableFuture<byte[]>>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(client.getAsync(uri, tokenHolder));
+		}
+		for (CompletableFuture<byte[]> future : futures) {
+			assertEquals(new String(future.get(10, TimeUnit.SECONDS)), "content");
+		}
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+		assertEquals(client.getRateLimiter(EndpointFamily.METADATA).getDelayedRequests(), 2);
+	}
+
+	/** limits apply separately to each family */
+	public void familiesLimitedSeparately() throws Exception {
+		System.setProperty("bdRateLimitMetadata", "1");
+		System.setProperty("bdRateBurst", "1");
+		registerContent("/api/reports/views/1/chart");
+		BellaDatiClient client = client();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			client.get("api/reports/views/1/chart", tokenHolder);
+		}
+
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+		assertEquals(client.getRateLimiter(EndpointFamily.VIEWS).getRate(), 0);
+		assertEquals(client.getRateLimiter(EndpointFamily.VIEWS).getDelayedRequests(), 0);
+	}
+
+	/** reading data set rows isn't held up by the import limits */
+	public void dataReadsNotLimitedAsImport() throws Exception {
+		System.setProperty("bdRateLimitImport", "1");
+		System.setProperty("bdRateBurst", "1");
+		registerContent("/api/dataSets/1/data");
+		BellaDatiClient client = client();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			client.get("api/dataSets/1/data", tokenHolder);
+		}
+
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+		assertEquals(client.getRateLimiter(EndpointFamily.IMPORT).getDelayedRequests(), 0);
+	}
+
+	/** no more requests than the limit are in flight at once */
+	public void concurrencyLimit() throws Exception {
+		System.setProperty("bdMaxConcurrency", "2");
+		AtomicInteger current = new AtomicInteger();
+		AtomicInteger maximum = new AtomicInteger();
+		server.register(basePath + uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				maximum.accumulateAndGet(current.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				current.decrementAndGet();
+				holder.response.setEntity(new StringEntity("content"));
+			}
+		});
+		BellaDatiClient client = client();
+
+		List<CompletableFuture<byte[]>> futures = new ArrayList<CompletableFuture<byte[]>>();
+		for (int i = 0; i < 6; i++) {
+			futures.add(client.getAsync(uri, tokenHolder));
+		}
+		for (CompletableFuture<byte[]> future : futures) {
+			assertEquals(new String(future.get(10, TimeUnit.SECONDS)), "content");
+		}
+
+		assertTrue(maximum.get() <= 2, "Too many concurrent requests: " + maximum.get());
+		ConcurrencyLimiter limiter = client.getConcurrencyLimiter(EndpointFamily.METADATA);
+		assertTrue(limiter.getQueuedRequests() >= 4);
+		assertEquals(limiter.getInFlight(), 0);
+		assertEquals(limiter.getWaiting(), 0);
+	}
+
+	/** a streamed response holds its place until closed */
+	public void streamHoldsPlace() throws Exception {
+		System.setProperty("bdMaxConcurrency", "1");
+		registerContent(uri);
+		BellaDatiClient client = client();
+		ConcurrencyLimiter limiter = client.getConcurrencyLimiter(EndpointFamily.METADATA);
+
+		try (InputStream stream = client.openStream(uri, tokenHolder)) {
+			assertEquals(limiter.getInFlight(), 1);
+			CompletableFuture<byte[]> waiting = client.getAsync(uri, tokenHolder);
+			Thread.sleep(50);
+			assertEquals(limiter.getWaiting(), 1);
+			assertTrue(!waiting.isDone());
+			stream.close();
+			assertEquals(new String(waiting.get(10, TimeUnit.SECONDS)), "content");
+		}
+		assertEquals(limiter.getInFlight(), 0);
+	}
+
+	/** a cancelled request gives up its place in line */
+	public void cancelWaiting() throws Exception {
+		System.setProperty("bdMaxConcurrency", "1");
+		CountDownLatch latch = new CountDownLatch(1);
+		server.register(basePath + uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				try {
+					latch.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				holder.response.setEntity(new StringEntity("content"));
+			}
+		});
+		BellaDatiClient client = client();
+		ConcurrencyLimiter limiter = client.getConcurrencyLimiter(EndpointFamily.METADATA);
+
+		CompletableFuture<byte[]> first = client.getAsync(uri, tokenHolder);
+		CompletableFuture<byte[]> second = client.getAsync(uri, tokenHolder);
+		assertEquals(limiter.getWaiting(), 1);
+		second.cancel(true);
+		assertEquals(limiter.getWaiting(), 0);
+
+		latch.countDown();
+		assertEquals(new String(first.get(10, TimeUnit.SECONDS)), "content");
+		assertEquals(limiter.getInFlight(), 0);
+	}
+
+	/** the limit is lowered when the server reports overload */
+	public void lowerLimitOnOverload() throws Exception {
+		System.setProperty("bdMaxConcurrency", "20");
+		System.setProperty("bdMaxRetries", "0");
+		server.register(basePath + uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) {
+				holder.response.setCode(429);
+			}
+		});
+		BellaDatiClient client = client();
+
+		for (int i = 0; i < 5; i++) {
+			try {
+				client.get(uri, tokenHolder);
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+
+		ConcurrencyLimiter limiter = client.getConcurrencyLimiter(EndpointFamily.METADATA);
+		assertEquals(limiter.getDroppedRequests(), 5);
+		assertTrue(limiter.getLimit() < 20, "Limit not lowered: " + limiter.getLimit());
+	}
+
+	/** the limit is lowered when latency rises and recovers when it falls */
+	public void adaptToLatency() {
+		System.setProperty("bdMaxConcurrencyViews", "20");
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.forServer("http://latency/", EndpointFamily.VIEWS);
+		long millis = TimeUnit.MILLISECONDS.toNanos(1);
+
+		for (int i = 0; i < 20; i++) {
+			sample(limiter, 10 * millis);
+		}
+		assertEquals(limiter.getLimit(), 20);
+
+		for (int i = 0; i < 20; i++) {
+			sample(limiter, 100 * millis);
+		}
+		int lowered = limiter.getLimit();
+		assertTrue(lowered < 20, "Limit not lowered: " + lowered);
+
+		// keep the limit in use so it may grow again
+		List<CompletableFuture<Void>> permits = new ArrayList<CompletableFuture<Void>>();
+		for (int i = 0; i < lowered - 1; i++) {
+			permits.add(limiter.acquire());
+		}
+		for (int i = 0; i < 50; i++) {
+			sample(limiter, 10 * millis);
+		}
+		assertTrue(limiter.getLimit() > lowered, "Limit not raised: " + limiter.getLimit());
+		permits.forEach(permit -> limiter.releaseUnused());
+	}
+
+	private void sample(ConcurrencyLimiter limiter, long latency) {
+		limiter.acquire();
+		limiter.release(System.nanoTime(), latency, false);
+	}
+
+	private void registerContent(String uri) {
+		server.register(basePath + uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				holder.response.setEntity(new StringEntity("content"));
+			}
+		});
+	}
+
+	private BellaDatiClient client() throws IOException {
+		server.start();
+		return new BellaDatiClient(server.getHttpURL() + basePath, false);
+	}
+}
@@ -0,0 +1,207 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.server.NotFoundException;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.impl.JsonSupport;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests recording metrics of the requests sent by a client.
+ *
+ *
+ */
+@Test
+public class MetricsTest extends SDKTest {
+
+	private final String content = "{\"id\":\"123\"}";
+	private final TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetRetries() {
+		System.clearProperty("bdRetryBaseDelay");
+		System.clearProperty("bdMetricsMaxEndpoints");
+	}
+
+	/** endpoint templates replace IDs and other parameters */
+	public void endpointTemplates() {
+		RequestMetrics metrics = new RequestMetrics("http://localhost:8080/belladati/");
+
+		assertEquals(template(metrics, "/belladati/api/reports/123?filter=a"), "api/reports/{id}");
+		assertEquals(template(metrics, "/belladati/api/reports/views/12-ab/chart"), "api/reports/views/{id}/chart");
+		assertEquals(template(metrics, "/belladati/api/reports"), "api/reports");
+		assertEquals(template(metrics, "/belladati/api/users/username/john"), "api/users/username/{username}");
+		assertEquals(template(metrics, "/belladati/api/users/john/accessToken"), "api/users/{username}/accessToken");
+		assertEquals(template(metrics, "/belladati/api/dataSets/9/attributes/L_CODE/value/image"),
+			"api/dataSets/{id}/attributes/{code}/{value}/image");
+		assertEquals(template(metrics, "/belladati/api/utils/file/some/file.txt"), "api/utils/file/{path}");
+		assertEquals(template(metrics, "/belladati/api/dataSets/9/data/"), "api/dataSets/{id}/data/");
+	}
+
+	/** successful requests are counted per endpoint */
+	public void successfulRequests() {
+		server.register("/api/reports/123", content);
+		server.register("/api/reports/456", content);
+
+		getService().getAsJson("/api/reports/123");
+		getService().getAsJson("/api/reports/456");
+
+		EndpointMetrics endpoint = getService().getClient().getMetrics().getEndpoint("GET", "api/reports/{id}");
+		assertEquals(endpoint.getRequests(), 2);
+		assertEquals(endpoint.getFailures(), 0);
+		assertEquals(endpoint.getStatusCount(200), 2);
+		assertEquals(endpoint.getResponseBytes(), 2 * content.length());
+		assertEquals(endpoint.getRequestBytes(), 0);
+		assertEquals(endpoint.getLatency().getCount(), 2);
+		assertTrue(endpoint.getLatency().getMaxMicros() > 0);
+		assertEquals(getService().getClient().getMetrics().getEndpoints().size(), 1);
+	}
+
+	/** error responses are counted by status code */
+	public void errorResponses() {
+		server.register("/api/reports/123", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) {
+				holder.response.setCode(404);
+			}
+		});
+
+		try {
+			getService().getAsJson("/api/reports/123");
+			fail("Expected NotFoundException");
+		} catch (NotFoundException e) {
+			// expected
+		}
+
+		EndpointMetrics endpoint = getService().getClient().getMetrics().getEndpoint("GET", "api/reports/{id}");
+		assertEquals(endpoint.getStatusCount(404), 1);
+		assertEquals(endpoint.getStatusCount(200), 0);
+	}
+
+	/** listeners receive each request, including request size and retries */
+	public void listener() throws IOException {
+		System.setProperty("bdRetryBaseDelay", "10");
+		AtomicInteger requests = new AtomicInteger();
+		server.register("/api/dataSets/1/data", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				if (requests.incrementAndGet() == 1) {
+					holder.response.setCode(503);
+				} else {
+					holder.response.setEntity(new StringEntity(content));
+				}
+			}
+		});
+		BellaDatiClient client = new BellaDatiClient(server.getHttpURL(), false);
+		List<RequestMetric> received = new CopyOnWriteArrayList<RequestMetric>();
+		client.getMetrics().addListener(received::add);
+		client.getMetrics().addListener(metric -> {
+			throw new IllegalStateException("ignored");
+		});
+
+		byte[] body = JsonSupport.toBytes(JsonSupport.createObjectNode().put("key", "value"));
+		client.postIdempotent("api/dataSets/1/data", tokenHolder, JsonSupport.createObjectNode().put("key", "value"));
+
+		assertEquals(received.size(), 1);
+		RequestMetric metric = received.get(0);
+		assertEquals(metric.getMethod(), "POST");
+		assertEquals(metric.getEndpoint(), "api/dataSets/{id}/data");
+		assertEquals(metric.getStatusCode(), 200);
+		assertEquals(metric.getRetries(), 1);
+		assertEquals(metric.getRequestBytes(), 2 * body.length);
+		assertEquals(metric.getResponseBytes(), content.length());
+		assertTrue(metric.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+		assertNull(metric.getFailure());
+		assertEquals(client.getMetrics().getEndpoint("POST", "api/dataSets/{id}/data").getRetries(), 1);
+	}
+
+	/** asynchronous requests are recorded */
+	public void asyncRequest() throws Exception {
+		server.register("/api/reports/123", content);
+
+		getService().getAsJsonAsync("/api/reports/123").get(10, TimeUnit.SECONDS);
+
+		EndpointMetrics endpoint = getService().getClient().getMetrics().getEndpoint("GET", "api/reports/{id}");
+		assertEquals(endpoint.getRequests(), 1);
+		assertEquals(endpoint.getResponseBytes(), content.length());
+	}
+
+	/** streamed responses are recorded once the stream is closed */
+	public void streamedResponse() throws IOException {
+		server.register("/api/reports/123/thumbnail", content);
+		RequestMetrics metrics = getService().getClient().getMetrics();
+
+		try (InputStream in = getService().getClient().openStream("api/reports/123/thumbnail", tokenHolder)) {
+			in.readAllBytes();
+			assertNull(metrics.getEndpoint("GET", "api/reports/{id}/thumbnail"));
+		}
+
+		assertEquals(metrics.getEndpoint("GET", "api/reports/{id}/thumbnail").getResponseBytes(), content.length());
+	}
+
+	/** connection failures are counted as failures */
+	public void connectionFailure() {
+		server.stop();
+		BellaDatiClient client = new BellaDatiClient("http://localhost:1/", false);
+		try {
+			client.get("api/reports/123", tokenHolder);
+			fail("Expected connection failure");
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		EndpointMetrics endpoint = client.getMetrics().getEndpoint("GET", "api/reports/{id}");
+		assertEquals(endpoint.getFailures(), 1);
+		assertTrue(endpoint.getStatusCounts().isEmpty());
+	}
+
+	/** endpoints beyond the maximum are aggregated */
+	public void maxEndpoints() {
+		System.setProperty("bdMetricsMaxEndpoints", "1");
+		server.register("/api/reports", content);
+		server.register("/api/dashboards", content);
+
+		getService().getAsJson("/api/reports");
+		getService().getAsJson("/api/dashboards");
+
+		RequestMetrics metrics = getService().getClient().getMetrics();
+		assertEquals(metrics.getEndpoint("GET", "api/reports").getRequests(), 1);
+		assertEquals(metrics.getEndpoint("GET", RequestMetrics.OTHER_ENDPOINT).getRequests(), 1);
+	}
+
+	/** histogram percentiles are accurate within the bucket width */
+	public void histogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+
+		assertEquals(histogram.getCount(), 10000);
+		assertEquals(histogram.getMaxMicros(), 10000);
+		assertEquals(histogram.getMeanMicros(), 5000.5, 0.001);
+		assertEquals(histogram.getPercentileMicros(50), 5000, 5000 * 0.04);
+		assertEquals(histogram.getPercentileMicros(99), 9900, 9900 * 0.04);
+		assertEquals(histogram.getPercentileMicros(100), 10000);
+		assertEquals(histogram.getPercentileMicros(0), 1);
+		assertEquals(new LatencyHistogram().getPercentileMicros(50), 0);
+	}
+
+	private static String template(RequestMetrics metrics, String path) {
+		return metrics.templateOf(URI.create("http://localhost:8080" + path));
+	}
+}
@@ -0,0 +1,154 @@
+package com.belladati.sdk.impl;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.http.HttpParameters;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests that the {@link OAuthSigner} signs requests the same way as signpost.
+ *
+ *
+ */
+@Test
+public class OAuthSignerTest {
+
+	private static final String FORM = ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8).toString();
+
+	@DataProvider(name = "requests")
+	protected Object[][] provideRequests() {
+		return new Object[][] { { "GET", "http://localhost:8080/api/reports", null, null },
+			{ "GET", "https://Service.BellaDati.com:443/api/reports/views/123/chart", null, null },
+			{ "GET", "http://localhost/api/reports?filter=a%20b&offset=10&size=20&filter=c+d", null, null },
+			{ "GET", "http://localhost/api/users/username/j%C3%BCrgen%40example.com", null, null },
+			{ "POST", "http://localhost/oauth/accessToken", FORM, "x_auth_username=user%40example.com&x_auth_password=p+w*~" },
+			{ "POST", "http://localhost/api/dataSets/1/data", "application/json", "{\"key\":\"a=b&c\"}" },
+			{ "DELETE", "http://localhost/api/reports/1?drilldown=%7B%7D", null, null } };
+	}
+
+	/** signatures match signpost's without a token */
+	@Test(dataProvider = "requests")
+	public void matchSignpostWithoutToken(String method, String uri, String contentType, String body) throws Exception {
+		assertMatchesSignpost(new TokenHolder("key", "secret"), method, uri, contentType, body, null);
+	}
+
+	/** signatures match signpost's with a token */
+	@Test(dataProvider = "requests")
+	public void matchSignpostWithToken(String method, String uri, String contentType, String body) throws Exception {
+		TokenHolder tokenHolder = new TokenHolder("consumer key", "consumer&secret");
+		tokenHolder.setToken("token/123", "token secret+");
+		assertMatchesSignpost(tokenHolder, method, uri, contentType, body, null);
+	}
+
+	/** additional parameters such as a callback are included */
+	public void additionalParameters() throws Exception {
+		HttpParameters parameters = new HttpParameters();
+		parameters.put(OAuth.OAUTH_CALLBACK, OAuth.percentEncode("http://example.com/callback?a=b"));
+		parameters.put("realm", "BellaDati");
+		assertMatchesSignpost(new TokenHolder("key", "secret"), "POST", "http://localhost/oauth/requestToken", null, null,
+			parameters);
+	}
+
+	/** the signer is reused until the token changes */
+	public void signerCached() {
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+		OAuthSigner signer = tokenHolder.getSigner();
+		assertSame(tokenHolder.getSigner(), signer);
+
+		tokenHolder.setToken("token", "tokenSecret");
+		OAuthSigner tokenSigner = tokenHolder.getSigner();
+		assertNotSame(tokenSigner, signer);
+		TransportRequest request = new TransportRequest("GET", URI.create("http://localhost/api/reports"));
+		tokenSigner.sign(request, null);
+		assertTrue(request.getHeader("Authorization").contains("oauth_token=\"token\""));
+	}
+
+	/** concurrent signing produces correct signatures and distinct nonces */
+	public void concurrentSigning() throws Exception {
+		TokenHolder tokenHolder = new TokenHolder("key", "secret");
+		tokenHolder.setToken("token", "tokenSecret");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>();
+			for (int thread = 0; thread < 8; thread++) {
+				int offset = thread;
+				futures.add(executor.submit(() -> {
+					Set<String> nonces = new HashSet<String>();
+					for (int i = 0; i < 200; i++) {
+						String uri = "http://localhost/api/reports/" + (offset * 1000 + i);
+						TransportRequest request = new TransportRequest("GET", URI.create(uri));
+						tokenHolder.getSigner().sign(request, null);
+						String nonce = headerValue(request.getHeader("Authorization"), "oauth_nonce");
+						assertEquals(request.getHeader("Authorization"),
+							signpostHeader(tokenHolder, "GET", uri, null, null, nonce,
+								headerValue(request.getHeader("Authorization"), "oauth_timestamp"), null));
+						nonces.add(nonce);
+					}
+					return nonces;
+				}));
+			}
+			Set<String> nonces = new HashSet<String>();
+			for (Future<Set<String>> future : futures) {
+				nonces.addAll(future.get());
+			}
+			assertEquals(nonces.size(), 8 * 200);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void assertMatchesSignpost(TokenHolder tokenHolder, String method, String uri, String contentType, String body,
+		HttpParameters parameters) throws Exception {
+		TransportRequest request = new TransportRequest(method, URI.create(uri));
+		if (body != null) {
+			request.setBody(RequestBody.of(body.getBytes(StandardCharsets.UTF_8), contentType, null));
+		}
+		tokenHolder.getSigner().sign(request, parameters, "1234567890", "1700000000");
+
+		assertEquals(request.getHeader("Authorization"),
+			signpostHeader(tokenHolder, method, uri, contentType, body, "1234567890", "1700000000", parameters));
+	}
+
+	/** Signs an equivalent request with signpost, using the given nonce and timestamp. */
+	private static String signpostHeader(TokenHolder tokenHolder, String method, String uri, String contentType, String body,
+		String nonce, String timestamp, HttpParameters parameters) throws Exception {
+		HttpUriRequestBase request = new HttpUriRequestBase(method, URI.create(uri));
+		if (body != null) {
+			request.setEntity(new ByteArrayEntity(body.getBytes(StandardCharsets.UTF_8), ContentType.parse(contentType)));
+		}
+		HttpParameters additional = new HttpParameters();
+		if (parameters != null) {
+			additional.putAll(parameters, false);
+		}
+		additional.put(OAuth.OAUTH_NONCE, nonce);
+		additional.put(OAuth.OAUTH_TIMESTAMP, timestamp);
+		OAuthConsumer consumer = tokenHolder.createConsumer();
+		consumer.setAdditionalParameters(additional);
+		consumer.sign(request);
+		return request.getFirstHeader("Authorization").getValue();
+	}
+
+	private static String headerValue(String header, String name) {
+		int start = header.indexOf(name + "=\"") + name.length() + 2;
+		return header.substring(start, header.indexOf('"', start));
+	}
+}
@@ -0,0 +1,159 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.test.SDKTest;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.ContentType;
+import com.belladati.sdk.test.TestRequestHandler;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests reading response bodies into pooled buffers.
+ *
+ *
+ */
+@Test
+public class PooledBufferTest extends SDKTest {
+
+	/** content of the declared length is read as is */
+	public void declaredLength() throws IOException {
+		byte[] content = content(1000);
+
+		assertEquals(PooledBuffer.readBytes(new ByteArrayInputStream(content), content.length), content);
+	}
+
+	/** content shorter than declared is returned as received */
+	public void shorterThanDeclared() throws IOException {
+		byte[] content = content(1000);
+
+		assertEquals(PooledBuffer.readBytes(new ByteArrayInputStream(content), 2000), content);
+	}
+
+	/** content longer than declared is read completely */
+	public void longerThanDeclared() throws IOException {
+		byte[] content = content(3 * PooledBuffer.CHUNK_SIZE);
+
+		assertEquals(PooledBuffer.readBytes(new ByteArrayInputStream(content), 10), content);
+	}
+
+	/** content of unknown length spanning several chunks is read completely */
+	public void unknownLength() throws IOException {
+		byte[] content = content(3 * PooledBuffer.CHUNK_SIZE + 17);
+
+		assertEquals(PooledBuffer.readBytes(trickle(content), -1), content);
+		assertEquals(PooledBuffer.readBytes(new ByteArrayInputStream(new byte[0]), -1), new byte[0]);
+	}
+
+	/** buffered content can be streamed from the chunks */
+	public void openStream() throws IOException {
+		byte[] content = content(2 * PooledBuffer.CHUNK_SIZE + 5);
+
+		try (PooledBuffer buffer = PooledBuffer.read(new ByteArrayInputStream(content))) {
+			assertEquals(buffer.size(), content.length);
+			assertNull(buffer.singleChunk());
+			InputStream in = buffer.openStream();
+			assertEquals(in.available(), content.length);
+			assertEquals(in.read(), content[0] & 0xff);
+			assertEquals(in.readAllBytes().length, content.length - 1);
+			assertEquals(in.read(), -1);
+			assertEquals(buffer.toByteArray(), content);
+		}
+	}
+
+	/** small content fits into one chunk */
+	public void singleChunk() throws IOException {
+		byte[] content = content(100);
+
+		try (PooledBuffer buffer = PooledBuffer.read(new ByteArrayInputStream(content))) {
+			byte[] chunk = buffer.singleChunk();
+			assertNotNull(chunk);
+			for (int i = 0; i < content.length; i++) {
+				assertEquals(chunk[i], content[i]);
+			}
+		}
+	}
+
+	/** closed buffers return their chunks to the pool and can't be read */
+	public void chunksReturned() throws IOException {
+		PooledBuffer buffer = PooledBuffer.read(new ByteArrayInputStream(content(2 * PooledBuffer.CHUNK_SIZE)));
+		int pooled = PooledBuffer.pooledChunks();
+		buffer.close();
+		buffer.close();
+
+		assertTrue(PooledBuffer.pooledChunks() >= Math.min(pooled + 2, 32), "Chunks not returned: " + PooledBuffer.pooledChunks());
+		try {
+			buffer.toByteArray();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/** chunks are returned if reading fails */
+	public void readFailure() {
+		int pooled = PooledBuffer.pooledChunks();
+		InputStream failing = new FilterInputStream(new ByteArrayInputStream(content(PooledBuffer.CHUNK_SIZE + 1))) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read < 0) {
+					throw new IOException("connection reset");
+				}
+				return read;
+			}
+		};
+
+		try {
+			PooledBuffer.read(failing);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(PooledBuffer.pooledChunks() >= Math.min(pooled, 30));
+	}
+
+	/** large responses are read and parsed through the client */
+	public void largeResponse() {
+		StringBuilder json = new StringBuilder("{\"values\":[");
+		for (int i = 0; i < 20000; i++) {
+			json.append(i > 0 ? "," : "").append("\"value").append(i).append('"');
+		}
+		String body = json.append("]}").toString();
+		server.register("/api/large", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) {
+				holder.response.setEntity(new ByteArrayEntity(body.getBytes(), ContentType.APPLICATION_JSON));
+			}
+		});
+
+		assertEquals(getService().getAsJson("/api/large").get("values").size(), 20000);
+		assertEquals(new String(getService().getClient().get("api/large", getService().getTokenHolder())), body);
+	}
+
+	private static byte[] content(int length) {
+		byte[] content = new byte[length];
+		new Random(length).nextBytes(content);
+		return content;
+	}
+
+	/** Returns a stream delivering the content in small pieces. */
+	private static InputStream trickle(byte[] content) {
+		return new FilterInputStream(new ByteArrayInputStream(content)) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, 1000));
+			}
+		};
+	}
+}
@@ -0,0 +1,271 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.ConnectionException;
+import com.belladati.sdk.exception.server.InternalErrorException;
+import com.belladati.sdk.exception.server.UnexpectedResponseException;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests retrying failed requests and the circuit breaker.
+ *
+ *
+ */
+@Test
+public class RetryTest extends SDKTest {
+
+	private static final Set<String> PROPERTIES = Set.of("bdMaxRetries", "bdRetryBaseDelay", "bdRetryMaxDelay",
+		"bdCircuitBreakerThreshold", "bdCircuitBreakerOpenTime", "bdMaxConcurrency", "bdConnectionRequestTimeout");
+
+	private final String uri = "/some/uri";
+	private final TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+	/** breakers are shared per base URL, keep tests apart if a port is reused */
+	private String basePath;
+
+	@BeforeMethod(alwaysRun = true)
+	protected void setupBasePath() {
+		basePath = "/" + UUID.randomUUID();
+	}
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetRetries() {
+		PROPERTIES.forEach(System::clearProperty);
+	}
+
+	/** GET requests are retried after a temporary failure */
+	public void retryGet() throws Exception {
+		AtomicInteger requests = registerFailures(uri, 2, 503, null);
+		BellaDatiClient client = client();
+
+		assertEquals(new String(client.get(uri, tokenHolder)), "content");
+
+		assertEquals(requests.get(), 3);
+		assertEquals(client.getRetryPolicy().getRetries(), 2);
+	}
+
+	/** asynchronous requests are retried after a temporary failure */
+	public void retryGetAsync() throws Exception {
+		AtomicInteger requests = registerFailures(uri, 1, 502, null);
+		BellaDatiClient client = client();
+
+		assertEquals(new String(client.getAsync(uri, tokenHolder).get(10, TimeUnit.SECONDS)), "content");
+
+		assertEquals(requests.get(), 2);
+	}
+
+	/** requests are given up after the maximum number of retries */
+	public void maxRetries() throws Exception {
+		System.setProperty("bdMaxRetries", "2");
+		AtomicInteger requests = registerFailures(uri, 10, 503, null);
+
+		try {
+			client().get(uri, tokenHolder);
+			fail("Expected UnexpectedResponseException");
+		} catch (UnexpectedResponseException e) {
+			assertEquals(e.getResponseCode(), 503);
+		}
+		assertEquals(requests.get(), 3);
+	}
+
+	/** POST requests aren't retried unless marked idempotent */
+	public void noRetryPost() throws Exception {
+		AtomicInteger requests = registerFailures(uri, 1, 503, null);
+
+		try {
+			client().post(uri, tokenHolder);
+			fail("Expected UnexpectedResponseException");
+		} catch (UnexpectedResponseException e) {
+			assertEquals(e.getResponseCode(), 503);
+		}
+		assertEquals(requests.get(), 1);
+	}
+
+	/** POST requests marked idempotent are retried */
+	public void retryIdempotentPost() throws Exception {
+		AtomicInteger requests = registerFailures(uri, 1, 503, null);
+		ObjectNode json = JsonSupport.createObjectNode().put("key", "value");
+
+		assertEquals(new String(client().postIdempotent(uri, tokenHolder, json)), "content");
+
+		assertEquals(requests.get(), 2);
+	}
+
+	/** the delay requested through Retry-After is respected */
+	public void retryAfter() throws Exception {
+		AtomicInteger requests = registerFailures(uri, 1, 429, "1");
+		BellaDatiClient client = client();
+
+		long start = System.nanoTime();
+		client.get(uri, tokenHolder);
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+		assertEquals(requests.get(), 2);
+	}
+
+	/** requests aren't retried if the server asks to wait longer than allowed */
+	public void retryAfterTooLong() throws Exception {
+		System.setProperty("bdRetryMaxDelay", "500");
+		AtomicInteger requests = registerFailures(uri, 1, 503, "60");
+
+		try {
+			client().get(uri, tokenHolder);
+			fail("Expected UnexpectedResponseException");
+		} catch (UnexpectedResponseException e) {
+			assertEquals(e.getResponseCode(), 503);
+		}
+		assertEquals(requests.get(), 1);
+	}
+
+	/** the breaker opens after consecutive failures and fails fast */
+	public void circuitBreakerOpens() throws Exception {
+		System.setProperty("bdCircuitBreakerThreshold", "2");
+		System.setProperty("bdMaxRetries", "0");
+		AtomicInteger requests = registerFailures(uri, 10, 500, null);
+		BellaDatiClient client = client();
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				client.get(uri, tokenHolder);
+				fail("Expected InternalErrorException");
+			} catch (InternalErrorException e) {
+				// expected
+			}
+		}
+		try {
+			client.get(uri, tokenHolder);
+			fail("Expected ConnectionException");
+		} catch (ConnectionException e) {
+			assertTrue(e.getCause() instanceof CircuitOpenException);
+		}
+
+		assertEquals(requests.get(), 2);
+		CircuitBreaker breaker = client.getCircuitBreaker();
+		assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+		assertEquals(breaker.getTimesOpened(), 1);
+		assertEquals(breaker.getRejectedRequests(), 1);
+	}
+
+	/** after the open time, a successful trial request closes the breaker */
+	public void circuitBreakerCloses() throws Exception {
+		System.setProperty("bdCircuitBreakerThreshold", "2");
+		System.setProperty("bdCircuitBreakerOpenTime", "100");
+		System.setProperty("bdMaxRetries", "0");
+		registerFailures(uri, 2, 500, null);
+		BellaDatiClient client = client();
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				client.get(uri, tokenHolder);
+			} catch (InternalErrorException e) {
+				// expected
+			}
+		}
+		assertEquals(client.getCircuitBreaker().getState(), CircuitBreaker.State.OPEN);
+		Thread.sleep(150);
+		assertEquals(client.getCircuitBreaker().getState(), CircuitBreaker.State.HALF_OPEN);
+
+		assertEquals(new String(client.get(uri, tokenHolder)), "content");
+		assertEquals(client.getCircuitBreaker().getState(), CircuitBreaker.State.CLOSED);
+	}
+
+	/** requests timing out in a saturated limiter don't open the breaker */
+	public void limiterTimeoutsIgnored() throws Exception {
+		System.setProperty("bdCircuitBreakerThreshold", "2");
+		System.setProperty("bdMaxRetries", "0");
+		System.setProperty("bdMaxConcurrency", "1");
+		System.setProperty("bdConnectionRequestTimeout", "50");
+		registerFailures(uri, 0, 200, null);
+		BellaDatiClient client = client();
+
+		try (InputStream stream = client.openStream(uri, tokenHolder)) {
+			for (int i = 0; i < 3; i++) {
+				try {
+					client.get(uri, tokenHolder);
+					fail("Expected ConnectionException");
+				} catch (ConnectionException e) {
+					assertTrue(e.getCause() instanceof InterruptedIOException);
+				}
+			}
+		}
+
+		CircuitBreaker breaker = client.getCircuitBreaker();
+		assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+		assertEquals(breaker.getConsecutiveFailures(), 0);
+		assertEquals(new String(client.get(uri, tokenHolder)), "content");
+	}
+
+	/** retry delays use jitter within the configured bounds */
+	public void jitterBounds() {
+		System.setProperty("bdRetryBaseDelay", "100");
+		System.setProperty("bdRetryMaxDelay", "1000");
+		RetryPolicy policy = new RetryPolicy();
+
+		assertEquals(policy.nextDelay(0, null), 100);
+		for (int i = 0; i < 100; i++) {
+			long delay = policy.nextDelay(200, null);
+			assertTrue(delay >= 100 && delay <= 600, "Unexpected delay " + delay);
+			assertTrue(policy.nextDelay(900, null) <= 1000);
+		}
+	}
+
+	/** Retry-After is parsed as seconds or as HTTP date */
+	public void parseRetryAfter() {
+		assertEquals(RetryPolicy.parseRetryAfter("2"), 2000);
+		assertEquals(RetryPolicy.parseRetryAfter(null), -1);
+		assertEquals(RetryPolicy.parseRetryAfter("soon"), -1);
+		String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(10));
+		long delay = RetryPolicy.parseRetryAfter(date);
+		assertTrue(delay > 8000 && delay <= 10000, "Unexpected delay " + delay);
+	}
+
+	/**
+	 * Registers a handler failing with the given status code before
+	 * responding successfully.
+	 */
+	private AtomicInteger registerFailures(String uri, int failures, int status, String retryAfter) {
+		AtomicInteger requests = new AtomicInteger();
+		server.register(basePath + uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				if (requests.incrementAndGet() <= failures) {
+					holder.response.setCode(status);
+					if (retryAfter != null) {
+						holder.response.setHeader("Retry-After", retryAfter);
+					}
+				} else {
+					holder.response.setEntity(new StringEntity("content"));
+				}
+			}
+		});
+		return requests;
+	}
+
+	private BellaDatiClient client() throws IOException {
+		if (System.getProperty("bdRetryBaseDelay") == null) {
+			System.setProperty("bdRetryBaseDelay", "10");
+		}
+		server.start();
+		return new BellaDatiClient(server.getHttpURL() + basePath, false);
+	}
+}
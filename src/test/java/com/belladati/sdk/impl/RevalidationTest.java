@@ -0,0 +1,158 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.domain.Domain;
+import com.belladati.sdk.domain.DomainInfo;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.CachedList;
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Tests revalidating previously loaded lists and entities with conditional
+ * requests.
+ *
+ *
+ */
+@Test
+public class RevalidationTest extends SDKTest {
+
+	private final String domainsUri = "/api/domains";
+	private final String domainUri = "/api/domains/123";
+
+	/** an unchanged list is revalidated by entity tag and not parsed again */
+	public void listNotModified() {
+		List<String> conditions = registerVersioned(domainsUri, "ETag", "\"v1\"", domainList("first"));
+		CachedList<DomainInfo> domains = getService().getDomainInfo();
+
+		domains.load();
+		DomainInfo first = domains.get().get(0);
+		domains.load();
+
+		assertEquals(conditions.get(0), null);
+		assertEquals(conditions.get(1), "\"v1\"");
+		assertSame(domains.get().get(0), first);
+		RevalidationStats stats = getService().getClient().getRevalidationStats();
+		assertEquals(stats.getConditionalRequests(), 1);
+		assertEquals(stats.getNotModified(), 1);
+		assertEquals(stats.getHitRate(), 1.0);
+	}
+
+	/** a changed list is parsed again */
+	public void listModified() {
+		AtomicReference<String> etag = new AtomicReference<String>("\"v1\"");
+		AtomicReference<String> content = new AtomicReference<String>(domainList("first"));
+		registerVersioned(domainsUri, etag, content);
+		CachedList<DomainInfo> domains = getService().getDomainInfo();
+
+		domains.load();
+		etag.set("\"v2\"");
+		content.set(domainList("second"));
+		domains.load();
+		domains.load();
+
+		assertEquals(domains.get().get(0).getName(), "second");
+		RevalidationStats stats = getService().getClient().getRevalidationStats();
+		assertEquals(stats.getConditionalRequests(), 2);
+		assertEquals(stats.getNotModified(), 1);
+		assertEquals(stats.getHitRate(), 0.5);
+	}
+
+	/** an unchanged entity is revalidated by modification date */
+	public void entityNotModified() {
+		String lastModified = "Mon, 16 Apr 2012 10:17:26 GMT";
+		List<String> conditions = registerVersioned(domainUri, "Last-Modified", lastModified, builder
+			.buildDomainNode("123", "name", "description", "yyyy-MM-dd", "hh:mm:ss", "UTC", "EN", "true").toString());
+
+		Domain first = getService().loadDomain("123");
+		Domain second = getService().loadDomain("123");
+
+		assertEquals(conditions.get(0), null);
+		assertEquals(conditions.get(1), lastModified);
+		assertEquals(second.getName(), first.getName());
+		assertEquals(getService().getClient().getRevalidationStats().getNotModified(), 1);
+	}
+
+	/** without validators from the server, requests aren't conditional */
+	public void noValidators() {
+		List<String> conditions = new ArrayList<String>();
+		server.register(domainsUri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				conditions.add(header(holder.request, "If-None-Match") + header(holder.request, "If-Modified-Since"));
+				holder.response.setEntity(new StringEntity(domainList("first")));
+			}
+		});
+		CachedList<DomainInfo> domains = getService().getDomainInfo();
+
+		domains.load();
+		domains.load();
+
+		assertEquals(conditions, List.of("nullnull", "nullnull"));
+		assertEquals(domains.get().size(), 1);
+		assertEquals(getService().getClient().getRevalidationStats().getConditionalRequests(), 0);
+		assertEquals(getService().getClient().getRevalidationStats().getHitRate(), 0.0);
+	}
+
+	/**
+	 * Registers a handler sending content with the given validator, and
+	 * responding with 304 if the request matches it.
+	 *
+	 * @return the conditions sent with each request
+	 */
+	private List<String> registerVersioned(String uri, String validator, String value, String content) {
+		List<String> conditions = new ArrayList<String>();
+		String condition = validator.equals("ETag") ? "If-None-Match" : "If-Modified-Since";
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				String received = header(holder.request, condition);
+				conditions.add(received);
+				holder.response.setHeader(validator, value);
+				if (value.equals(received)) {
+					holder.response.setCode(304);
+				} else {
+					holder.response.setEntity(new StringEntity(content));
+				}
+			}
+		});
+		return conditions;
+	}
+
+	private void registerVersioned(String uri, AtomicReference<String> etag, AtomicReference<String> content) {
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				holder.response.setHeader("ETag", etag.get());
+				if (etag.get().equals(header(holder.request, "If-None-Match"))) {
+					holder.response.setCode(304);
+				} else {
+					holder.response.setEntity(new StringEntity(content.get()));
+				}
+			}
+		});
+	}
+
+	private static String header(ClassicHttpRequest request, String name) {
+		Header header = request.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	private String domainList(String name) {
+		ObjectNode list = JsonSupport.createObjectNode();
+		list.putArray("domains").add(builder.buildDomainInfoNode("123", name, "description", "true"));
+		return list.toString();
+	}
+}
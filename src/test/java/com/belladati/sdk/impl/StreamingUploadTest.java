@@ -0,0 +1,200 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.dataset.data.DataRow;
+import com.belladati.sdk.dataset.data.DataTable;
+import com.belladati.sdk.dataset.data.OverwritePolicy;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.belladati.sdk.util.impl.JsonSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.Header;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests generating request bodies while they are sent.
+ *
+ *
+ */
+@Test
+public class StreamingUploadTest extends SDKTest {
+
+	private final String importUri = "/api/import/id";
+	private final String dataUri = "/api/dataSets/id/data";
+
+	/** the last request received by the server */
+	private final AtomicReference<Received> received = new AtomicReference<Received>();
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetProperties() {
+		System.clearProperty("bdCompressUploads");
+		System.clearProperty("bdTransport");
+	}
+
+	/** large uploads are sent chunked, with the same content as before */
+	public void largeUploadChunked() throws IOException {
+		register(importUri);
+		DataTable table = buildTable(20000).setOverwritePolicy(OverwritePolicy.byAttributes("attribute")).setTemplateId(5);
+
+		getService().uploadData("id", table);
+
+		Received request = received.get();
+		assertEquals(request.transferEncoding, "chunked");
+		assertNull(request.contentLength);
+		assertEquals(JsonSupport.readTree(request.body), table.toJson());
+	}
+
+	/** small uploads are sent with their length */
+	public void smallUploadLength() throws IOException {
+		register(importUri);
+		DataTable table = buildTable(2);
+
+		getService().uploadData("id", table);
+
+		Received request = received.get();
+		assertNull(request.transferEncoding);
+		assertEquals(request.contentLength, String.valueOf(request.body.length));
+		assertEquals(new String(request.body), table.toJson().toString());
+	}
+
+	/** large uploads are compressed while they are sent */
+	public void compressedUpload() throws IOException {
+		System.setProperty("bdCompressUploads", "true");
+		register(importUri);
+		DataTable table = buildTable(20000);
+
+		getService().uploadData("id", table);
+
+		Received request = received.get();
+		assertEquals(request.contentEncoding, "gzip");
+		assertEquals(request.transferEncoding, "chunked");
+		byte[] content = new GZIPInputStream(new ByteArrayInputStream(request.body)).readAllBytes();
+		assertEquals(JsonSupport.readTree(content), table.toJson());
+		CompressionStats stats = getService().getClient().getCompressionStats();
+		assertEquals(stats.getUncompressedRequestBytes(), content.length);
+		assertEquals(stats.getRequestBytes(), request.body.length);
+	}
+
+	/** the JDK transport streams bodies as well */
+	public void jdkTransport() throws IOException {
+		System.setProperty("bdTransport", "jdk");
+		register(importUri);
+		DataTable table = buildTable(20000);
+
+		getService().uploadData("id", table);
+
+		assertEquals(JsonSupport.readTree(received.get().body), table.toJson());
+	}
+
+	/** streamed uploads are counted in the request metrics */
+	public void uploadMetrics() {
+		register(importUri);
+
+		getService().uploadData("id", buildTable(20000));
+
+		EndpointMetrics endpoint = getService().getClient().getMetrics().getEndpoint("POST", "api/import/id");
+		assertEquals(endpoint.getRequestBytes(), received.get().body.length);
+	}
+
+	/** patched rows are streamed */
+	public void patchRows() throws IOException {
+		register(dataUri);
+		List<DataRow> rows = buildTable(5000).getRows();
+
+		getService().patchDataSetData("id", rows, Arrays.asList("attribute"));
+
+		ObjectNode expected = JsonSupport.createObjectNode();
+		expected.set("dataRows", rowsJson(rows));
+		expected.set("matchAttributes", JsonSupport.createArrayNode().add("attribute"));
+		assertEquals(JsonSupport.readTree(received.get().body), expected);
+		assertEquals(received.get().transferEncoding, "chunked");
+	}
+
+	/** replaced rows are streamed together with the filter */
+	public void replaceRows() throws IOException {
+		register("/api/dataSets/id/replace");
+		List<DataRow> rows = buildTable(5000).getRows();
+
+		getService().replaceDataSetData("id", rows);
+
+		JsonNode request = JsonSupport.readTree(received.get().body);
+		assertEquals(request.get("dataRows"), rowsJson(rows));
+		assertEquals(request.get("filter").toString(), "{\"drilldown\":{}}");
+	}
+
+	/** posted rows are encoded into the form while they are generated */
+	public void postRows() throws Exception {
+		register(dataUri);
+		List<DataRow> rows = buildTable(500).getRows();
+		rows.get(0).set("attribute", "äöü &=+ %\"");
+
+		getService().postDataSetData("id", rows);
+
+		String form = new String(received.get().body);
+		assertTrue(form.startsWith("dataRow="));
+		assertEquals(URLDecoder.decode(form.substring("dataRow=".length()), StandardCharsets.UTF_8), rowsJson(rows).toString());
+	}
+
+	/** asynchronous uploads use the same content */
+	public void asyncUpload() throws Exception {
+		register(importUri);
+		DataTable table = buildTable(20000);
+
+		getService().async().uploadData("id", table).get(10, TimeUnit.SECONDS);
+
+		assertEquals(JsonSupport.readTree(received.get().body), table.toJson());
+	}
+
+	private void register(String uri) {
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException {
+				received.set(new Received(holder.request, holder.getRequestBodyBytes()));
+			}
+		});
+	}
+
+	private static ArrayNode rowsJson(List<DataRow> rows) {
+		ArrayNode array = JsonSupport.createArrayNode();
+		rows.forEach(row -> array.add(row.toJsonObject()));
+		return array;
+	}
+
+	/** What the server received for a request. */
+	private static class Received {
+		private final String transferEncoding;
+		private final String contentLength;
+		private final String contentEncoding;
+		private final byte[] body;
+
+		private Received(ClassicHttpRequest request, byte[] body) {
+			this.transferEncoding = value(request.getFirstHeader("Transfer-Encoding"));
+			this.contentLength = value(request.getFirstHeader("Content-Length"));
+			this.contentEncoding = value(request.getFirstHeader("Content-Encoding"));
+			this.body = body;
+			assertNotNull(body);
+		}
+
+		private static String value(Header header) {
+			return header == null ? null : header.getValue();
+		}
+	}
+}
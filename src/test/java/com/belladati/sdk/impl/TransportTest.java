@@ -0,0 +1,182 @@
+package com.belladati.sdk.impl;
+
+import com.belladati.sdk.exception.server.NotFoundException;
+import com.belladati.sdk.test.SDKTest;
+import com.belladati.sdk.test.TestRequestHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests sending requests through the JDK {@link HttpTransport} and through
+ * custom transports.
+ *
+ *
+ */
+@Test
+public class TransportTest extends SDKTest {
+
+	private final String uri = "/some/uri";
+	private final TokenHolder tokenHolder = new TokenHolder("key", "secret");
+
+	@AfterMethod(alwaysRun = true)
+	protected void resetTransport() {
+		System.clearProperty("bdTransport");
+	}
+
+	/** JSON is loaded through the JDK transport, with a signed request */
+	public void jdkGetJson() throws Exception {
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) {
+				holder.assertAuth("key", null);
+				holder.response.setEntity(new ByteArrayEntity("{\"id\":\"123\"}".getBytes(), ContentType.APPLICATION_JSON));
+			}
+		});
+
+		JsonNode json = jdkClient().getAsJson(uri, tokenHolder);
+
+		assertEquals(json.get("id").asText(), "123");
+		server.assertRequestUris(uri);
+	}
+
+	/** form parameters are sent through the JDK transport */
+	public void jdkPostForm() throws Exception {
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				holder.assertPost();
+				assertEquals(holder.getFormParameters(), Collections.singletonMap("param", "value"));
+			}
+		});
+		List<NameValuePair> params = Collections.singletonList(new BasicNameValuePair("param", "value"));
+
+		jdkClient().post(uri, tokenHolder, params);
+
+		server.assertRequestUris(uri);
+	}
+
+	/** compressed responses are decoded by the client, not the JDK transport */
+	public void jdkGzipResponse() throws Exception {
+		byte[] content = "{\"id\":\"123\"}".getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(buf)) {
+			out.write(content);
+		}
+		server.register(uri, new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) {
+				holder.response.setEntity(new ByteArrayEntity(buf.toByteArray(), ContentType.APPLICATION_JSON, "gzip"));
+			}
+		});
+		BellaDatiClient client = jdkClient();
+
+		assertEquals(client.getAsJson(uri, tokenHolder).get("id").asText(), "123");
+		assertEquals(client.getCompressionStats().getDecodedResponseBytes(), content.length);
+	}
+
+	/** error responses through the JDK transport throw the usual exceptions */
+	public void jdkNotFound() throws Exception {
+		server.registerError(uri, 404, "not found");
+
+		try {
+			jdkClient().get(uri, tokenHolder);
+			fail("Expected NotFoundException");
+		} catch (NotFoundException e) {
+			// expected
+		}
+	}
+
+	/** asynchronous requests are sent through the JDK transport */
+	public void jdkAsync() throws Exception {
+		server.register(uri, "content");
+
+		CompletableFuture<byte[]> future = jdkClient().getAsync(uri, tokenHolder);
+
+		assertEquals(new String(future.get(10, TimeUnit.SECONDS)), "content");
+	}
+
+	/** responses are streamed through the JDK transport */
+	public void jdkOpenStream() throws Exception {
+		server.register(uri, "content");
+
+		try (InputStream in = jdkClient().openStream(uri, tokenHolder)) {
+			assertEquals(new String(in.readAllBytes()), "content");
+		}
+	}
+
+	/** HTTP/2 through the JDK transport falls back to HTTP/1.1 */
+	public void jdkHttp2Fallback() throws Exception {
+		server.register(uri, "content");
+		server.start();
+		BellaDatiClient client = new BellaDatiClient(server.getHttpURL(), false,
+			new JdkHttpTransport(HttpVersionPolicy.FORCE_HTTP_2));
+
+		assertEquals(new String(client.get(uri, tokenHolder)), "content");
+	}
+
+	/** a custom transport receives signed requests */
+	public void customTransport() throws Exception {
+		server.register(uri, "content");
+		server.start();
+		AtomicInteger requests = new AtomicInteger();
+		HttpTransport delegate = new ApacheHttpTransport(HttpVersionPolicy.FORCE_HTTP_1);
+		HttpTransport transport = new HttpTransport() {
+			@Override
+			public TransportResponse execute(TransportRequest request) throws IOException {
+				requests.incrementAndGet();
+				TransportResponse response = delegate.execute(request);
+				assertTrue(request.getHeader("Authorization").startsWith("OAuth"));
+				return response;
+			}
+
+			@Override
+			public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+				requests.incrementAndGet();
+				return delegate.executeAsync(request);
+			}
+
+			@Override
+			public ConnectionPoolStats getPoolStats() {
+				return delegate.getPoolStats();
+			}
+
+			@Override
+			public void close() throws IOException {
+				delegate.close();
+			}
+		};
+		BellaDatiClient client = new BellaDatiClient(server.getHttpURL(), false, transport);
+
+		assertEquals(new String(client.get(uri, tokenHolder)), "content");
+		assertEquals(new String(client.getAsync(uri, tokenHolder).get(10, TimeUnit.SECONDS)), "content");
+		assertEquals(requests.get(), 2);
+	}
+
+	private BellaDatiClient jdkClient() throws IOException {
+		System.setProperty("bdTransport", "jdk");
+		server.start();
+		return new BellaDatiClient(server.getHttpURL(), false);
+	}
+}
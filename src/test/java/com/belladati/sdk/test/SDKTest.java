@@ -1,5 +1,6 @@
 package com.belladati.sdk.test;
 
+import com.belladati.sdk.dataset.data.DataTable;
 import com.belladati.sdk.dataset.source.ImportIntervalUnit;
 import com.belladati.sdk.impl.BellaDatiClient;
 import com.belladati.sdk.impl.BellaDatiServiceImpl;
@@ -99,6 +100,18 @@ public class SDKTest {
 			new Object[] { "YEAR", ImportIntervalUnit.YEAR, 1, 525600 } };
 	}
 
+	/**
+	 * Builds a data table with an attribute and an indicator column and the
+	 * given number of rows.
+	 */
+	protected static DataTable buildTable(int rows) {
+		DataTable table = DataTable.createBasicInstance("attribute", "indicator");
+		for (int i = 0; i < rows; i++) {
+			table.createRow("value " + i, "" + i);
+		}
+		return table;
+	}
+
 	protected final BufferedImage getTestBufferedImage() {
 		InputStream stream = getTestImageStream();
 		if (stream == null) {
@@ -4,6 +4,8 @@ import com.belladati.sdk.BellaDati;
 import com.belladati.sdk.BellaDatiConnection;
 import com.belladati.sdk.BellaDatiService;
 import com.belladati.sdk.auth.OAuthRequest;
+import com.belladati.sdk.impl.BellaDatiClient;
+import com.belladati.sdk.impl.TokenHolder;
 import com.belladati.sdk.test.SDKTest;
 import com.belladati.sdk.test.TestRequestHandler;
 import org.apache.hc.core5.http.ParseException;
@@ -12,12 +14,16 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 @Test
 public class SerializationTest extends SDKTest {
@@ -132,4 +138,47 @@ public class SerializationTest extends SDKTest {
 		newRequest.requestAccess();
 		server.assertRequestUris("/oauth/accessToken");
 	}
+
+	/** Clients serialized before settings were added can be restored. */
+	public void restoreOldClient() throws Exception {
+		server.register("/api/reports/123", new TestRequestHandler() {
+			@Override
+			protected void handle(HttpHolder holder) throws IOException, ParseException {
+				// responses may be compressed by default
+				assertTrue(holder.request.containsHeader("Accept-Encoding"));
+				holder.response.setEntity(new StringEntity("content"));
+			}
+		});
+		server.start();
+
+		// a client as serialized before settings were added, with only its URL and trust setting
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(baos);
+		output.writeShort(ObjectStreamConstants.STREAM_MAGIC);
+		output.writeShort(ObjectStreamConstants.STREAM_VERSION);
+		output.writeByte(ObjectStreamConstants.TC_OBJECT);
+		output.writeByte(ObjectStreamConstants.TC_CLASSDESC);
+		output.writeUTF(BellaDatiClient.class.getName());
+		output.writeLong(ObjectStreamClass.lookup(BellaDatiClient.class).getSerialVersionUID());
+		output.writeByte(ObjectStreamConstants.SC_SERIALIZABLE);
+		output.writeShort(2);
+		output.writeByte('Z');
+		output.writeUTF("trustSelfSigned");
+		output.writeByte('L');
+		output.writeUTF("baseUrl");
+		output.writeByte(ObjectStreamConstants.TC_STRING);
+		output.writeUTF("Ljava/lang/String;");
+		output.writeByte(ObjectStreamConstants.TC_ENDBLOCKDATA);
+		output.writeByte(ObjectStreamConstants.TC_NULL);
+		output.writeBoolean(false);
+		output.writeByte(ObjectStreamConstants.TC_STRING);
+		output.writeUTF(server.getHttpURL() + "/");
+		output.close();
+
+		ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		BellaDatiClient client = (BellaDatiClient) input.readObject();
+		input.close();
+
+		assertEquals(new String(client.get("api/reports/123", new TokenHolder("key", "secret"))), "content");
+	}
 }
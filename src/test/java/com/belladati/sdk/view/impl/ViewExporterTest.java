@@ -1,6 +1,7 @@
 package com.belladati.sdk.view.impl;
 
 import com.belladati.sdk.exception.impl.UnknownViewTypeException;
+import com.belladati.sdk.exception.server.NotFoundException;
 import com.belladati.sdk.test.SDKTest;
 import com.belladati.sdk.test.TestRequestHandler;
 import com.belladati.sdk.util.PageOrientation;
@@ -114,4 +115,33 @@ public class ViewExporterTest extends SDKTest {
 		assertEquals(stream.available(), 4236);
 	}
 
+	/** the export is read into memory, so the connection is released right away */
+	public void exportPdf_buffered() {
+		new ViewExporterImpl(getService(), id).exportPdf(null, null);
+
+		assertEquals(getService().getClient().getPoolStats().getLeased(), 0);
+	}
+
+	/** the opened export is streamed from the connection, which is released on close */
+	public void openPdf_streamReleasesConnection() throws IOException {
+		ViewExport result = new ViewExporterImpl(getService(), id).openPdf(null, null);
+		server.assertRequestUris(URI_PDF);
+		assertEquals(result.getExportType(), ViewExportType.PDF);
+
+		InputStream stream = result.getInputStream();
+		assertEquals(getService().getClient().getPoolStats().getLeased(), 1);
+
+		stream.close();
+		assertEquals(getService().getClient().getPoolStats().getLeased(), 0);
+	}
+
+	/** errors are reported before the stream is handed out */
+	@Test(expectedExceptions = NotFoundException.class)
+	public void exportPdf_notFound() throws UnknownViewTypeException {
+		server.registerError(viewsUri + "missing/export/pdf", 404, "");
+		View view = new TableViewImpl(getService(), builder.buildViewNode("missing", name, "table"));
+
+		view.createExporter().exportPdf(null, null);
+	}
+
 }